@@ -47,19 +47,24 @@ final class ASMAccessorFactory implements BeanAccessorFactory {
 	}
 
 	private BeanAccessor generateAccessor(Class<?> javaClz) {
-		String clzName = javaClz.getName().replace('.', '_');
+		String clzName = AccessorRegistry.getAccessorName(javaClz);
 		ClassLoader cl = Thread.currentThread().getContextClassLoader();
 		if (cl == null)
 			cl = BeanAccessorFactory.class.getClassLoader();
 
-		Class<?> cls = null;
-		try {
-			cls = cl.loadClass(clzName);
-		} catch (ClassNotFoundException e1) {
-		}
-
 		FieldInfo[] fields = getFields(javaClz);
 		boolean isHashProperty = sortFields(fields);
+
+		Class<?> cls = null;
+		if (AccessorRegistry.hasRegistry(cl)) {
+			// 有登记表时只加载登记过的类，避免为每个没有预先生成的Bean都抛出一次ClassNotFoundException
+			cls = AccessorRegistry.find(cl, javaClz, fields);
+		} else {
+			try {
+				cls = cl.loadClass(clzName);
+			} catch (ClassNotFoundException e1) {
+			}
+		}
 		ClassGenerator asm;
 		byte[] clzdata = null;
 		if (cls == null) {
@@ -121,7 +126,7 @@ final class ASMAccessorFactory implements BeanAccessorFactory {
 	 * 
 	 * @return
 	 */
-	private static FieldInfo[] getFields(Class<?> javaBean) {
+	static FieldInfo[] getFields(Class<?> javaBean) {
 		ClassEx cw = new ClassEx(javaBean);
 		FieldEx[] fs = cw.getFields();
 		Map<String, FieldInfo> result = new LinkedHashMap<String, FieldInfo>(fs.length);
@@ -238,7 +243,7 @@ final class ASMAccessorFactory implements BeanAccessorFactory {
 		ba.initAnnotations(f, g, s);
 	}
 
-	private boolean sortFields(FieldInfo[] fields) {
+	static boolean sortFields(FieldInfo[] fields) {
 		if (fields == null)
 			return false;
 
@@ -0,0 +1,185 @@
+package com.github.geequery.accelerator.bean;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.github.geequery.tools.IOUtils;
+
+/**
+ * 构建时预先生成的访问者类（Accessor）的登记表。
+ * <p>
+ * 构建工具(maven插件)调用{@link #generate(File, Collection)}，将Bean的访问者类直接写入classes目录，
+ * 并在{@link #RESOURCE}中登记Bean类名和生成时的属性列表。运行时{@link ASMAccessorFactory}先查询登记表，
+ * 登记过且属性列表一致的Bean直接加载预先生成的类，不再在运行时生成字节码和定义类。
+ * <p>
+ * 以下情况仍在运行时生成：
+ * <ul>
+ * <li>Bean没有登记，或登记的属性列表和运行时不一致(Bean在生成之后又被修改)</li>
+ * <li>属性名的hashCode有重复，需要使用{@link HashBeanAccessor}的Bean。这种访问者需要为每个属性额外生成类，不预先生成</li>
+ * </ul>
+ *
+ * @author jiyi
+ *
+ */
+public final class AccessorRegistry {
+	/**
+	 * 登记表在classpath中的位置
+	 */
+	public static final String RESOURCE = "META-INF/geequery/accessors.idx";
+	private static final String HEADER = "#geequery-accessor-index ";
+	private static final int VERSION = 1;
+
+	/**
+	 * ClassLoader -> (Bean类名 -> 属性列表)。没有登记表的ClassLoader对应空Map
+	 */
+	private static final Map<ClassLoader, Map<String, String>> loaded = new WeakHashMap<ClassLoader, Map<String, String>>();
+
+	private AccessorRegistry() {
+	}
+
+	/**
+	 * 生成Bean的访问者类，并写入登记表
+	 *
+	 * @param classesRoot
+	 *            class文件的根目录
+	 * @param beans
+	 *            Bean类
+	 * @return 成功生成的访问者个数
+	 * @throws IOException
+	 */
+	public static int generate(File classesRoot, Collection<Class<?>> beans) throws IOException {
+		Map<String, String> signatures = new LinkedHashMap<String, String>();
+		for (Class<?> bean : beans) {
+			FieldInfo[] fields = ASMAccessorFactory.getFields(bean);
+			if (ASMAccessorFactory.sortFields(fields)) {
+				continue;
+			}
+			String accessorName = getAccessorName(bean);
+			byte[] data = new ASMSwitcherGenerator(bean, accessorName, fields, bean.getClassLoader()).generate();
+			IOUtils.saveAsFile(new File(classesRoot, accessorName.replace('.', '/') + ".class"), data);
+			signatures.put(bean.getName(), getSignature(fields));
+		}
+		File file = new File(classesRoot, RESOURCE);
+		File dir = file.getParentFile();
+		if (!dir.exists() && !dir.mkdirs()) {
+			throw new IOException("Can not create directory " + dir.getAbsolutePath());
+		}
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+		try {
+			writer.write(HEADER + VERSION + "\n");
+			for (Map.Entry<String, String> e : signatures.entrySet()) {
+				writer.write(e.getKey());
+				writer.write('=');
+				writer.write(e.getValue());
+				writer.write('\n');
+			}
+		} finally {
+			IOUtils.closeQuietly(writer);
+		}
+		return signatures.size();
+	}
+
+	/**
+	 * 访问者类的类名
+	 */
+	static String getAccessorName(Class<?> bean) {
+		return bean.getName().replace('.', '_');
+	}
+
+	/**
+	 * 判断ClassLoader中是否有登记表
+	 */
+	static boolean hasRegistry(ClassLoader cl) {
+		return !getRegistry(cl).isEmpty();
+	}
+
+	/**
+	 * 查找预先生成的访问者类
+	 *
+	 * @param cl
+	 *            ClassLoader
+	 * @param bean
+	 *            Bean类
+	 * @param fields
+	 *            运行时计算出的属性(已排序)
+	 * @return 没有登记或已经过时返回null
+	 */
+	static Class<?> find(ClassLoader cl, Class<?> bean, FieldInfo[] fields) {
+		String signature = getRegistry(cl).get(bean.getName());
+		if (signature == null || !signature.equals(getSignature(fields))) {
+			return null;
+		}
+		try {
+			return cl.loadClass(getAccessorName(bean));
+		} catch (ClassNotFoundException e) {
+			return null;
+		}
+	}
+
+	private static Map<String, String> getRegistry(ClassLoader cl) {
+		synchronized (loaded) {
+			Map<String, String> registry = loaded.get(cl);
+			if (registry == null) {
+				registry = load(cl);
+				loaded.put(cl, registry);
+			}
+			return registry;
+		}
+	}
+
+	private static Map<String, String> load(ClassLoader cl) {
+		Map<String, String> result = new HashMap<String, String>();
+		try {
+			Enumeration<URL> urls = cl.getResources(RESOURCE);
+			while (urls.hasMoreElements()) {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(urls.nextElement().openStream(), StandardCharsets.UTF_8));
+				try {
+					String header = reader.readLine();
+					if (header == null || !header.equals(HEADER + VERSION)) {
+						continue;
+					}
+					String line;
+					while ((line = reader.readLine()) != null) {
+						int index = line.indexOf('=');
+						if (index > 0) {
+							result.put(line.substring(0, index).trim(), line.substring(index + 1).trim());
+						}
+					}
+				} finally {
+					IOUtils.closeQuietly(reader);
+				}
+			}
+		} catch (IOException e) {
+			return Collections.emptyMap();
+		}
+		return result;
+	}
+
+	/*
+	 * 属性列表：按生成时的顺序列出属性名和类型，属性的增减、改名、改类型都会使预先生成的类失效
+	 */
+	private static String getSignature(FieldInfo[] fields) {
+		StringBuilder sb = new StringBuilder();
+		for (FieldInfo fi : fields) {
+			if (sb.length() > 0) {
+				sb.append(',');
+			}
+			sb.append(fi.getName()).append(':').append(fi.getRawType().getName());
+		}
+		return sb.toString();
+	}
+}
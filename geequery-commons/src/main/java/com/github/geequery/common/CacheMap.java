@@ -24,7 +24,9 @@ import java.util.concurrent.locks.ReentrantLock;
  * @author Administrator
  * @param <K>
  * @param <V>
+ * @deprecated get和put在同一把锁上串行，高并发时成为瓶颈。请使用{@link ConcurrentCache}。
  */
+@Deprecated
 public class CacheMap<K, V> extends LinkedHashMap<K, V> {
 	private static final long serialVersionUID = 2428383992533927687L;
 	private static final float DEFAULT_LOAD_FACTOR = 1f;
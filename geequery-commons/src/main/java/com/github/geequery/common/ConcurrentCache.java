@@ -0,0 +1,547 @@
+/*
+ * JEF - Copyright 2009-2010 Jiyi (mr.jiyi@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.geequery.common;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.github.geequery.tools.Exceptions;
+
+/**
+ * 线程安全的固定容量缓存，按最近最少使用(LRU)淘汰，用于替代{@link CacheMap}和{@link StringCacheMap}。
+ * <p>
+ * <h3>并发</h3> 数据分为若干段，每段的数据存放在ConcurrentHashMap中，读操作不加锁。
+ * 读操作对LRU顺序的调整先记录在该段的环形缓冲区中，积累到一定数量后由某个线程(tryLock成功者)批量处理，
+ * 缓冲区满时丢弃记录，只影响淘汰的精确程度。写操作只锁定一个段。
+ * <p>
+ * <h3>容量</h3> 默认每个元素计为1，也可以指定{@link Weigher}按元素的大小计算。容量平均分配到各段，每段独立淘汰，因此淘汰顺序是近似的LRU。
+ * <p>
+ * <h3>加载</h3> {@link #get(Object, Loader)}在缓存未命中时调用加载器，同一个Key同时只有一个线程加载，其他线程等待加载的结果。
+ * <p>
+ * Key和Value都不能为null。
+ *
+ * @author jiyi
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class ConcurrentCache<K, V> {
+	private static final int DEFAULT_CONCURRENCY = 16;
+	/**
+	 * 每段读缓冲区的大小，必须是2的幂
+	 */
+	private static final int READ_BUFFER_SIZE = 64;
+	private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+	/**
+	 * 读缓冲区中积累了多少条记录时处理
+	 */
+	private static final int DRAIN_THRESHOLD = 32;
+	/**
+	 * 每段的最小容量，容量很小时减少段数，保证淘汰的精确性
+	 */
+	private static final int MIN_SEGMENT_WEIGHT = 16;
+
+	/**
+	 * 计算元素的大小
+	 */
+	public interface Weigher<K, V> {
+		/**
+		 * @return 元素的大小，不能为负数
+		 */
+		int weigh(K key, V value);
+	}
+
+	/**
+	 * 缓存未命中时加载数据
+	 */
+	public interface Loader<K, V> {
+		/**
+		 * @param key
+		 *            Key
+		 * @return 加载的数据，返回null时不缓存
+		 * @throws Exception
+		 */
+		V load(K key) throws Exception;
+	}
+
+	private final Segment<K, V>[] segments;
+	private final int segmentShift;
+	private final Weigher<? super K, ? super V> weigher;
+	private final long maxWeight;
+
+	private final LongAdder hit = new LongAdder();
+	private final LongAdder miss = new LongAdder();
+	private final LongAdder load = new LongAdder();
+	private final LongAdder eviction = new LongAdder();
+
+	/**
+	 * 构造
+	 *
+	 * @param maxSize
+	 *            最大元素个数
+	 */
+	public ConcurrentCache(int maxSize) {
+		this(maxSize, null, DEFAULT_CONCURRENCY);
+	}
+
+	/**
+	 * 构造
+	 *
+	 * @param maxWeight
+	 *            最大容量
+	 * @param weigher
+	 *            元素大小的计算方式，为null时每个元素计为1
+	 */
+	public ConcurrentCache(long maxWeight, Weigher<? super K, ? super V> weigher) {
+		this(maxWeight, weigher, DEFAULT_CONCURRENCY);
+	}
+
+	/**
+	 * 构造
+	 *
+	 * @param maxWeight
+	 *            最大容量
+	 * @param weigher
+	 *            元素大小的计算方式，为null时每个元素计为1
+	 * @param concurrencyLevel
+	 *            预计的并发写线程数，决定分段的数量
+	 */
+	@SuppressWarnings("unchecked")
+	public ConcurrentCache(long maxWeight, Weigher<? super K, ? super V> weigher, int concurrencyLevel) {
+		if (maxWeight <= 0) {
+			throw new IllegalArgumentException("The max weight must be positive: " + maxWeight);
+		}
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+		int count = 1;
+		int bits = 0;
+		while (count < concurrencyLevel && (long) count * 2 * MIN_SEGMENT_WEIGHT <= maxWeight) {
+			count <<= 1;
+			bits++;
+		}
+		this.segmentShift = 32 - bits;
+		this.segments = new Segment[count];
+		long base = maxWeight / count;
+		long remainder = maxWeight % count;
+		for (int i = 0; i < count; i++) {
+			segments[i] = new Segment<K, V>(this, i < remainder ? base + 1 : base);
+		}
+	}
+
+	/**
+	 * 得到缓存的值
+	 *
+	 * @param key
+	 *            Key
+	 * @return 值，不存在或正在加载时返回null
+	 */
+	public V get(K key) {
+		Segment<K, V> s = segmentFor(key);
+		Node<K, V> node = s.map.get(key);
+		if (node == null || node.loading != null) {
+			miss.increment();
+			return null;
+		}
+		hit.increment();
+		s.recordRead(node);
+		return node.value;
+	}
+
+	/**
+	 * 得到缓存的值，不存在时加载。
+	 * <p>
+	 * 同一个Key同时只有一个线程调用加载器，其他线程等待并得到同样的结果。
+	 *
+	 * @param key
+	 *            Key
+	 * @param loader
+	 *            加载器
+	 * @return 值，加载器返回null时返回null
+	 * @throws IllegalStateException
+	 *             加载器抛出检查异常时，封装为IllegalStateException抛出；加载器中再次加载同一个Key时(否则会永远等待自己)
+	 */
+	public V get(K key, Loader<? super K, ? extends V> loader) {
+		Segment<K, V> s = segmentFor(key);
+		Node<K, V> node = s.map.get(key);
+		if (node != null && node.loading == null) {
+			hit.increment();
+			s.recordRead(node);
+			return node.value;
+		}
+		miss.increment();
+		if (node == null) {
+			Node<K, V> loading = new Node<K, V>(key, null, 0);
+			loading.loading = new FutureTask<V>(new LoadTask<K, V>(key, loader));
+			loading.owner = Thread.currentThread();
+			node = s.map.putIfAbsent(key, loading);
+			if (node == null) {
+				return doLoad(s, loading);
+			} else if (node.loading == null) {
+				return node.value;
+			}
+		}
+		if (node.owner == Thread.currentThread()) {
+			throw new IllegalStateException("Recursive load of key: " + key);
+		}
+		return waitFor(node.loading);
+	}
+
+	/*
+	 * 在当前线程中执行加载，将结果放入缓存
+	 */
+	private V doLoad(Segment<K, V> s, Node<K, V> loading) {
+		FutureTask<V> task = loading.loading;
+		task.run();
+		loading.owner = null;
+		V value;
+		try {
+			value = waitFor(task);
+		} catch (RuntimeException e) {
+			s.map.remove(loading.key, loading);
+			throw e;
+		} catch (Error e) {
+			s.map.remove(loading.key, loading);
+			throw e;
+		}
+		load.increment();
+		if (value == null) {
+			s.map.remove(loading.key, loading);
+			return null;
+		}
+		Node<K, V> node = new Node<K, V>(loading.key, value, weigh(loading.key, value));
+		if (s.map.replace(loading.key, loading, node)) {
+			s.afterWrite(node, null);
+		}
+		return value;
+	}
+
+	private V waitFor(FutureTask<V> task) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return task.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw Exceptions.asIllegalState(cause);
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * 放入缓存
+	 *
+	 * @param key
+	 *            Key
+	 * @param value
+	 *            值
+	 * @return 原来的值
+	 */
+	public V put(K key, V value) {
+		if (value == null) {
+			throw new NullPointerException("The value of " + key + " can not be null!");
+		}
+		Segment<K, V> s = segmentFor(key);
+		Node<K, V> node = new Node<K, V>(key, value, weigh(key, value));
+		Node<K, V> old = s.map.put(key, node);
+		s.afterWrite(node, old);
+		return old == null ? null : old.value;
+	}
+
+	/**
+	 * 从缓存中移除
+	 *
+	 * @param key
+	 *            Key
+	 * @return 原来的值
+	 */
+	public V remove(K key) {
+		Segment<K, V> s = segmentFor(key);
+		Node<K, V> old = s.map.remove(key);
+		if (old == null) {
+			return null;
+		}
+		s.afterWrite(null, old);
+		return old.value;
+	}
+
+	/**
+	 * 是否包含指定的Key。不记录访问
+	 */
+	public boolean containsKey(K key) {
+		Node<K, V> node = segmentFor(key).map.get(key);
+		return node != null && node.loading == null;
+	}
+
+	/**
+	 * 清空缓存
+	 */
+	public void clear() {
+		for (Segment<K, V> s : segments) {
+			s.clear();
+		}
+	}
+
+	/**
+	 * @return 元素个数(含正在加载的)
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment<K, V> s : segments) {
+			size += s.map.size();
+		}
+		return size;
+	}
+
+	/**
+	 * @return 当前的总容量
+	 */
+	public long weight() {
+		long weight = 0;
+		for (Segment<K, V> s : segments) {
+			s.lock();
+			try {
+				weight += s.weight;
+			} finally {
+				s.unlock();
+			}
+		}
+		return weight;
+	}
+
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	public long getHitCount() {
+		return hit.sum();
+	}
+
+	public long getMissCount() {
+		return miss.sum();
+	}
+
+	/**
+	 * @return 调用加载器的次数
+	 */
+	public long getLoadCount() {
+		return load.sum();
+	}
+
+	/**
+	 * @return 因容量不足被淘汰的元素个数
+	 */
+	public long getEvictionCount() {
+		return eviction.sum();
+	}
+
+	/**
+	 * @return 命中率，没有访问时返回0
+	 */
+	public double getHitRate() {
+		long h = hit.sum();
+		long total = h + miss.sum();
+		return total == 0 ? 0 : (double) h / total;
+	}
+
+	@Override
+	public String toString() {
+		return "ConcurrentCache[size=" + size() + ", max=" + maxWeight + ", hit=" + hit.sum() + ", miss=" + miss.sum() + ", eviction=" + eviction.sum() + "]";
+	}
+
+	private int weigh(K key, V value) {
+		if (weigher == null) {
+			return 1;
+		}
+		int weight = weigher.weigh(key, value);
+		if (weight < 0) {
+			throw new IllegalArgumentException("The weight of " + key + " is negative: " + weight);
+		}
+		return weight;
+	}
+
+	private Segment<K, V> segmentFor(K key) {
+		if (segments.length == 1) {
+			return segments[0];
+		}
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		h *= 0x85ebca6b;
+		return segments[h >>> segmentShift];
+	}
+
+	static final class Node<K, V> {
+		final K key;
+		final V value;
+		final int weight;
+		/**
+		 * 正在加载时不为null
+		 */
+		FutureTask<V> loading;
+		/**
+		 * 执行加载的线程，用于发现加载器中对同一个Key的递归加载
+		 */
+		Thread owner;
+		/*
+		 * LRU链表，持有段的锁时访问。prev为null表示不在链表中
+		 */
+		Node<K, V> prev;
+		Node<K, V> next;
+
+		Node(K key, V value, int weight) {
+			this.key = key;
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+
+	static final class LoadTask<K, V> implements Callable<V> {
+		private final K key;
+		private final Loader<? super K, ? extends V> loader;
+
+		LoadTask(K key, Loader<? super K, ? extends V> loader) {
+			this.key = key;
+			this.loader = loader;
+		}
+
+		public V call() throws Exception {
+			return loader.load(key);
+		}
+	}
+
+	@SuppressWarnings("serial")
+	static final class Segment<K, V> extends ReentrantLock {
+		private final ConcurrentCache<K, V> cache;
+		final ConcurrentHashMap<K, Node<K, V>> map = new ConcurrentHashMap<K, Node<K, V>>();
+		private final long maxWeight;
+		/*
+		 * 以下字段只在持有锁时访问
+		 */
+		private final Node<K, V> head = new Node<K, V>(null, null, 0);
+		long weight;
+
+		private final AtomicReferenceArray<Node<K, V>> readBuffer = new AtomicReferenceArray<Node<K, V>>(READ_BUFFER_SIZE);
+		private final AtomicLong readCount = new AtomicLong();
+
+		Segment(ConcurrentCache<K, V> cache, long maxWeight) {
+			this.cache = cache;
+			this.maxWeight = maxWeight;
+			head.prev = head;
+			head.next = head;
+		}
+
+		/*
+		 * 记录一次读取，积累到一定数量后尝试批量调整LRU顺序
+		 */
+		void recordRead(Node<K, V> node) {
+			long count = readCount.getAndIncrement();
+			readBuffer.lazySet((int) (count & READ_BUFFER_MASK), node);
+			if ((count & (DRAIN_THRESHOLD - 1)) == DRAIN_THRESHOLD - 1 && tryLock()) {
+				try {
+					drainReads();
+				} finally {
+					unlock();
+				}
+			}
+		}
+
+		private void drainReads() {
+			for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+				Node<K, V> node = readBuffer.getAndSet(i, null);
+				if (node != null && node.prev != null) {
+					unlink(node);
+					linkLast(node);
+				}
+			}
+		}
+
+		/*
+		 * 写入或移除后，调整链表并淘汰超出容量的元素
+		 */
+		void afterWrite(Node<K, V> added, Node<K, V> removed) {
+			lock();
+			try {
+				drainReads();
+				if (removed != null && removed.prev != null) {
+					unlink(removed);
+					weight -= removed.weight;
+				}
+				// 并发写入同一个Key时，只有仍在Map中的节点进入链表
+				if (added != null && added.prev == null && map.get(added.key) == added) {
+					linkLast(added);
+					weight += added.weight;
+				}
+				while (weight > maxWeight && head.next != head) {
+					Node<K, V> eldest = head.next;
+					unlink(eldest);
+					weight -= eldest.weight;
+					map.remove(eldest.key, eldest);
+					cache.eviction.increment();
+				}
+			} finally {
+				unlock();
+			}
+		}
+
+		void clear() {
+			lock();
+			try {
+				for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+					readBuffer.lazySet(i, null);
+				}
+				while (head.next != head) {
+					Node<K, V> node = head.next;
+					unlink(node);
+					map.remove(node.key, node);
+				}
+				weight = 0;
+			} finally {
+				unlock();
+			}
+		}
+
+		private void linkLast(Node<K, V> node) {
+			Node<K, V> last = head.prev;
+			node.prev = last;
+			node.next = head;
+			last.next = node;
+			head.prev = node;
+		}
+
+		private void unlink(Node<K, V> node) {
+			node.prev.next = node.next;
+			node.next.prev = node.prev;
+			node.prev = null;
+			node.next = null;
+		}
+	}
+}
@@ -30,7 +30,9 @@ import com.github.geequery.tools.StringUtils;
  * @author Administrator
  * @param <K>
  * @param <V>
+ * @deprecated get和put在同一把锁上串行，高并发时成为瓶颈。请使用{@link ConcurrentCache}，它不会把超出容量的数据写入临时文件。
  */
+@Deprecated
 public class StringCacheMap extends LinkedHashMap<String, String> {
 	private static final long serialVersionUID = 2428383992533927687L;
 	private static final float DEFAULT_LOAD_FACTOR = 1f;
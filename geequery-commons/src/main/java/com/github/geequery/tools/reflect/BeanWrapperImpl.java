@@ -25,7 +25,6 @@ import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -33,6 +32,7 @@ import java.util.NoSuchElementException;
 
 import javax.management.ReflectionException;
 
+import com.github.geequery.common.ConcurrentCache;
 import com.github.geequery.common.log.LogUtil;
 import com.github.geequery.tools.ArrayUtils;
 import com.github.geequery.tools.Assert;
@@ -42,13 +42,7 @@ import com.github.geequery.tools.collection.CollectionUtils;
 public final class BeanWrapperImpl extends BeanWrapper {
 	private static final int MAX_ENTRIES = 200;
 	
-	private static Map<Class<?>, Map<String, PropertyHolder>> cache = new LinkedHashMap<Class<?>, Map<String, PropertyHolder>>() {
-		private static final long serialVersionUID = 1L;
-
-		protected boolean removeEldestEntry(Entry<Class<?>, Map<String, PropertyHolder>> eldest) {
-			return size() > MAX_ENTRIES;
-		}
-	};
+	private static final ConcurrentCache<Class<?>, Map<String, PropertyHolder>> cache = new ConcurrentCache<Class<?>, Map<String, PropertyHolder>>(MAX_ENTRIES);
 
 	
 	@Override
@@ -99,17 +93,17 @@ public final class BeanWrapperImpl extends BeanWrapper {
 	 * @param fieldBase
 	 *            是否基于字段来分析属性。如果为是，则不论是否有setter和getter，返回全部field
 	 */
-	public BeanWrapperImpl(Object obj, boolean fieldBase) {
+	public BeanWrapperImpl(Object obj, final boolean fieldBase) {
 		super(obj);
 		this.obj = obj;
 		Class<?> c = obj.getClass();
-		this.clz=new ClassEx(c);
-		if (cache.containsKey(c)) {
-			properties = cache.get(c);
-		} else {
-			properties = init(clz, fieldBase);
-			cache.put(c, properties);
-		}
+		final ClassEx clz = new ClassEx(c);
+		this.clz = clz;
+		this.properties = cache.get(c, new ConcurrentCache.Loader<Class<?>, Map<String, PropertyHolder>>() {
+			public Map<String, PropertyHolder> load(Class<?> key) {
+				return init(clz, fieldBase);
+			}
+		});
 	}
 
 	private static Map<String, PropertyHolder> init(ClassEx cls, boolean fieldBase) {
@@ -0,0 +1,168 @@
+package com.github.geequery.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ConcurrentCacheTest {
+
+	@Test
+	public void testLru() {
+		ConcurrentCache<String, Integer> cache = new ConcurrentCache<String, Integer>(5);
+		for (int i = 0; i < 5; i++) {
+			cache.put("key" + i, i);
+		}
+		cache.get("key0");
+		cache.put("key5", 5);
+		assertEquals(5, cache.size());
+		assertEquals(Integer.valueOf(0), cache.get("key0"));
+		assertNull(cache.get("key1"));
+		assertEquals(1, cache.getEvictionCount());
+
+		assertEquals(Integer.valueOf(5), cache.remove("key5"));
+		assertEquals(4, cache.size());
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.weight());
+	}
+
+	@Test
+	public void testWeigher() {
+		ConcurrentCache<String, String> cache = new ConcurrentCache<String, String>(10, new ConcurrentCache.Weigher<String, String>() {
+			public int weigh(String key, String value) {
+				return value.length();
+			}
+		});
+		cache.put("a", "1234");
+		cache.put("b", "1234");
+		assertEquals(8, cache.weight());
+		cache.put("c", "1234");
+		assertEquals(8, cache.weight());
+		assertNull(cache.get("a"));
+		// 超过容量的元素不会留在缓存中
+		cache.put("d", "12345678901");
+		assertNull(cache.get("d"));
+		assertTrue(cache.weight() <= 10);
+	}
+
+	@Test
+	public void testLoader() {
+		ConcurrentCache<Integer, String> cache = new ConcurrentCache<Integer, String>(100);
+		ConcurrentCache.Loader<Integer, String> loader = new ConcurrentCache.Loader<Integer, String>() {
+			public String load(Integer key) {
+				return key < 0 ? null : "v" + key;
+			}
+		};
+		assertEquals("v1", cache.get(1, loader));
+		assertEquals("v1", cache.get(1, loader));
+		assertNull(cache.get(-1, loader));
+		assertEquals(1, cache.size());
+		assertEquals(2, cache.getLoadCount());
+		assertEquals(1, cache.getHitCount());
+
+		try {
+			cache.get(2, new ConcurrentCache.Loader<Integer, String>() {
+				public String load(Integer key) throws Exception {
+					throw new java.io.IOException("load error");
+				}
+			});
+			fail();
+		} catch (IllegalStateException e) {
+			assertTrue(e.getCause() instanceof java.io.IOException);
+		}
+		assertEquals("v2", cache.get(2, loader));
+	}
+
+	@Test
+	public void testRecursiveLoad() {
+		final ConcurrentCache<Integer, String> cache = new ConcurrentCache<Integer, String>(100);
+		final AtomicInteger depth = new AtomicInteger();
+		ConcurrentCache.Loader<Integer, String> loader = new ConcurrentCache.Loader<Integer, String>() {
+			public String load(Integer key) {
+				// 加载其他Key是允许的，再次加载同一个Key时不能永远等待自己
+				if (depth.incrementAndGet() == 1) {
+					assertEquals("v" + (key + 1), cache.get(key + 1, this));
+					return cache.get(key, this);
+				}
+				return "v" + key;
+			}
+		};
+		try {
+			cache.get(1, loader);
+			fail();
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage().contains("Recursive"));
+		}
+		assertNull(cache.get(1));
+		assertEquals("v2", cache.get(2));
+		assertEquals("v1", cache.get(1, loader));
+	}
+
+	@Test
+	public void testNoStampede() throws InterruptedException {
+		final ConcurrentCache<String, String> cache = new ConcurrentCache<String, String>(100);
+		final AtomicInteger calls = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(20);
+		final ConcurrentCache.Loader<String, String> loader = new ConcurrentCache.Loader<String, String>() {
+			public String load(String key) throws Exception {
+				calls.incrementAndGet();
+				Thread.sleep(100);
+				return key.toUpperCase();
+			}
+		};
+		final AtomicInteger correct = new AtomicInteger();
+		for (int i = 0; i < 20; i++) {
+			new Thread() {
+				public void run() {
+					try {
+						start.await();
+						if ("key".toUpperCase().equals(cache.get("key", loader))) {
+							correct.incrementAndGet();
+						}
+					} catch (InterruptedException e) {
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		start.countDown();
+		done.await();
+		assertEquals(1, calls.get());
+		assertEquals(20, correct.get());
+	}
+
+	@Test
+	public void testConcurrentAccess() throws InterruptedException {
+		final ConcurrentCache<Integer, Integer> cache = new ConcurrentCache<Integer, Integer>(1000);
+		final CountDownLatch done = new CountDownLatch(16);
+		for (int t = 0; t < 16; t++) {
+			final int seed = t;
+			new Thread() {
+				public void run() {
+					try {
+						for (int i = 0; i < 20000; i++) {
+							int key = (i * 31 + seed) % 3000;
+							if (cache.get(key) == null) {
+								cache.put(key, key);
+							}
+						}
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		done.await();
+		assertTrue(cache.size() <= 1000);
+		assertEquals(cache.size(), cache.weight());
+		System.out.println(cache);
+	}
+}
@@ -0,0 +1,66 @@
+package com.github.geequery.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.geequery.accelerator.bean.AccessorRegistry;
+import com.github.geequery.accelerator.bean.BeanAccessor;
+import com.github.geequery.accelerator.bean.FastBeanWrapperImpl;
+
+public class AccessorRegistryTest {
+	public static class Pregenerated {
+		private int id;
+		private String name;
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+	}
+
+	@Test
+	public void testPregenerated() throws IOException {
+		File root = new File(System.getProperty("java.io.tmpdir"), "accessors-" + System.nanoTime());
+		Class<?> clz = Pregenerated.class;
+		Assert.assertEquals(1, AccessorRegistry.generate(root, Collections.<Class<?>> singleton(clz)));
+		Assert.assertTrue(new File(root, AccessorRegistry.RESOURCE).exists());
+
+		URLClassLoader cl = new URLClassLoader(new URL[] { root.toURI().toURL() }, getClass().getClassLoader());
+		ClassLoader old = Thread.currentThread().getContextClassLoader();
+		Thread.currentThread().setContextClassLoader(cl);
+		try {
+			BeanAccessor ba = FastBeanWrapperImpl.getAccessorFor(clz);
+			// 使用的是预先生成的类，而不是运行时定义的类
+			Assert.assertSame(cl, ba.getClass().getClassLoader());
+
+			Pregenerated bean = (Pregenerated) ba.newInstance();
+			ba.setProperty(bean, "id", 10);
+			ba.setProperty(bean, "name", "gee");
+			Assert.assertEquals(10, ba.getProperty(bean, "id"));
+			Assert.assertEquals("gee", bean.getName());
+			Assert.assertEquals(String.class, ba.getPropertyType("name"));
+		} finally {
+			Thread.currentThread().setContextClassLoader(old);
+			cl.close();
+			IOUtils.deleteAllChildren(root);
+			root.delete();
+		}
+	}
+}
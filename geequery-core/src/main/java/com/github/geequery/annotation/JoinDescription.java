@@ -35,4 +35,12 @@ public @interface JoinDescription {
 	 * @return
 	 */
 	int maxRows() default 0;
+
+	/**
+	 * 对多级联加载时，一次批量抓取的父对象个数。
+	 * 0表示使用全局配置，-1表示禁用批量抓取，每个父对象单独查询。
+	 * 设置了{@link #maxRows()}时不进行批量抓取。
+	 * @return
+	 */
+	int batchSize() default 0;
 }
@@ -93,6 +93,11 @@ public enum DbCfg implements ConfigItem {
 	 * 在批量操作时日志中打印出的最多的参数组，默认5
 	 */
 	DB_MAX_BATCH_LOG,
+	/**
+	 * 批操作分段提交的大小，默认0，表示不分段。<br>
+	 * 大于0时，批操作每绑定指定条数的参数就向数据库提交一次(executeBatch)，从而限制JDBC驱动中缓存的参数数量。
+	 */
+	DB_BATCH_FLUSH_SIZE,
 	/**
 	 * 自动转换表名(为旧版本保留，如果用户没有通过JPA配置对象与表名的关系，那么开启此选项后， userId -> USER_ID， 否则userId -> USERID
 	 */
@@ -123,6 +128,12 @@ public enum DbCfg implements ConfigItem {
 	 * JEF内嵌连接池心跳时间，按此间隔对连接进行扫描检查，单位毫秒。默认120秒
 	 */
 	DB_HEARTBEAT,
+	/**
+	 * 每个连接上缓存的PreparedStatement个数，按SQL语句(以及结果集类型、是否返回自增键)区分，超出后淘汰最久未使用的。
+	 * 默认32，配置为0表示不缓存。
+	 * 驱动自身已经缓存语句的数据库，可以在方言中关闭，参见{@code AbstractDialect#isStatementCacheEnabled()}
+	 */
+	DB_STATEMENT_CACHE_SIZE,
 	/**
 	 * 每个连接最小生存时间
 	 */
@@ -188,6 +199,11 @@ public enum DbCfg implements ConfigItem {
 	 * 数据库每次获取的大小。默认0，表示使用JDBC驱动默认的值
 	 */
 	DB_FETCH_SIZE,				//
+	/**
+	 * 流式查询(如Spring Data中返回Stream的方法)每次获取的大小。默认1000。
+	 * 部分数据库(如MySQL)的驱动需要特殊的值才能真正流式读取，此时由方言调整。
+	 */
+	DB_STREAM_FETCH_SIZE,
 	/**
 	 * 	配置一张表名，启用数据表存放NamedQuery功能
 	 */
@@ -223,6 +239,11 @@ public enum DbCfg implements ConfigItem {
 	 * 数据库启动时默认创建表
 	 */
 	DB_TABLES,
+	/**
+	 * 启动时扫描实体后，同时进行建表/修改表(DDL)检查的线程数，每个线程占用一个连接。
+	 * 类文件解析和元数据构造也会并行进行。默认4，配置为1时逐表串行处理。
+	 */
+	DB_SCAN_DDL_THREADS,
 
 	/**
 	 * true后禁止创建带remark标记的Oracle数据库连接。对于oracle而言，使用remark的连接性能很差。但要读取元数据注解必须使用此特性。<br>
@@ -315,9 +336,17 @@ public enum DbCfg implements ConfigItem {
 	 * 如果自增实现实际使用了Sequence或Table作为自增策略，那么每次访问数据库时会取多个Sequence缓存在内存中，这里配置缓存的大小。
 	 * 如果在TABLE模式下，会一次数据库操作直接加上批次的值，从而一次获取满缓存的Sequence
 	 * 
+	 * 缓存大小会根据消耗速度自动调整，此值为最小值。
+	 * 
 	 * 默认为50;
 	 */
 	SEQUENCE_BATCH_SIZE,
+	/**
+	 * Sequence缓存自动扩大时的上限，为{@link #SEQUENCE_BATCH_SIZE}的倍数。
+	 * 
+	 * 默认为16，配置为1时不自动扩大
+	 */
+	SEQUENCE_BATCH_SIZE_MAX_FACTOR,
 	/**
 	 * 开启此选项后，允许自动创建数据库SEQUENCE (或模拟用的TABLE)。
 	 * 一般用在开发时和一些小型项目中，不适用于对用户权限有严格规范的专业项目中。
@@ -359,6 +388,28 @@ public enum DbCfg implements ConfigItem {
 	 * 如果设置为>0的数值表示启用二级缓存，每条缓存记录的最大生存时间等于指定的秒数。
 	 */
 	CACHE_GLOBAL_EXPIRE_TIME,
+	/**
+	 * 二级缓存的容量，按缓存结果的估算大小(行数×列数)计算，默认1000000。超出后按访问频率(W-TinyLFU)淘汰。
+	 */
+	CACHE_GLOBAL_MAX_WEIGHT,
+	/**
+	 * 查询结果缓存的容量，按缓存结果的估算大小(行数×列数)计算，默认100000。为0时不启用查询结果缓存。
+	 * 启用后，还需在查询时通过QueryOption指定结果的缓存时间才会缓存。
+	 */
+	CACHE_RESULT_MAX_WEIGHT,
+	/**
+	 * 跨节点的缓存失效通知方式，默认为空，即不通知其他节点。可以是
+	 * <ul>
+	 * <li>loopback:频道名 —— 进程内通知，用于测试</li>
+	 * <li>multicast:组播地址:端口[:TTL] —— UDP组播</li>
+	 * <li>实现了com.github.geequery.core.cache.InvalidationTransport接口的类名</li>
+	 * </ul>
+	 */
+	CACHE_INVALIDATION_TRANSPORT,
+	/**
+	 * 缓存失效通知的发送周期(毫秒)，默认50。同一周期内的通知合并发送
+	 */
+	CACHE_INVALIDATION_FLUSH_INTERVAL,
 	/**
 	 * 允许为空的查询条件，默认false
 	 */
@@ -380,6 +431,13 @@ public enum DbCfg implements ConfigItem {
 	 * JEF扫描基于基础表的所有存在分表。这一结果会被缓存，但是考虑到生产环境中会动态的建表，因此缓存可以设置有效期
 	 */
 	DB_PARTITION_REFRESH,
+	/**
+	 * 是否使用数据库结构快照，默认开启。<br>
+	 * 开启后，查询表的列、索引、主键、外键时，一次性批量加载当前schema下所有表的结构并缓存，之后不再逐表访问JDBC元数据。
+	 * 框架自身执行DDL后快照会失效，此外每隔{@link #DB_PARTITION_REFRESH}时间重新加载。<br>
+	 * 仅对能用少量查询加载整个schema的数据库(目前为Postgres)生效，其他数据库总是逐表查询。
+	 */
+	DB_METADATA_SNAPSHOT,
 	/**
 	 * ORM初始化后是否显示JDBC和数据库的版本信息，true/false。默认true
 	 */
@@ -388,6 +446,12 @@ public enum DbCfg implements ConfigItem {
 	 * 延迟加载特性，默认启用(true)。关闭后可禁用延迟加载。这项配置对所有的级联操作生效
 	 */
 	DB_ENABLE_LAZY_LOAD,
+	/**
+	 * 对多级联加载时批量抓取，默认启用(true)。
+	 * 启用后，同一批父对象的子记录会按父对象的关联键用IN条件合并查询，每次查询的键个数不超过{@link #DB_MAX_IN_CONDITIONS}。
+	 * 可以在{@link com.github.geequery.annotation.JoinDescription#batchSize()}中对单个关系单独配置。
+	 */
+	DB_CASCADE_BATCH_FETCH,
 	/**
 	 * 延迟加载LOB特性，默认关闭(false)。关闭后可禁用延迟加载LOB。这项配置对对象中的BLOB和CLOB字段生效
 	 * FIXME 待完善
@@ -416,8 +480,15 @@ public enum DbCfg implements ConfigItem {
 	 * 当分库操作时，不得不进行内存排序和聚合计算时，该参数用于限制最大操作的行数，防止内存溢出。<br>
 	 * 一旦达到最大行数，该次操作将抛出异常。
 	 * 默认0，表示不限制。
+	 * 内存聚合(group by)时逐行累加，不保留原始记录，因此输入的行数不受此参数限制，而由{@link #PARTITION_INMEMORY_MAXBYTES}控制，聚合后的结果行数仍受此限制。
 	 */
 	PARTITION_INMEMORY_MAXROWS,
+	/**
+	 * 当分库操作时，不得不进行内存聚合计算时，内存中的分组状态允许占用的字节数(估算值)。<br>
+	 * 超出后将已有的分组按哈希分区写入临时文件，最后逐个分区合并。
+	 * 默认64M(67108864)，配置为0表示不限制(不使用临时文件)。
+	 */
+	PARTITION_INMEMORY_MAXBYTES,
 	/**
 	 * 按需建表功能开关，默认开。<br>
 	 * 开启按需建表功能后，在分库分表下执行插入操作时，会自动创建需要的表。
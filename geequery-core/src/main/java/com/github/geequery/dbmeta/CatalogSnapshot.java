@@ -0,0 +1,354 @@
+package com.github.geequery.dbmeta;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一个schema下数据库结构的快照，包括表、列、索引、主键和外键。
+ * <p>
+ * 快照由{@link Builder}通过少量批量查询一次性加载，加载完成后不再修改。
+ * 查询方法返回的集合都是副本，调用者可以自由增删其中的元素。表名的比较不区分大小写。
+ *
+ * @author jiyi
+ *
+ */
+public final class CatalogSnapshot {
+	private final String schema;
+	private final long createTime;
+	/**
+	 * 大写表名 -> 实际表名
+	 */
+	private final Map<String, String> tables;
+	private final Map<String, List<Column>> columns;
+	private final Map<String, List<Index>> indexes;
+	private final Map<String, PrimaryKey> primaryKeys;
+	private final Map<String, List<ForeignKey>> foreignKeys;
+
+	private CatalogSnapshot(Builder b) {
+		this.schema = b.schema;
+		this.createTime = System.currentTimeMillis();
+		this.tables = Collections.unmodifiableMap(b.tables);
+		this.columns = b.columns;
+		this.indexes = new HashMap<String, List<Index>>();
+		for (Map.Entry<String, Map<String, Index>> e : b.indexes.entrySet()) {
+			indexes.put(e.getKey(), new ArrayList<Index>(e.getValue().values()));
+		}
+		this.primaryKeys = new HashMap<String, PrimaryKey>();
+		for (Map.Entry<String, List<Object[]>> e : b.pkColumns.entrySet()) {
+			List<Object[]> list = e.getValue();
+			Collections.sort(list, BY_SEQ);
+			String[] names = new String[list.size()];
+			for (int i = 0; i < names.length; i++) {
+				names[i] = (String) list.get(i)[1];
+			}
+			PrimaryKey pk = new PrimaryKey((String) list.get(0)[0]);
+			pk.setColumns(names);
+			primaryKeys.put(e.getKey(), pk);
+		}
+		this.foreignKeys = b.foreignKeys;
+		// 根据单列的唯一索引计算列是否unique
+		for (Map.Entry<String, List<Column>> e : columns.entrySet()) {
+			List<Index> list = indexes.get(e.getKey());
+			if (list == null) {
+				continue;
+			}
+			for (Column column : e.getValue()) {
+				for (Index index : list) {
+					if (index.isUnique() && index.isOnSingleColumn(column.getColumnName())) {
+						column.setUnique(true);
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	private static final Comparator<Object[]> BY_SEQ = new Comparator<Object[]>() {
+		public int compare(Object[] o1, Object[] o2) {
+			return Integer.compare((Integer) o1[2], (Integer) o2[2]);
+		}
+	};
+
+	private static String key(String name) {
+		return name == null ? null : name.toUpperCase();
+	}
+
+	/**
+	 * @return 快照所属的schema
+	 */
+	public String getSchema() {
+		return schema;
+	}
+
+	/**
+	 * @return 快照的生成时间
+	 */
+	public long getCreateTime() {
+		return createTime;
+	}
+
+	/**
+	 * 判断表是否存在
+	 *
+	 * @param table
+	 *            不含schema的表名
+	 * @return
+	 */
+	public boolean existsTable(String table) {
+		return tables.containsKey(key(table));
+	}
+
+	/**
+	 * 返回表在数据库中的实际名称
+	 *
+	 * @param table
+	 *            不含schema的表名
+	 * @return 表不存在时返回null
+	 */
+	public String getTableName(String table) {
+		return tables.get(key(table));
+	}
+
+	/**
+	 * @return 所有表的实际名称
+	 */
+	public Collection<String> getTableNames() {
+		return tables.values();
+	}
+
+	/**
+	 * @param table
+	 *            不含schema的表名
+	 * @return 表中的列，表不存在时返回空列表
+	 */
+	public List<Column> getColumns(String table) {
+		List<Column> list = columns.get(key(table));
+		return list == null ? new ArrayList<Column>() : new ArrayList<Column>(list);
+	}
+
+	/**
+	 * @param table
+	 *            不含schema的表名
+	 * @return 表上的索引
+	 */
+	public List<Index> getIndexes(String table) {
+		List<Index> list = indexes.get(key(table));
+		return list == null ? new ArrayList<Index>() : new ArrayList<Index>(list);
+	}
+
+	/**
+	 * @param table
+	 *            不含schema的表名
+	 * @return 主键，没有主键时返回null
+	 */
+	public PrimaryKey getPrimaryKey(String table) {
+		return primaryKeys.get(key(table));
+	}
+
+	/**
+	 * @param table
+	 *            不含schema的表名
+	 * @return 表上的外键(引用其他表的键)
+	 */
+	public List<ForeignKey> getForeignKeys(String table) {
+		List<ForeignKey> list = foreignKeys.get(key(table));
+		return list == null ? new ArrayList<ForeignKey>() : new ArrayList<ForeignKey>(list);
+	}
+
+	@Override
+	public String toString() {
+		return "Catalog[" + schema + "] tables:" + tables.size();
+	}
+
+	/**
+	 * 快照的构造器。先添加表，再添加列、索引、主键、外键等，不属于已添加的表的对象会被忽略。
+	 */
+	public static final class Builder {
+		private final String schema;
+		private final Map<String, String> tables = new LinkedHashMap<String, String>();
+		private final Map<String, List<Column>> columns = new HashMap<String, List<Column>>();
+		private final Map<String, Map<String, Index>> indexes = new HashMap<String, Map<String, Index>>();
+		// 表名 -> [主键名, 列名, 序号]
+		private final Map<String, List<Object[]>> pkColumns = new HashMap<String, List<Object[]>>();
+		private final Map<String, List<ForeignKey>> foreignKeys = new HashMap<String, List<ForeignKey>>();
+
+		public Builder(String schema) {
+			this.schema = schema;
+		}
+
+		public String getSchema() {
+			return schema;
+		}
+
+		public Builder addTable(String table) {
+			tables.put(key(table), table);
+			return this;
+		}
+
+		public boolean hasTable(String table) {
+			return tables.containsKey(key(table));
+		}
+
+		/**
+		 * @return 已添加的表的实际名称
+		 */
+		public List<String> getTableNames() {
+			return new ArrayList<String>(tables.values());
+		}
+
+		/**
+		 * 添加列，列所属的表由{@link Column#getTableName()}决定
+		 */
+		public Builder addColumn(Column column) {
+			String table = key(column.getTableName());
+			if (tables.containsKey(table)) {
+				List<Column> list = columns.get(table);
+				if (list == null) {
+					list = new ArrayList<Column>();
+					columns.put(table, list);
+				}
+				list.add(column);
+			}
+			return this;
+		}
+
+		/**
+		 * 添加索引中的一列
+		 *
+		 * @param table
+		 *            表名
+		 * @param indexName
+		 *            索引名
+		 * @param unique
+		 *            是否唯一索引
+		 * @param column
+		 *            列名
+		 * @param asc
+		 *            是否正序
+		 * @param seq
+		 *            列在索引中的序号
+		 * @param type
+		 *            索引类型，参见{@link java.sql.DatabaseMetaData#getIndexInfo}
+		 */
+		public Builder addIndexColumn(String table, String indexName, boolean unique, String column, boolean asc, int seq, int type) {
+			String key = key(table);
+			if (indexName == null || column == null || !tables.containsKey(key)) {
+				return this;
+			}
+			Map<String, Index> map = indexes.get(key);
+			if (map == null) {
+				map = new LinkedHashMap<String, Index>();
+				indexes.put(key, map);
+			}
+			Index index = map.get(indexName);
+			if (index == null) {
+				index = new Index();
+				index.setIndexName(indexName);
+				index.setTableName(tables.get(key));
+				index.setTableSchema(schema);
+				index.setUnique(unique);
+				index.setType(type);
+				map.put(indexName, index);
+			}
+			index.addColumn(column, asc, seq);
+			return this;
+		}
+
+		/**
+		 * 添加主键中的一列
+		 *
+		 * @param table
+		 *            表名
+		 * @param pkName
+		 *            主键名
+		 * @param column
+		 *            列名
+		 * @param seq
+		 *            列在主键中的序号
+		 */
+		public Builder addPrimaryKeyColumn(String table, String pkName, String column, int seq) {
+			String key = key(table);
+			if (tables.containsKey(key)) {
+				List<Object[]> list = pkColumns.get(key);
+				if (list == null) {
+					list = new ArrayList<Object[]>();
+					pkColumns.put(key, list);
+				}
+				list.add(new Object[] { pkName, column, seq });
+			}
+			return this;
+		}
+
+		public Builder addForeignKey(ForeignKey fk) {
+			String key = key(fk.getFromTable());
+			if (tables.containsKey(key)) {
+				List<ForeignKey> list = foreignKeys.get(key);
+				if (list == null) {
+					list = new ArrayList<ForeignKey>();
+					foreignKeys.put(key, list);
+				}
+				list.add(fk);
+			}
+			return this;
+		}
+
+		/**
+		 * 读取{@link java.sql.DatabaseMetaData#getIndexInfo}格式的结果集
+		 */
+		public Builder addIndexes(ResultSet rs) throws SQLException {
+			while (rs.next()) {
+				String indexName = rs.getString("INDEX_NAME");
+				String cName = rs.getString("COLUMN_NAME");
+				String table = rs.getString("TABLE_NAME");
+				boolean unique = !rs.getBoolean("NON_UNIQUE");
+				int type = rs.getInt("TYPE");
+				String asc = rs.getString("ASC_OR_DESC");
+				int order = rs.getInt("ORDINAL_POSITION");
+				addIndexColumn(table, indexName, unique, cName, asc == null ? true : asc.startsWith("A"), order, type);
+			}
+			return this;
+		}
+
+		/**
+		 * 读取{@link java.sql.DatabaseMetaData#getPrimaryKeys}格式的结果集
+		 */
+		public Builder addPrimaryKeys(ResultSet rs) throws SQLException {
+			while (rs.next()) {
+				addPrimaryKeyColumn(rs.getString("TABLE_NAME"), rs.getString("PK_NAME"), rs.getString("COLUMN_NAME"), rs.getInt("KEY_SEQ"));
+			}
+			return this;
+		}
+
+		/**
+		 * 读取{@link java.sql.DatabaseMetaData#getImportedKeys}格式的结果集
+		 */
+		public Builder addForeignKeys(ResultSet rs) throws SQLException {
+			while (rs.next()) {
+				ForeignKey fk = new ForeignKey(rs.getString("FKTABLE_NAME"), rs.getString("FKCOLUMN_NAME"), rs.getString("PKTABLE_NAME"),
+						rs.getString("PKCOLUMN_NAME"));
+				fk.setFromSchema(rs.getString("FKTABLE_SCHEM"));
+				fk.setReferenceSchema(rs.getString("PKTABLE_SCHEM"));
+				fk.setKeySeq(rs.getInt("KEY_SEQ"));
+				fk.setUpdateRule(rs.getInt("UPDATE_RULE"));
+				fk.setDeleteRule(rs.getInt("DELETE_RULE"));
+				fk.setName(rs.getString("FK_NAME"));
+				fk.setPkName(rs.getString("PK_NAME"));
+				fk.setDeferrAbility(rs.getInt("DEFERRABILITY"));
+				addForeignKey(fk);
+			}
+			return this;
+		}
+
+		public CatalogSnapshot build() {
+			return new CatalogSnapshot(this);
+		}
+	}
+}
@@ -207,4 +207,10 @@ public enum Feature {
 	 * 使用系统表获得Constraint的信息
 	 */
 	GET_CONSTRAINT,
+	/**
+	 * 能够一次查出整个schema的主键、索引和外键(参见AbstractDialect#loadCatalog)，
+	 * 只有这类数据库使用数据库结构快照
+	 * (Postgres)
+	 */
+	BULK_CATALOG,
 }
@@ -3,9 +3,14 @@ package org.jef.mavenplugin.goal;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
-import jef.codegen.EntityEnhancer;
-import jef.common.log.LogUtil;
+import com.github.geequery.accelerator.bean.AccessorRegistry;
+import com.github.geequery.codegen.EntityEnhancer;
+import com.github.geequery.entity.EntityIndex;
 
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -15,6 +20,7 @@ import org.apache.maven.plugin.MojoExecutionException;
  * 
  * @goal enhance
  * @phase process-classes
+ * @requiresDependencyResolution compile
  */
 public class EnhanceMojo extends AbstractMojo {
     /**
@@ -40,6 +46,28 @@ public class EnhanceMojo extends AbstractMojo {
      */
     protected String basedir;
 
+    /**
+     * 是否生成实体索引，运行时据此加载实体类而不必扫描classpath
+     * 
+     * @parameter expression="${enhance.index}" default-value="true"
+     */
+    private boolean index = true;
+
+    /**
+     * 是否为实体预先生成访问者类(Accessor)，运行时不必再动态生成字节码
+     * 
+     * @parameter expression="${enhance.accessors}" default-value="true"
+     */
+    private boolean accessors = true;
+
+    /**
+     * 编译classpath，加载实体类生成访问者时使用
+     * 
+     * @parameter expression="${project.compileClasspathElements}"
+     * @readonly
+     */
+    private List<String> classpathElements;
+
     public void setPath(String path) {
         this.path = path;
     }
@@ -63,6 +91,13 @@ public class EnhanceMojo extends AbstractMojo {
 
             EntityEnhancer en = new EntityEnhancer().addRoot(new URL("file://" + workPath));
             en.enhance();
+            if (index) {
+                File file = EntityIndex.write(new File(workPath), en.getEntityClasses());
+                this.getLog().info("Easybuilder entity index " + file.getAbsolutePath() + " written, " + en.getEntityClasses().size() + " entities.");
+            }
+            if (accessors && !en.getEntityClasses().isEmpty()) {
+                generateAccessors(new File(workPath), en.getEntityClasses());
+            }
 
             this.getLog().info("Easybuilder enhance entity classes total use " + (System.currentTimeMillis() - time) + "ms");
         } catch (Exception e) {
@@ -70,6 +105,34 @@ public class EnhanceMojo extends AbstractMojo {
         }
     }
 
+    /*
+     * 加载增强后的实体类，生成访问者。单个实体加载失败不影响其他实体，运行时会为其动态生成
+     */
+    private void generateAccessors(File root, Collection<String> entities) throws IOException {
+        List<URL> urls = new ArrayList<URL>();
+        urls.add(root.toURI().toURL());
+        if (classpathElements != null) {
+            for (String element : classpathElements) {
+                urls.add(new File(element).toURI().toURL());
+            }
+        }
+        URLClassLoader cl = new URLClassLoader(urls.toArray(new URL[urls.size()]), getClass().getClassLoader());
+        try {
+            List<Class<?>> classes = new ArrayList<Class<?>>();
+            for (String name : entities) {
+                try {
+                    classes.add(cl.loadClass(name));
+                } catch (Throwable e) {
+                    this.getLog().warn("Easybuilder can not load entity " + name + ", accessor skipped: " + e);
+                }
+            }
+            int count = AccessorRegistry.generate(root, classes);
+            this.getLog().info("Easybuilder generated " + count + " accessors of " + entities.size() + " entities.");
+        } finally {
+            cl.close();
+        }
+    }
+
     // TEST
     public static void main(String[] args) throws IOException, MojoExecutionException {
         String workPath = "E:/Git/ef-orm/orm-test/target/test-classes";
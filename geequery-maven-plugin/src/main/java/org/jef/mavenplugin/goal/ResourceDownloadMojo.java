@@ -9,9 +9,9 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 
-import jef.tools.IOUtils;
-import jef.tools.StringUtils;
-import jef.tools.ZipUtils;
+import com.github.geequery.tools.IOUtils;
+import com.github.geequery.tools.StringUtils;
+import com.github.geequery.tools.ZipUtils;
 
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -3,8 +3,8 @@ package org.jef.mavenplugin.goal;
 import java.io.File;
 import java.io.IOException;
 
-import jef.tools.IOUtils;
-import jef.tools.ZipUtils;
+import com.github.geequery.tools.IOUtils;
+import com.github.geequery.tools.ZipUtils;
 
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
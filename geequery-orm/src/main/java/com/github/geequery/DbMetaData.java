@@ -37,6 +37,7 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -66,6 +67,7 @@ import com.github.geequery.core.result.ResultSetExtractor;
 import com.github.geequery.core.result.Transformer;
 import com.github.geequery.core.support.MetadataEventListener;
 import com.github.geequery.core.support.RDBMS;
+import com.github.geequery.dbmeta.CatalogSnapshot;
 import com.github.geequery.dbmeta.Column;
 import com.github.geequery.dbmeta.ConnectInfo;
 import com.github.geequery.dbmeta.Constraint;
@@ -81,6 +83,8 @@ import com.github.geequery.dbmeta.SchemaHandler;
 import com.github.geequery.dbmeta.SequenceInfo;
 import com.github.geequery.dbmeta.StatementExecutor;
 import com.github.geequery.dbmeta.TableInfo;
+import com.github.geequery.dialect.AbstractDelegatingDialect;
+import com.github.geequery.dialect.AbstractDialect;
 import com.github.geequery.dialect.ColumnType;
 import com.github.geequery.dialect.DatabaseDialect;
 import com.github.geequery.dialect.DbProperty;
@@ -168,6 +172,30 @@ public class DbMetaData implements SchemaHandler{
 	 * 根据扫描得到的所有表的情况
 	 */
 	private final Map<String, Set<String>> subtableCache = new ConcurrentHashMap<String, Set<String>>();
+	/**
+	 * 是否使用数据库结构快照。仅对支持{@link Feature#BULK_CATALOG}的数据库生效
+	 */
+	private final boolean useCatalogSnapshot = JefConfiguration.getBoolean(DbCfg.DB_METADATA_SNAPSHOT, true);
+	/**
+	 * 快照加载失败后，在此时间之前不再尝试加载
+	 */
+	private volatile long catalogRetryTime;
+	/**
+	 * 当前schema下的数据库结构快照，为null表示尚未加载或已失效
+	 */
+	private volatile LoadedCatalog catalog;
+	/**
+	 * 每次执行DDL时加一
+	 */
+	private final AtomicLong catalogVersion = new AtomicLong();
+	/**
+	 * 最近一次整体失效时的版本，在此之前开始加载的快照作废
+	 */
+	private volatile long catalogResetVersion;
+	/**
+	 * 执行过DDL的表 -> 执行时的版本。在此之前加载的快照中，这些表的信息已经过时
+	 */
+	private final Map<String, Long> staleTables = new ConcurrentHashMap<String, Long>();
 	/**
 	 * 当前数据库的支持特性
 	 */
@@ -673,14 +701,20 @@ public class DbMetaData implements SchemaHandler{
 	public List<Column> getColumns(String tableName, boolean needRemark) throws SQLException {
 		tableName = info.profile.getObjectNameToUse(tableName);
 
-		Connection conn = getConnection(needRemark);
-		DatabaseMetaData databaseMetaData = conn.getMetaData();
 		String schema = this.schema;
 		int n = tableName.indexOf('.');
 		if (n > 0) {// 尝试从表名中计算schema
 			schema = tableName.substring(0, n);
 			tableName = tableName.substring(n + 1);
 		}
+		if (!needRemark) {
+			CatalogSnapshot snapshot = getCatalogSnapshot(schema, tableName);
+			if (snapshot != null) {
+				return snapshot.getColumns(tableName);
+			}
+		}
+		Connection conn = getConnection(needRemark);
+		DatabaseMetaData databaseMetaData = conn.getMetaData();
 		ResultSet rs = null;
 		List<Column> list = new ArrayList<Column>();
 		Collection<Index> indexes = null;
@@ -890,6 +924,10 @@ public class DbMetaData implements SchemaHandler{
 			schema = tableName.substring(0, n);
 			tableName = tableName.substring(n + 1);
 		}
+		CatalogSnapshot snapshot = getCatalogSnapshot(schema, tableName);
+		if (snapshot != null) {
+			return snapshot.getIndexes(tableName);
+		}
 		Connection conn = getConnection(false);
 		ResultSet rs = null;
 		try {
@@ -1039,6 +1077,12 @@ public class DbMetaData implements SchemaHandler{
 	public PrimaryKey getPrimaryKey(String tableName) throws SQLException {
 		tableName = MetaHolder.toSchemaAdjustedName(tableName);
 		tableName = info.profile.getObjectNameToUse(tableName);
+		if (tableName.indexOf('.') < 0) {
+			CatalogSnapshot snapshot = getCatalogSnapshot(schema, tableName);
+			if (snapshot != null) {
+				return snapshot.getPrimaryKey(tableName);
+			}
+		}
 		Connection conn = getConnection(false);
 		DatabaseMetaData databaseMetaData = conn.getMetaData();
 		ResultSet rs = null;
@@ -1093,6 +1137,10 @@ public class DbMetaData implements SchemaHandler{
 	 */
 	public List<ForeignKey> getForeignKey(String schema, String tableName) throws SQLException {
 		tableName = info.profile.getObjectNameToUse(tableName);
+		CatalogSnapshot snapshot = getCatalogSnapshot(schema, tableName);
+		if (snapshot != null) {
+			return snapshot.getForeignKeys(tableName);
+		}
 		Connection conn = getConnection(false);
 		DatabaseMetaData databaseMetaData = conn.getMetaData();
 		ResultSet rs = null;
@@ -1158,7 +1206,7 @@ public class DbMetaData implements SchemaHandler{
 
 		if (!checkFK(key)) {
 			String sql = key.toCreateSql(getProfile());
-			StatementExecutor executor = this.createExecutor();
+			StatementExecutor executor = this.createExecutor(fromTable);
 			try {
 				executor.executeSql(sql);
 			} finally {
@@ -1406,9 +1454,178 @@ public class DbMetaData implements SchemaHandler{
 	}
 
 	public boolean existTable(String tableName) throws SQLException {
+		String name = info.profile.getObjectNameToUse(tableName);
+		String schema = null;
+		int n = name.indexOf('.');
+		if (n > -1) {
+			schema = name.substring(0, n);
+			name = name.substring(n + 1);
+		}
+		CatalogSnapshot snapshot = getCatalogSnapshot(schema, name);
+		if (snapshot != null && snapshot.existsTable(name)) {
+			return true;
+		}
+		// 快照中没有时仍要实时查询，表可能是在快照加载后由其他程序创建的
 		return getExistTable(tableName) != null;
 	}
 
+	/**
+	 * 获得当前schema下的数据库结构快照，没有时批量加载。
+	 * <p>
+	 * 表和列通过JDBC元数据一次查出，主键、索引和外键由方言批量查询(参见{@link AbstractDialect#loadCatalog})，
+	 * 因此只有支持{@link Feature#BULK_CATALOG}的数据库使用快照。框架执行DDL后快照失效，此外每隔{@link DbCfg#DB_PARTITION_REFRESH}时间重新加载。
+	 * 加载失败时，在同样的间隔之后再重试。
+	 * 
+	 * @return 快照。未启用快照功能或加载失败时返回null
+	 * @throws SQLException
+	 */
+	public CatalogSnapshot getCatalogSnapshot() throws SQLException {
+		LoadedCatalog loaded = getLoadedCatalog();
+		return loaded == null ? null : loaded.snapshot;
+	}
+
+	private boolean isCatalogSnapshotEnabled() {
+		return useCatalogSnapshot && info.profile.has(Feature.BULK_CATALOG);
+	}
+
+	private LoadedCatalog getLoadedCatalog() throws SQLException {
+		if (!isCatalogSnapshotEnabled()) {
+			return null;
+		}
+		LoadedCatalog loaded = catalog;
+		if (loaded != null && System.currentTimeMillis() - loaded.snapshot.getCreateTime() < subtableInterval) {
+			return loaded;
+		}
+		if (System.currentTimeMillis() < catalogRetryTime) {
+			return null;
+		}
+		synchronized (catalogVersion) {
+			loaded = catalog;
+			if (loaded != null && System.currentTimeMillis() - loaded.snapshot.getCreateTime() < subtableInterval) {
+				return loaded;
+			}
+			if (System.currentTimeMillis() < catalogRetryTime) {
+				return null;
+			}
+			long version = catalogVersion.get();
+			try {
+				loaded = new LoadedCatalog(loadCatalogSnapshot(), version);
+			} catch (SQLException e) {
+				LogUtil.warn("Loading catalog snapshot of [{}] failure, use per-table metadata in the next {}s. {}", dbkey, subtableInterval / 1000, e.getMessage());
+				catalogRetryTime = System.currentTimeMillis() + subtableInterval;
+				catalog = null;
+				return null;
+			}
+			if (catalogResetVersion <= version) {
+				catalog = loaded;
+				for (Iterator<Long> iter = staleTables.values().iterator(); iter.hasNext();) {
+					if (iter.next() <= version) {
+						iter.remove();
+					}
+				}
+			}
+			return loaded;
+		}
+	}
+
+	/**
+	 * 使数据库结构快照失效，下次使用时重新加载。框架自身执行DDL后会自动调用。
+	 */
+	public void invalidateCatalogSnapshot() {
+		catalogResetVersion = catalogVersion.incrementAndGet();
+		catalog = null;
+		staleTables.clear();
+	}
+
+	/**
+	 * 使快照中一张表的信息失效，之后查询该表时直接访问JDBC元数据，直到快照重新加载
+	 * 
+	 * @param tableName
+	 *            表名
+	 */
+	public void invalidateCatalogSnapshot(String tableName) {
+		tableName = info.profile.getObjectNameToUse(tableName);
+		int n = tableName.indexOf('.');
+		if (n > -1) {
+			tableName = tableName.substring(n + 1);
+		}
+		staleTables.put(tableName.toUpperCase(), catalogVersion.incrementAndGet());
+	}
+
+	/*
+	 * 只有表位于当前schema下，并且快照加载后没有对表执行过DDL时才能使用快照
+	 */
+	private CatalogSnapshot getCatalogSnapshot(String schema, String tableName) throws SQLException {
+		if (!isCatalogSnapshotEnabled() || (schema != null && !schema.equalsIgnoreCase(this.schema))) {
+			return null;
+		}
+		LoadedCatalog loaded = getLoadedCatalog();
+		if (loaded == null) {
+			return null;
+		}
+		Long version = staleTables.get(tableName.toUpperCase());
+		if (version != null && version > loaded.version) {
+			return null;
+		}
+		return loaded.snapshot;
+	}
+
+	private static final class LoadedCatalog {
+		final CatalogSnapshot snapshot;
+		/**
+		 * 开始加载时的版本
+		 */
+		final long version;
+
+		LoadedCatalog(CatalogSnapshot snapshot, long version) {
+			this.snapshot = snapshot;
+			this.version = version;
+		}
+	}
+
+	private CatalogSnapshot loadCatalogSnapshot() throws SQLException {
+		long start = System.currentTimeMillis();
+		DatabaseDialect profile = info.profile;
+		CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder(schema);
+		Connection conn = getConnection(false);
+		try {
+			DatabaseMetaData databaseMetaData = conn.getMetaData();
+			ResultSet rs = databaseMetaData.getTables(profile.getCatlog(schema), profile.getSchema(schema), "%", new String[] { ObjectType.TABLE.name() });
+			try {
+				while (rs.next()) {
+					builder.addTable(rs.getString("TABLE_NAME"));
+				}
+			} finally {
+				DbUtils.close(rs);
+			}
+			rs = databaseMetaData.getColumns(null, schema, "%", "%");
+			try {
+				while (rs.next()) {
+					Column column = new Column();
+					populateColumn(column, rs, rs.getString("TABLE_NAME"), null);
+					builder.addColumn(column);
+				}
+			} finally {
+				DbUtils.close(rs);
+			}
+			boolean loaded = false;
+			if (profile instanceof AbstractDialect) {
+				loaded = ((AbstractDialect) profile).loadCatalog(conn, schema, builder);
+			} else if (profile instanceof AbstractDelegatingDialect) {
+				loaded = ((AbstractDelegatingDialect) profile).loadCatalog(conn, schema, builder);
+			}
+			if (!loaded) {
+				// 逐表查询主键、索引和外键的代价是表数量的三倍，还会使部分驱动(如Oracle)分析表，不如不用快照
+				throw new SQLException("The dialect " + profile.getName() + " does not support loading catalog in bulk.");
+			}
+		} finally {
+			releaseConnection(conn);
+		}
+		CatalogSnapshot snapshot = builder.build();
+		LogUtil.info("Catalog snapshot of [{}] loaded: {}, cost {}ms.", dbkey, snapshot, System.currentTimeMillis() - start);
+		return snapshot;
+	}
+
 	/**
 	 * Return whether the JDBC 3.0 Savepoint feature was supported. Caches the
 	 * flag for the lifetime of this Metadata.
@@ -1641,7 +1858,7 @@ public class DbMetaData implements SchemaHandler{
 	}
 
 	private void executeDDL(List<String> alterTableSQLs, String tablename, EntityMetadata meta, MetadataEventListener event) throws SQLException {
-		StatementExecutor exe = createExecutor();
+		StatementExecutor exe = createExecutor(tablename);
 		try {
 			exe.setQueryTimeout(180);// 最多执行3分钟
 			if (event != null) {
@@ -1830,7 +2047,7 @@ public class DbMetaData implements SchemaHandler{
 	 * @throws SQLException
 	 */
 	public void truncate(EntityMetadata meta, List<String> tablename) throws SQLException {
-		StatementExecutor exe = createExecutor();
+		StatementExecutor exe = createRawExecutor();// 只清除数据，不影响表结构
 		try {
 			if (getProfile().has(Feature.NOT_SUPPORT_TRUNCATE)) {
 				for (String table : tablename) {
@@ -1888,7 +2105,7 @@ public class DbMetaData implements SchemaHandler{
 		boolean created = false;
 		if (!existTable(tablename)) {
 			TableCreateSQLs sqls = ddlGenerator.toTableCreateClause(meta, tablename);
-			StatementExecutor exe = createExecutor();
+			StatementExecutor exe = createExecutor(tablename);
 			try {
 				// 建表
 				exe.executeSql(sqls.getTableSQL());
@@ -1924,6 +2141,17 @@ public class DbMetaData implements SchemaHandler{
 	 * executor.close(); }
 	 */
 	private StatementExecutor createExecutor() {
+		return new CatalogInvalidatingExecutor(createRawExecutor(), null);
+	}
+
+	/*
+	 * 创建执行器，执行的DDL只影响指定的表
+	 */
+	private StatementExecutor createExecutor(String tableName) {
+		return new CatalogInvalidatingExecutor(createRawExecutor(), tableName);
+	}
+
+	private StatementExecutor createRawExecutor() {
 		if (parent.getTransactionMode() == TransactionMode.JTA) {
 			return new ExecutorJTAImpl(parent, dbkey, getTransactionId(), getProfile());
 		} else {
@@ -1931,6 +2159,59 @@ public class DbMetaData implements SchemaHandler{
 		}
 	}
 
+	/*
+	 * 执行DDL后使结构快照失效。指定了表时只使该表的信息失效
+	 */
+	private final class CatalogInvalidatingExecutor implements StatementExecutor {
+		private final StatementExecutor executor;
+		private final String tableName;
+
+		CatalogInvalidatingExecutor(StatementExecutor executor, String tableName) {
+			this.executor = executor;
+			this.tableName = tableName;
+		}
+
+		public void executeSql(String... ddls) throws SQLException {
+			try {
+				executor.executeSql(ddls);
+			} finally {
+				invalidate();
+			}
+		}
+
+		public void executeSql(List<String> ddls) throws SQLException {
+			try {
+				executor.executeSql(ddls);
+			} finally {
+				invalidate();
+			}
+		}
+
+		private void invalidate() {
+			if (tableName == null) {
+				invalidateCatalogSnapshot();
+			} else {
+				invalidateCatalogSnapshot(tableName);
+			}
+		}
+
+		public void close() {
+			executor.close();
+		}
+
+		public void setQueryTimeout(int seconds) throws SQLException {
+			executor.setQueryTimeout(seconds);
+		}
+
+		public ResultSet executeQuery(String sql, Object... params) throws SQLException {
+			return executor.executeQuery(sql, params);
+		}
+
+		public int executeUpdate(String sql, Object... params) throws SQLException {
+			return executor.executeUpdate(sql, params);
+		}
+	}
+
 	/**
 	 * 创建Sequence
 	 * 
@@ -2135,7 +2416,7 @@ public class DbMetaData implements SchemaHandler{
 	 */
 	public void dropConstraint(String tablename, String constraintName) throws SQLException {
 		tablename = MetaHolder.toSchemaAdjustedName(tablename);
-		StatementExecutor exe = createExecutor();
+		StatementExecutor exe = createExecutor(tablename);
 		try {
 			dropConstraint0(tablename, constraintName, exe);
 		} finally {
@@ -2208,7 +2489,7 @@ public class DbMetaData implements SchemaHandler{
 				index.generateRandomName();
 			}
 		}
-		StatementExecutor exe = createExecutor();
+		StatementExecutor exe = createExecutor(index.getTableWithSchem());
 		try {
 			exe.executeSql(index.toCreateSql(getProfile()));
 			return true;
@@ -2238,7 +2519,7 @@ public class DbMetaData implements SchemaHandler{
 		} else {
 			sql = "DROP INDEX " + String.format(pattern, index.getIndexName(), index.getTableName());
 		}
-		StatementExecutor exe = createExecutor();
+		StatementExecutor exe = createExecutor(index.getTableWithSchem());
 		try {
 			exe.executeSql(sql);
 		} finally {
@@ -2258,7 +2539,7 @@ public class DbMetaData implements SchemaHandler{
 	public boolean dropTable(String table) throws SQLException {
 		table = getExistTable(table);
 		if (table != null) {
-			StatementExecutor exe = createExecutor();
+			StatementExecutor exe = createExecutor(table);
 			String sql = "drop table " + DbUtils.escapeColumn(getProfile(), table);
 			try {
 				if (getProfile().has(Feature.DROP_CASCADE)) {
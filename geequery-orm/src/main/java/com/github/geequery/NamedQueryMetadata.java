@@ -1,8 +1,10 @@
 package com.github.geequery;
 
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Array;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
@@ -62,6 +64,84 @@ public class NamedQueryMetadata {
 		Map<Object, ParameterMetadata> params;
 		RemovedDelayProcess delays;
 		public Limit countLimit;
+		Template template;
+		volatile Template countTemplate;
+	}
+
+	/**
+	 * 编译后的语句模板。
+	 * <p>
+	 * 语句的渲染结果只取决于每个参数出现处的解析状态(未使用、单值、数组长度、SQL片段)，
+	 * 因此执行时只需按出现顺序解析一遍参数得到状态组合。语法树上的状态是线程变量，
+	 * 同一线程上连续以相同的状态组合执行时不必重新遍历语法树。
+	 */
+	static final class Template {
+		/**
+		 * 当前线程的语法树状态最近一次由哪个模板、以何种状态组合应用。主语句和count语句共用节点，因此按模板区分。
+		 */
+		private static final ThreadLocal<Applied> APPLIED = new ThreadLocal<Applied>();
+		private final Statement statement;
+		/**
+		 * 参数在语句中出现的顺序，和绑定变量的顺序一致
+		 */
+		private final JpqlParameter[] parameters;
+
+		Template(Statement statement) {
+			this.statement = statement;
+			final List<JpqlParameter> list = new ArrayList<JpqlParameter>();
+			statement.accept(new VisitorAdapter() {
+				@Override
+				public void visit(JpqlParameter param) {
+					list.add(param);
+				}
+			});
+			this.parameters = list.toArray(new JpqlParameter[list.size()]);
+		}
+
+		/**
+		 * 得到语法树和绑定变量，返回时当前线程语法树上的状态与本次参数一致
+		 */
+		SqlAndParameter bind(ParameterProvider prov) {
+			List<Object> params = new ArrayList<Object>();
+			applyTo(prov, resolveAll(prov, params));
+			return new SqlAndParameter(statement, params, prov);
+		}
+
+		/*
+		 * 按出现顺序解析全部参数，返回状态组合
+		 */
+		private List<Object> resolveAll(ParameterProvider prov, List<Object> params) {
+			Object[] shape = new Object[parameters.length];
+			for (int i = 0; i < parameters.length; i++) {
+				shape[i] = resolve(parameters[i], prov, params);
+			}
+			return Arrays.asList(shape);
+		}
+
+		/*
+		 * 将状态组合应用到当前线程的语法树上，已经是该组合时跳过
+		 */
+		private void applyTo(ParameterProvider prov, List<Object> key) {
+			Applied last = APPLIED.get();
+			if (last != null && last.template.get() == this && last.key.equals(key)) {
+				return;
+			}
+			statement.accept(new ParamApplier(prov, new ArrayList<Object>()));
+			APPLIED.set(new Applied(this, key));
+		}
+
+		/**
+		 * 不引用模板本身，线程变量不会阻止语句被回收
+		 */
+		private static final class Applied {
+			final WeakReference<Template> template;
+			final List<Object> key;
+
+			Applied(Template template, List<Object> key) {
+				this.template = new WeakReference<Template>(template);
+				this.key = key;
+			}
+		}
 	}
 
 	public String toString() {
@@ -168,6 +248,7 @@ public class NamedQueryMetadata {
 			DialectCase result = new DialectCase();
 			result.statement = st;
 			result.params = params;
+			result.template = new Template(st);
 			if (localization.delayLimit != null || localization.delayStartWith != null) {
 				result.delays = new RemovedDelayProcess(localization.delayLimit, localization.delayStartWith);
 			}
@@ -209,11 +290,24 @@ public class NamedQueryMetadata {
 	 */
 	public SqlAndParameter getSqlAndParams(OperateTarget db, ParameterProvider prov) throws SQLException {
 		DialectCase dc = getDialectCase(db);
-		SqlAndParameter result = applyParam(dc.statement, prov);
+		SqlAndParameter result = dc.template.bind(prov);
 		result.setInMemoryClause(dc.delays);
 		return result;
 	}
 
+	private static Template getCountTemplate(DialectCase dc, OperateTarget db) throws SQLException {
+		Template template = dc.countTemplate;
+		if (template == null) {
+			synchronized (dc) {
+				if ((template = dc.countTemplate) == null) {
+					template = new Template(getCountStatement(dc, db));
+					dc.countTemplate = template;
+				}
+			}
+		}
+		return template;
+	}
+
 	private DialectCase getDialectCase(OperateTarget db) throws SQLException {
 		DatabaseDialect profile = db.getProfile();
 		if (datas == null) {
@@ -242,6 +336,13 @@ public class NamedQueryMetadata {
 	 */
 	public SqlAndParameter getCountSqlAndParams(OperateTarget db, ParameterProvider prov) throws SQLException {
 		DialectCase dc = getDialectCase(db);
+		SqlAndParameter result = getCountTemplate(dc, db).bind(prov);
+		result.setInMemoryClause(dc.delays);
+		result.setLimit(dc.countLimit);
+		return result;
+	}
+
+	private static Statement getCountStatement(DialectCase dc, OperateTarget db) throws SQLException {
 		if (dc.count == null) {
 			if (dc.statement instanceof jef.database.jsqlparser.statement.select.Select) {
 				SelectBody oldBody = ((jef.database.jsqlparser.statement.select.Select) dc.statement).getSelectBody();
@@ -266,10 +367,7 @@ public class NamedQueryMetadata {
 				throw new IllegalArgumentException();
 			}
 		}
-		SqlAndParameter result = applyParam(dc.count, prov);
-		result.setInMemoryClause(dc.delays);
-		result.setLimit(dc.countLimit);
-		return result;
+		return dc.count;
 	}
 
 	private final static class ParamApplier extends VisitorAdapter {
@@ -284,41 +382,11 @@ public class NamedQueryMetadata {
 		// 进行绑定变量匹配
 		@Override
 		public void visit(JpqlParameter param) {
-			Object value = null;
-			boolean contains;
-			if (param.isIndexParam()) {
-				value = prov.getIndexedParam(param.getIndex());
-				contains = prov.containsParam(param.getIndex());
-			} else {
-				value = prov.getNamedParam(param.getName());
-				contains = prov.containsParam(param.getName());
-			}
-
-			if (value instanceof SqlExpression) {
-				param.setResolved(((SqlExpression) value).getText());
-			} else if (value != null) {
-				if (value.getClass().isArray()) {
-					int size = Array.getLength(value);
-					if (value.getClass().getComponentType().isPrimitive()) {
-						value = ArrayUtils.toObject(value);
-					}
-					for (Object v : (Object[]) value) {
-						params.add(v);
-					}
-					param.setResolved(size);
-				} else if (value instanceof Collection) {
-					int size = ((Collection<?>) value).size();
-					for (Object v : (Collection<?>) value) {
-						params.add(v);
-					}
-					param.setResolved(size);
-				} else {
-					params.add(value);
-					param.setResolved(0);
-				}
-			} else if (contains) {
-				params.add(value);
-				param.setResolved(0);
+			Object resolved = resolve(param, prov, params);
+			if (resolved instanceof String) {
+				param.setResolved((String) resolved);
+			} else if (resolved != null) {
+				param.setResolved((Integer) resolved);
 			} else {
 				param.setNotUsed();
 			}
@@ -403,6 +471,52 @@ public class NamedQueryMetadata {
 		}
 	}
 
+	/*
+	 * 解析参数的值，将绑定变量加入列表
+	 * 
+	 * @return 参数的解析状态：SQL片段返回片段文本，0单参数，>0数组参数的长度，未使用返回null
+	 */
+	private static Object resolve(JpqlParameter param, ParameterProvider prov, List<Object> params) {
+		Object value = null;
+		boolean contains;
+		if (param.isIndexParam()) {
+			value = prov.getIndexedParam(param.getIndex());
+			contains = prov.containsParam(param.getIndex());
+		} else {
+			value = prov.getNamedParam(param.getName());
+			contains = prov.containsParam(param.getName());
+		}
+
+		if (value instanceof SqlExpression) {
+			return ((SqlExpression) value).getText();
+		} else if (value != null) {
+			if (value.getClass().isArray()) {
+				int size = Array.getLength(value);
+				if (value.getClass().getComponentType().isPrimitive()) {
+					value = ArrayUtils.toObject(value);
+				}
+				for (Object v : (Object[]) value) {
+					params.add(v);
+				}
+				return size;
+			} else if (value instanceof Collection) {
+				int size = ((Collection<?>) value).size();
+				for (Object v : (Collection<?>) value) {
+					params.add(v);
+				}
+				return size;
+			} else {
+				params.add(value);
+				return 0;
+			}
+		} else if (contains) {
+			params.add(value);
+			return 0;
+		} else {
+			return null;
+		}
+	}
+
 	/**
 	 * 在指定的SQL表达式中应用参数
 	 * 
@@ -413,6 +527,7 @@ public class NamedQueryMetadata {
 	public static Entry<String, List<Object>> applyParam(Expression ex, MapProvider prov) {
 		final List<Object> params = new ArrayList<Object>();
 		ex.accept(new ParamApplier(prov, params));
+		Template.APPLIED.remove();
 		return new Entry<String, List<Object>>(ex.toString(), params);
 	}
 
@@ -422,6 +537,8 @@ public class NamedQueryMetadata {
 	public static SqlAndParameter applyParam(Statement st, final ParameterProvider prov) {
 		final List<Object> params = new ArrayList<Object>();
 		st.accept(new ParamApplier(prov, params));
+		// 语法树状态已被改写，模板需要重新应用
+		Template.APPLIED.remove();
 		return new SqlAndParameter(st, params, prov);
 	}
 }
@@ -111,10 +111,15 @@ public class EnhanceTaskASM {
 			private List<String> nonStaticFields = new ArrayList<String>();
 			private List<String> lobAndRefFields = new ArrayList<String>();
 			private String typeName;
+			/**
+			 * 直接继承DataObject时，set方法直接在位图中标记修改的字段
+			 */
+			private boolean dirtyBits;
 
 			@Override
 			public void visit(int version, int access, String name, String sig, String superName, String[] interfaces) {
 				this.typeName = name.replace('.', '/');
+				this.dirtyBits = "jef/database/DataObject".equals(superName);
 //				if(version==Opcodes.V1_7){
 				version=Opcodes.V1_6;
 //				}
@@ -198,6 +203,9 @@ public class EnhanceTaskASM {
 				if (fieldName.length() == 0 || types.length != 1)
 					return mv;
 				if (enumFields.contains(fieldName) && nonStaticFields.contains(fieldName)) {
+					if (dirtyBits) {
+						return new DirtyBitSetterVisitor(mv, typeName, enumFields.indexOf(fieldName));
+					}
 					return new SetterVisitor(mv, fieldName, typeName, types[0]);
 				}else if(lobAndRefFields.contains(fieldName)) {
 					return new SetterOfClearLazyload(mv, fieldName, typeName);
@@ -205,6 +213,9 @@ public class EnhanceTaskASM {
 					String altFieldName="is"+StringUtils.capitalize(fieldName);
 		//特定情况，当boolean类型并且field名称是isXXX，setter是setXXX()
 					 if(enumFields.contains(altFieldName)){
+						 if (dirtyBits) {
+							 return new DirtyBitSetterVisitor(mv, typeName, enumFields.indexOf(altFieldName));
+						 }
 						 return new SetterVisitor(mv, altFieldName, typeName, types[0]);
 					 }
 				}
@@ -373,4 +384,60 @@ public class EnhanceTaskASM {
 			mv.visitMaxs(Math.max(4,maxStack), maxLocals);
 		}
 	}
+
+	// public void setName(String);
+	// Code:
+	// 0: aload_0
+	// 1: getfield #125; //Field _recordUpdate:Z
+	// 4: ifeq 17
+	// 7: aload_0
+	// 8: dup
+	// 9: getfield #127; //Field _dirty:J
+	// 12: ldc2_w #128; //long 4l
+	// 15: lor
+	// 16: putfield #127; //Field _dirty:J
+	// 17: ...原方法
+	//
+	// 序号即字段在Field枚举中的序号，64以上的调用markDirty(int)
+	static class DirtyBitSetterVisitor extends MethodVisitor implements Opcodes {
+		private String typeName;
+		private int ordinal;
+
+		public DirtyBitSetterVisitor(MethodVisitor mv, String typeName, int ordinal) {
+			super(Opcodes.ASM5,mv);
+			this.typeName = typeName;
+			this.ordinal = ordinal;
+		}
+
+		// 去除本地变量表。否则生成的类用jd-gui反编译时，添加的代码段无法正常反编译
+		@Override
+		public void visitLocalVariable(String name, String desc, String signature, Label start, Label end, int index) {
+		}
+
+		public void visitCode() {
+			mv.visitIntInsn(ALOAD,0);
+			mv.visitFieldInsn(GETFIELD, typeName, "_recordUpdate", "Z");
+			Label norecord = new Label();
+			mv.visitJumpInsn(IFEQ, norecord);
+
+			mv.visitIntInsn(ALOAD,0);
+			if (ordinal < 64) {
+				mv.visitInsn(DUP);
+				mv.visitFieldInsn(GETFIELD, typeName, "_dirty", "J");
+				mv.visitLdcInsn(Long.valueOf(1L << ordinal));
+				mv.visitInsn(LOR);
+				mv.visitFieldInsn(PUTFIELD, typeName, "_dirty", "J");
+			} else {
+				ASMUtils.iconst(mv, ordinal);
+				mv.visitMethodInsn(INVOKEVIRTUAL, typeName, "markDirty", "(I)V",false);
+			}
+			mv.visitLabel(norecord);
+			super.visitCode();
+		}
+
+		@Override
+		public void visitMaxs(int maxStack, int maxLocals) {
+			mv.visitMaxs(Math.max(5,maxStack), maxLocals);
+		}
+	}
 }
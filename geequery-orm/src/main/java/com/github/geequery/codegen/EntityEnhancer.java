@@ -20,11 +20,15 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.geequery.accelerator.asm.ClassReader;
 import com.github.geequery.tools.ClassScanner;
 import com.github.geequery.tools.IOUtils;
 import com.github.geequery.tools.StringUtils;
@@ -45,6 +49,10 @@ public class EntityEnhancer {
 	private List<URL> roots;
 	PrintStream out = System.out;
 	private EnhanceTaskASM enhancer;
+	/**
+	 * 处理过的实体类(包括本次增强的和已经增强过的)
+	 */
+	private final Set<String> entityClasses = new LinkedHashSet<String>();
 	private static final Logger log = LoggerFactory.getLogger(EntityEnhancer.class);
 
 	public void setOut(PrintStream out) {
@@ -130,6 +138,7 @@ public class EntityEnhancer {
 		File sub = new File(f.getParentFile(), StringUtils.substringAfterLastIfExist(cls, ".").concat("$Field.class"));
 		byte[] result = enhancer.doEnhance(IOUtils.toByteArray(f), (sub.exists() ? IOUtils.toByteArray(sub) : null));
 		if (result != null) {
+			entityClasses.add(cls);
 			if (result.length == 0) {
 				out.println(cls + " is already enhanced.");
 			} else {
@@ -147,8 +156,10 @@ public class EntityEnhancer {
 		if (!f.exists()) {
 			return false;
 		}
-		byte[] result = enhancer.doEnhance(IOUtils.toByteArray(f), (sub.exists() ? IOUtils.toByteArray(sub) : null));
+		byte[] data = IOUtils.toByteArray(f);
+		byte[] result = enhancer.doEnhance(data, (sub.exists() ? IOUtils.toByteArray(sub) : null));
 		if (result != null) {
+			entityClasses.add(new ClassReader(data).getJavaClassName());
 			if (result.length == 0) {
 				out.println(cls + " is already enhanced.");
 			} else {
@@ -160,6 +171,16 @@ public class EntityEnhancer {
 		return false;
 	}
 
+	/**
+	 * 获得处理过的实体类名，可以用于生成实体索引
+	 * 
+	 * @return 实体类名
+	 * @see com.github.geequery.entity.EntityIndex
+	 */
+	public Collection<String> getEntityClasses() {
+		return entityClasses;
+	}
+
 	/**
 	 * 设置类名Pattern
 	 * 
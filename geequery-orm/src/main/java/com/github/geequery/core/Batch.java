@@ -18,16 +18,31 @@ package com.github.geequery.core;
 import java.sql.BatchUpdateException;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
 import java.sql.SQLIntegrityConstraintViolationException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.github.geequery.common.PairSS;
 import com.github.geequery.common.log.LogUtil;
 import com.github.geequery.core.cache.Cache;
 import com.github.geequery.core.config.ORMConfig;
+import com.github.geequery.dialect.AbstractDelegatingDialect;
+import com.github.geequery.dialect.AbstractDialect;
+import com.github.geequery.dialect.DatabaseDialect;
+import com.github.geequery.dialect.handler.BulkInsertHandler;
 import com.github.geequery.dialect.type.ColumnMapping;
 import com.github.geequery.entity.IQueryableEntity;
 
@@ -55,6 +70,10 @@ import com.github.geequery.tools.StringUtils;
  * <p>
  * 可以使用{@link #setGroupForPartitionTable(boolean)}
  * 方法指定是否要对每条参数进行路由计算，根据路由结果重新分组后再执行插入、更新或删除操作。(仅当分库分表后才需要)
+ * <p>
+ * 可以使用{@link #setFlushSize(int)}方法开启分段提交，每绑定指定条数的参数就执行一次，避免大批量数据全部堆积在JDBC驱动中。
+ * <p>
+ * 重新分组后，可以使用{@link #setParallel(boolean)}方法让各组在不同的连接上并行执行(仅限非事务操作)。
  * 
  * 
  * @author Administrator
@@ -103,6 +122,35 @@ public abstract class Batch<T extends IQueryableEntity> {
 
 	long parseTime;
 
+	/**
+	 * 分段提交的大小，0表示不分段，所有数据作为一个批执行
+	 */
+	private int flushSize = ORMConfig.getInstance().getBatchFlushSize();
+	/**
+	 * 分段模式下，每段执行后是否提交事务
+	 */
+	private boolean commitPerChunk;
+	/**
+	 * 分段执行的回调
+	 */
+	private ChunkListener chunkListener;
+	/**
+	 * 最近一次执行中每段影响的记录行数
+	 */
+	private final List<Integer> chunkResults = Collections.synchronizedList(new ArrayList<Integer>());
+	/**
+	 * 分组后各组并行执行
+	 */
+	private boolean parallel;
+	/**
+	 * 并行执行时的最大线程数
+	 */
+	private int maxThreads = Runtime.getRuntime().availableProcessors();
+	/**
+	 * 并行执行时，每个数据源上同时执行的组数上限
+	 */
+	private int maxConcurrencyPerSite = 1;
+
 	public boolean isExtreme() {
 		return extreme;
 	}
@@ -201,6 +249,115 @@ public abstract class Batch<T extends IQueryableEntity> {
 		this.groupForPartitionTable = regroupForPartitionTable;
 	}
 
+	/**
+	 * 获得分段提交的大小
+	 * 
+	 * @return 分段提交的大小，0表示不分段
+	 */
+	public int getFlushSize() {
+		return flushSize;
+	}
+
+	/**
+	 * 设置分段提交的大小。<br>
+	 * 大于0时，每绑定flushSize条参数就执行一次executeBatch，JDBC驱动中最多只缓存一段的参数。默认值来自
+	 * {@link ORMConfig#getBatchFlushSize()}。
+	 * 
+	 * @param flushSize
+	 *            分段大小，0表示不分段
+	 */
+	public void setFlushSize(int flushSize) {
+		Assert.isTrue(flushSize >= 0, "The flush size must not be negative.");
+		this.flushSize = flushSize;
+	}
+
+	/**
+	 * 分段模式下，每段执行后是否提交事务
+	 * 
+	 * @return 如果每段执行后提交返回true
+	 */
+	public boolean isCommitPerChunk() {
+		return commitPerChunk;
+	}
+
+	/**
+	 * 设置分段模式下，每段执行后是否提交事务。<br>
+	 * 仅在事务中操作时有意义，非事务下每段执行后即已自动提交。开启后一旦某段出错，之前各段的数据已经提交，不会回滚。
+	 * 
+	 * @param commitPerChunk
+	 *            每段执行后提交
+	 */
+	public void setCommitPerChunk(boolean commitPerChunk) {
+		this.commitPerChunk = commitPerChunk;
+	}
+
+	/**
+	 * 设置分段执行的回调，每段执行完成后被调用
+	 * 
+	 * @param chunkListener
+	 *            回调
+	 */
+	public void setChunkListener(ChunkListener chunkListener) {
+		this.chunkListener = chunkListener;
+	}
+
+	/**
+	 * 分组后各组是否并行执行
+	 * 
+	 * @return 并行执行返回true
+	 */
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	/**
+	 * 设置分组后各组是否并行执行。<br>
+	 * 仅在重新分组({@link #isGroupForPartitionTable()})时生效。开启后各组在各自的连接上并行执行，总影响行数为各组之和。
+	 * 任一组出错时，尚未开始的组不再执行，已开始的组执行完毕后，按分组顺序抛出最先一组的异常，其余异常作为suppressed附加在其上。
+	 * <p>
+	 * 在事务中，所有数据源上的操作共享同一个事务连接，而一个连接不能被多个线程同时使用，因此事务中此开关无效，各组总是依次执行。
+	 * <p>
+	 * 注意：并行执行时，会话上的DbOperatorListener(beforeInseret/afterInsert等)、实体的批操作回调以及{@link ChunkListener}
+	 * 会在多个工作线程中被并发调用，其实现需要是线程安全的。
+	 * 
+	 * @param parallel
+	 *            并行开关
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	/**
+	 * 设置并行执行时的最大线程数，默认为CPU核数
+	 * 
+	 * @param maxThreads
+	 *            最大线程数
+	 */
+	public void setMaxThreads(int maxThreads) {
+		Assert.isTrue(maxThreads > 0, "The max threads must be positive.");
+		this.maxThreads = maxThreads;
+	}
+
+	/**
+	 * 设置并行执行时，每个数据源上同时执行的组数上限，默认1。避免单个数据源占满连接池。
+	 * 
+	 * @param maxConcurrencyPerSite
+	 *            每个数据源上的并发上限
+	 */
+	public void setMaxConcurrencyPerSite(int maxConcurrencyPerSite) {
+		Assert.isTrue(maxConcurrencyPerSite > 0, "The max concurrency per site must be positive.");
+		this.maxConcurrencyPerSite = maxConcurrencyPerSite;
+	}
+
+	/**
+	 * 获得最近一次执行中每段影响的记录行数。不分段时只有一个元素。并行执行时，各组的结果按完成顺序排列。
+	 * 
+	 * @return 每段影响的记录行数
+	 */
+	public List<Integer> getChunkResults() {
+		return chunkResults;
+	}
+
 	/**
 	 * 提交并执行批数据。 注意Batch对应的SQL语句是固定的。因此此处传入的对象只会影响参数中的绑定变量和SQL语句中的表名。对where条件、
 	 * Update中的set子句不会构成影响。
@@ -213,25 +370,23 @@ public abstract class Batch<T extends IQueryableEntity> {
 		}
 		boolean debugMode = ORMConfig.getInstance().isDebugMode();
 		String tablename = null;
+		chunkResults.clear();
 
 		try {
 			if (this.groupForPartitionTable && forceTableName == null) {// 需要分组
 				callVeryBefore(objs);
 				int total = 0;
 				Map<PairSS, List<T>> data = doGroup(objs);
-				for (Map.Entry<PairSS, List<T>> entry : data.entrySet()) {
-					long start = System.currentTimeMillis();
-					PairSS target = entry.getKey();
-					String dbName = parent.getTransactionId(target.first);
-					tablename = target.second;
-					List<T> groupObj = entry.getValue();
-					long dbAccess = innerCommit(groupObj, target.first, tablename, dbName);
-					total += executeResult;
-					if (debugMode) {
-						LogUtil.info(StringUtils.concat(this.getClass().getSimpleName(), " Group executed:", String.valueOf(groupObj.size()), ". affect ", String.valueOf(executeResult), " record(s) on [" + entry.getKey() + "]\t Time cost([ParseSQL]:",
-								String.valueOf(parseTime / 1000), "us, [DbAccess]:", String.valueOf(dbAccess - start), "ms) |", dbName));
+				// 事务中各组共享同一个连接，不能并行
+				if (parallel && data.size() > 1 && !(parent instanceof Transaction)) {
+					total = executeParallel(data);
+				} else {
+					for (Map.Entry<PairSS, List<T>> entry : data.entrySet()) {
+						tablename = entry.getKey().second;
+						total += executeGroup(entry.getKey(), entry.getValue());
 					}
 				}
+				executeResult = total;
 				if (debugMode) {
 					LogUtil.info(StringUtils.concat(this.getClass().getSimpleName(), " Batch executed:", String.valueOf(objs.size()), ". affect ", String.valueOf(total), " record(s) and ", String.valueOf(data.size()), " tables. |  @",
 							String.valueOf(Thread.currentThread().getId())));
@@ -249,14 +404,17 @@ public abstract class Batch<T extends IQueryableEntity> {
 					tablename = pr.getAsOneTable();
 				}
 				String dbName = parent.getTransactionId(null);
-				long dbAccess = innerCommit(objs, site, tablename, dbName);
+				executeResult = innerCommit(objs, site, tablename, dbName);
+				long dbAccess = System.currentTimeMillis();
 				if (debugMode) {
 					LogUtil.info(StringUtils.concat(this.getClass().getSimpleName(), " Batch executed total:", String.valueOf(objs.size()), ". affect ", String.valueOf(executeResult), " record(s)\t Time cost([ParseSQL]:", String.valueOf(parseTime / 1000), "us, [DbAccess]:",
 							String.valueOf(dbAccess - start), "ms) |", dbName));
 				}
 			}
 		} catch (SQLException e) {
-			DebugUtil.setSqlState(e, tablename);
+			if (tablename != null) {// 并行执行时，异常已经在各组中标记了表名
+				DebugUtil.setSqlState(e, tablename);
+			}
 			throw e;
 		}
 		return executeResult;
@@ -270,28 +428,151 @@ public abstract class Batch<T extends IQueryableEntity> {
 		return DbUtils.toTableName(obj, null, obj.getQuery(), null);
 	}
 
-	protected long innerCommit(List<T> objs, String site, String tablename, String dbName) throws SQLException {
+	/*
+	 * 执行一组数据，返回影响的记录数
+	 */
+	private int executeGroup(PairSS target, List<T> groupObj) throws SQLException {
+		long start = System.currentTimeMillis();
+		String dbName = parent.getTransactionId(target.first);
+		int count = innerCommit(groupObj, target.first, target.second, dbName);
+		if (ORMConfig.getInstance().isDebugMode()) {
+			LogUtil.info(StringUtils.concat(this.getClass().getSimpleName(), " Group executed:", String.valueOf(groupObj.size()), ". affect ", String.valueOf(count), " record(s) on [" + target + "]\t Time cost([ParseSQL]:",
+					String.valueOf(parseTime / 1000), "us, [DbAccess]:", String.valueOf(System.currentTimeMillis() - start), "ms) |", dbName));
+		}
+		return count;
+	}
+
+	/*
+	 * 各组在线程池中并行执行，每个数据源同时执行的组数受maxConcurrencyPerSite限制。各组均从非事务会话中获取独立的连接。
+	 * 出错时尚未开始的组被跳过，按分组顺序抛出最先出错的组的异常。
+	 */
+	private int executeParallel(Map<PairSS, List<T>> data) throws SQLException {
+		int perSite = maxConcurrencyPerSite;
+		Map<String, Semaphore> permits = new HashMap<String, Semaphore>();
+		Map<String, List<Map.Entry<PairSS, List<T>>>> bySite = new LinkedHashMap<String, List<Map.Entry<PairSS, List<T>>>>();
+		for (Map.Entry<PairSS, List<T>> entry : data.entrySet()) {
+			String site = StringUtils.toString(entry.getKey().first);
+			List<Map.Entry<PairSS, List<T>>> list = bySite.get(site);
+			if (list == null) {
+				list = new ArrayList<Map.Entry<PairSS, List<T>>>();
+				bySite.put(site, list);
+				permits.put(site, new Semaphore(perSite));
+			}
+			list.add(entry);
+		}
+		// 按数据源轮流提交，使空闲线程优先拿到其他数据源的组
+		List<Map.Entry<PairSS, List<T>>> ordered = new ArrayList<Map.Entry<PairSS, List<T>>>(data.size());
+		for (int i = 0; ordered.size() < data.size(); i++) {
+			for (List<Map.Entry<PairSS, List<T>>> list : bySite.values()) {
+				if (i < list.size()) {
+					ordered.add(list.get(i));
+				}
+			}
+		}
+		final AtomicBoolean failed = new AtomicBoolean();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxThreads, data.size()), GROUP_THREADS);
+		Map<PairSS, Future<Integer>> futures = new HashMap<PairSS, Future<Integer>>();
+		try {
+			for (final Map.Entry<PairSS, List<T>> entry : ordered) {
+				final Semaphore permit = permits.get(StringUtils.toString(entry.getKey().first));
+				futures.put(entry.getKey(), executor.submit(new Callable<Integer>() {
+					public Integer call() throws SQLException, InterruptedException {
+						permit.acquire();
+						try {
+							if (failed.get()) {
+								return 0;
+							}
+							return executeGroup(entry.getKey(), entry.getValue());
+						} catch (SQLException e) {
+							failed.set(true);
+							throw e;
+						} catch (RuntimeException e) {
+							failed.set(true);
+							throw e;
+						} finally {
+							permit.release();
+						}
+					}
+				}));
+			}
+		} finally {
+			executor.shutdown();
+		}
+		int total = 0;
+		SQLException error = null;
+		RuntimeException runtimeError = null;
+		for (PairSS key : data.keySet()) {
+			try {
+				total += await(futures.get(key));
+			} catch (SQLException e) {
+				DebugUtil.setSqlState(e, key.second);
+				if (error == null && runtimeError == null) {
+					error = e;
+				} else {
+					(error == null ? runtimeError : error).addSuppressed(e);
+				}
+			} catch (RuntimeException e) {
+				if (error == null && runtimeError == null) {
+					runtimeError = e;
+				} else {
+					(error == null ? runtimeError : error).addSuppressed(e);
+				}
+			}
+		}
+		if (error != null) {
+			throw error;
+		}
+		if (runtimeError != null) {
+			throw runtimeError;
+		}
+		return total;
+	}
+
+	protected int innerCommit(List<T> objs, String site, String tablename, String dbName) throws SQLException {
 		OperateTarget db = parent.selectTarget(site);
 		String sql = toSql(DbUtils.escapeColumn(db.getProfile(), tablename));
 		if (ORMConfig.getInstance().isDebugMode())
 			LogUtil.show(sql + " | " + dbName);
+		int count = commitOn(db, sql, objs);
+		db.tableUpdated(tablename);
+		return count;
+	}
 
-		PreparedStatement p = db.prepareStatement(sql);
+	/*
+	 * 在指定的数据库上执行SQL，按需分段。完成后释放连接，返回影响的记录数
+	 */
+	protected final int commitOn(OperateTarget db, String sql, List<T> objs) throws SQLException {
 		try {
-			return doCommit(p, db, objs);
+			if (flushSize > 0 && objs.size() > flushSize) {
+				return doChunkedCommit(db, sql, objs);
+			}
+			PreparedStatement p = prepareStatement(db, sql);
+			try {
+				int count = doCommit(p, db, objs);
+				onChunkExecuted(db, 0, objs.size(), count);
+				return count;
+			} finally {
+				p.close();
+			}
 		} finally {
-			p.close();
 			db.releaseConnection();
 		}
 	}
 
+	/*
+	 * 准备SQL语句
+	 */
+	protected PreparedStatement prepareStatement(OperateTarget db, String sql) throws SQLException {
+		return db.prepareStatement(sql);
+	}
+
 	/*
 	 * 按计算的表名进行分组
 	 * 
 	 * @return 返回的Map中，key为计算出的表名(数据源名称加上-表名)，value为该表上的操作对象
 	 */
 	private Map<PairSS, List<T>> doGroup(List<T> objs) {
-		Map<PairSS, List<T>> result = new HashMap<PairSS, List<T>>();
+		Map<PairSS, List<T>> result = new LinkedHashMap<PairSS, List<T>>();
 		for (T obj : objs) {
 			PartitionResult partitionResult = getTableName(obj);
 			if (this.forcrSite != null) {
@@ -309,11 +590,79 @@ public abstract class Batch<T extends IQueryableEntity> {
 	}
 
 	/*
-	 * 提交每批数据，返回本次数据库完成后的时间
+	 * 提交每批数据，返回影响的记录数
 	 */
-	protected long doCommit(PreparedStatement psmt, OperateTarget db, List<T> listValue) throws SQLException {
+	protected int doCommit(PreparedStatement psmt, OperateTarget db, List<T> listValue) throws SQLException {
 		callEventListenerBefore(listValue);
 		processJdbcParams(psmt, listValue, db);
+		int count = executeBatch(psmt, db);
+		callEventListenerAfter(listValue);
+		return count;
+	}
+
+	/*
+	 * 分段提交，每段flushSize条数据。各段在同一个Statement上依次绑定、执行(同一连接上的JDBC操作不能并发)。
+	 * 返回影响的记录总数
+	 */
+	private int doChunkedCommit(OperateTarget db, String sql, List<T> objs) throws SQLException {
+		int size = objs.size();
+		int total = 0;
+		PreparedStatement psmt = prepareStatement(db, sql);
+		try {
+			int index = 0;
+			for (int from = 0; from < size; from += flushSize, index++) {
+				List<T> chunk = objs.subList(from, Math.min(from + flushSize, size));
+				callEventListenerBefore(chunk);
+				processJdbcParams(psmt, chunk, db);
+				total += finishChunk(db, index, chunk, executeBatch(psmt, db));
+			}
+		} finally {
+			DbUtils.close(psmt);
+		}
+		return total;
+	}
+
+	/*
+	 * 一段执行完成后，调用监听器，按需提交，并返回该段影响的记录数
+	 */
+	final int finishChunk(OperateTarget db, int index, List<T> chunk, int affected) throws SQLException {
+		callEventListenerAfter(chunk);
+		if (commitPerChunk && db.getSession() instanceof Transaction) {
+			((Transaction) db.getSession()).commit(false);
+		}
+		onChunkExecuted(db, index, chunk.size(), affected);
+		return affected;
+	}
+
+	private void onChunkExecuted(OperateTarget db, int index, int size, int affected) {
+		chunkResults.add(affected);
+		if (chunkListener != null) {
+			chunkListener.onChunkExecuted(index, size, affected);
+		}
+		if (ORMConfig.getInstance().isDebugMode() && flushSize > 0) {
+			LogUtil.show(StringUtils.concat(this.getClass().getSimpleName(), " Chunk ", String.valueOf(index + 1), " executed:", String.valueOf(size), ". affect ", String.valueOf(affected), " record(s) |", db.getTransactionId()));
+		}
+	}
+
+	private static int await(Future<Integer> future) throws SQLException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for batch execution.", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof SQLException) {
+				throw (SQLException) cause;
+			}
+			throw DbUtils.toRuntimeException(cause);
+		}
+	}
+
+	/*
+	 * 执行已经绑定的批，返回影响的记录总数
+	 */
+	final int executeBatch(PreparedStatement psmt, OperateTarget db) throws SQLException {
 		int[] result;
 		try {
 			result = psmt.executeBatch();
@@ -360,10 +709,7 @@ public abstract class Batch<T extends IQueryableEntity> {
 				total += i;
 			}
 		}
-		this.executeResult = total;
-		long dbAccess = System.currentTimeMillis();
-		callEventListenerAfter(listValue);
-		return dbAccess;
+		return total;
 	}
 
 	/*
@@ -391,6 +737,33 @@ public abstract class Batch<T extends IQueryableEntity> {
 	 */
 	protected abstract String toSql(String tablename);
 
+	/**
+	 * 分段执行的回调
+	 * 
+	 * @see Batch#setChunkListener(ChunkListener)
+	 */
+	public interface ChunkListener {
+		/**
+		 * 每段执行完成后调用
+		 * 
+		 * @param chunkIndex
+		 *            段序号，从0开始
+		 * @param chunkSize
+		 *            该段的记录数
+		 * @param affected
+		 *            该段影响的记录行数
+		 */
+		void onChunkExecuted(int chunkIndex, int chunkSize, int affected);
+	}
+
+	private static final ThreadFactory GROUP_THREADS = new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "gq-batch-group");
+			t.setDaemon(true);
+			return t;
+		}
+	};
+
 	static final class Insert<T extends IQueryableEntity> extends Batch<T> {
 		/**
 		 * SQL片段,Insert部分(INSERT语句使用)
@@ -473,24 +846,67 @@ public abstract class Batch<T extends IQueryableEntity> {
 			}
 		}
 
-		protected long innerCommit(List<T> objs, String site, String tablename, String dbName) throws SQLException {
+		protected int innerCommit(List<T> objs, String site, String tablename, String dbName) throws SQLException {
 			OperateTarget db = parent.selectTarget(site);
 			if (extreme) {
 				db.getProfile().toExtremeInsert(insertPart);
+				BulkInsertHandler handler = getBulkInsertHandler(db.getProfile());
+				if (handler != null && !insertPart.getCallback().hasStatementPreparer() && handler.supports(insertPart)) {
+					try {
+						int count = bulkInsert(handler, db, tablename, objs);
+						db.tableUpdated(tablename);
+						return count;
+					} catch (SQLFeatureNotSupportedException e) {
+						LogUtil.warn("Bulk insert is not available, using JDBC batch instead. {}", e.getMessage());
+					}
+				}
 			}
 			String sql = toSql(tablename);
 			if (ORMConfig.getInstance().isDebugMode())
 				LogUtil.show(sql + " | " + dbName);
-			PreparedStatement p = insertPart.getCallback().doPrepareStatement(db, sql);
+			int count = commitOn(db, sql, objs);
+			db.tableUpdated(tablename);
+			return count;
+		}
+
+		/*
+		 * 使用数据库本地的批量加载方式写入，设置了flushSize时分段写入
+		 */
+		private int bulkInsert(BulkInsertHandler handler, OperateTarget db, String tablename, List<T> objs) throws SQLException {
+			int size = objs.size();
+			int step = getFlushSize() > 0 ? getFlushSize() : size;
+			int total = 0;
 			try {
-				long dbAccess = doCommit(p, db, objs);
-				return dbAccess;
+				int index = 0;
+				for (int from = 0; from < size; from += step, index++) {
+					List<T> chunk = objs.subList(from, Math.min(from + step, size));
+					callEventListenerBefore(chunk);
+					long start = System.currentTimeMillis();
+					int count = handler.bulkInsert(db, tablename, insertPart, chunk);
+					if (ORMConfig.getInstance().isDebugMode()) {
+						LogUtil.show(StringUtils.concat("Bulk insert ", String.valueOf(chunk.size()), " record(s) into ", tablename, " via ", handler.getClass().getSimpleName(), ", cost ", String.valueOf(System.currentTimeMillis() - start), "ms |", db.getTransactionId()));
+					}
+					total += finishChunk(db, index, chunk, count);
+				}
+				return total;
 			} finally {
-				p.close();
 				db.releaseConnection();
 			}
 		}
-		
+
+		private static BulkInsertHandler getBulkInsertHandler(DatabaseDialect profile) {
+			if (profile instanceof AbstractDialect) {
+				return ((AbstractDialect) profile).getBulkInsertHandler();
+			} else if (profile instanceof AbstractDelegatingDialect) {
+				return ((AbstractDelegatingDialect) profile).getBulkInsertHandler();
+			}
+			return null;
+		}
+
+		@Override
+		protected PreparedStatement prepareStatement(OperateTarget db, String sql) throws SQLException {
+			return insertPart.getCallback().doPrepareStatement(db, sql);
+		}
 
 		@Override
 		protected PartitionResult getTableName(T obj) {
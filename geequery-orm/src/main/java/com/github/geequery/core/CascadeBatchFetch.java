@@ -0,0 +1,93 @@
+package com.github.geequery.core;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.geequery.tools.reflect.BeanWrapper;
+
+/**
+ * 对多级联的批量抓取。收集一批父对象的关联键，每次用不超过batchSize个键的IN条件查询子记录，再按关联键分配回各父对象。
+ * 
+ * @author jiyi
+ *
+ */
+final class CascadeBatchFetch {
+	/**
+	 * 按一批关联键查询子记录
+	 */
+	interface Selector<T> {
+		List<T> select(List<Object> keys) throws SQLException;
+	}
+
+	private CascadeBatchFetch() {
+	}
+
+	/**
+	 * 为一批父对象查询子记录
+	 * 
+	 * @param parents
+	 *            父对象
+	 * @param parentKey
+	 *            父对象上关联键的属性名
+	 * @param childKey
+	 *            子对象上关联键的属性名
+	 * @param batchSize
+	 *            每次查询的关联键个数
+	 * @param selector
+	 *            查询
+	 * @return 各父对象的子记录，每个父对象一个新的列表，没有子记录时为空列表。关联键为null的父对象不在其中(和单个处理时一致，不装填)
+	 * @throws SQLException
+	 */
+	static <T> Map<Object, List<T>> fetch(List<?> parents, String parentKey, String childKey, int batchSize, Selector<T> selector) throws SQLException {
+		Map<Object, List<T>> result = new IdentityHashMap<Object, List<T>>();
+		// 关联键相同的父对象只查询一次
+		Map<Object, Object> keys = new LinkedHashMap<Object, Object>();
+		for (Object obj : parents) {
+			Object value = BeanWrapper.wrap(obj, BeanWrapper.FAST).getPropertyValue(parentKey);
+			if (value != null) {
+				keys.put(normalizeKey(value), value);
+			}
+		}
+		if (keys.isEmpty()) {
+			return result;
+		}
+		Map<Object, List<T>> grouped = new HashMap<Object, List<T>>();
+		List<Object> keyList = new ArrayList<Object>(keys.values());
+		for (int from = 0; from < keyList.size(); from += batchSize) {
+			List<Object> chunk = keyList.subList(from, Math.min(from + batchSize, keyList.size()));
+			for (T sub : selector.select(new ArrayList<Object>(chunk))) {
+				Object value = normalizeKey(BeanWrapper.wrap(sub, BeanWrapper.FAST).getPropertyValue(childKey));
+				List<T> list = grouped.get(value);
+				if (list == null) {
+					list = new ArrayList<T>();
+					grouped.put(value, list);
+				}
+				list.add(sub);
+			}
+		}
+		for (Object obj : parents) {
+			Object value = BeanWrapper.wrap(obj, BeanWrapper.FAST).getPropertyValue(parentKey);
+			if (value == null) {
+				continue;
+			}
+			List<T> subs = grouped.get(normalizeKey(value));
+			result.put(obj, subs == null ? new ArrayList<T>() : new ArrayList<T>(subs));
+		}
+		return result;
+	}
+
+	/*
+	 * 数值型的关联键两侧Java类型可能不同(如Integer和Long)，统一后再比较
+	 */
+	static Object normalizeKey(Object value) {
+		if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			return ((Number) value).longValue();
+		}
+		return value;
+	}
+}
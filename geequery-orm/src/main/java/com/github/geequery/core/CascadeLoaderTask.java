@@ -9,11 +9,14 @@ import java.util.Map;
 
 import com.github.geequery.annotation.JoinDescription;
 import com.github.geequery.common.log.LogUtil;
+import com.github.geequery.core.config.ORMConfig;
 import com.github.geequery.core.exexutor.LazyLoadTask;
 import com.github.geequery.dialect.type.ColumnMapping;
 import com.github.geequery.entity.IQueryableEntity;
 
 import jef.database.Condition;
+import jef.database.Condition.Operator;
+import jef.database.Field;
 import jef.database.ReverseReferenceProcessor;
 import jef.database.VarObject;
 import jef.database.jsqlparser.statement.select.OrderBy;
@@ -21,6 +24,7 @@ import jef.database.jsqlparser.statement.select.OrderByElement;
 import jef.database.meta.AbstractRefField;
 import jef.database.meta.ISelectProvider;
 import jef.database.meta.ITableMetadata;
+import jef.database.meta.JoinKey;
 import jef.database.meta.JoinPath;
 import jef.database.meta.Reference;
 import jef.database.meta.ReferenceField;
@@ -44,6 +48,10 @@ final class CascadeLoaderTask implements LazyLoadTask {
 	private List<AbstractRefField> refs;
 	private List<OrderField> orders;
 	private String keyOfJoinTable;
+	/**
+	 * 批量抓取时每次查询的父对象个数，0表示不能批量抓取
+	 */
+	private int batchSize;
 	/**
 	 * 
 	 * @param entry
@@ -99,6 +107,30 @@ final class CascadeLoaderTask implements LazyLoadTask {
 		if (!targetTableMeta.getRefFieldsByName().isEmpty()) {
 			finalQuery = DbUtils.toReferenceJoinQuery(query, reverse == null ? null : reverse.refs); // 去除引用关系后将其转为Join，用这种方式进行的查询不查询反向的多对1关系
 		}
+		this.batchSize = calcBatchSize();
+	}
+
+	/*
+	 * 只有单个等值关联键、无多对多中间表、无每组行数限制的关系才能用IN条件批量抓取
+	 */
+	private int calcBatchSize() {
+		if (joinPath == null || keyOfJoinTable != null || joinPath.getJoinKeys().length != 1 || joinPath.getJoinExpression().length > 0) {
+			return 0;
+		}
+		if (joinPath.getJoinKeys()[0].getRightAsField() == null) {
+			return 0;
+		}
+		JoinDescription desc = joinPath.getDescription();
+		if (desc != null) {
+			if (desc.maxRows() > 0 || desc.batchSize() < 0) {
+				return 0;
+			}
+			if (desc.batchSize() > 0) {
+				return desc.batchSize();
+			}
+		}
+		ORMConfig config = ORMConfig.getInstance();
+		return config.isCascadeBatchFetch() ? Math.max(1, config.getMaxInConditions()) : 0;
 	}
 
 	public void process(Session db, Object obj) throws SQLException {
@@ -116,7 +148,7 @@ final class CascadeLoaderTask implements LazyLoadTask {
 		}
 		String isManyToMany=this.keyOfJoinTable;
 		@SuppressWarnings("unchecked")
-		List<IQueryableEntity> subs = db.innerSelect(finalQuery, null, filters, option);		
+		List<IQueryableEntity> subs = db.innerSelect(finalQuery, null, filters, option);
 		if(isManyToMany!=null) {
 			List<? extends IQueryableEntity> old=subs;
 			subs=new ArrayList<IQueryableEntity>();
@@ -129,7 +161,67 @@ final class CascadeLoaderTask implements LazyLoadTask {
 				}
 			}
 		}
-		
+		fill(obj, subs);
+	}
+
+	/**
+	 * 为一批父对象装填级联字段。关联键相同的父对象合并为一个IN条件查询，查出的子记录按关联键分配回各父对象。
+	 * 不满足批量抓取条件时，逐个对象处理。
+	 */
+	public void processBatch(final Session db, List<?> objs) throws SQLException {
+		if (batchSize == 0 || objs.size() < 2) {
+			for (Object obj : objs) {
+				process(db, obj);
+			}
+			return;
+		}
+		if(!db.isOpen()){
+			throw new SQLException("try to load field "+refs.get(0).getName()+" but the session was already closed!");
+		}
+		LogUtil.debug("processing Cascadeload [{}] for {} objects",this.refs.get(0).getReference(), objs.size());
+		JoinKey key = joinPath.getJoinKeys()[0];
+		final Field right = key.getRightAsField();
+		Map<Object, List<IQueryableEntity>> children = CascadeBatchFetch.fetch(objs, key.getLeft().name(), right.name(), batchSize, new CascadeBatchFetch.Selector<IQueryableEntity>() {
+			public List<IQueryableEntity> select(List<Object> keys) throws SQLException {
+				return selectIn(db, right, keys);
+			}
+		});
+		for (Object obj : objs) {
+			List<IQueryableEntity> subs = children.get(obj);
+			if (subs != null) {
+				fill(obj, subs);
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<IQueryableEntity> selectIn(Session db, Field right, List<Object> keys) throws SQLException {
+		Query<?> q = QueryBuilder.create(targetTableMeta);
+		q.addCondition(right, Operator.IN, keys);
+		if (currentFilter != null) {
+			for (Condition c : currentFilter) {
+				q.addCondition(c);
+			}
+		}
+		if (orders != null) {
+			for (OrderField f : orders) {
+				q.addOrderBy(f.isAsc(), f.getField());
+			}
+		}
+		QueryOption opt = QueryOption.createFrom(q);
+		if (reverse != null)
+			opt.skipReference = reverse.refs;
+		JoinElement fq = q;
+		if (!targetTableMeta.getRefFieldsByName().isEmpty()) {
+			fq = DbUtils.toReferenceJoinQuery(q, reverse == null ? null : reverse.refs);
+		}
+		return db.innerSelect(fq, null, filters, opt);
+	}
+
+	/*
+	 * 将查出的子记录装填到父对象中
+	 */
+	private void fill(Object obj, List<IQueryableEntity> subs) {
 		for (ISelectProvider reff : refs) { // 根据配置装填到对象中去
 			AbstractRefField refield = (AbstractRefField) reff;
 
@@ -149,7 +241,7 @@ final class CascadeLoaderTask implements LazyLoadTask {
 		}
 		// 反相关系
 		if (reverse != null) {
-			reverse.process(bean.getWrapped(), subs);
+			reverse.process(obj, subs);
 		}
 	}
 
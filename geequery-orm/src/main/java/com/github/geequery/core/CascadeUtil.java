@@ -662,9 +662,7 @@ final class CascadeUtil {
 		if (list.size() > 1000 || lazy(entry.getValue())) {// 不对超过1000个元素进行一对多填充//必须使用延迟加载
 			markTask(task, list, session);
 		} else {
-			for (T obj : list) {
-				task.process(session, obj);
-			}
+			task.processBatch(session, list);
 		}
 	}
 
@@ -678,6 +676,7 @@ final class CascadeUtil {
 		}
 
 		LazyLoadProcessor processor = new LazyLoadProcessor(task, session);
+		processor.setSiblings(objs);
 		for (Object o : objs) {
 			DataObject dobj = (DataObject) o;
 			dobj.lazyload = new LazyLoadContext(processor);
@@ -15,6 +15,7 @@ named * JEF - Copyright 2009-2010 Jiyi (mr.jiyi@gmail.com)
  */
 package com.github.geequery.core;
 
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -39,6 +40,9 @@ import com.github.geequery.common.Callback;
 import com.github.geequery.common.log.LogUtil;
 import com.github.geequery.core.cache.Cache;
 import com.github.geequery.core.cache.CacheDummy;
+import com.github.geequery.core.cache.GlobalCache;
+import com.github.geequery.core.cache.InvalidationBus;
+import com.github.geequery.core.cache.TableVersions;
 import com.github.geequery.core.config.DbCfg;
 import com.github.geequery.core.config.ORMConfig;
 import com.github.geequery.core.support.DbOperatorListener;
@@ -94,6 +98,18 @@ public class DbClient extends Session implements SessionFactory {
 	 * 全局缓存
 	 */
 	private Cache golbalCache;
+	/**
+	 * 查询结果缓存，未启用时为null
+	 */
+	private GlobalCache resultCache;
+	/**
+	 * 各表的版本号，二级缓存和查询结果缓存据此判断数据是否过时
+	 */
+	private final TableVersions tableVersions = new TableVersions();
+	/**
+	 * 跨节点的缓存失效通知，未配置时为null
+	 */
+	private InvalidationBus invalidationBus;
 
 	/**
 	 * 启动一个事务。
@@ -251,6 +267,24 @@ public class DbClient extends Session implements SessionFactory {
 		return golbalCache;
 	}
 
+	/**
+	 * 得到查询结果缓存
+	 * 
+	 * @return 未启用时返回null
+	 */
+	GlobalCache getResultCache() {
+		return resultCache;
+	}
+
+	/**
+	 * 得到各表的版本号。执行了ORM无法感知的数据修改后，可以调用{@link TableVersions#update(String)}使相关缓存失效。
+	 * 
+	 * @return 表的版本号
+	 */
+	public TableVersions getTableVersions() {
+		return tableVersions;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -338,10 +372,24 @@ public class DbClient extends Session implements SessionFactory {
 
 		// 设置全局缓存
 		if (ORMConfig.getInstance().getCacheLevel2() > 0) {
-			this.golbalCache = new CacheImpl(preProcessor, selectp, ORMConfig.getInstance().getCacheLevel2(), "GLOBAL");
+			this.golbalCache = new GlobalCache(ORMConfig.getInstance().getCacheLevel2(), ORMConfig.getInstance().getCacheLevel2MaxWeight(), "GLOBAL", tableVersions);
 		} else {
 			this.golbalCache = CacheDummy.getInstance();
 		}
+		// 设置查询结果缓存
+		if (ORMConfig.getInstance().getResultCacheMaxWeight() > 0) {
+			this.resultCache = new GlobalCache(0, ORMConfig.getInstance().getResultCacheMaxWeight(), "RESULT", tableVersions);
+		}
+		// 跨节点的缓存失效通知
+		String transport = ORMConfig.getInstance().getCacheInvalidationTransport();
+		if (StringUtils.isNotEmpty(transport)) {
+			try {
+				this.invalidationBus = InvalidationBus.create(transport, tableVersions, ORMConfig.getInstance().getCacheInvalidationFlushInterval());
+				invalidationBus.start();
+			} catch (IOException e) {
+				throw new SQLException("Start cache invalidation bus on " + transport + " failed.", e);
+			}
+		}
 		// Named Query初始化
 		String queryTable = JefConfiguration.get(DbCfg.DB_QUERY_TABLE_NAME);
 		if (StringUtils.isNotEmpty(queryTable)) {
@@ -986,6 +1034,10 @@ public class DbClient extends Session implements SessionFactory {
 			LogUtil.exception(e);
 		}
 		this.sequenceManager.close();
+		if (invalidationBus != null) {
+			invalidationBus.close();
+			invalidationBus = null;
+		}
 		try {
 			connPool.close();
 			JefFacade.unregisteEmf((DbClient) this);
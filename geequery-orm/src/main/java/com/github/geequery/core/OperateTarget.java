@@ -7,10 +7,13 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
+import javax.sql.RowSetMetaData;
+
 import jef.database.DbFunction;
 import jef.database.DbMetaData;
 import jef.database.PagingIterator;
@@ -25,6 +28,8 @@ import jef.database.jdbc.result.ResultSetContainer;
 import jef.database.jdbc.result.ResultSetHolder;
 import jef.database.jdbc.result.ResultSetImpl;
 import jef.database.jdbc.result.ResultSetWrapper;
+import jef.database.jdbc.rowset.CachedRowSetImpl;
+import jef.database.jdbc.rowset.Row;
 import jef.database.jdbc.statement.ProcessablePreparedStatement;
 import jef.database.jdbc.statement.ProcessableStatement;
 import jef.database.jdbc.statement.ResultSetLaterProcess;
@@ -49,7 +54,12 @@ import jef.database.wrapper.variable.BindVariableContext;
 import com.github.geequery.common.log.LogUtil;
 import com.github.geequery.core.Session.PopulateStrategy;
 import com.github.geequery.core.Transaction.TransactionFlag;
+import com.github.geequery.core.cache.GlobalCache;
+import com.github.geequery.core.cache.SqlResultKey;
+import com.github.geequery.core.cache.TableVersions;
 import com.github.geequery.core.config.ORMConfig;
+import com.github.geequery.dialect.AbstractDelegatingDialect;
+import com.github.geequery.dialect.AbstractDialect;
 import com.github.geequery.dialect.DatabaseDialect;
 import com.github.geequery.dialect.type.AutoIncrementMapping;
 import com.github.geequery.tools.MathUtils;
@@ -123,6 +133,7 @@ public class OperateTarget implements SqlTemplate, JDBCTarget {
 		IConnection conn = getConnection(dbkey);
 		if (getProfile().isIOError(e)) {
 			LogUtil.warn("IO error on connection detected. closing current connection to refersh a new db connection.");
+			StatementCache.discard(conn);
 			conn.closePhysical();
 			if (session.getPool() instanceof IManagedConnectionPool) {
 				((IManagedConnectionPool) session.getPool()).notifyDbDisconnect();
@@ -150,6 +161,13 @@ public class OperateTarget implements SqlTemplate, JDBCTarget {
 	 * 准备执行SQL
 	 */
 	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		return profile.wrap(prepareCached(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, Statement.NO_GENERATED_KEYS), isJpaTx());
+	}
+
+	/*
+	 * 准备执行SQL，不放入语句缓存。用于每次都不相同、不会重复执行的语句
+	 */
+	public PreparedStatement prepareUncached(String sql) throws SQLException {
 		return profile.wrap(getConnection(dbkey).prepareStatement(sql), isJpaTx());
 	}
 
@@ -164,7 +182,7 @@ public class OperateTarget implements SqlTemplate, JDBCTarget {
 	 * 准备执行SQL，插入
 	 */
 	public PreparedStatement prepareStatement(String sql, int generateKeys) throws SQLException {
-		return profile.wrap(getConnection(dbkey).prepareStatement(sql, generateKeys), isJpaTx());
+		return profile.wrap(prepareCached(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, generateKeys), isJpaTx());
 	}
 
 	/*
@@ -181,7 +199,7 @@ public class OperateTarget implements SqlTemplate, JDBCTarget {
 		PreparedStatement st;
 		int rsType = (isUpdatable) ? ResultSet.TYPE_SCROLL_INSENSITIVE : ResultSet.TYPE_FORWARD_ONLY;
 		int rsUpdate = isUpdatable ? ResultSet.CONCUR_UPDATABLE : ResultSet.CONCUR_READ_ONLY;
-		st = getConnection(dbkey).prepareStatement(sql, rsType, rsUpdate);
+		st = prepareCached(sql, rsType, rsUpdate, Statement.NO_GENERATED_KEYS);
 		if (rslp != null) {
 			st = new ProcessablePreparedStatement(st, rslp);
 		}
@@ -195,6 +213,33 @@ public class OperateTarget implements SqlTemplate, JDBCTarget {
 		return profile.wrap(getConnection(dbkey).prepareStatement(sql, rsType, concurType, hold), isJpaTx());
 	}
 
+	/*
+	 * 从连接上的语句缓存中准备语句，未启用缓存时直接准备
+	 */
+	private PreparedStatement prepareCached(String sql, int rsType, int concurType, int generateKeys) throws SQLException {
+		IConnection conn = getConnection(dbkey);
+		int size = ORMConfig.getInstance().getStatementCacheSize();
+		if (size > 0 && isStatementCacheEnabled()) {
+			return StatementCache.get(conn, size).prepare(conn, dbkey, sql, rsType, concurType, generateKeys);
+		}
+		if (generateKeys == Statement.RETURN_GENERATED_KEYS) {
+			return conn.prepareStatement(sql, generateKeys);
+		} else if (rsType == ResultSet.TYPE_FORWARD_ONLY && concurType == ResultSet.CONCUR_READ_ONLY) {
+			return conn.prepareStatement(sql);
+		} else {
+			return conn.prepareStatement(sql, rsType, concurType);
+		}
+	}
+
+	private boolean isStatementCacheEnabled() {
+		if (profile instanceof AbstractDialect) {
+			return ((AbstractDialect) profile).isStatementCacheEnabled();
+		} else if (profile instanceof AbstractDelegatingDialect) {
+			return ((AbstractDelegatingDialect) profile).isStatementCacheEnabled();
+		}
+		return true;
+	}
+
 	public CallableStatement prepareCall(String sql) throws SQLException {
 		return getConnection(dbkey).prepareCall(sql);
 	}
@@ -271,6 +316,7 @@ public class OperateTarget implements SqlTemplate, JDBCTarget {
 			int[] result = st.executeBatch();
 			long dbAccess = System.currentTimeMillis();
 			int total = MathUtils.sum(result);
+			tablesUpdated(sql);
 
 			log.directLog(StringUtils.concat("Executed:", String.valueOf(total), "\t Time cost([DbAccess]:", String.valueOf(dbAccess - start), "ms) |",
 					getTransactionId()));
@@ -289,6 +335,32 @@ public class OperateTarget implements SqlTemplate, JDBCTarget {
 		}
 	}
 
+	/**
+	 * 执行更新语句后，更新被修改的表的版本号，使二级缓存和查询结果缓存中的相关记录失效
+	 * 
+	 * @param sql
+	 *            更新语句
+	 */
+	final void tablesUpdated(String sql) {
+		String[] tables = session.getNoTransactionSession().getTableVersions().executed(sql);
+		if (session instanceof Transaction) {
+			((Transaction) session).tablesUpdated(tables);
+		}
+	}
+
+	/**
+	 * 执行更新语句后，更新被修改的表的版本号
+	 * 
+	 * @param table
+	 *            表名
+	 */
+	final void tableUpdated(String table) {
+		session.getNoTransactionSession().getTableVersions().update(table);
+		if (session instanceof Transaction) {
+			((Transaction) session).tablesUpdated(new String[] { TableVersions.tableKey(table) });
+		}
+	}
+
 	public final UpdateReturn innerExecuteUpdate(String sql, List<Object> ps, GenerateKeyReturnOper keyOper) throws SQLException {
 		Object[] params = ps.toArray();
 
@@ -314,6 +386,7 @@ public class OperateTarget implements SqlTemplate, JDBCTarget {
 			keyOper.getGeneratedKey(result, st);
 			if (total > 0) {
 				session.checkCacheUpdate(sql, ps);
+				tablesUpdated(sql);
 			}
 		} catch (SQLException e) {
 			DbUtils.processError(e, sql, this);
@@ -449,9 +522,47 @@ public class OperateTarget implements SqlTemplate, JDBCTarget {
 	}
 
 	public final <T> List<T> selectBySql(String sql, Transformer transformer, PageLimit range, Object... params) throws SQLException {
+		return doSelectBySql(sql, new TransformerAdapter<T>(transformer, this), null, range, params);
+	}
+
+	public final <T> List<T> selectBySql(String sql, Transformer transformer, QueryOption option, PageLimit range, Object... params) throws SQLException {
+		int ttl = option == null ? 0 : option.getResultCacheTtl();
+		GlobalCache cache = ttl > 0 && isResultCacheable() ? session.getNoTransactionSession().getResultCache() : null;
+		SqlResultKey key = null;
+		if (cache != null && transformer.getMapper().isEmpty()) {
+			key = SqlResultKey.create(dbkey, sql, Arrays.asList(params), range == null ? null : new long[] { range.getOffset(), range.getLimit() },
+					Arrays.asList(transformer.getResultClazz(), Arrays.toString(transformer.getStrategy()), option.getMaxResult()));
+		}
+		if (key == null) {
+			return doSelectBySql(sql, new TransformerAdapter<T>(transformer, this), option, range, params);
+		}
+		List<?> cached = cache.load(key);
+		if (cached != null) {
+			// 每次命中都从缓存的行数据重新生成对象，调用者之间不共享可修改的实体
+			return populateResultSet(RowCachingAdapter.open(cached, getProfile()), null, transformer);
+		}
+		RowCachingAdapter<T> sqlTransformer = new RowCachingAdapter<T>(transformer, this);
+		List<T> list = doSelectBySql(sql, sqlTransformer, option, range, params);
+		cache.onLoad(key, sqlTransformer.rows, transformer.getResultClazz(), ttl);
+		return list;
+	}
+
+	/*
+	 * 只读事务和非事务状态下才使用查询结果缓存。事务中的修改在提交前对其他会话不可见，不能读写共享的缓存
+	 */
+	private boolean isResultCacheable() {
+		return !(session instanceof Transaction) || ((Transaction) session).isReadonly();
+	}
+
+	private <T> List<T> doSelectBySql(String sql, TransformerAdapter<T> sqlTransformer, QueryOption option, PageLimit range, Object... params) throws SQLException {
 		BindSql bs = range == null ? new BindSql(sql) : getProfile().getLimitHandler().toPageSQL(sql, range);
 		long start = System.currentTimeMillis();
-		TransformerAdapter<T> sqlTransformer = new TransformerAdapter<T>(transformer, this);
+		if (option != null) {
+			if (option.getMaxResult() > 0)
+				sqlTransformer.setMaxRows(option.getMaxResult());
+			if (QueryOption.isFetchSizeSet(option.getFetchSize()))
+				sqlTransformer.setFetchSize(option.getFetchSize());
+		}
 		List<T> list = innerSelectBySql(bs.getSql(), sqlTransformer, Arrays.asList(params), bs);
 		if (ORMConfig.getInstance().isDebugMode()) {
 			long dbAccess = sqlTransformer.dbAccess;
@@ -536,6 +647,47 @@ public class OperateTarget implements SqlTemplate, JDBCTarget {
 		}
 	}
 
+	/**
+	 * 查询结果缓存使用的转换器。先将结果集复制为内存中的行数据，再从行数据生成对象。
+	 * <p>
+	 * 缓存中保存的是行数据(第一个元素为结果集的元数据，其后为各行)，不是转换后的对象。行数据生成后不再修改，
+	 * 每次命中都由{@link #open(List, DatabaseDialect)}重新打开并生成新的对象。
+	 *
+	 * @param <T>
+	 */
+	static final class RowCachingAdapter<T> extends TransformerAdapter<T> {
+		List<Object> rows;
+
+		RowCachingAdapter(Transformer t, OperateTarget db) {
+			super(t, db);
+		}
+
+		@Override
+		public List<T> transformer(IResultSet rs) throws SQLException {
+			CachedRowSetImpl snapshot = new CachedRowSetImpl();
+			snapshot.populate(rs);
+			List<Row> data = snapshot.getRvh();
+			rows = new ArrayList<Object>(data.size() + 1);
+			rows.add(snapshot.getMetaData());
+			rows.addAll(data);
+			ResultSetImpl copy = new ResultSetImpl(snapshot, rs.getProfile());
+			copy.setFilters(rs.getFilters());
+			return super.transformer(copy);
+		}
+
+		/**
+		 * 在缓存的行数据上打开一个新的结果集
+		 */
+		@SuppressWarnings("unchecked")
+		static IResultSet open(List<?> cached, DatabaseDialect profile) throws SQLException {
+			CachedRowSetImpl rowset = new CachedRowSetImpl();
+			rowset.setMetaData((RowSetMetaData) cached.get(0));
+			rowset.setRvh((List<Row>) cached.subList(1, cached.size()));
+			rowset.refresh();
+			return new ResultSetImpl(rowset, profile);
+		}
+	}
+
 	public static class TransformerIteratrAdapter<T> extends AbstractResultSetTransformer<ResultIterator<T>> {
 		final Transformer transformers;
 		private OperateTarget db;
@@ -1,18 +1,30 @@
 package com.github.geequery.core;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+import jef.database.Field;
 import jef.database.PagingIterator;
-import jef.database.meta.AbstractRefField;
+import jef.database.jdbc.result.ResultSetContainer;
+import jef.database.meta.ITableMetadata;
 import jef.database.meta.Reference;
 import jef.database.query.ConditionQuery;
 import jef.database.query.JoinElement;
 import jef.database.query.Query;
+import jef.database.query.SqlContext;
 import jef.database.wrapper.clause.CountClause;
+import jef.database.wrapper.clause.OrderClause;
+import jef.database.wrapper.clause.QueryClauseImpl;
+import jef.database.wrapper.populator.ResultPopulatorImpl;
+import jef.database.wrapper.variable.Variable;
 
+import com.github.geequery.common.Entry;
+import com.github.geequery.dialect.DatabaseDialect;
+import com.github.geequery.dialect.type.ColumnMapping;
+import com.github.geequery.entity.AbstractRefField;
 import com.github.geequery.entity.IQueryableEntity;
 import com.github.geequery.tools.ArrayUtils;
 import com.github.geequery.tools.Assert;
@@ -22,6 +34,16 @@ import com.github.geequery.tools.PageLimit;
 final public class PagingIteratorObjImpl<T> extends PagingIterator<T> {
 	private ConditionQuery queryObj; // 1 使用API查询的情况
 	private Session db;
+	/**
+	 * 键集分页的排序键，为null时使用偏移量分页
+	 */
+	private ColumnMapping[] keys;
+	private boolean ascending;
+	/**
+	 * 上一页最后一条记录的排序键值
+	 */
+	private Object[] lastKey;
+	private boolean exhausted;
 
 	/**
 	 * 是否外连接获取
@@ -79,6 +101,198 @@ final public class PagingIteratorObjImpl<T> extends PagingIterator<T> {
 		page.setRowsPerPage(pageSize);
 	}
 
+	/**
+	 * 切换为键集(Seek)分页。
+	 * <p>
+	 * 偏移量分页每翻一页，数据库都要扫描并丢弃之前所有的记录，遍历大表时总开销和页数的平方成正比。
+	 * 键集分页记住上一页最后一条记录的排序键值，下一页的查询条件为 (k1,k2,...) &gt; (v1,v2,...)，每页只读取需要的记录。
+	 * <ul>
+	 * <li>排序键由参数指定，必须是本表的列。主键会作为最后的排序键加入，保证排序唯一；不指定时按主键排序。</li>
+	 * <li>排序由键集分页生成，查询本身不能再设置排序。每页的条件和排序只加在生成的SQL上，不修改传入的查询对象。</li>
+	 * <li>排序键的值不能为null。</li>
+	 * <li>只能顺序翻页，不支持{@link #setOffset(int)}、{@link #setCurrentPage(int)}、{@link #getRecordsInPage(int)}。</li>
+	 * <li>不会计算总数，除非调用{@link #getTotal()}等方法。</li>
+	 * <li>分库分表时，每个分片按相同的条件和排序查询，再归并排序后截取一页，与普通的排序分页查询相同。</li>
+	 * </ul>
+	 * 
+	 * @param keys
+	 *            排序键，按升序排列
+	 * @return PagingIterator对象本身
+	 * @throws UnsupportedOperationException
+	 *             查询不是单表查询，或者返回的不是实体对象
+	 * @throws IllegalArgumentException
+	 *             排序字段不是本表的列，或表没有主键
+	 * @throws IllegalStateException
+	 *             查询上已经设置了排序
+	 */
+	public PagingIteratorObjImpl<T> useKeyset(Field... keys) {
+		return useKeyset(true, keys);
+	}
+
+	/**
+	 * 切换为键集(Seek)分页，参见{@link #useKeyset(Field...)}
+	 * 
+	 * @param asc
+	 *            true按升序，false按降序。所有排序键(包括主键)使用相同的顺序
+	 * @param keys
+	 *            排序键
+	 * @return PagingIterator对象本身
+	 */
+	public PagingIteratorObjImpl<T> useKeyset(boolean asc, Field... keys) {
+		if (!(queryObj instanceof Query<?>)) {
+			throw new UnsupportedOperationException("Keyset paging only supports single table query.");
+		}
+		Query<?> q = (Query<?>) queryObj;
+		ITableMetadata meta = q.getMeta();
+		if (transformer.getResultClazz() != meta.getThisType()) {
+			throw new UnsupportedOperationException("Keyset paging requires the result type to be " + meta.getThisType().getName());
+		}
+		if (q.getOrderBy() != null && !q.getOrderBy().isEmpty()) {
+			throw new IllegalStateException("Keyset paging generates its own order, the query must not have an order by clause.");
+		}
+		List<ColumnMapping> columns = new ArrayList<ColumnMapping>();
+		for (Field key : keys) {
+			ColumnMapping column = meta.getColumnDef(key);
+			if (column == null) {
+				throw new IllegalArgumentException("The field " + key.name() + " is not a column of " + meta.getName() + ", can not be used as a keyset.");
+			}
+			columns.add(column);
+		}
+		List<ColumnMapping> pks = meta.getPKFields();
+		if (pks.isEmpty()) {
+			throw new IllegalArgumentException("The table " + meta.getName() + " has no primary key, keyset paging requires a unique order.");
+		}
+		for (ColumnMapping pk : pks) {
+			if (!columns.contains(pk)) {
+				columns.add(pk);
+			}
+		}
+		this.keys = columns.toArray(new ColumnMapping[columns.size()]);
+		this.ascending = asc;
+		this.lastKey = null;
+		this.exhausted = false;
+		return this;
+	}
+
+	/**
+	 * 是否使用键集分页
+	 * 
+	 * @return
+	 * @see #useKeyset(Field...)
+	 */
+	public boolean isKeyset() {
+		return keys != null;
+	}
+
+	@Override
+	public List<T> next() {
+		if (keys == null) {
+			return super.next();
+		}
+		try {
+			return doSeek();
+		} catch (SQLException e) {
+			throw DbUtils.toRuntimeException(e);
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (keys == null) {
+			return super.hasNext();
+		}
+		return !exhausted;
+	}
+
+	@Override
+	public PagingIterator<T> setOffset(int offset) {
+		assertNotKeyset();
+		return super.setOffset(offset);
+	}
+
+	@Override
+	public PagingIterator<T> setCurrentPage(int pageNum) {
+		assertNotKeyset();
+		return super.setCurrentPage(pageNum);
+	}
+
+	@Override
+	public List<T> getRecordsInPage(int pageNum) {
+		assertNotKeyset();
+		return super.getRecordsInPage(pageNum);
+	}
+
+	private void assertNotKeyset() {
+		if (keys != null) {
+			throw new UnsupportedOperationException("Keyset paging can only move forward page by page.");
+		}
+	}
+
+	/*
+	 * 以上一页最后一条记录的键值为起点，查询一页。条件和排序只加在本次生成的SQL上，查询对象保持不变
+	 */
+	@SuppressWarnings("rawtypes")
+	private List<T> doSeek() throws SQLException {
+		if (exhausted) {
+			return Collections.emptyList();
+		}
+		Query q = (Query) queryObj;
+		int rows = page.getRowsPerPage();
+		SqlContext context = q.prepare();
+		QueryClauseImpl clause = (QueryClauseImpl) q.toQuerySql(db.selectp, context, false);
+		clause.setPageRange(new PageLimit(0, rows));
+		DatabaseDialect profile = db.selectp.getProfile(clause.getTables());
+		if (lastKey != null) {
+			List<Variable> bind = new ArrayList<Variable>();
+			if (clause.getBind() != null) {
+				bind.addAll(clause.getBind());
+			}
+			String seek = SeekCondition.create(keys, lastKey, ascending, profile, bind);
+			String where = clause.getWherePart();
+			clause.setWherePart(where.length() == 0 ? " where " + seek : where + " and " + seek);
+			clause.setBind(bind);
+		}
+		clause.setOrderbyPart(createOrder(profile));
+
+		ResultSetContainer rs = new ResultSetContainer(false);
+		List<T> result;
+		try {
+			db.selectp.processSelect(clause, db, q, rs, QueryOption.createFrom(q), 0);
+			result = ResultPopulatorImpl.instance.toJavaObject(db, rs, context, transformer);
+		} finally {
+			rs.close();
+		}
+		if (result.size() < rows) {
+			exhausted = true;
+		}
+		if (!result.isEmpty()) {
+			Object last = result.get(result.size() - 1);
+			Object[] values = new Object[keys.length];
+			for (int i = 0; i < keys.length; i++) {
+				values[i] = keys[i].getFieldAccessor().get(last);
+			}
+			lastKey = values;
+		}
+		return result;
+	}
+
+	/*
+	 * 排序键依次排序。分库分表时结果集按同样的列归并
+	 */
+	private OrderClause createOrder(DatabaseDialect profile) {
+		List<Entry<String, Boolean>> asSelect = new ArrayList<Entry<String, Boolean>>(keys.length);
+		StringBuilder sb = new StringBuilder(" order by ");
+		for (int i = 0; i < keys.length; i++) {
+			String column = SeekCondition.columnOf(keys[i], profile);
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(column).append(ascending ? " ASC" : " DESC");
+			asSelect.add(new Entry<String, Boolean>(column, ascending));
+		}
+		return new OrderClause(sb.toString(), asSelect);
+	}
+
 	private long getTotal(ConditionQuery j) throws SQLException {
 		CountClause countResult = db.selectp.toCountSql(j);
 		return db.selectp.processCount(db, countResult);
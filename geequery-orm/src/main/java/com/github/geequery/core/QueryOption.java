@@ -37,6 +37,10 @@ public final class QueryOption implements Cloneable {
 	private int queryTimeout;
 	boolean holdResult;
 	boolean cacheResultset;
+	/**
+	 * 查询结果的缓存时间(秒)，0表示不缓存
+	 */
+	private int resultCacheTtl;
 	
 	private transient ResultSetContainer rs;
 	
@@ -81,7 +85,7 @@ public final class QueryOption implements Cloneable {
 		if(maxResult>0)
 			op.maxResult=maxResult;
 		int fetchSize=queryObj.getFetchSize();
-		if(fetchSize>0)
+		if(isFetchSizeSet(fetchSize))
 			op.fetchSize=fetchSize;
 		int queryTimeout=queryObj.getQueryTimeout();
 		if(queryTimeout>0)
@@ -134,12 +138,38 @@ public final class QueryOption implements Cloneable {
 		if (maxResult > 0)
 			psmt.setMaxRows(maxResult);
 		int fetchSize=this.fetchSize;
-		if (fetchSize > 0) {
+		if (isFetchSizeSet(fetchSize)) {
 			psmt.setFetchSize(fetchSize);
 		}
 		psmt.setQueryTimeout(queryTimeout);
 	}
 
+	/**
+	 * fetchSize是否需要设置到Statement上。除正数外，MySQL驱动以Integer.MIN_VALUE表示逐行流式读取，也需要传递给驱动
+	 * @param fetchSize
+	 * @return
+	 */
+	public static boolean isFetchSizeSet(int fetchSize) {
+		return fetchSize > 0 || fetchSize == Integer.MIN_VALUE;
+	}
+
+	public int getResultCacheTtl() {
+		return resultCacheTtl;
+	}
+
+	/**
+	 * 设置查询结果的缓存时间。需要全局启用查询结果缓存(cache.result.max.weight&gt;0)才有效。
+	 * <p>
+	 * 缓存的结果在其查询的表被本框架修改后立即失效；其他途径对数据库的修改无法感知，只能等待缓存时间过期。
+	 * 缓存中的对象为各次查询共享，不应修改。
+	 * 
+	 * @param resultCacheTtl
+	 *            缓存时间，单位秒，0表示不缓存
+	 */
+	public void setResultCacheTtl(int resultCacheTtl) {
+		this.resultCacheTtl = resultCacheTtl;
+	}
+
 	public Map<String, ResultSetAccessor> getMapper() {
 		return mapper;
 	}
@@ -0,0 +1,66 @@
+package com.github.geequery.core;
+
+import java.util.List;
+
+import jef.database.Condition.Operator;
+import jef.database.wrapper.variable.ConstantVariable;
+import jef.database.wrapper.variable.Variable;
+
+import com.github.geequery.dialect.DatabaseDialect;
+import com.github.geequery.dialect.type.ColumnMapping;
+
+/**
+ * 键集分页中定位下一页的条件。
+ * <p>
+ * 绑定变量带有排序键的列映射，日期、字符串、枚举等非数值的键按列的类型设置到语句中，和普通条件查询一致。
+ *
+ * @see PagingIteratorObjImpl#useKeyset(jef.database.Field...)
+ */
+final class SeekCondition {
+	private SeekCondition() {
+	}
+
+	/**
+	 * 排序键在查询语句中的列名
+	 */
+	static String columnOf(ColumnMapping key, DatabaseDialect profile) {
+		return "t.".concat(key.getColumnName(profile, true));
+	}
+
+	/**
+	 * (k1,k2,k3) &gt; (v1,v2,v3) 展开为 (k1&gt;? or (k1=? and k2&gt;?) or (k1=? and k2=? and k3&gt;?))，
+	 * 降序时使用小于。展开的形式所有数据库都支持，并且首个键上的条件可以使用索引
+	 *
+	 * @param keys
+	 *            排序键
+	 * @param lastKey
+	 *            上一页最后一条记录的排序键值
+	 * @param ascending
+	 *            是否升序
+	 * @param profile
+	 *            数据库方言
+	 * @param bind
+	 *            绑定变量，按条件中出现的顺序加入
+	 * @return 条件语句
+	 */
+	static String create(ColumnMapping[] keys, Object[] lastKey, boolean ascending, DatabaseDialect profile, List<Variable> bind) {
+		Operator op = ascending ? Operator.GREAT : Operator.LESS;
+		String opSql = ascending ? ">?" : "<?";
+		StringBuilder sb = new StringBuilder("(");
+		for (int i = 0; i < keys.length; i++) {
+			if (i > 0) {
+				sb.append(" or (");
+			}
+			for (int j = 0; j < i; j++) {
+				sb.append(columnOf(keys[j], profile)).append("=? and ");
+				bind.add(new ConstantVariable(keys[j].fieldName(), Operator.EQUALS, lastKey[j], keys[j]));
+			}
+			sb.append(columnOf(keys[i], profile)).append(opSql);
+			bind.add(new ConstantVariable(keys[i].fieldName(), op, lastKey[i], keys[i]));
+			if (i > 0) {
+				sb.append(')');
+			}
+		}
+		return sb.append(')').toString();
+	}
+}
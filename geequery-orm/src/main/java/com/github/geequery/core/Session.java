@@ -438,6 +438,22 @@ public interface Session extends JPQLQueryFactory{
 	 * @throws SQLException
 	 */
 	<T> void batchInsert(List<T> entities, Boolean group);
+
+	/**
+	 * 执行批量插入操作，分段提交。每绑定flushSize条数据即向数据库执行一次，避免超大批量的数据全部堆积在JDBC驱动中。
+	 * 
+	 * @param entities
+	 *            要插入的对象
+	 * @param group
+	 *            是否对传入的对象按所属表重新分组，参见{@link #batchInsert(List, Boolean)}
+	 * @param flushSize
+	 *            分段大小，0表示不分段
+	 * @param commitPerChunk
+	 *            在事务中时，每段执行后是否提交事务。开启后一旦某段出错，之前各段的数据已经提交，不会回滚。
+	 * @see Batch#setFlushSize(int)
+	 * @see Batch#setCommitPerChunk(boolean)
+	 */
+	<T> void batchInsert(List<T> entities, Boolean group, int flushSize, boolean commitPerChunk);
 	
 	/**
 	 * 获取QueryDSL的SqlQueryFactory对象
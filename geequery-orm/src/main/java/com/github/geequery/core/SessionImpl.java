@@ -1,10 +1,20 @@
 package com.github.geequery.core;
 
 import java.io.Serializable;
+import java.sql.SQLException;
 import java.util.List;
 
+import javax.persistence.PersistenceException;
+
+import jef.database.meta.ITableMetadata;
+import jef.database.meta.MetaHolder;
+import jef.database.routing.PartitionResult;
+import jef.database.wrapper.clause.InsertSqlClause;
+
 import com.github.geequery.core.cache.Cache;
+import com.github.geequery.core.config.ORMConfig;
 import com.github.geequery.dialect.DatabaseDialect;
+import com.github.geequery.entity.IQueryableEntity;
 import com.querydsl.core.Tuple;
 import com.querydsl.core.dml.DeleteClause;
 import com.querydsl.core.dml.UpdateClause;
@@ -16,6 +26,15 @@ import com.querydsl.jpa.JPQLQuery;
 import com.querydsl.sql.SQLQueryFactory;
 
 public class SessionImpl implements Session {
+	/**
+	 * 生成插入语句
+	 */
+	private final InsertProcessor insertp;
+
+	public SessionImpl(DbClient db) {
+		this.insertp = InsertProcessor.get(db.getProfile(null), db);
+	}
+
 	@Override
 	public DatabaseDialect getProfile(String datasourceName) {
 		// TODO Auto-generated method stub
@@ -180,8 +199,31 @@ public class SessionImpl implements Session {
 
 	@Override
 	public <T> void batchInsert(List<T> entities, Boolean group) {
-		// TODO Auto-generated method stub
-		
+		batchInsert(entities, group, ORMConfig.getInstance().getBatchFlushSize(), false);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T> void batchInsert(List<T> entities, Boolean group, int flushSize, boolean commitPerChunk) {
+		if (entities.isEmpty()) {
+			return;
+		}
+		IQueryableEntity template = (IQueryableEntity) entities.get(0);
+		ITableMetadata meta = MetaHolder.getMeta(template);
+		try {
+			PartitionResult pr = DbUtils.toTableName(template, null, null, null);
+			InsertSqlClause insertPart = insertp.toInsertSqlBatch(template, pr.getAsOneTable(), false, false, pr);
+			Batch.Insert<IQueryableEntity> batch = new Batch.Insert<IQueryableEntity>(this, meta);
+			batch.setInsertPart(insertPart);
+			if (group != null) {
+				batch.setGroupForPartitionTable(group);
+			}
+			batch.setFlushSize(flushSize);
+			batch.setCommitPerChunk(commitPerChunk);
+			batch.execute((List<IQueryableEntity>) entities);
+		} catch (SQLException e) {
+			throw new PersistenceException(e.getSQLState(), e);
+		}
 	}
 
 	@Override
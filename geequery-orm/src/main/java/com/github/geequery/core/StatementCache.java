@@ -0,0 +1,353 @@
+package com.github.geequery.core;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jef.database.innerpool.IConnection;
+import jef.database.jdbc.statement.DelegatingPreparedStatement;
+
+import com.github.geequery.common.log.LogUtil;
+
+/**
+ * 连接上的PreparedStatement缓存(LRU)。
+ * <p>
+ * ORM生成的SQL语句种类有限(按主键加载、插入、更新等)，同一语句在同一个连接上会被反复准备。缓存后，
+ * 调用者关闭语句时并不真正关闭，而是清除参数后放回缓存，下次准备相同的语句时直接复用。
+ * <p>
+ * 缓存按数据源、SQL语句、结果集类型、并发模式和是否返回自增键区分。同一个连接对象可以通过setKey()在多个数据源间切换，
+ * 因此数据源名称也是缓存键的一部分，不会将一个数据源上准备的语句用到另一个数据源上。一个语句同时只能借出一次，
+ * 借出期间再次准备相同的SQL时，会创建一个不缓存的新语句。
+ * <p>
+ * 缓存的语句引用着连接，因此不能用弱引用的Map按连接存放(值引用键，永远不会被回收)。连接物理关闭时由{@link #discard(IConnection)}
+ * 清除，另外每获取一定次数会清理一次已经关闭的连接上的缓存。
+ *
+ * @author jiyi
+ * @see com.github.geequery.core.config.ORMConfig#getStatementCacheSize()
+ */
+public final class StatementCache {
+	private static final Map<IConnection, StatementCache> CACHES = new IdentityHashMap<IConnection, StatementCache>();
+	/**
+	 * 每获取这么多次缓存，清理一次已关闭连接上的缓存
+	 */
+	private static final int PURGE_INTERVAL = 256;
+	private static int purgeCounter;
+
+	private static final AtomicLong TOTAL_HITS = new AtomicLong();
+	private static final AtomicLong TOTAL_MISSES = new AtomicLong();
+	private static final AtomicLong TOTAL_EVICTIONS = new AtomicLong();
+
+	private final Map<Key, CachedStatement> statements;
+	private final int capacity;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	private StatementCache(int capacity) {
+		this.capacity = capacity;
+		this.statements = new LinkedHashMap<Key, CachedStatement>(capacity * 4 / 3 + 1, 0.75f, true);
+	}
+
+	/**
+	 * 获得连接上的语句缓存，没有时创建
+	 *
+	 * @param conn
+	 *            连接
+	 * @param capacity
+	 *            缓存的语句个数
+	 * @return
+	 */
+	static StatementCache get(IConnection conn, int capacity) {
+		StatementCache cache;
+		StatementCache old = null;
+		synchronized (CACHES) {
+			if (++purgeCounter >= PURGE_INTERVAL) {
+				purgeCounter = 0;
+				purgeClosed0();
+			}
+			cache = CACHES.get(conn);
+			if (cache == null || cache.capacity != capacity) {
+				old = cache;
+				cache = new StatementCache(capacity);
+				CACHES.put(conn, cache);
+			}
+		}
+		if (old != null) {
+			old.clear();
+		}
+		return cache;
+	}
+
+	/**
+	 * 丢弃连接上缓存的语句。连接将被物理关闭时调用
+	 *
+	 * @param conn
+	 */
+	static void discard(IConnection conn) {
+		StatementCache cache;
+		synchronized (CACHES) {
+			cache = CACHES.remove(conn);
+		}
+		if (cache != null) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * 清除已经关闭的连接上的缓存
+	 */
+	static void purgeClosed() {
+		synchronized (CACHES) {
+			purgeClosed0();
+		}
+	}
+
+	private static void purgeClosed0() {
+		for (Iterator<Map.Entry<IConnection, StatementCache>> iter = CACHES.entrySet().iterator(); iter.hasNext();) {
+			Map.Entry<IConnection, StatementCache> e = iter.next();
+			boolean closed;
+			try {
+				closed = e.getKey().isClosed();
+			} catch (SQLException ex) {
+				closed = true;
+			}
+			if (closed) {
+				StatementCache cache = e.getValue();
+				iter.remove();
+				cache.clear();
+			}
+		}
+	}
+
+	/**
+	 * 当前有语句缓存的连接数
+	 *
+	 * @return
+	 */
+	static int connectionCount() {
+		synchronized (CACHES) {
+			return CACHES.size();
+		}
+	}
+
+	/**
+	 * 准备语句，优先使用缓存中的语句
+	 *
+	 * @param conn
+	 *            连接
+	 * @param dbkey
+	 *            连接当前所指向的数据源
+	 * @param sql
+	 *            SQL语句
+	 * @param rsType
+	 *            结果集类型
+	 * @param concurType
+	 *            结果集并发模式
+	 * @param autoGeneratedKeys
+	 *            {@link Statement#RETURN_GENERATED_KEYS}或{@link Statement#NO_GENERATED_KEYS}
+	 * @return
+	 * @throws SQLException
+	 */
+	synchronized PreparedStatement prepare(Connection conn, String dbkey, String sql, int rsType, int concurType, int autoGeneratedKeys) throws SQLException {
+		Key key = new Key(dbkey, sql, rsType, concurType, autoGeneratedKeys);
+		CachedStatement st = statements.get(key);
+		if (st != null) {
+			if (st.inUse) {
+				// 同一语句嵌套使用，如遍历结果集时又执行了相同的查询
+				misses++;
+				TOTAL_MISSES.incrementAndGet();
+				return create(conn, key);
+			}
+			if (!st.delegate.isClosed()) {
+				st.inUse = true;
+				hits++;
+				TOTAL_HITS.incrementAndGet();
+				return st;
+			}
+			statements.remove(key);
+		}
+		misses++;
+		TOTAL_MISSES.incrementAndGet();
+		st = new CachedStatement(this, key, create(conn, key));
+		st.inUse = true;
+		statements.put(key, st);
+		evict();
+		return st;
+	}
+
+	private static PreparedStatement create(Connection conn, Key key) throws SQLException {
+		if (key.autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS) {
+			return conn.prepareStatement(key.sql, Statement.RETURN_GENERATED_KEYS);
+		} else if (key.rsType == ResultSet.TYPE_FORWARD_ONLY && key.concurType == ResultSet.CONCUR_READ_ONLY) {
+			return conn.prepareStatement(key.sql);
+		} else {
+			return conn.prepareStatement(key.sql, key.rsType, key.concurType);
+		}
+	}
+
+	/*
+	 * 淘汰最久未使用的语句，借出中的语句在归还时再关闭
+	 */
+	private void evict() {
+		for (Iterator<CachedStatement> iter = statements.values().iterator(); iter.hasNext() && statements.size() > capacity;) {
+			CachedStatement st = iter.next();
+			iter.remove();
+			evictions++;
+			TOTAL_EVICTIONS.incrementAndGet();
+			if (!st.inUse) {
+				st.closePhysical();
+			}
+		}
+	}
+
+	/*
+	 * 语句归还。已经被淘汰的语句直接关闭
+	 */
+	synchronized void release(CachedStatement st) {
+		st.inUse = false;
+		if (statements.get(st.key) != st) {
+			st.closePhysical();
+			return;
+		}
+		try {
+			st.reset();
+		} catch (SQLException e) {
+			statements.remove(st.key);
+			st.closePhysical();
+		}
+	}
+
+	/**
+	 * 关闭所有缓存的语句
+	 */
+	public synchronized void clear() {
+		for (CachedStatement st : statements.values()) {
+			if (!st.inUse) {
+				st.closePhysical();
+			}
+		}
+		statements.clear();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized int size() {
+		return statements.size();
+	}
+
+	/**
+	 * 所有连接上的缓存统计合计
+	 *
+	 * @return
+	 */
+	public static String getStatistics() {
+		long hit = TOTAL_HITS.get();
+		long miss = TOTAL_MISSES.get();
+		long total = hit + miss;
+		return "hits:" + hit + ", misses:" + miss + ", evictions:" + TOTAL_EVICTIONS.get() + ", hit ratio:" + (total == 0 ? 0 : hit * 100 / total) + "%";
+	}
+
+	static final class Key {
+		private final String dbkey;
+		private final String sql;
+		private final int rsType;
+		private final int concurType;
+		private final int autoGeneratedKeys;
+		private final int hash;
+
+		Key(String dbkey, String sql, int rsType, int concurType, int autoGeneratedKeys) {
+			this.dbkey = dbkey;
+			this.sql = sql;
+			this.rsType = rsType;
+			this.concurType = concurType;
+			this.autoGeneratedKeys = autoGeneratedKeys;
+			this.hash = (((sql.hashCode() * 31 + (dbkey == null ? 0 : dbkey.hashCode())) * 31 + rsType) * 31 + concurType) * 31 + autoGeneratedKeys;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key o = (Key) obj;
+			return hash == o.hash && rsType == o.rsType && concurType == o.concurType && autoGeneratedKeys == o.autoGeneratedKeys && sql.equals(o.sql) && (dbkey == null ? o.dbkey == null : dbkey.equals(o.dbkey));
+		}
+	}
+
+	/**
+	 * 缓存中的语句，关闭时归还到缓存
+	 */
+	static final class CachedStatement extends DelegatingPreparedStatement {
+		private final StatementCache cache;
+		private final Key key;
+		private final PreparedStatement delegate;
+		private final int fetchSize;
+		private boolean inUse;
+
+		CachedStatement(StatementCache cache, Key key, PreparedStatement s) throws SQLException {
+			super(s);
+			this.cache = cache;
+			this.key = key;
+			this.delegate = s;
+			this.fetchSize = s.getFetchSize();
+		}
+
+		/*
+		 * 恢复为新创建时的状态
+		 */
+		void reset() throws SQLException {
+			ResultSet rs = delegate.getResultSet();
+			if (rs != null) {
+				rs.close();
+			}
+			delegate.clearParameters();
+			delegate.clearBatch();
+			delegate.clearWarnings();
+			delegate.setMaxRows(0);
+			delegate.setQueryTimeout(0);
+			delegate.setFetchSize(fetchSize);
+		}
+
+		void closePhysical() {
+			try {
+				delegate.close();
+			} catch (SQLException e) {
+				LogUtil.warn("Error while closing cached statement: {}", e.getMessage());
+			}
+		}
+
+		@Override
+		public void close() throws SQLException {
+			if (inUse) {
+				cache.release(this);
+			}
+		}
+
+		@Override
+		public boolean isClosed() throws SQLException {
+			return !inUse || delegate.isClosed();
+		}
+	}
+}
@@ -18,6 +18,8 @@ package com.github.geequery.core;
 import java.sql.SQLException;
 import java.sql.Savepoint;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 
 import javax.persistence.PersistenceException;
 
@@ -32,6 +34,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.geequery.core.cache.Cache;
+import com.github.geequery.core.cache.TableVersions;
 import com.github.geequery.dialect.DatabaseDialect;
 import com.github.geequery.tools.StringUtils;
 
@@ -82,6 +85,50 @@ public abstract class Transaction extends Session implements TransactionalSessio
 	protected DbClient parent;
 	protected volatile IConnection conn;
 	protected Cache cache;
+	/**
+	 * 事务中修改过的表。事务提交前其他会话读到的仍是旧数据，可能被重新放入缓存，因此提交后要再次更新这些表的版本号
+	 */
+	private Set<String> updatedTables;
+	private boolean updatedAll;
+
+	/**
+	 * 记录事务中修改过的表
+	 * 
+	 * @param tables
+	 *            表名，null表示无法确定
+	 */
+	void tablesUpdated(String[] tables) {
+		if (tables == null) {
+			updatedAll = true;
+		} else if (!updatedAll) {
+			if (updatedTables == null)
+				updatedTables = new HashSet<String>();
+			for (String table : tables) {
+				updatedTables.add(table);
+			}
+		}
+	}
+
+	/**
+	 * 事务结束后调用，再次更新修改过的表的版本号。回滚时同样更新，事务期间放入缓存的记录可能包含已回滚的数据
+	 * 
+	 * @param commited
+	 *            是否已提交
+	 */
+	protected void afterTableUpdated(boolean commited) {
+		if (parent != null) {
+			TableVersions versions = parent.getTableVersions();
+			if (updatedAll) {
+				versions.updateAll();
+			} else if (updatedTables != null) {
+				for (String table : updatedTables) {
+					versions.update(table);
+				}
+			}
+		}
+		updatedAll = false;
+		updatedTables = null;
+	}
 
 	@Override
 	public String toString() {
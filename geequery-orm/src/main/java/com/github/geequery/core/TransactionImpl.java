@@ -7,6 +7,7 @@ import javax.persistence.PersistenceException;
 import com.github.geequery.common.log.LogUtil;
 import com.github.geequery.core.cache.CacheChain;
 import com.github.geequery.core.cache.CacheImpl;
+import com.github.geequery.core.cache.SharedCacheView;
 import com.github.geequery.core.config.ORMConfig;
 
 import jef.database.innerpool.IConnection;
@@ -39,6 +40,11 @@ public class TransactionImpl extends Transaction {
 	 */
 	private boolean readOnly;
 
+	/**
+	 * 事务中看到的二级缓存，没有二级缓存时为null
+	 */
+	private SharedCacheView sharedCache;
+
 	/**
 	 * jef在执行以下两类操作时，会强制要求在一个事务中执行： <li>Batch 批操作</li> <li>Cascade 级联操作</li>
 	 * jef会检查要执行的操作是否已经在一个事务上执行，如果此时用户没有开启事务。
@@ -53,6 +59,8 @@ public class TransactionImpl extends Transaction {
 		if (this.readOnly == flag)
 			return;
 		readOnly = flag;
+		if (sharedCache != null)
+			sharedCache.setReadonly(flag);
 		if (conn != null)
 			try {
 				conn.setReadOnly(flag);
@@ -125,15 +133,19 @@ public class TransactionImpl extends Transaction {
 		this.insertp = parent.insertp;
 		this.updatep = parent.updatep;
 		this.deletep = parent.deletep;
+		if (!parent.getCache().isDummy()) {
+			// 读写事务不读写二级缓存，避免未提交的数据被其他会话读到
+			sharedCache = new SharedCacheView(parent.getCache(), readOnly);
+		}
 		if (noCache || !ORMConfig.getInstance().isCacheLevel1()) {
 			// 没有自己的缓存
-			cache = parent.getCache();
-		} else if (parent.getCache().isDummy()) {
+			cache = sharedCache == null ? parent.getCache() : sharedCache;
+		} else if (sharedCache == null) {
 			// 自己有缓存，上级无缓存
 			cache = new CacheImpl(preProcessor, selectp, 0, "L1");
 		} else {
 			// 两级缓存都启用的情况下
-			cache = new CacheChain(new CacheImpl(preProcessor, selectp, 0, "L1"), parent.getCache());
+			cache = new CacheChain(new CacheImpl(preProcessor, selectp, 0, "L1"), sharedCache);
 		}
 		getListener().newTransaction(this);
 		if (timeout > 0) {
@@ -221,6 +233,7 @@ public class TransactionImpl extends Transaction {
 			long start = System.currentTimeMillis();
 			conn.rollback();
 			dirty = false;
+			afterTableUpdated(false);
 			log.debug("[JPA DEBUG]:Transaction {} rollback. cost {}ms.", this, (System.currentTimeMillis() - start));
 			getListener().postRollback(this);
 		}
@@ -232,6 +245,7 @@ public class TransactionImpl extends Transaction {
 			long start = System.currentTimeMillis();
 			conn.commit();
 			dirty = false;
+			afterTableUpdated(true);
 			log.debug("[JPA DEBUG]:Transaction {} commited. cost {}ms.", this, System.currentTimeMillis() - start);
 			getListener().postCommit(this);
 		}
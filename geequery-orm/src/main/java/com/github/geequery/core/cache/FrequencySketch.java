@@ -0,0 +1,128 @@
+package com.github.geequery.core.cache;
+
+/**
+ * 访问频率的估算器(Count-Min Sketch)，用于W-TinyLFU的准入判断。
+ * <p>
+ * 每个计数器4位，一个long存放16个计数器，每个元素在4行中各占一个计数器，取最小值作为频率。
+ * 累计增加的次数达到容量的10倍后，所有计数器减半，使过去的热点逐渐冷却。
+ * <p>
+ * 计数表的大小随缓存的元素个数增长({@link #ensureCapacity(long)})，增长时已有的计数清零。
+ * <p>
+ * 非线程安全，由调用者加锁。
+ *
+ * @author jiyi
+ *
+ */
+final class FrequencySketch {
+	private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+	private static final long RESET_MASK = 0x7777777777777777L;
+	private static final long ONE_MASK = 0x1111111111111111L;
+	/**
+	 * 计数表的最大长度(512K字节)
+	 */
+	private static final int MAX_TABLE = 1 << 16;
+
+	private long[] table;
+	private int tableMask;
+	private int sampleSize;
+	private int size;
+
+	/**
+	 * 构造
+	 *
+	 * @param maximumSize
+	 *            缓存的元素个数(估计值)
+	 */
+	FrequencySketch(long maximumSize) {
+		ensureCapacity(maximumSize);
+	}
+
+	/**
+	 * 缓存的元素个数增加时扩大计数表
+	 *
+	 * @param maximumSize
+	 *            缓存的元素个数
+	 */
+	void ensureCapacity(long maximumSize) {
+		int max = (int) Math.min(Math.max(maximumSize, 16), MAX_TABLE);
+		if (table != null && table.length >= max) {
+			return;
+		}
+		int length = Integer.highestOneBit(max - 1) << 1;
+		this.table = new long[length];
+		this.tableMask = length - 1;
+		this.sampleSize = 10 * max;
+		this.size = 0;
+	}
+
+	/**
+	 * @return 计数表的长度
+	 */
+	int capacity() {
+		return table.length;
+	}
+
+	/**
+	 * 返回元素的估算频率，最大15
+	 */
+	int frequency(Object e) {
+		int hash = spread(e.hashCode());
+		int start = (hash & 3) << 2;
+		int freq = Integer.MAX_VALUE;
+		for (int i = 0; i < 4; i++) {
+			int index = indexOf(hash, i);
+			int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+			freq = Math.min(freq, count);
+		}
+		return freq;
+	}
+
+	/**
+	 * 记录一次访问
+	 */
+	void increment(Object e) {
+		int hash = spread(e.hashCode());
+		int start = (hash & 3) << 2;
+		boolean added = false;
+		for (int i = 0; i < 4; i++) {
+			added |= incrementAt(indexOf(hash, i), start + i);
+		}
+		if (added && ++size >= sampleSize) {
+			reset();
+		}
+	}
+
+	private boolean incrementAt(int i, int j) {
+		int offset = j << 2;
+		long mask = 0xfL << offset;
+		if ((table[i] & mask) != mask) {
+			table[i] += 1L << offset;
+			return true;
+		}
+		return false;
+	}
+
+	/*
+	 * 所有计数器减半
+	 */
+	private void reset() {
+		int count = 0;
+		for (int i = 0; i < table.length; i++) {
+			count += Long.bitCount(table[i] & ONE_MASK);
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		}
+		size = (size >>> 1) - (count >>> 2);
+	}
+
+	private int indexOf(int item, int i) {
+		long hash = (item + SEEDS[i]) * SEEDS[i];
+		hash += hash >>> 32;
+		return ((int) hash) & tableMask;
+	}
+
+	private static int spread(int x) {
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		return (x >>> 16) ^ x;
+	}
+}
@@ -0,0 +1,550 @@
+package com.github.geequery.core.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.geequery.core.config.ORMConfig;
+import com.github.geequery.entity.IQueryableEntity;
+import com.github.geequery.entity.MetaHolder;
+import com.github.geequery.jsqlparser.expression.Table;
+import com.github.geequery.jsqlparser.statement.delete.Delete;
+import com.github.geequery.jsqlparser.statement.insert.Insert;
+import com.github.geequery.jsqlparser.statement.truncate.Truncate;
+import com.github.geequery.jsqlparser.statement.update.Update;
+import com.github.geequery.jsqlparser.visitor.FromItem;
+
+/**
+ * 进程内共享的二级缓存(Level 2 Cache)。
+ * <p>
+ * <h3>容量与淘汰</h3> 容量按缓存结果的估算大小(行数×列数)计算，采用W-TinyLFU策略：
+ * 新的结果先进入占容量1%的窗口区(LRU)，从窗口区淘汰出来时，和主区中最久未使用的记录比较访问频率，频率高的留下。
+ * 主区分为试用区和保护区(占主区的80%)，在试用区中再次命中的记录进入保护区。
+ * 只访问一次的大量查询因此不会把经常访问的数据挤出缓存。
+ * <p>
+ * <h3>失效</h3> 每张表有一个版本号({@link TableVersions})，缓存记录保存查询时涉及的各表的版本号。
+ * 通过ORM执行的插入、更新、删除操作只需要将表的版本号加一，该表的所有缓存记录即失效，不需要解析SQL语句。
+ * 直接执行的SQL语句(process方法)同样按表失效。失效的记录在下次访问时或被淘汰时移除。
+ * <p>
+ * 查询和更新并发时：版本号在缓存未命中时({@link #load(CacheKey)})记录，
+ * 如果在查询数据库期间表被更新，存入的记录已经过时，不会被存入缓存。
+ * <p>
+ * 读操作不加锁。命中时对淘汰队列的调整使用tryLock，竞争激烈时跳过这次调整，只影响淘汰的精确程度。
+ *
+ * @author jiyi
+ *
+ */
+@SuppressWarnings("rawtypes")
+public final class GlobalCache implements Cache {
+	private static final Logger logger = LoggerFactory.getLogger(GlobalCache.class);
+
+	private static final int WINDOW = 0;
+	private static final int PROBATION = 1;
+	private static final int PROTECTED = 2;
+	/**
+	 * 未命中后等待存入的记录数上限。达到上限时清理已过时或超时的记录，仍然达到上限时不再记录新的未命中(只会少缓存一些结果)
+	 */
+	private static final int MAX_PENDING = 10000;
+	/**
+	 * 未命中后超过这个时间仍未存入的记录视为查询已失败，单位毫秒
+	 */
+	private static final long PENDING_TIMEOUT = 10 * 60 * 1000L;
+	/**
+	 * 两次清理等待存入的记录之间的最小间隔，单位毫秒
+	 */
+	private static final long PURGE_INTERVAL = 1000L;
+	/**
+	 * 频率估算器的初始大小，之后随缓存的记录数增长
+	 */
+	private static final int INITIAL_SKETCH = 256;
+
+	private final ORMConfig config = ORMConfig.getInstance();
+	private final String name;
+	/**
+	 * 缓存失效周期，单位毫秒，0表示不过期
+	 */
+	private final long expireMillis;
+	private final long maxWeight;
+	private final long windowMax;
+	private final long mainMax;
+	private final long protectedMax;
+
+	private final ConcurrentMap<CacheKey, Node> data = new ConcurrentHashMap<CacheKey, Node>();
+	private final TableVersions versions;
+	/**
+	 * 未命中时记录的版本号，存入时使用。同一个键多次未命中时保留最早的记录：
+	 * 先开始的查询可能读到之后被修改的数据，存入时必须以最早的版本号判断结果是否过时
+	 */
+	private final ConcurrentMap<CacheKey, Stamp> pending = new ConcurrentHashMap<CacheKey, Stamp>();
+	private volatile long lastPurge;
+	private final AtomicLong rejected = new AtomicLong();
+
+	/*
+	 * 以下字段只在持有锁时访问
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+	private final FrequencySketch sketch;
+	private final Node window = new Node();
+	private final Node probation = new Node();
+	private final Node protectedQueue = new Node();
+	private long windowWeight;
+	private long mainWeight;
+	private long protectedWeight;
+
+	private final AtomicLong hit = new AtomicLong();
+	private final AtomicLong miss = new AtomicLong();
+
+	/**
+	 * 构造
+	 *
+	 * @param expireInterval
+	 *            缓存失效周期，单位秒，0表示不过期
+	 * @param maxWeight
+	 *            容量，按行数×列数计算
+	 * @param name
+	 *            缓存名称
+	 * @param versions
+	 *            表的版本号
+	 */
+	public GlobalCache(int expireInterval, long maxWeight, String name, TableVersions versions) {
+		this.name = name;
+		this.versions = versions;
+		this.expireMillis = expireInterval > 0 ? expireInterval * 1000L : 0;
+		this.maxWeight = Math.max(maxWeight, 100);
+		this.windowMax = Math.max(1, this.maxWeight / 100);
+		this.mainMax = this.maxWeight - windowMax;
+		this.protectedMax = mainMax * 8 / 10;
+		this.sketch = new FrequencySketch(INITIAL_SKETCH);
+	}
+
+	public List load(CacheKey key) {
+		if (key == null)
+			return null;
+		Node node = data.get(key);
+		if (node != null && !isValid(node)) {
+			remove(node);
+			node = null;
+		}
+		onAccess(key, node);
+		if (node == null) {
+			if (pending.size() < MAX_PENDING || purgePending()) {
+				pending.putIfAbsent(key, stamp(key));
+			} else if (rejected.getAndIncrement() == 0) {
+				logger.warn("{}-Cache has {} queries waiting to be stored, new results will not be cached until they complete.", name, pending.size());
+			}
+			miss.incrementAndGet();
+			if (config.cacheDebug)
+				logger.info("{}-Cache  Miss: {}", name, key);
+			return null;
+		}
+		hit.incrementAndGet();
+		if (config.cacheDebug)
+			logger.info("{}-Cache   Hit: {}", name, key);
+		return node.value;
+	}
+
+	public <T> void onLoad(CacheKey key, List<T> result, Class<T> clz) {
+		store(key, result, clz, expireMillis);
+	}
+
+	/**
+	 * 将结果放入缓存，并指定失效周期
+	 *
+	 * @param key
+	 *            Key of cache.
+	 * @param result
+	 *            value of cache
+	 * @param clz
+	 *            结果的类型，用于估算大小
+	 * @param expireSeconds
+	 *            失效周期，单位秒，0表示不过期
+	 */
+	public void onLoad(CacheKey key, List<?> result, Class<?> clz, int expireSeconds) {
+		store(key, result, clz, expireSeconds > 0 ? expireSeconds * 1000L : 0);
+	}
+
+	private void store(CacheKey key, List<?> result, Class<?> clz, long expireMillis) {
+		if (key == null || result == null)
+			return;
+		Stamp stamp = pending.remove(key);
+		// 没有经过load，或者查询期间表已被修改
+		if (stamp == null || !isCurrent(stamp))
+			return;
+		long weight = weigh(result, clz);
+		if (weight > mainMax)
+			return;
+		Node node = new Node(key, Collections.unmodifiableList(new ArrayList<Object>(result)), stamp, weight,
+				expireMillis > 0 ? System.currentTimeMillis() + expireMillis : 0);
+		lock.lock();
+		try {
+			Node old = data.put(key, node);
+			if (old != null) {
+				unlink(old);
+			}
+			link(window, node, WINDOW);
+			// 频率估算器按记录数(而不是容量)计算大小
+			sketch.ensureCapacity(data.size());
+			while (windowWeight > windowMax) {
+				Node candidate = window.next;
+				unlink(candidate);
+				admit(candidate);
+			}
+		} finally {
+			lock.unlock();
+		}
+		if (config.cacheDebug)
+			logger.info("{}-Cache Store:{}, Size={}", name, key, result.size());
+	}
+
+	/*
+	 * 清理已过时或超时的等待记录，返回清理后是否还有空位
+	 */
+	private boolean purgePending() {
+		long now = System.currentTimeMillis();
+		if (now - lastPurge < PURGE_INTERVAL) {
+			return false;
+		}
+		lastPurge = now;
+		for (Map.Entry<CacheKey, Stamp> e : pending.entrySet()) {
+			Stamp stamp = e.getValue();
+			if (now - stamp.time > PENDING_TIMEOUT || !isCurrent(stamp)) {
+				pending.remove(e.getKey(), stamp);
+			}
+		}
+		if (pending.size() < MAX_PENDING) {
+			rejected.set(0);
+			return true;
+		}
+		return false;
+	}
+
+	/*
+	 * 窗口区淘汰出的记录进入主区。主区已满时和最久未使用的记录比较频率，频率低者被淘汰
+	 */
+	private void admit(Node candidate) {
+		int freq = sketch.frequency(candidate.key);
+		while (mainWeight + candidate.weight > mainMax) {
+			Node victim = probation.next != probation ? probation.next : protectedQueue.next;
+			if (victim == protectedQueue) {
+				break;
+			}
+			if (freq > sketch.frequency(victim.key)) {
+				unlink(victim);
+				data.remove(victim.key, victim);
+			} else {
+				data.remove(candidate.key, candidate);
+				return;
+			}
+		}
+		link(probation, candidate, PROBATION);
+	}
+
+	/*
+	 * 记录访问频率，并调整命中记录在队列中的位置
+	 */
+	private void onAccess(CacheKey key, Node node) {
+		if (!lock.tryLock()) {
+			return;
+		}
+		try {
+			sketch.increment(key);
+			if (node == null || node.queue < 0) {
+				return;
+			}
+			switch (node.queue) {
+			case PROBATION:
+				unlink(node);
+				link(protectedQueue, node, PROTECTED);
+				while (protectedWeight > protectedMax) {
+					Node demoted = protectedQueue.next;
+					unlink(demoted);
+					link(probation, demoted, PROBATION);
+				}
+				break;
+			default:
+				Node head = node.queue == WINDOW ? window : protectedQueue;
+				int queue = node.queue;
+				unlink(node);
+				link(head, node, queue);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void remove(Node node) {
+		lock.lock();
+		try {
+			if (data.remove(node.key, node)) {
+				unlink(node);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/*
+	 * 加到队列尾部(最近使用)
+	 */
+	private void link(Node head, Node node, int queue) {
+		node.prev = head.prev;
+		node.next = head;
+		head.prev.next = node;
+		head.prev = node;
+		node.queue = queue;
+		if (queue == WINDOW) {
+			windowWeight += node.weight;
+		} else {
+			mainWeight += node.weight;
+			if (queue == PROTECTED) {
+				protectedWeight += node.weight;
+			}
+		}
+	}
+
+	private void unlink(Node node) {
+		if (node.queue < 0) {
+			return;
+		}
+		node.prev.next = node.next;
+		node.next.prev = node.prev;
+		node.prev = null;
+		node.next = null;
+		if (node.queue == WINDOW) {
+			windowWeight -= node.weight;
+		} else {
+			mainWeight -= node.weight;
+			if (node.queue == PROTECTED) {
+				protectedWeight -= node.weight;
+			}
+		}
+		node.queue = -1;
+	}
+
+	/*
+	 * 估算结果的大小：行数×(列数+1)
+	 */
+	private long weigh(List<?> result, Class<?> clz) {
+		int columns = 1;
+		if (clz != null && IQueryableEntity.class.isAssignableFrom(clz)) {
+			columns = MetaHolder.getMeta(clz).getColumns().size();
+		}
+		return Math.max(1L, (long) result.size() * (columns + 1));
+	}
+
+	private boolean isValid(Node node) {
+		if (node.expireAt > 0 && System.currentTimeMillis() > node.expireAt) {
+			return false;
+		}
+		return isCurrent(node.stamp);
+	}
+
+	private boolean isCurrent(Stamp stamp) {
+		return versions.isCurrent(stamp.tables, stamp.versions);
+	}
+
+	private Stamp stamp(CacheKey key) {
+		List<String> affected = key.getAffectedKey();
+		String[] tables;
+		if (affected == null || affected.isEmpty()) {
+			tables = new String[] { TableVersions.tableKey(key.getStoreSpace()) };
+		} else {
+			tables = new String[affected.size()];
+			for (int i = 0; i < tables.length; i++) {
+				tables[i] = TableVersions.tableKey(affected.get(i));
+			}
+		}
+		return new Stamp(tables, versions.stamp(tables));
+	}
+
+	/**
+	 * 使一张表的所有缓存失效
+	 *
+	 * @param table
+	 *            表名
+	 */
+	public void invalidate(String table) {
+		if (table == null)
+			return;
+		versions.update(table);
+		if (config.cacheDebug)
+			logger.info("{}-Cache Invalidate: {}", name, table);
+	}
+
+	private String tableOf(Object obj) {
+		return MetaHolder.getMeta(obj).getTableName(false);
+	}
+
+	private String tableOf(FromItem item) {
+		return item instanceof Table ? ((Table) item).getName() : null;
+	}
+
+	/**
+	 * 缓存中的记录不能按主键定位，总是返回false
+	 */
+	public boolean contains(Class cls, Object primaryKey) {
+		return false;
+	}
+
+	/**
+	 * 缓存中的记录不能按主键定位，使该类对应的表的全部缓存失效
+	 */
+	@SuppressWarnings("unchecked")
+	public void evict(Class cls, Object primaryKey) {
+		versions.update(MetaHolder.getMeta(cls).getTableName(false), primaryKey);
+	}
+
+	@SuppressWarnings("unchecked")
+	public void evict(Class cls) {
+		invalidate(MetaHolder.getMeta(cls).getTableName(false));
+	}
+
+	public void evictAll() {
+		lock.lock();
+		try {
+			pending.clear();
+			for (Node head : new Node[] { window, probation, protectedQueue }) {
+				while (head.next != head) {
+					unlink(head.next);
+				}
+			}
+			data.clear();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void evict(CacheKey cacheKey) {
+		pending.remove(cacheKey);
+		Node node = data.get(cacheKey);
+		if (node != null) {
+			remove(node);
+		}
+	}
+
+	public void evict(Object cacheKey) {
+		if (cacheKey instanceof CacheKey) {
+			evict((CacheKey) cacheKey);
+		} else if (cacheKey instanceof Class) {
+			evict((Class) cacheKey);
+		} else if (cacheKey != null) {
+			invalidate(tableOf(cacheKey));
+		}
+	}
+
+	public void onInsert(Object obj, String table) {
+		if (obj == null)
+			return;
+		invalidate(table == null ? tableOf(obj) : table);
+	}
+
+	public void onDelete(String table, String where, List<Object> bind) {
+		invalidate(table);
+	}
+
+	public void onUpdate(String table, String where, List<Object> bind) {
+		invalidate(table);
+	}
+
+	public boolean isDummy() {
+		return false;
+	}
+
+	public void process(Truncate st, List<Object> list) {
+		invalidate(st.getTable().getName());
+	}
+
+	public void process(Delete st, List<Object> list) {
+		invalidate(tableOf(st.getTable()));
+	}
+
+	public void process(Insert st, List<Object> list) {
+		invalidate(tableOf(st.getTable()));
+	}
+
+	public void process(Update st, List<Object> list) {
+		invalidate(tableOf(st.getTable()));
+	}
+
+	public long getHitCount() {
+		return hit.get();
+	}
+
+	public long getMissCount() {
+		return miss.get();
+	}
+
+	/**
+	 * @return 缓存的记录数(包括已失效但尚未移除的记录)
+	 */
+	public int size() {
+		return data.size();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T> T unwrap(Class<T> cls) {
+		return (T) this;
+	}
+
+	@Override
+	public String toString() {
+		return name + "-Cache size:" + data.size() + ", hit:" + hit.get() + ", miss:" + miss.get();
+	}
+
+	/*
+	 * 查询涉及的表和当时的版本号
+	 */
+	private static final class Stamp {
+		final String[] tables;
+		/**
+		 * @see TableVersions#stamp(String[])
+		 */
+		final long[] versions;
+		final long time = System.currentTimeMillis();
+
+		Stamp(String[] tables, long[] versions) {
+			this.tables = tables;
+			this.versions = versions;
+		}
+	}
+
+	/*
+	 * 缓存记录，同时是淘汰队列中的节点
+	 */
+	private static final class Node {
+		final CacheKey key;
+		final List<?> value;
+		final Stamp stamp;
+		final long weight;
+		final long expireAt;
+		int queue = -1;
+		Node prev;
+		Node next;
+
+		/*
+		 * 队列的头节点
+		 */
+		Node() {
+			this(null, null, null, 0, 0);
+			this.prev = this;
+			this.next = this;
+		}
+
+		Node(CacheKey key, List<?> value, Stamp stamp, long weight, long expireAt) {
+			this.key = key;
+			this.value = value;
+			this.stamp = stamp;
+			this.weight = weight;
+			this.expireAt = expireAt;
+		}
+	}
+}
@@ -0,0 +1,454 @@
+package com.github.geequery.core.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.geequery.tools.reflect.BeanUtils;
+
+/**
+ * 跨节点的缓存失效总线。
+ * <p>
+ * 监听本地{@link TableVersions}的变化，通过{@link InvalidationTransport}通知其他节点，并把收到的通知应用到本地的版本号上，
+ * 使多个应用实例的二级缓存和查询结果缓存在数据被修改后都能失效。
+ * <p>
+ * <h3>发送</h3> 修改先放入待发送队列，按周期批量发送。同一周期内同一张表的多次修改合并为一个事件；
+ * 一张表的主键过多时合并为整表事件；有全部失效的事件时，其他事件不再发送。
+ * <p>
+ * <h3>接收</h3> 每个节点的消息带有连续的序号，重复和过时的消息被忽略，因此重复应用是安全的。
+ * 发现序号不连续(消息丢失)时，无法知道丢失了哪些表，所有表的缓存都失效。第一次收到某个节点的消息时，
+ * 如果序号不是1，此前该节点发出的消息可能没有收到，同样按丢失处理。
+ * 没有修改时定期发送心跳，使最后几条消息的丢失也能被发现。长时间没有收到消息(包括心跳)的节点被移除。
+ * <p>
+ * 本地的缓存按表记录版本号，收到的主键事件同样使整张表失效。
+ *
+ * @author jiyi
+ *
+ */
+public final class InvalidationBus implements TableVersions.Listener, InvalidationTransport.Receiver {
+	private static final Logger log = LoggerFactory.getLogger(InvalidationBus.class);
+
+	private static final int MAGIC = 0x47514931;
+	private static final byte KIND_TABLE = 1;
+	private static final byte KIND_KEY = 2;
+	private static final byte KIND_ALL = 3;
+	/**
+	 * 每条消息中的最大事件数
+	 */
+	static final int MAX_EVENTS = 256;
+	/**
+	 * 一个周期内同一张表的主键超过该数量时，合并为整表事件
+	 */
+	static final int MAX_KEYS_PER_TABLE = 32;
+	/**
+	 * 连续多少个周期没有修改时发送心跳
+	 */
+	private static final int HEARTBEAT_TICKS = 20;
+	/**
+	 * 连续多少个心跳周期没有收到消息时，移除该节点
+	 */
+	private static final int EXPIRE_HEARTBEATS = 3;
+
+	private final long nodeId = new SecureRandom().nextLong();
+	private final TableVersions versions;
+	private final InvalidationTransport transport;
+	private final long flushInterval;
+	private ScheduledExecutorService scheduler;
+
+	/*
+	 * 待发送的修改，表名 -> 主键，主键为null表示整张表。持有this的锁时访问
+	 */
+	private Map<String, Set<String>> pending = new LinkedHashMap<String, Set<String>>();
+	private boolean pendingAll;
+	private int idleTicks;
+
+	private final AtomicLong sequence = new AtomicLong();
+	/*
+	 * 保证消息按序号顺序发送
+	 */
+	private final Object sendLock = new Object();
+	/*
+	 * 节点 -> 收到的最大序号和最后收到消息的时间。持有该对象的锁时访问
+	 */
+	private final Map<Long, Peer> lastSequences = new HashMap<Long, Peer>();
+
+	private final AtomicLong sent = new AtomicLong();
+	private final AtomicLong received = new AtomicLong();
+	private final AtomicLong lost = new AtomicLong();
+
+	/**
+	 * 构造
+	 *
+	 * @param versions
+	 *            本地的表版本号
+	 * @param transport
+	 *            传输方式
+	 * @param flushInterval
+	 *            发送周期，单位毫秒
+	 */
+	public InvalidationBus(TableVersions versions, InvalidationTransport transport, long flushInterval) {
+		this.versions = versions;
+		this.transport = transport;
+		this.flushInterval = Math.max(flushInterval, 1);
+	}
+
+	/**
+	 * 按配置创建
+	 *
+	 * @param config
+	 *            传输方式，可以是
+	 *            <ul>
+	 *            <li>loopback:频道名 进程内传输</li>
+	 *            <li>multicast:组播地址:端口[:TTL] UDP组播，TTL默认为1</li>
+	 *            <li>实现了{@link InvalidationTransport}的类名</li>
+	 *            </ul>
+	 * @param versions
+	 *            本地的表版本号
+	 * @param flushInterval
+	 *            发送周期，单位毫秒
+	 * @return 总线，尚未启动
+	 * @throws IOException
+	 */
+	public static InvalidationBus create(String config, TableVersions versions, long flushInterval) throws IOException {
+		InvalidationTransport transport;
+		if (config.startsWith("loopback:")) {
+			transport = new LoopbackTransport(config.substring(9));
+		} else if (config.startsWith("multicast:")) {
+			String[] args = config.substring(10).split(":");
+			if (args.length < 2) {
+				throw new IllegalArgumentException("Invalid multicast config: " + config);
+			}
+			int ttl = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+			transport = new MulticastTransport(args[0], Integer.parseInt(args[1]), ttl);
+		} else {
+			try {
+				transport = (InvalidationTransport) BeanUtils.newInstance(Class.forName(config));
+			} catch (ClassNotFoundException e) {
+				throw new IllegalArgumentException("Invalid cache invalidation transport: " + config, e);
+			}
+		}
+		return new InvalidationBus(versions, transport, flushInterval);
+	}
+
+	/**
+	 * 开始接收和发送
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void start() throws IOException {
+		if (scheduler != null) {
+			return;
+		}
+		transport.start(this);
+		scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "gq-cache-invalidation");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					flush();
+				} catch (RuntimeException e) {
+					log.error("Flush cache invalidation events error", e);
+				}
+			}
+		}, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+		versions.setListener(this);
+		log.info("Cache invalidation bus started on {}, node {}.", transport, Long.toHexString(nodeId));
+	}
+
+	/**
+	 * 发送剩余的修改后关闭
+	 */
+	public void close() {
+		ScheduledExecutorService s;
+		synchronized (this) {
+			s = scheduler;
+			scheduler = null;
+		}
+		if (s == null) {
+			return;
+		}
+		if (versions.getListener() == this) {
+			versions.setListener(null);
+		}
+		s.shutdown();
+		try {
+			s.awaitTermination(flushInterval * 2, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		flush();
+		transport.close();
+	}
+
+	public synchronized void tableUpdated(String table, Object key) {
+		if (pendingAll) {
+			return;
+		}
+		if (key == null) {
+			pending.put(table, null);
+			return;
+		}
+		Set<String> keys = pending.get(table);
+		if (keys == null) {
+			if (pending.containsKey(table)) {
+				return;
+			}
+			keys = new LinkedHashSet<String>();
+			pending.put(table, keys);
+		}
+		keys.add(key instanceof Object[] ? Arrays.deepToString((Object[]) key) : String.valueOf(key));
+		if (keys.size() > MAX_KEYS_PER_TABLE) {
+			pending.put(table, null);
+		}
+	}
+
+	public synchronized void allUpdated() {
+		pendingAll = true;
+		pending.clear();
+	}
+
+	/**
+	 * 发送待发送的修改。没有修改时，每隔若干周期发送心跳
+	 */
+	void flush() {
+		expireNodes(System.currentTimeMillis());
+		synchronized (sendLock) {
+			Map<String, Set<String>> events;
+			boolean all;
+			boolean heartbeat = false;
+			synchronized (this) {
+				events = pending;
+				all = pendingAll;
+				if (all || !events.isEmpty()) {
+					pending = new LinkedHashMap<String, Set<String>>();
+					pendingAll = false;
+					idleTicks = 0;
+				} else if (++idleTicks >= HEARTBEAT_TICKS) {
+					idleTicks = 0;
+					heartbeat = true;
+				}
+			}
+			if (heartbeat) {
+				send(encode(sequence.get(), null));
+			} else if (all) {
+				send(encode(sequence.incrementAndGet(), new Object[] { null }));
+			} else if (!events.isEmpty()) {
+				List<Object> list = new ArrayList<Object>();
+				for (Map.Entry<String, Set<String>> e : events.entrySet()) {
+					if (e.getValue() == null) {
+						list.add(e.getKey());
+					} else {
+						for (String key : e.getValue()) {
+							list.add(new String[] { e.getKey(), key });
+						}
+					}
+				}
+				for (int i = 0; i < list.size(); i += MAX_EVENTS) {
+					List<Object> chunk = list.subList(i, Math.min(list.size(), i + MAX_EVENTS));
+					send(encode(sequence.incrementAndGet(), chunk.toArray()));
+				}
+			}
+		}
+	}
+
+	private void send(byte[] message) {
+		try {
+			transport.send(message);
+			sent.incrementAndGet();
+		} catch (IOException e) {
+			// 序号已经使用，其他节点会发现消息丢失
+			log.warn("Send cache invalidation message error: {}", e.getMessage());
+		}
+	}
+
+	/*
+	 * 消息格式: MAGIC, 节点, 序号, 事件数, 各事件(类型, 表名, 主键)。事件数为0时为心跳，序号为最近一条消息的序号
+	 *
+	 * 事件为null表示全部失效，String表示整张表，String[]为表名和主键
+	 */
+	private byte[] encode(long seq, Object[] events) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(MAGIC);
+			out.writeLong(nodeId);
+			out.writeLong(seq);
+			if (events == null) {
+				out.writeShort(0);
+			} else {
+				out.writeShort(events.length);
+				for (Object e : events) {
+					if (e == null) {
+						out.writeByte(KIND_ALL);
+					} else if (e instanceof String) {
+						out.writeByte(KIND_TABLE);
+						out.writeUTF((String) e);
+					} else {
+						String[] pair = (String[]) e;
+						out.writeByte(KIND_KEY);
+						out.writeUTF(pair[0]);
+						out.writeUTF(pair[1]);
+					}
+				}
+			}
+			out.flush();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);// never happens
+		}
+		return bytes.toByteArray();
+	}
+
+	public void received(byte[] message) {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(message));
+		try {
+			if (in.readInt() != MAGIC) {
+				return;
+			}
+			long node = in.readLong();
+			if (node == nodeId) {
+				return;
+			}
+			long seq = in.readLong();
+			int count = in.readUnsignedShort();
+			synchronized (lastSequences) {
+				if (!accept(node, seq, count == 0)) {
+					return;
+				}
+				received.incrementAndGet();
+				for (int i = 0; i < count; i++) {
+					byte kind = in.readByte();
+					if (kind == KIND_ALL) {
+						versions.applyAll();
+					} else {
+						versions.apply(in.readUTF());
+						if (kind == KIND_KEY) {
+							in.readUTF();
+						}
+					}
+				}
+			}
+		} catch (IOException e) {
+			// 消息被截断，无法知道涉及的表
+			log.warn("Invalid cache invalidation message: {}", e.getMessage());
+			versions.applyAll();
+		}
+	}
+
+	/*
+	 * 按序号判断消息是否需要处理，发现消息丢失时使所有缓存失效
+	 */
+	private boolean accept(long node, long seq, boolean heartbeat) {
+		Peer peer = lastSequences.get(node);
+		long last;
+		if (peer == null) {
+			// 第一次收到该节点的消息(或该节点曾被移除)，序号不是1时，无法确定之前的消息是否都收到了
+			peer = new Peer();
+			lastSequences.put(node, peer);
+			last = 0;
+		} else if (seq <= peer.seq) {
+			// 重复或过时的消息。过时的消息在发现丢失时已经按全部失效处理了
+			peer.lastSeen = System.currentTimeMillis();
+			return false;
+		} else {
+			last = peer.seq;
+		}
+		peer.seq = seq;
+		peer.lastSeen = System.currentTimeMillis();
+		long missing = heartbeat ? seq - last : seq - last - 1;
+		if (missing > 0) {
+			lost.addAndGet(missing);
+			log.warn("Lost {} cache invalidation message(s) from node {}, all caches were invalidated.", missing, Long.toHexString(node));
+			versions.applyAll();
+		}
+		return !heartbeat;
+	}
+
+	/**
+	 * 移除长时间没有收到消息的节点
+	 *
+	 * @param now
+	 *            当前时间
+	 */
+	void expireNodes(long now) {
+		long timeout = flushInterval * HEARTBEAT_TICKS * EXPIRE_HEARTBEATS;
+		synchronized (lastSequences) {
+			for (Iterator<Peer> iter = lastSequences.values().iterator(); iter.hasNext();) {
+				if (now - iter.next().lastSeen > timeout) {
+					iter.remove();
+				}
+			}
+		}
+	}
+
+	public long getNodeId() {
+		return nodeId;
+	}
+
+	/**
+	 * 发送的消息数(含心跳)
+	 */
+	public long getSentCount() {
+		return sent.get();
+	}
+
+	/**
+	 * 收到并应用的消息数
+	 */
+	public long getReceivedCount() {
+		return received.get();
+	}
+
+	/**
+	 * 检测到丢失的消息数
+	 */
+	public long getLostCount() {
+		return lost.get();
+	}
+
+	/**
+	 * 收到过消息且尚未被移除的其他节点数
+	 */
+	public int getNodeCount() {
+		synchronized (lastSequences) {
+			return lastSequences.size();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "InvalidationBus[" + transport + ", node " + Long.toHexString(nodeId) + "]";
+	}
+
+	/*
+	 * 其他节点的接收状态
+	 */
+	private static final class Peer {
+		long seq;
+		long lastSeen;
+	}
+}
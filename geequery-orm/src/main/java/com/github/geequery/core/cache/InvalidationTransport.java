@@ -0,0 +1,45 @@
+package com.github.geequery.core.cache;
+
+import java.io.IOException;
+
+/**
+ * 缓存失效消息的传输方式。
+ * <p>
+ * {@link InvalidationBus}负责消息的编码、合并、去重和丢失检测，传输层只需把字节数组送到其他节点，
+ * 允许丢失、重复和乱序，但单条消息不能被截断。可以基于Redis Pub/Sub、消息队列等实现。
+ *
+ * @author jiyi
+ * @see LoopbackTransport
+ * @see MulticastTransport
+ */
+public interface InvalidationTransport {
+	/**
+	 * 开始接收消息
+	 *
+	 * @param receiver
+	 *            收到消息时的回调。可能在传输层的线程中调用
+	 * @throws IOException
+	 */
+	void start(Receiver receiver) throws IOException;
+
+	/**
+	 * 向其他节点发送消息。是否会收到自己发出的消息由实现决定
+	 *
+	 * @param message
+	 *            消息内容
+	 * @throws IOException
+	 */
+	void send(byte[] message) throws IOException;
+
+	/**
+	 * 停止接收并释放资源
+	 */
+	void close();
+
+	/**
+	 * 消息接收者
+	 */
+	interface Receiver {
+		void received(byte[] message);
+	}
+}
@@ -0,0 +1,71 @@
+package com.github.geequery.core.cache;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 进程内的传输方式，同一频道中的各实例互相投递消息，不经过网络。
+ * <p>
+ * 用于在一个JVM中模拟多个节点(例如多个{@link com.github.geequery.core.DbClient}连接同一个数据库)，以及离线测试。
+ * 消息在发送者的线程中同步投递，不会发给自己。
+ *
+ * @author jiyi
+ *
+ */
+public final class LoopbackTransport implements InvalidationTransport {
+	private static final ConcurrentMap<String, List<LoopbackTransport>> CHANNELS = new ConcurrentHashMap<String, List<LoopbackTransport>>();
+
+	private final String channel;
+	private volatile Receiver receiver;
+
+	/**
+	 * 构造
+	 *
+	 * @param channel
+	 *            频道名称
+	 */
+	public LoopbackTransport(String channel) {
+		this.channel = channel;
+	}
+
+	public void start(Receiver receiver) {
+		this.receiver = receiver;
+		List<LoopbackTransport> members = CHANNELS.get(channel);
+		if (members == null) {
+			members = new CopyOnWriteArrayList<LoopbackTransport>();
+			List<LoopbackTransport> old = CHANNELS.putIfAbsent(channel, members);
+			if (old != null) {
+				members = old;
+			}
+		}
+		members.add(this);
+	}
+
+	public void send(byte[] message) {
+		List<LoopbackTransport> members = CHANNELS.get(channel);
+		if (members == null) {
+			return;
+		}
+		for (LoopbackTransport member : members) {
+			Receiver r = member.receiver;
+			if (member != this && r != null) {
+				r.received(message.clone());
+			}
+		}
+	}
+
+	public void close() {
+		List<LoopbackTransport> members = CHANNELS.get(channel);
+		if (members != null) {
+			members.remove(this);
+		}
+		receiver = null;
+	}
+
+	@Override
+	public String toString() {
+		return "loopback:" + channel;
+	}
+}
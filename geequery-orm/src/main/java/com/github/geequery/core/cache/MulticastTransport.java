@@ -0,0 +1,116 @@
+package com.github.geequery.core.cache;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 基于UDP组播的传输方式，适用于同一网段中的少量节点，以及在本机上离线测试多个进程。
+ * <p>
+ * UDP不保证送达，丢失的消息由{@link InvalidationBus}按序号检测并退化为全部失效。 一条消息不能超过64K字节。
+ * 自己发出的消息也会被收到，由{@link InvalidationBus}按节点标识忽略。
+ *
+ * @author jiyi
+ *
+ */
+public final class MulticastTransport implements InvalidationTransport {
+	private static final Logger log = LoggerFactory.getLogger(MulticastTransport.class);
+	/**
+	 * UDP报文的最大长度
+	 */
+	static final int MAX_PACKET = 65507;
+
+	private final InetAddress group;
+	private final int port;
+	private final int timeToLive;
+	private MulticastSocket socket;
+
+	/**
+	 * 构造
+	 *
+	 * @param group
+	 *            组播地址，如230.0.0.1
+	 * @param port
+	 *            端口
+	 * @param timeToLive
+	 *            报文的TTL，0表示只在本机传播，1表示只在本网段传播
+	 * @throws IOException
+	 */
+	public MulticastTransport(String group, int port, int timeToLive) throws IOException {
+		this.group = InetAddress.getByName(group);
+		this.port = port;
+		this.timeToLive = timeToLive;
+		if (!this.group.isMulticastAddress()) {
+			throw new IllegalArgumentException(group + " is not a multicast address.");
+		}
+	}
+
+	public synchronized void start(final Receiver receiver) throws IOException {
+		if (socket != null) {
+			throw new IllegalStateException("The transport was already started.");
+		}
+		final MulticastSocket s = new MulticastSocket(port);
+		s.setTimeToLive(timeToLive);
+		s.joinGroup(group);
+		this.socket = s;
+		Thread thread = new Thread("gq-cache-multicast-" + port) {
+			@Override
+			public void run() {
+				byte[] buf = new byte[MAX_PACKET];
+				while (!s.isClosed()) {
+					DatagramPacket packet = new DatagramPacket(buf, buf.length);
+					try {
+						s.receive(packet);
+					} catch (IOException e) {
+						if (!s.isClosed()) {
+							log.warn("Receive cache invalidation message error: {}", e.getMessage());
+						}
+						continue;
+					}
+					try {
+						receiver.received(Arrays.copyOfRange(packet.getData(), packet.getOffset(), packet.getOffset() + packet.getLength()));
+					} catch (RuntimeException e) {
+						log.error("Process cache invalidation message error", e);
+					}
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public void send(byte[] message) throws IOException {
+		MulticastSocket s = this.socket;
+		if (s == null) {
+			throw new IllegalStateException("The transport is not started.");
+		}
+		if (message.length > MAX_PACKET) {
+			throw new IOException("Message too large for UDP: " + message.length);
+		}
+		s.send(new DatagramPacket(message, message.length, group, port));
+	}
+
+	public synchronized void close() {
+		MulticastSocket s = this.socket;
+		if (s == null) {
+			return;
+		}
+		this.socket = null;
+		try {
+			s.leaveGroup(group);
+		} catch (IOException e) {
+			log.warn("Leave multicast group error: {}", e.getMessage());
+		}
+		s.close();
+	}
+
+	@Override
+	public String toString() {
+		return "multicast:" + group.getHostAddress() + ":" + port;
+	}
+}
@@ -0,0 +1,125 @@
+package com.github.geequery.core.cache;
+
+import java.util.List;
+
+import com.github.geequery.jsqlparser.statement.delete.Delete;
+import com.github.geequery.jsqlparser.statement.insert.Insert;
+import com.github.geequery.jsqlparser.statement.truncate.Truncate;
+import com.github.geequery.jsqlparser.statement.update.Update;
+
+/**
+ * 事务中看到的上级(二级)缓存。
+ * <p>
+ * 读写事务中查到的数据可能包含本事务尚未提交的修改，如果放入所有会话共享的二级缓存，其他会话会读到未提交的数据，
+ * 事务回滚后这些记录也不会失效。因此事务不是只读时，不从二级缓存中读取，也不向其中存入，
+ * 只把修改操作传递给二级缓存使相关记录失效。只读事务和查询结果缓存的规则相同，照常使用二级缓存。
+ *
+ * @author jiyi
+ *
+ */
+@SuppressWarnings("rawtypes")
+public final class SharedCacheView implements Cache {
+	private final Cache cache;
+	private volatile boolean readOnly;
+
+	/**
+	 * 构造
+	 *
+	 * @param cache
+	 *            上级缓存
+	 * @param readOnly
+	 *            事务是否只读
+	 */
+	public SharedCacheView(Cache cache, boolean readOnly) {
+		this.cache = cache;
+		this.readOnly = readOnly;
+	}
+
+	/**
+	 * 事务的只读状态改变
+	 *
+	 * @param readOnly
+	 *            是否只读
+	 */
+	public void setReadonly(boolean readOnly) {
+		this.readOnly = readOnly;
+	}
+
+	public boolean contains(Class cls, Object primaryKey) {
+		return readOnly && cache.contains(cls, primaryKey);
+	}
+
+	public <T> void onLoad(CacheKey key, List<T> result, Class<T> clz) {
+		if (readOnly) {
+			cache.onLoad(key, result, clz);
+		}
+	}
+
+	public List load(CacheKey key) {
+		return readOnly ? cache.load(key) : null;
+	}
+
+	public void evict(Class cls, Object primaryKey) {
+		cache.evict(cls, primaryKey);
+	}
+
+	public void evict(Class cls) {
+		cache.evict(cls);
+	}
+
+	public void evictAll() {
+		cache.evictAll();
+	}
+
+	public void evict(CacheKey cacheKey) {
+		cache.evict(cacheKey);
+	}
+
+	public void evict(Object cacheKey) {
+		cache.evict(cacheKey);
+	}
+
+	public void onInsert(Object obj, String table) {
+		cache.onInsert(obj, table);
+	}
+
+	public void onDelete(String table, String where, List<Object> bind) {
+		cache.onDelete(table, where, bind);
+	}
+
+	public void onUpdate(String table, String where, List<Object> bind) {
+		cache.onUpdate(table, where, bind);
+	}
+
+	public boolean isDummy() {
+		return cache.isDummy();
+	}
+
+	public void process(Truncate st, List<Object> list) {
+		cache.process(st, list);
+	}
+
+	public void process(Delete st, List<Object> list) {
+		cache.process(st, list);
+	}
+
+	public void process(Insert st, List<Object> list) {
+		cache.process(st, list);
+	}
+
+	public void process(Update st, List<Object> list) {
+		cache.process(st, list);
+	}
+
+	public long getHitCount() {
+		return cache.getHitCount();
+	}
+
+	public long getMissCount() {
+		return cache.getMissCount();
+	}
+
+	public <T> T unwrap(Class<T> cls) {
+		return cache.unwrap(cls);
+	}
+}
@@ -0,0 +1,112 @@
+package com.github.geequery.core.cache;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 查询结果缓存的Key，由数据源、SQL语句、绑定变量、分页范围和结果类型组成。
+ * <p>
+ * 影响的表(即查询读取的表)从SQL语句中找出，表中的数据被修改后缓存的结果失效。
+ *
+ * @author jiyi
+ * @see TableVersions
+ */
+@SuppressWarnings("serial")
+public final class SqlResultKey implements CacheKey {
+	private final String datasource;
+	private final String sql;
+	private final List<?> params;
+	private final long[] range;
+	private final Object resultType;
+	private final List<String> tables;
+	private final int hashCode;
+
+	private SqlResultKey(String datasource, String sql, List<?> params, long[] range, Object resultType, String[] tables) {
+		this.datasource = datasource;
+		this.sql = sql;
+		this.params = params;
+		this.range = range;
+		this.resultType = resultType;
+		this.tables = Arrays.asList(tables);
+		int hash = datasource == null ? 0 : datasource.hashCode();
+		hash = hash * 31 + sql.hashCode();
+		hash = hash * 31 + params.hashCode();
+		hash = hash * 31 + Arrays.hashCode(range);
+		this.hashCode = hash * 31 + (resultType == null ? 0 : resultType.hashCode());
+	}
+
+	/**
+	 * 构造
+	 *
+	 * @param datasource
+	 *            数据源名称，同一SQL语句在不同数据源上的结果不同
+	 * @param sql
+	 *            SQL语句
+	 * @param params
+	 *            绑定变量
+	 * @param range
+	 *            分页范围{offset, limit}，不分页时传入null
+	 * @param resultType
+	 *            结果类型，需要实现equals和hashCode
+	 * @return 无法从SQL语句中确定读取的表时返回null，此时不能缓存
+	 */
+	public static SqlResultKey create(String datasource, String sql, List<?> params, long[] range, Object resultType) {
+		String[] tables = SqlTables.read(sql);
+		if (tables == null) {
+			return null;
+		}
+		return new SqlResultKey(datasource, sql, params, range, resultType, tables);
+	}
+
+	public String getStoreSpace() {
+		return tables.get(0);
+	}
+
+	public List<String> getAffectedKey() {
+		return tables;
+	}
+
+	/**
+	 * 查询结果缓存没有维度的概念
+	 */
+	public KeyDimension getDimension() {
+		return null;
+	}
+
+	public List<?> getParams() {
+		return params;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof SqlResultKey)) {
+			return false;
+		}
+		SqlResultKey rhs = (SqlResultKey) obj;
+		return hashCode == rhs.hashCode && sql.equals(rhs.sql) && params.equals(rhs.params) && Arrays.equals(range, rhs.range)
+				&& equals(datasource, rhs.datasource) && equals(resultType, rhs.resultType);
+	}
+
+	private static boolean equals(Object a, Object b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(tables).append(' ').append(sql).append(' ').append(params);
+		if (range != null) {
+			sb.append(" range:").append(Arrays.toString(range));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,285 @@
+package com.github.geequery.core.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 从SQL语句中找出读取和修改的表。
+ * <p>
+ * 只做词法扫描，不解析完整的语法：FROM和JOIN之后的名称为读取的表(包括子查询中的表，不包括WITH定义的临时结果集)，
+ * INSERT INTO、UPDATE、DELETE FROM、MERGE INTO、TRUNCATE TABLE之后的名称为修改的表。
+ * 无法确定时返回null，由调用者按最保守的方式处理。
+ * <p>
+ * ORM生成的SQL语句形式是有限的，结果按语句缓存，同一语句只扫描一次。
+ *
+ * @author jiyi
+ *
+ */
+final class SqlTables {
+	private static final int MAX_CACHED = 2000;
+	private static final String[] UNKNOWN = new String[0];
+
+	private static final ConcurrentMap<String, String[]> READ = new ConcurrentHashMap<String, String[]>();
+	private static final ConcurrentMap<String, String[]> WRITTEN = new ConcurrentHashMap<String, String[]>();
+
+	/**
+	 * 不能作为表名或别名的关键字
+	 */
+	private static final Set<String> KEYWORDS = new HashSet<String>(Arrays.asList("WHERE", "GROUP", "ORDER", "HAVING", "UNION", "LIMIT", "ON", "JOIN", "LEFT",
+			"RIGHT", "INNER", "OUTER", "CROSS", "FULL", "NATURAL", "USING", "FOR", "OFFSET", "FETCH", "SELECT", "SET", "VALUES", "LATERAL", "EXCEPT",
+			"INTERSECT", "MINUS", "START", "CONNECT", "WITH", "WINDOW", "STRAIGHT_JOIN", "PARTITION", "SAMPLE", "TABLESAMPLE"));
+	/**
+	 * FROM子句之后的子句，其中的逗号不再分隔表名
+	 */
+	private static final Set<String> CLAUSES = new HashSet<String>(Arrays.asList("WHERE", "GROUP", "ORDER", "HAVING", "UNION", "EXCEPT", "INTERSECT",
+			"MINUS", "LIMIT", "OFFSET", "FETCH", "FOR", "WINDOW", "START", "CONNECT", "SELECT", "SET", "VALUES", "WHEN", "RETURNING"));
+
+	private SqlTables() {
+	}
+
+	/**
+	 * 查询语句读取的表
+	 *
+	 * @param sql
+	 *            SQL语句
+	 * @return 表名(大写，不含schema)，无法确定时返回null
+	 */
+	static String[] read(String sql) {
+		String[] tables = READ.get(sql);
+		if (tables == null) {
+			tables = scanRead(tokenize(sql));
+			if (tables == null) {
+				tables = UNKNOWN;
+			}
+			if (READ.size() >= MAX_CACHED) {
+				READ.clear();
+			}
+			READ.put(sql, tables);
+		}
+		return tables == UNKNOWN ? null : tables;
+	}
+
+	/**
+	 * 更新语句可能修改的表。多表更新、删除时，语句中读取的表也计算在内
+	 *
+	 * @param sql
+	 *            SQL语句
+	 * @return 表名(大写，不含schema)，无法确定(如DDL、存储过程)时返回null
+	 */
+	static String[] written(String sql) {
+		String[] tables = WRITTEN.get(sql);
+		if (tables == null) {
+			tables = scanWritten(tokenize(sql));
+			if (tables == null) {
+				tables = UNKNOWN;
+			}
+			if (WRITTEN.size() >= MAX_CACHED) {
+				WRITTEN.clear();
+			}
+			WRITTEN.put(sql, tables);
+		}
+		return tables == UNKNOWN ? null : tables;
+	}
+
+	private static String[] scanRead(List<String> tokens) {
+		Set<String> result = new LinkedHashSet<String>();
+		if (!scanRead(tokens, 0, tokens.size(), false, result)) {
+			return null;
+		}
+		result.removeAll(withNames(tokens));
+		if (result.isEmpty()) {
+			return null;
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	/*
+	 * 在[from, to)范围内收集FROM、JOIN、USING之后的表名，FROM子句中逗号之后的名称同样是表名。
+	 * 括号中的内容(子查询)递归处理。遇到表函数等无法处理的写法时返回false
+	 */
+	private static boolean scanRead(List<String> tokens, int from, int to, boolean inFrom, Set<String> result) {
+		boolean expectTable = false;
+		for (int i = from; i < to; i++) {
+			String token = tokens.get(i);
+			if ("(".equals(token)) {
+				int close = closing(tokens, i, to);
+				if (close < 0 || !scanRead(tokens, i + 1, close, false, result)) {
+					return false;
+				}
+				i = close;
+				expectTable = false;
+			} else if ("FROM".equals(token)) {
+				inFrom = true;
+				expectTable = true;
+			} else if ("JOIN".equals(token) || "STRAIGHT_JOIN".equals(token) || "USING".equals(token)) {
+				expectTable = true;
+			} else if (",".equals(token)) {
+				expectTable = inFrom;
+			} else if (CLAUSES.contains(token)) {
+				inFrom = false;
+				expectTable = false;
+			} else if (expectTable) {
+				if (!isName(token) || (i + 1 < to && "(".equals(tokens.get(i + 1)))) {
+					// 表函数等
+					return false;
+				}
+				result.add(TableVersions.tableKey(token));
+				expectTable = false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * 和指定位置的左括号匹配的右括号位置，没有时返回-1
+	 */
+	private static int closing(List<String> tokens, int open, int to) {
+		int depth = 0;
+		for (int i = open; i < to; i++) {
+			String token = tokens.get(i);
+			if ("(".equals(token)) {
+				depth++;
+			} else if (")".equals(token) && --depth == 0) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * WITH子句定义的临时结果集名称: WITH [RECURSIVE] name [(columns)] AS (...) [, name ...]
+	 */
+	private static Set<String> withNames(List<String> tokens) {
+		Set<String> names = new HashSet<String>();
+		int size = tokens.size();
+		if (size == 0 || !"WITH".equals(tokens.get(0))) {
+			return names;
+		}
+		int i = 1;
+		if (i < size && "RECURSIVE".equals(tokens.get(i))) {
+			i++;
+		}
+		while (i < size && isName(tokens.get(i))) {
+			names.add(TableVersions.tableKey(tokens.get(i)));
+			i++;
+			if (i < size && "(".equals(tokens.get(i))) {
+				i = closing(tokens, i, size) + 1;
+				if (i == 0) {
+					break;
+				}
+			}
+			if (i >= size || !"AS".equals(tokens.get(i)) || i + 1 >= size || !"(".equals(tokens.get(i + 1))) {
+				break;
+			}
+			i = closing(tokens, i + 1, size) + 1;
+			if (i == 0 || i >= size || !",".equals(tokens.get(i))) {
+				break;
+			}
+			i++;
+		}
+		return names;
+	}
+
+	private static String[] scanWritten(List<String> tokens) {
+		if (tokens.isEmpty()) {
+			return null;
+		}
+		String first = tokens.get(0);
+		int index;
+		if ("INSERT".equals(first) || "REPLACE".equals(first) || "MERGE".equals(first) || "UPSERT".equals(first)) {
+			index = tokens.indexOf("INTO");
+		} else if ("UPDATE".equals(first)) {
+			index = 0;
+		} else if ("DELETE".equals(first)) {
+			index = tokens.size() > 1 && "FROM".equals(tokens.get(1)) ? 1 : 0;
+		} else if ("TRUNCATE".equals(first)) {
+			index = tokens.size() > 1 && "TABLE".equals(tokens.get(1)) ? 1 : 0;
+		} else {
+			return null;
+		}
+		if (index < 0 || index + 1 >= tokens.size() || !isName(tokens.get(index + 1))) {
+			return null;
+		}
+		Set<String> result = new LinkedHashSet<String>();
+		result.add(TableVersions.tableKey(tokens.get(index + 1)));
+		if (!scanRead(tokens, index + 2, tokens.size(), true, result)) {
+			return null;
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	private static boolean isName(String token) {
+		char c = token.charAt(0);
+		if (c == '"' || c == '`' || c == '[') {
+			return true;
+		}
+		return (Character.isLetter(c) || c == '_') && !KEYWORDS.contains(token);
+	}
+
+	/*
+	 * 拆分为单词和标点。跳过字符串和注释，不带引号的单词转为大写
+	 */
+	static List<String> tokenize(String sql) {
+		List<String> tokens = new ArrayList<String>();
+		int len = sql.length();
+		int i = 0;
+		while (i < len) {
+			char c = sql.charAt(i);
+			if (Character.isWhitespace(c)) {
+				i++;
+			} else if (c == '\'') {
+				i++;
+				while (i < len) {
+					if (sql.charAt(i) == '\'') {
+						if (i + 1 < len && sql.charAt(i + 1) == '\'') {
+							i += 2;
+							continue;
+						}
+						break;
+					}
+					i++;
+				}
+				i++;
+			} else if (c == '-' && i + 1 < len && sql.charAt(i + 1) == '-') {
+				while (i < len && sql.charAt(i) != '\n') {
+					i++;
+				}
+			} else if (c == '/' && i + 1 < len && sql.charAt(i + 1) == '*') {
+				int end = sql.indexOf("*/", i + 2);
+				i = end < 0 ? len : end + 2;
+			} else if (isNamePart(c) || c == '"' || c == '`' || c == '[') {
+				int start = i;
+				boolean quoted = false;
+				while (i < len) {
+					char ch = sql.charAt(i);
+					if (ch == '"' || ch == '`' || ch == '[') {
+						char close = ch == '[' ? ']' : ch;
+						int end = sql.indexOf(close, i + 1);
+						i = end < 0 ? len : end + 1;
+						quoted = true;
+					} else if (isNamePart(ch) || ch == '.') {
+						i++;
+					} else {
+						break;
+					}
+				}
+				String token = sql.substring(start, i);
+				tokens.add(quoted ? token : token.toUpperCase());
+			} else {
+				tokens.add(String.valueOf(c));
+				i++;
+			}
+		}
+		return tokens;
+	}
+
+	private static boolean isNamePart(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#';
+	}
+}
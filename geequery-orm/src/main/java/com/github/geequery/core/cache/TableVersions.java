@@ -0,0 +1,211 @@
+package com.github.geequery.core.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 表的版本号。
+ * <p>
+ * 每张表有一个版本号，表中的数据每次被修改时加一。缓存的记录保存读取数据时涉及的各表的版本号，
+ * 之后只要比较版本号是否变化，就能知道记录是否过时，不需要逐条查找和清除受影响的缓存。
+ * <p>
+ * 另有一个全局版本号，无法确定被修改的表时(如DDL、存储过程)加一，使所有记录失效。
+ * <p>
+ * 一个{@link com.github.geequery.core.DbClient}的二级缓存和查询结果缓存共用一个实例。
+ * <p>
+ * 可以设置一个{@link Listener}监听版本号的变化，如{@link InvalidationBus}将本地的修改通知到其他节点。
+ *
+ * @author jiyi
+ *
+ */
+public final class TableVersions {
+	/**
+	 * 表名(大写) -> 版本号
+	 */
+	private final ConcurrentMap<String, AtomicLong> versions = new ConcurrentHashMap<String, AtomicLong>();
+	private final AtomicLong epoch = new AtomicLong();
+	private volatile Listener listener;
+
+	/**
+	 * 版本号变化的监听器
+	 */
+	public interface Listener {
+		/**
+		 * 表中的数据被修改
+		 *
+		 * @param table
+		 *            表名(大写，不含schema)
+		 * @param key
+		 *            被修改的记录的主键，不确定时为null
+		 */
+		void tableUpdated(String table, Object key);
+
+		/**
+		 * 所有表都视为被修改
+		 */
+		void allUpdated();
+	}
+
+	public Listener getListener() {
+		return listener;
+	}
+
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * 记录当前的版本号
+	 *
+	 * @param tables
+	 *            表名，由{@link #tableKey(String)}处理过
+	 * @return 第一个元素为全局版本号，之后依次为各表的版本号
+	 */
+	public long[] stamp(String[] tables) {
+		long[] stamp = new long[tables.length + 1];
+		stamp[0] = epoch.get();
+		for (int i = 0; i < tables.length; i++) {
+			stamp[i + 1] = version(tables[i]);
+		}
+		return stamp;
+	}
+
+	/**
+	 * 判断记录的版本号是否仍是当前的版本号
+	 *
+	 * @param tables
+	 *            表名
+	 * @param stamp
+	 *            {@link #stamp(String[])}的返回值
+	 * @return 没有任何一张表被修改过时返回true
+	 */
+	public boolean isCurrent(String[] tables, long[] stamp) {
+		if (stamp[0] != epoch.get()) {
+			return false;
+		}
+		for (int i = 0; i < tables.length; i++) {
+			if (version(tables[i]) != stamp[i + 1]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private long version(String table) {
+		AtomicLong v = versions.get(table);
+		return v == null ? 0 : v.get();
+	}
+
+	/**
+	 * 表中的数据被修改
+	 *
+	 * @param table
+	 *            表名，可以带schema和引号
+	 */
+	public void update(String table) {
+		update(table, null);
+	}
+
+	/**
+	 * 表中的一条记录被修改。本地的缓存不按主键区分，整张表的缓存失效；主键会通知给监听器
+	 *
+	 * @param table
+	 *            表名，可以带schema和引号
+	 * @param key
+	 *            主键，不确定时为null
+	 */
+	public void update(String table, Object key) {
+		if (table == null) {
+			return;
+		}
+		String name = tableKey(table);
+		apply(name);
+		Listener listener = this.listener;
+		if (listener != null) {
+			listener.tableUpdated(name, key);
+		}
+	}
+
+	/**
+	 * 所有表都视为被修改
+	 */
+	public void updateAll() {
+		applyAll();
+		Listener listener = this.listener;
+		if (listener != null) {
+			listener.allUpdated();
+		}
+	}
+
+	/*
+	 * 更新版本号，不通知监听器。用于应用从其他节点收到的修改
+	 */
+	void apply(String table) {
+		AtomicLong v = versions.get(table);
+		if (v == null) {
+			v = new AtomicLong();
+			AtomicLong old = versions.putIfAbsent(table, v);
+			if (old != null) {
+				v = old;
+			}
+		}
+		v.incrementAndGet();
+	}
+
+	void applyAll() {
+		epoch.incrementAndGet();
+	}
+
+	/**
+	 * 多张表中的数据被修改
+	 *
+	 * @param tables
+	 *            表名，为null时所有表都视为被修改
+	 */
+	public void update(String[] tables) {
+		if (tables == null) {
+			updateAll();
+		} else {
+			for (String table : tables) {
+				update(table);
+			}
+		}
+	}
+
+	/**
+	 * 执行了一个更新语句。从语句中找出被修改的表，无法确定时所有表都视为被修改
+	 *
+	 * @param sql
+	 *            SQL语句
+	 * @return 被修改的表，无法确定时返回null
+	 */
+	public String[] executed(String sql) {
+		String[] tables = SqlTables.written(sql);
+		update(tables);
+		return tables;
+	}
+
+	/**
+	 * 去掉schema和引号，转为大写
+	 *
+	 * @param table
+	 *            表名
+	 * @return 用于比较的表名
+	 */
+	public static String tableKey(String table) {
+		int index = table.lastIndexOf('.');
+		if (index > -1) {
+			table = table.substring(index + 1);
+		}
+		table = table.trim();
+		int len = table.length();
+		if (len > 1) {
+			char c = table.charAt(0);
+			if (c == '"' || c == '`' || c == '[') {
+				table = table.substring(1, len - 1);
+			}
+		}
+		return table.toUpperCase();
+	}
+}
@@ -6,6 +6,7 @@ import org.springframework.instrument.InstrumentationSavingAgent;
 
 import com.github.geequery.common.log.LogUtil;
 import com.github.geequery.core.SqlLog;
+import com.github.geequery.core.StatementCache;
 import com.github.geequery.core.instrument.GqClassFileTransformer;
 import com.github.geequery.entity.MetaHolder;
 import com.github.geequery.entity.MetadataFacade;
@@ -57,6 +58,14 @@ public class ORMConfig implements ORMConfigMBean {
      * 内存排序和聚合等计算的最大支持结果数
      */
     private int partitionInMemoryMaxRows;
+    /**
+     * 内存聚合时分组状态允许占用的字节数，超出后写入临时文件
+     */
+    private long partitionInMemoryMaxBytes;
+    /**
+     * 每个连接上缓存的PreparedStatement个数
+     */
+    private int statementCacheSize;
 
     /**
      * Lob等数据流映射到String时的编码
@@ -78,10 +87,18 @@ public class ORMConfig implements ORMConfigMBean {
      * 全局最大一次性查询数量限制
      */
     private int globalFetchSize;
+    /**
+     * 流式查询每次获取的大小
+     */
+    private int streamFetchSize;
     /**
      * 批操作下日志显示参数最大条数
      */
     private int maxBatchLog;
+    /**
+     * 批操作分段提交的大小，0表示不分段
+     */
+    private int batchFlushSize;
     /**
      * 全局查询超时
      */
@@ -142,6 +159,10 @@ public class ORMConfig implements ORMConfigMBean {
      * 允许延迟加载
      */
     private boolean enableLazyLoad;
+    /**
+     * 对多级联加载时批量抓取
+     */
+    private boolean cascadeBatchFetch;
 
     /**
      * 启用/禁用一级缓存
@@ -156,6 +177,25 @@ public class ORMConfig implements ORMConfigMBean {
      * 二级缓存的生存周期，为0时禁用二级缓存。
      */
     private int cacheLevel2;
+    /**
+     * 二级缓存的容量
+     */
+    private long cacheLevel2MaxWeight;
+
+    /**
+     * 查询结果缓存的容量
+     */
+    private long resultCacheMaxWeight;
+
+    /**
+     * 跨节点的缓存失效通知方式
+     */
+    private String cacheInvalidationTransport;
+
+    /**
+     * 缓存失效通知的发送周期(毫秒)
+     */
+    private int cacheInvalidationFlushInterval;
 
     /**
      * 定期检查连接
@@ -212,8 +252,10 @@ public class ORMConfig implements ORMConfigMBean {
         setDbEncoding(JefConfiguration.get(DbCfg.DB_ENCODING, Charset.defaultCharset().name()));
         globalMaxResults = JefConfiguration.getInt(DbCfg.DB_MAX_RESULTS_LIMIT, 0);
         globalFetchSize = JefConfiguration.getInt(DbCfg.DB_FETCH_SIZE, 0);
+        streamFetchSize = JefConfiguration.getInt(DbCfg.DB_STREAM_FETCH_SIZE, 1000);
         debugMode = JefConfiguration.getBoolean(Item.DB_DEBUG, false);
         maxBatchLog = JefConfiguration.getInt(DbCfg.DB_MAX_BATCH_LOG, 5);
+        batchFlushSize = JefConfiguration.getInt(DbCfg.DB_BATCH_FLUSH_SIZE, 0);
         selectTimeout = JefConfiguration.getInt(DbCfg.DB_SELECT_TIMEOUT, 60);
         updateTimeout = JefConfiguration.getInt(DbCfg.DB_UPDATE_TIMEOUT, 60);
         deleteTimeout = JefConfiguration.getInt(DbCfg.DB_DELETE_TIMEOUT, 60);
@@ -230,9 +272,14 @@ public class ORMConfig implements ORMConfigMBean {
         manualSequence = JefConfiguration.getBoolean(DbCfg.DB_SUPPORT_MANUAL_GENERATE, false);
         allowEmptyQuery = JefConfiguration.getBoolean(DbCfg.ALLOW_EMPTY_QUERY, true);
         enableLazyLoad = JefConfiguration.getBoolean(DbCfg.DB_ENABLE_LAZY_LOAD, true);
+        cascadeBatchFetch = JefConfiguration.getBoolean(DbCfg.DB_CASCADE_BATCH_FETCH, true);
         enableLazyLob = JefConfiguration.getBoolean(DbCfg.DB_LOB_LAZY_LOAD, false);
         cacheLevel1 = JefConfiguration.getBoolean(DbCfg.CACHE_LEVEL_1, false);
         cacheLevel2 = JefConfiguration.getInt(DbCfg.CACHE_GLOBAL_EXPIRE_TIME, 0);
+        cacheLevel2MaxWeight = JefConfiguration.getLong(DbCfg.CACHE_GLOBAL_MAX_WEIGHT, 1000000);
+        resultCacheMaxWeight = JefConfiguration.getLong(DbCfg.CACHE_RESULT_MAX_WEIGHT, 100000);
+        cacheInvalidationTransport = JefConfiguration.get(DbCfg.CACHE_INVALIDATION_TRANSPORT);
+        cacheInvalidationFlushInterval = JefConfiguration.getInt(DbCfg.CACHE_INVALIDATION_FLUSH_INTERVAL, 50);
         cacheDebug = System.getProperty("cache.debug") != null;
         setFormatSQL(JefConfiguration.getBoolean(DbCfg.DB_FORMAT_SQL, false));
         heartBeatSleep = JefConfiguration.getLong(DbCfg.DB_HEARTBEAT, 120000);
@@ -242,6 +289,8 @@ public class ORMConfig implements ORMConfigMBean {
         filterAbsentTables = JefConfiguration.getBoolean(DbCfg.PARTITION_FILTER_ABSENT_TABLES, true);
         partitionCreateTableInneed = JefConfiguration.getBoolean(DbCfg.PARTITION_CREATE_TABLE_INNEED, true);
         partitionInMemoryMaxRows = JefConfiguration.getInt(DbCfg.PARTITION_INMEMORY_MAXROWS, 0);
+        partitionInMemoryMaxBytes = JefConfiguration.getLong(DbCfg.PARTITION_INMEMORY_MAXBYTES, 64L * 1024 * 1024);
+        statementCacheSize = JefConfiguration.getInt(DbCfg.DB_STATEMENT_CACHE_SIZE, 32);
         autoCreateSequence = JefConfiguration.getBoolean(DbCfg.AUTO_SEQUENCE_CREATION, true);
         maxInConditions = JefConfiguration.getInt(DbCfg.DB_MAX_IN_CONDITIONS, 500);
         parallelSelect = JefConfiguration.getInt(DbCfg.PARTITION_PARALLEL, 3);
@@ -319,6 +368,14 @@ public class ORMConfig implements ORMConfigMBean {
         this.enableLazyLoad = enableLazyLoad;
     }
 
+    public boolean isCascadeBatchFetch() {
+        return cascadeBatchFetch;
+    }
+
+    public void setCascadeBatchFetch(boolean cascadeBatchFetch) {
+        this.cascadeBatchFetch = cascadeBatchFetch;
+    }
+
     public boolean isEnableLazyLob() {
         return enableLazyLob;
     }
@@ -416,6 +473,14 @@ public class ORMConfig implements ORMConfigMBean {
         QueryOption.DEFAULT_MAX1.setFetchSize(globalFetchSize);
     }
 
+    public int getStreamFetchSize() {
+        return streamFetchSize;
+    }
+
+    public void setStreamFetchSize(int streamFetchSize) {
+        this.streamFetchSize = streamFetchSize;
+    }
+
     public int getMaxBatchLog() {
         return maxBatchLog;
     }
@@ -424,6 +489,14 @@ public class ORMConfig implements ORMConfigMBean {
         this.maxBatchLog = maxBatchLog;
     }
 
+    public int getBatchFlushSize() {
+        return batchFlushSize;
+    }
+
+    public void setBatchFlushSize(int batchFlushSize) {
+        this.batchFlushSize = batchFlushSize;
+    }
+
     public int getSelectTimeout() {
         return selectTimeout;
     }
@@ -604,6 +677,26 @@ public class ORMConfig implements ORMConfigMBean {
         this.partitionInMemoryMaxRows = partitionInMemoryMaxRows;
     }
 
+    public long getPartitionInMemoryMaxBytes() {
+        return partitionInMemoryMaxBytes;
+    }
+
+    public void setPartitionInMemoryMaxBytes(long partitionInMemoryMaxBytes) {
+        this.partitionInMemoryMaxBytes = partitionInMemoryMaxBytes;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    public String getStatementCacheStatistics() {
+        return StatementCache.getStatistics();
+    }
+
     public boolean isJpaContinueCommitIfError() {
         return jpaContinueCommitIfError;
     }
@@ -680,4 +773,51 @@ public class ORMConfig implements ORMConfigMBean {
     public void setCacheLevel2(int cacheLevel2) {
         this.cacheLevel2 = cacheLevel2;
     }
+
+    /**
+     * 二级缓存的容量，按缓存结果的估算大小(行数×列数)计算。 该值必须在SessionFactory对象创建之前设置。对象创建后再设置无效
+     * 
+     * @return
+     */
+    public long getCacheLevel2MaxWeight() {
+        return cacheLevel2MaxWeight;
+    }
+
+    public void setCacheLevel2MaxWeight(long cacheLevel2MaxWeight) {
+        this.cacheLevel2MaxWeight = cacheLevel2MaxWeight;
+    }
+
+    /**
+     * 查询结果缓存的容量，按行数×列数估算。为0时不启用查询结果缓存
+     * 
+     * @return
+     */
+    public long getResultCacheMaxWeight() {
+        return resultCacheMaxWeight;
+    }
+
+    public void setResultCacheMaxWeight(long resultCacheMaxWeight) {
+        this.resultCacheMaxWeight = resultCacheMaxWeight;
+    }
+
+    /**
+     * 跨节点的缓存失效通知方式，为空时不通知其他节点。 该值必须在SessionFactory对象创建之前设置。对象创建后再设置无效
+     * 
+     * @return
+     */
+    public String getCacheInvalidationTransport() {
+        return cacheInvalidationTransport;
+    }
+
+    public void setCacheInvalidationTransport(String cacheInvalidationTransport) {
+        this.cacheInvalidationTransport = cacheInvalidationTransport;
+    }
+
+    public int getCacheInvalidationFlushInterval() {
+        return cacheInvalidationFlushInterval;
+    }
+
+    public void setCacheInvalidationFlushInterval(int cacheInvalidationFlushInterval) {
+        this.cacheInvalidationFlushInterval = cacheInvalidationFlushInterval;
+    }
 }
@@ -33,6 +33,18 @@ public interface ORMConfigMBean {
 	 */
 	void setEnableLazyLoad(boolean enableLazyLoad);
 
+	/**
+	 * 获得配置参数
+	 * @return {@link DbCfg#DB_CASCADE_BATCH_FETCH}
+	 */
+	boolean isCascadeBatchFetch();
+
+	/**
+	 * 修改配置
+	 * @param cascadeBatchFetch {@link DbCfg#DB_CASCADE_BATCH_FETCH}
+	 */
+	void setCascadeBatchFetch(boolean cascadeBatchFetch);
+
 	/**
 	 * 获得配置参数
 	 * @return {@link DbCfg#ALLOW_EMPTY_QUERY}
@@ -141,6 +153,18 @@ public interface ORMConfigMBean {
 	 */
 	void setGlobalFetchSize(int globalFetchSize);
 
+	/**
+	 * 获得配置参数
+	 * @return {@link DbCfg#DB_STREAM_FETCH_SIZE}
+	 */
+	int getStreamFetchSize();
+
+	/**
+	 * 修改配置
+	 * @param streamFetchSize {@link DbCfg#DB_STREAM_FETCH_SIZE}
+	 */
+	void setStreamFetchSize(int streamFetchSize);
+
 	/**
 	 * 获得配置参数
 	 * @return {@link DbCfg#DB_MAX_BATCH_LOG}
@@ -153,6 +177,18 @@ public interface ORMConfigMBean {
 	 */
 	void setMaxBatchLog(int maxBatchLog);
 
+	/**
+	 * 获得配置参数
+	 * @return {@link DbCfg#DB_BATCH_FLUSH_SIZE}
+	 */
+	int getBatchFlushSize();
+
+	/**
+	 * 修改配置
+	 * @param batchFlushSize {@link DbCfg#DB_BATCH_FLUSH_SIZE}
+	 */
+	void setBatchFlushSize(int batchFlushSize);
+
 	/**
 	 * 获得配置参数
 	 * @return {@link DbCfg#DB_SELECT_TIMEOUT}
@@ -403,6 +439,36 @@ public interface ORMConfigMBean {
 	 */
 	void setPartitionInMemoryMaxRows(int partitionInMemoryMaxRows);
 
+	/**
+	 * 获得配置参数 
+	 * @return {@link DbCfg#PARTITION_INMEMORY_MAXBYTES}
+	 */
+	long getPartitionInMemoryMaxBytes();
+
+	/**
+	 * 修改配置
+	 * @param partitionInMemoryMaxBytes {@link DbCfg#PARTITION_INMEMORY_MAXBYTES}
+	 */
+	void setPartitionInMemoryMaxBytes(long partitionInMemoryMaxBytes);
+
+	/**
+	 * 获得配置参数 
+	 * @return {@link DbCfg#DB_STATEMENT_CACHE_SIZE}
+	 */
+	int getStatementCacheSize();
+
+	/**
+	 * 修改配置
+	 * @param statementCacheSize {@link DbCfg#DB_STATEMENT_CACHE_SIZE}
+	 */
+	void setStatementCacheSize(int statementCacheSize);
+
+	/**
+	 * 获得各连接上语句缓存的命中/未命中/淘汰次数合计
+	 * @return 统计信息
+	 */
+	String getStatementCacheStatistics();
+
 	/**
 	 * 获得配置参数 
 	 * @return {@link DbCfg#DB_SET_ISOLATION}
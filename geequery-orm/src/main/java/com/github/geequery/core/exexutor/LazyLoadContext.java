@@ -61,6 +61,23 @@ public final class LazyLoadContext implements ILazyLoadContext {
 		return executed>=processor.size();
 	}
 
+	/*
+	 * 由同批次的其他对象触发加载后，标记该任务已经执行
+	 */
+	void markLoaded(int id) {
+		if (loaded == null) {
+			loaded = new BitSet(processor.size());
+		}
+		if (!loaded.get(id)) {
+			loaded.set(id, true);
+			executed++;
+		}
+	}
+
+	boolean isLoaded(int id) {
+		return loaded != null && loaded.get(id);
+	}
+
 	public LazyLoadProcessor getProcessor() {
 		return processor;
 	}
@@ -11,6 +11,9 @@ import com.github.geequery.core.Session;
 import com.github.geequery.core.SessionFactory;
 import com.github.geequery.entity.IQueryableEntity;
 
+import jef.database.DataObject;
+import jef.database.ILazyLoadContext;
+
 /**
  * 该对象描述一个lazyload策略，多个对象公用，因此不保存状态
  * @author jiyi
@@ -21,6 +24,10 @@ public final class LazyLoadProcessor {
 	private SessionFactory parent;
 	private final List<LazyLoadTask> tasks=new ArrayList<LazyLoadTask>();
 	private final Map<String,Integer> onFields=new HashMap<String,Integer>(8,0.6f);
+	/**
+	 * 同一次查询得到的对象。其中一个对象触发延迟加载时，一起加载
+	 */
+	private WeakReference<List<?>> siblings;
 	
 	public LazyLoadProcessor(LazyLoadTask task,Session session) {
 		this.session=new WeakReference<Session>(session);
@@ -48,7 +55,37 @@ public final class LazyLoadProcessor {
 			}
 		}
 		if(s==null)s=parent.getSession();
-		tasks.get(id).process(s, obj);
+		LazyLoadTask task=tasks.get(id);
+		List<?> all = siblings == null ? null : siblings.get();
+		if (all != null && all.size() > 1) {
+			List<Object> batch = new ArrayList<Object>();
+			batch.add(obj);
+			for (Object o : all) {
+				if (o != obj && o instanceof DataObject) {
+					ILazyLoadContext lz = ((DataObject) o).lazyload;
+					if (lz instanceof LazyLoadContext && lz.getProcessor() == this && !((LazyLoadContext) lz).isLoaded(id)) {
+						batch.add(o);
+					}
+				}
+			}
+			if (batch.size() > 1) {
+				task.processBatch(s, batch);
+				// 触发加载的对象由调用者标记
+				for (int i = 1; i < batch.size(); i++) {
+					((LazyLoadContext) ((DataObject) batch.get(i)).lazyload).markLoaded(id);
+				}
+				return;
+			}
+		}
+		task.process(s, obj);
+	}
+
+	/**
+	 * 设置同一次查询得到的对象列表
+	 * @param objs
+	 */
+	public void setSiblings(List<?> objs) {
+		this.siblings = new WeakReference<List<?>>(objs);
 	}
 	
 	public void register(LazyLoadTask vsManyLoadTask) {
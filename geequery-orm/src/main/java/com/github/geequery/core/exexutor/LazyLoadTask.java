@@ -2,6 +2,7 @@ package com.github.geequery.core.exexutor;
 
 import java.sql.SQLException;
 import java.util.Collection;
+import java.util.List;
 
 import com.github.geequery.core.Session;
 
@@ -14,5 +15,13 @@ public interface LazyLoadTask {
 
 	void process(Session db, Object obj) throws SQLException;
 
+	/**
+	 * 为同一批查询结果中的多个对象执行加载。不支持批量加载的实现逐个调用{@link #process(Session, Object)}
+	 * @param db
+	 * @param objs
+	 * @throws SQLException
+	 */
+	void processBatch(Session db, List<?> objs) throws SQLException;
+
 	Collection<String> getEffectFields();
 }
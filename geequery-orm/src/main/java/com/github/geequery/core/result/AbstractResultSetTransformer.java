@@ -6,6 +6,8 @@ import java.sql.Statement;
 
 import javax.sql.rowset.CachedRowSet;
 
+import com.github.geequery.core.QueryOption;
+
 public abstract class AbstractResultSetTransformer<T> implements ResultSetExtractor<T> {
 	private int fetchSize;
 	private int queryTimeout;
@@ -55,7 +57,7 @@ public abstract class AbstractResultSetTransformer<T> implements ResultSetExtrac
 	}
 
 	public void apply(Statement st) throws SQLException{
-		if(this.fetchSize>0){
+		if(QueryOption.isFetchSizeSet(this.fetchSize)){
 			st.setFetchSize(fetchSize);
 		}
 		if(this.maxRows>0){
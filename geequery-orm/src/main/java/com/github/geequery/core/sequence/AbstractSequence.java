@@ -3,7 +3,12 @@ package com.github.geequery.core.sequence;
 import java.sql.SQLException;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.persistence.PersistenceException;
 
@@ -17,13 +22,54 @@ import com.github.geequery.tools.StringUtils;
 
 /**
  * Sequence实现的抽象类
- * 
+ * <p>
+ * 缓存的值按区段存放，每个区段只记录当前值和结束值，取值时用CAS推进当前值，不需要为每个值创建对象。
+ * 当缓存的剩余值低于上次取数的1/4时，会在后台线程中预取下一批。后台预取的批次大小根据消耗速度在
+ * {@link DbCfg#SEQUENCE_BATCH_SIZE}和其若干倍之间自动调整。
+ * <p>
+ * 后台预取不持有取数锁，取到的值边取边放入缓存，调用者可以立即使用。只有缓存已经取空时，调用者才在取数锁上同步取一批
+ * {@link DbCfg#SEQUENCE_BATCH_SIZE}大小的值。原生Sequence每个值(或每个步长)都需要一次数据库访问，因此不会让调用者等待整个扩大后的批次。
+ * 由于后台预取和同步取数可以同时进行，{@link #getFirstAndPushOthers}的实现必须是线程安全的。
+ *
  * @author jiyi
- * 
+ *
  */
 public abstract class AbstractSequence implements Sequence {
+	/**
+	 * 两次取数的间隔小于此值时扩大批次，大于其8倍时缩小批次
+	 */
+	private static final long TARGET_INTERVAL = 2000;
+
+	private static final ExecutorService PREFETCH = Executors.newCachedThreadPool(new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "gq-sequence-prefetch-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
 	private int cacheSize;
-	protected final Queue<Long> cache = new ConcurrentLinkedQueue<Long>(); 
+	private final int maxFactor;
+	/**
+	 * 当前的批次大小，为cacheSize的倍数
+	 */
+	private volatile int factor = 1;
+	private long lastFetchTime;
+
+	private final Queue<Range> cache = new ConcurrentLinkedQueue<Range>();
+	/**
+	 * 缓存中剩余的值的个数
+	 */
+	private final AtomicLong available = new AtomicLong();
+	/**
+	 * 当前线程的本次取数中放入缓存的值的个数。后台预取和同步取数可能同时进行，不能用全局计数的差值计算
+	 */
+	private final ThreadLocal<long[]> fetched = new ThreadLocal<long[]>();
+	private volatile long lowWater;
+	private final AtomicBoolean prefetching = new AtomicBoolean();
+	private final Object fetchLock = new Object();
 
 	// 需要初始化
 	protected String dbKey;
@@ -35,12 +81,13 @@ public abstract class AbstractSequence implements Sequence {
 		cacheSize = JefConfiguration.getInt(DbCfg.SEQUENCE_BATCH_SIZE, 50);
 		if (cacheSize < 1)
 			cacheSize = 1;
+		maxFactor = Math.max(1, JefConfiguration.getInt(DbCfg.SEQUENCE_BATCH_SIZE_MAX_FACTOR, 16));
 		if (target != null) {
 			this.dbKey = target.getDbkey();
 			this.session = target.getSession().getNoTransactionSession();
 		}
 	}
-	
+
 	protected synchronized void tryInit() {
 		if(!initSuccess){
 			tryInitCount.incrementAndGet();
@@ -60,16 +107,16 @@ public abstract class AbstractSequence implements Sequence {
 
 	/**
 	 * 将一个已经领出的键值从新塞回到Sequence中
-	 * 
+	 *
 	 * @param key
 	 */
 	public void pushBack(long key) {
-		cache.add(key);
+		pushRange(key, key);
 	}
 
 	public long next() {
-		Long value = cache.poll();
-		if (value != null){
+		long value = poll();
+		if (value != Range.NONE) {
 			return value;
 		}
 		try {
@@ -77,24 +124,117 @@ public abstract class AbstractSequence implements Sequence {
 				if(tryInitCount.get()<3){
 					tryInit();
 					if(!initSuccess){
-						throw new PersistenceException("Sequence/Table ["+this.getName()+"] createing failure.");	
+						throw new PersistenceException("Sequence/Table ["+this.getName()+"] createing failure.");
 					}
 				}else{
-					throw new PersistenceException("Sequence/Table ["+this.getName()+"] is not exist, and there will be no attemp to create it.");	
+					throw new PersistenceException("Sequence/Table ["+this.getName()+"] is not exist, and there will be no attemp to create it.");
 				}
 			}
-			return getFirstAndPushOthers(cacheSize, session, dbKey);
+			synchronized (fetchLock) {
+				// 等待锁期间可能已经被其他线程(或预取任务)填充
+				value = poll();
+				if (value != Range.NONE) {
+					return value;
+				}
+				return fetch(false);
+			}
 		} catch (SQLException e) {
 			throw DbUtils.toRuntimeException(e);
 		}
 	}
 
+	/*
+	 * 从缓存中取值，缓存为空时返回Range.NONE
+	 */
+	private long poll() {
+		Range range;
+		while ((range = cache.peek()) != null) {
+			long value = range.take();
+			if (value != Range.NONE) {
+				if (available.decrementAndGet() < lowWater) {
+					prefetch();
+				}
+				return value;
+			}
+			cache.remove(range);
+		}
+		return Range.NONE;
+	}
+
+	/*
+	 * 从数据库取一批值，返回其中第一个，其余放入缓存。
+	 * 同步取数(调用者在等待)只取基本批次，后台预取按消耗速度取扩大后的批次。
+	 */
+	private long fetch(boolean background) throws SQLException {
+		int size = nextFetchSize(background);
+		long[] count = new long[1];
+		fetched.set(count);
+		long value;
+		try {
+			value = getFirstAndPushOthers(size, session, dbKey);
+		} finally {
+			fetched.remove();
+		}
+		lowWater = (count[0] + 1) / 4;
+		return value;
+	}
+
+	/*
+	 * 根据两次取数的间隔调整批次大小，返回本次要取的数量
+	 */
+	private synchronized int nextFetchSize(boolean background) {
+		long now = System.currentTimeMillis();
+		if (lastFetchTime > 0) {
+			long interval = now - lastFetchTime;
+			if (interval < TARGET_INTERVAL && factor < maxFactor) {
+				factor = Math.min(factor * 2, maxFactor);
+			} else if (interval > TARGET_INTERVAL * 8 && factor > 1) {
+				factor = factor / 2;
+			}
+		}
+		lastFetchTime = now;
+		return background ? cacheSize * factor : cacheSize;
+	}
+
+	/*
+	 * 在后台线程中预取下一批。预取期间不持有fetchLock，缓存取空的调用者可以同时同步取数
+	 */
+	private void prefetch() {
+		if (!initSuccess || !prefetching.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			PREFETCH.execute(new Runnable() {
+				public void run() {
+					try {
+						if (available.get() < lowWater) {
+							long value = fetch(true);
+							pushRange(value, value);
+						}
+					} catch (Exception e) {
+						LogUtil.warn("Sequence [{}] prefetch error: {}", getName(), e.getMessage());
+					} finally {
+						prefetching.set(false);
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			prefetching.set(false);
+			LogUtil.warn("Sequence [{}] prefetch rejected: {}", getName(), e.getMessage());
+		}
+	}
+
 	public void clear() {
-		cache.clear();
+		synchronized (fetchLock) {
+			cache.clear();
+			available.set(0);
+			lowWater = 0;
+		}
 	}
 
 	/**
-	 * 
+	 * 从数据库取一批值。后台预取和同步取数可能在不同线程中同时调用此方法，实现不能依赖未同步的实例状态。
+	 *
 	 * @param size
 	 *            要生成的ID数量
 	 * @param conn
@@ -105,13 +245,19 @@ public abstract class AbstractSequence implements Sequence {
 
 	/**
 	 * 将从from 到 value的值全部加入缓存(含头含尾)
-	 * 
+	 *
 	 * @param from
 	 * @param value
 	 */
 	protected void pushRange(long from, long value) {
-		for (long i = from; i <= value; i++) {
-			cache.offer(i);
+		if (from > value) {
+			return;
+		}
+		cache.offer(new Range(from, value));
+		available.addAndGet(value - from + 1);
+		long[] count = fetched.get();
+		if (count != null) {
+			count[0] += value - from + 1;
 		}
 	}
 
@@ -147,4 +293,34 @@ public abstract class AbstractSequence implements Sequence {
 		pushBack(next);
 		return maxInTable < next;
 	}
+
+	/**
+	 * 一段连续的值(含头含尾)
+	 */
+	static final class Range {
+		static final long NONE = Long.MIN_VALUE;
+
+		private final AtomicLong current;
+		private final long end;
+
+		Range(long from, long end) {
+			this.current = new AtomicLong(from);
+			this.end = end;
+		}
+
+		/**
+		 * 取出下一个值，已经取完时返回{@link #NONE}
+		 */
+		long take() {
+			for (;;) {
+				long value = current.get();
+				if (value > end) {
+					return NONE;
+				}
+				if (current.compareAndSet(value, value + 1)) {
+					return value;
+				}
+			}
+		}
+	}
 }
@@ -315,7 +315,10 @@ public final class SequenceManager {
 		private int valueStep;
 		private String update;
 		private String select;
-		private long last = -1;
+		/**
+		 * 最近一次取到的结束值，只用作下次更新的预期值。预期不符时更新失败，重新查询
+		 */
+		private volatile long last = -1;
 
 		/*
 		 * @param key Sequence名称
@@ -351,23 +354,33 @@ public final class SequenceManager {
 		@Override
 		protected long getFirstAndPushOthers(int num, SessionFactory conn, String dbKey) throws SQLException {
 			DbMetaData meta = conn.getNoTransactionSession().getMetaData(dbKey);
-			if (last < 0) {
-				last = queryLast(meta);
+			// 后台预取和同步取数可能同时进行，只使用局部变量。两者的预期值相同时，数据库上只有一个更新成功
+			long current = last;
+			if (current < 0) {
+				current = queryLast(meta);
 			}
-			long nextVal = last + valueStep;
-			int updated = conn.executeSql(update, nextVal, last);
+			// 消耗较快时num会成倍扩大，步长随之扩大
+			long step = (long) valueStep * Math.max(1, num / getCacheSize());
+			long nextVal = current + step;
+			int updated = conn.executeSql(update, nextVal, current);
 			while (updated == 0) { // 基于CAS操作的乐观锁,
-				last = queryLast(meta);
-				nextVal = last + valueStep;
-				updated = conn.executeSql(update, nextVal, last);
+				current = queryLast(meta);
+				nextVal = current + step;
+				updated = conn.executeSql(update, nextVal, current);
 			}
-			long result = last + 1;
-			super.pushRange(last + 2, nextVal);
-			last = nextVal;
+			long result = current + 1;
+			super.pushRange(current + 2, nextVal);
+			updateLast(nextVal);
 			LogUtil.info("Fetch Table-Sequence {} for column [{}.{}], from {} to {}.", config.name, this.rawTable, this.rawColumn, result, nextVal);
 			return result;
 		}
 
+		private synchronized void updateLast(long value) {
+			if (value > last) {
+				last = value;
+			}
+		}
+
 		private long queryLast(DbMetaData conn) throws SQLException {
 			long value = conn.selectBySql(select, GET_LONG_OR_TABLE_NOT_EXIST, Collections.EMPTY_LIST);
 			if (value == -9999L) {// 没有该条记录
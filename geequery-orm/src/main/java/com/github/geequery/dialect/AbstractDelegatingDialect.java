@@ -1,5 +1,6 @@
 package com.github.geequery.dialect;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -14,6 +15,8 @@ import jef.database.ConnectInfo;
 import jef.database.DbFunction;
 import jef.database.DbMetaData;
 import jef.database.datasource.DataSourceInfo;
+import com.github.geequery.dbmeta.CatalogSnapshot;
+import com.github.geequery.dialect.handler.BulkInsertHandler;
 import com.github.geequery.dialect.handler.LimitHandler;
 import com.github.geequery.dialect.type.AColumnMapping;
 import com.github.geequery.dialect.type.AutoIncrementMapping;
@@ -223,6 +226,22 @@ public abstract class AbstractDelegatingDialect implements DatabaseDialect {
 		dialect.toExtremeInsert(sql);
 	}
 
+	public BulkInsertHandler getBulkInsertHandler() {
+		return dialect instanceof AbstractDialect ? ((AbstractDialect) dialect).getBulkInsertHandler() : null;
+	}
+
+	public boolean isStatementCacheEnabled() {
+		return !(dialect instanceof AbstractDialect) || ((AbstractDialect) dialect).isStatementCacheEnabled();
+	}
+
+	public boolean loadCatalog(Connection conn, String schema, CatalogSnapshot.Builder builder) throws SQLException {
+		return dialect instanceof AbstractDialect && ((AbstractDialect) dialect).loadCatalog(conn, schema, builder);
+	}
+
+	public int getStreamFetchSize(int fetchSize) {
+		return dialect instanceof AbstractDialect ? ((AbstractDialect) dialect).getStreamFetchSize(fetchSize) : fetchSize;
+	}
+
 	@Override
 	public String toDefaultString(Object defaultValue, int sqlType, int changeTo) {
 		return dialect.toDefaultString(defaultValue, sqlType, changeTo);
@@ -19,6 +19,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -47,6 +48,7 @@ import jef.database.query.SqlExpression;
 import jef.database.wrapper.clause.InsertSqlClause;
 
 import com.github.geequery.DbMetaData;
+import com.github.geequery.dbmeta.CatalogSnapshot;
 import com.github.geequery.dbmeta.Case;
 import com.github.geequery.dbmeta.Column;
 import com.github.geequery.dbmeta.Constraint;
@@ -60,6 +62,7 @@ import com.github.geequery.dialect.function.DbFunction;
 import com.github.geequery.dialect.function.FunctionDialect;
 import com.github.geequery.dialect.function.SQLFunction;
 import com.github.geequery.dialect.function.StandardSQLFunction;
+import com.github.geequery.dialect.handler.BulkInsertHandler;
 import com.github.geequery.dialect.type.AColumnMapping;
 import com.github.geequery.dialect.type.AutoIncrementMapping;
 import com.github.geequery.dialect.type.ParserFactory;
@@ -701,6 +704,54 @@ public abstract class AbstractDialect implements DatabaseDialect {
 	public void toExtremeInsert(InsertSqlClause sql) {
 	}
 
+	/**
+	 * 极限模式下批量插入使用的本地批量加载方式
+	 * 
+	 * @return 不支持时返回null，此时使用标准的JDBC批操作
+	 */
+	public BulkInsertHandler getBulkInsertHandler() {
+		return null;
+	}
+
+	/**
+	 * 是否在连接上缓存PreparedStatement。驱动自身已经缓存语句时可以返回false，避免重复缓存
+	 * 
+	 * @return 默认true
+	 * @see com.github.geequery.core.StatementCache
+	 */
+	public boolean isStatementCacheEnabled() {
+		return true;
+	}
+
+	/**
+	 * 批量加载一个schema下所有表的主键、索引和外键，用于生成数据库结构快照。
+	 * 此时表和列已经通过JDBC元数据加载到builder中。实现此方法的方言需同时声明{@link Feature#BULK_CATALOG}。
+	 * 
+	 * @param conn
+	 *            连接
+	 * @param schema
+	 *            schema
+	 * @param builder
+	 *            快照构造器
+	 * @return 默认返回false，表示不支持批量加载，此时不使用快照
+	 * @throws SQLException
+	 * @see CatalogSnapshot
+	 */
+	public boolean loadCatalog(Connection conn, String schema, CatalogSnapshot.Builder builder) throws SQLException {
+		return false;
+	}
+
+	/**
+	 * 流式查询时使用的fetchSize。部分驱动只有在特定的fetchSize下才会逐批从服务器读取，而不是一次读入全部结果。
+	 * 
+	 * @param fetchSize
+	 *            配置的fetchSize
+	 * @return 实际设置到Statement上的fetchSize，默认即配置的值
+	 */
+	public int getStreamFetchSize(int fetchSize) {
+		return fetchSize;
+	}
+
 	public void accept(DbMetaData dbMetadata) {
 		this.caseHandler = dbMetadata.getFeature().getDefaultCase();
 		String q = dbMetadata.getFeature().getQuoteChar();
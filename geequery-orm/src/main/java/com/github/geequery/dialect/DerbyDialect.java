@@ -208,6 +208,14 @@ public class DerbyDialect extends AbstractDialect {
 		return "APP";
 	}
 
+	/**
+	 * Derby引擎自身有语句缓存(derby.language.statementCacheSize)
+	 */
+	@Override
+	public boolean isStatementCacheEnabled() {
+		return false;
+	}
+
 	public String getDriverClass(String url) {
 		if(url!=null && url.startsWith("jdbc:derby://")){
 			return "org.apache.derby.jdbc.ClientDriver";			
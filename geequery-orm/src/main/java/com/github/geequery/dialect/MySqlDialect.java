@@ -27,7 +27,9 @@ import jef.database.DbMetaData;
 import jef.database.ORMConfig;
 import jef.database.annotation.DateGenerateType;
 import com.github.geequery.dialect.ColumnType.AutoIncrement;
+import com.github.geequery.dialect.handler.BulkInsertHandler;
 import com.github.geequery.dialect.handler.LimitHandler;
+import com.github.geequery.dialect.handler.MySqlBulkInsertHandler;
 import com.github.geequery.dialect.handler.MySqlLimitHandler;
 import jef.database.exception.ViolatedConstraintNameExtracter;
 import jef.database.jdbc.result.IResultSet;
@@ -442,6 +444,15 @@ public class MySqlDialect extends AbstractDialect {
 		}
 	}
 
+	/**
+	 * MySQL驱动默认将结果集全部读入内存，只有fetchSize为Integer.MIN_VALUE时才逐行读取。
+	 * (连接串中配置useCursorFetch=true时，正数的fetchSize也能生效)
+	 */
+	@Override
+	public int getStreamFetchSize(int fetchSize) {
+		return fetchSize > 0 ? Integer.MIN_VALUE : fetchSize;
+	}
+
 	@Override
 	public void processIntervalExpression(BinaryExpression parent, Interval interval) {
 		interval.toMySqlMode();
@@ -459,6 +470,13 @@ public class MySqlDialect extends AbstractDialect {
 		return limit;
 	}
 
+	private final BulkInsertHandler bulkInsert = new MySqlBulkInsertHandler();
+
+	@Override
+	public BulkInsertHandler getBulkInsertHandler() {
+		return bulkInsert;
+	}
+
 	@Override
 	public ViolatedConstraintNameExtracter getViolatedConstraintNameExtracter() {
 		return EXTRACTER;
@@ -1,6 +1,7 @@
 package com.github.geequery.dialect;
 
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -21,8 +22,11 @@ import jef.database.ORMConfig;
 import com.github.geequery.dialect.ColumnType.AutoIncrement;
 import com.github.geequery.dialect.ColumnType.Clob;
 import com.github.geequery.dialect.ColumnType.Varchar;
+import com.github.geequery.dbmeta.CatalogSnapshot;
+import com.github.geequery.dialect.handler.BulkInsertHandler;
 import com.github.geequery.dialect.handler.LimitHandler;
 import com.github.geequery.dialect.handler.LimitOffsetLimitHandler;
+import com.github.geequery.dialect.handler.PostgreSqlCopyHandler;
 import com.github.geequery.dialect.type.AutoIncrementMapping;
 import jef.database.exception.JDBCExceptionHelper;
 import jef.database.exception.TemplatedViolatedConstraintNameExtracter;
@@ -78,7 +82,7 @@ public class PostgreSql94Dialect extends AbstractDialect {
 	public PostgreSql94Dialect() {
 		features = CollectionUtils.identityHashSet();
 		features.addAll(Arrays.asList(Feature.ALTER_FOR_EACH_COLUMN, Feature.COLUMN_ALTERATION_SYNTAX, Feature.SUPPORT_CONCAT, Feature.SUPPORT_SEQUENCE, Feature.SUPPORT_LIMIT, Feature.AI_TO_SEQUENCE_WITHOUT_DEFAULT,
-				Feature.SUPPORT_COMMENT));
+				Feature.SUPPORT_COMMENT, Feature.BULK_CATALOG));
 
 		loadKeywords("postgresql_keywords.properties");
 
@@ -573,6 +577,58 @@ public class PostgreSql94Dialect extends AbstractDialect {
 	public LimitHandler getLimitHandler() {
 		return limit;
 	}
+
+	private final BulkInsertHandler bulkInsert = new PostgreSqlCopyHandler();
+
+	@Override
+	public BulkInsertHandler getBulkInsertHandler() {
+		return bulkInsert;
+	}
+
+	/*
+	 * 索引(含主键)的每一列一行。表达式索引中的表达式列没有对应的pg_attribute，不返回
+	 */
+	private static final String CATALOG_INDEX_SQL = "select k.table_name, k.index_name, k.is_unique, k.is_primary, a.attname as column_name, k.n as seq, "
+			+ "pg_get_indexdef(k.indexrelid, k.n, true) like '% DESC%' as is_desc from ("
+			+ "select t.oid as relid, t.relname as table_name, i.oid as indexrelid, i.relname as index_name, ix.indisunique as is_unique, ix.indisprimary as is_primary, "
+			+ "(information_schema._pg_expandarray(ix.indkey::int2[])).x as attnum, (information_schema._pg_expandarray(ix.indkey::int2[])).n as n "
+			+ "from pg_index ix join pg_class t on t.oid = ix.indrelid join pg_class i on i.oid = ix.indexrelid "
+			+ "join pg_namespace ns on ns.oid = t.relnamespace where ns.nspname = ? and t.relkind = 'r') k "
+			+ "join pg_attribute a on a.attrelid = k.relid and a.attnum = k.attnum";
+
+	/**
+	 * 从pg_catalog一次查出整个schema的索引和主键，外键则使用不指定表名的JDBC元数据查询(PG驱动支持)
+	 */
+	@Override
+	public boolean loadCatalog(Connection conn, String schema, CatalogSnapshot.Builder builder) throws SQLException {
+		schema = getSchema(schema == null ? getDefaultSchema() : schema);
+		PreparedStatement ps = conn.prepareStatement(CATALOG_INDEX_SQL);
+		ResultSet rs = null;
+		try {
+			ps.setString(1, schema);
+			rs = ps.executeQuery();
+			while (rs.next()) {
+				String table = rs.getString("table_name");
+				String index = rs.getString("index_name");
+				String column = rs.getString("column_name");
+				int seq = rs.getInt("seq");
+				builder.addIndexColumn(table, index, rs.getBoolean("is_unique"), column, !rs.getBoolean("is_desc"), seq, DatabaseMetaData.tableIndexOther);
+				if (rs.getBoolean("is_primary")) {
+					builder.addPrimaryKeyColumn(table, index, column, seq);
+				}
+			}
+		} finally {
+			DbUtils.close(rs);
+			DbUtils.close(ps);
+		}
+		rs = conn.getMetaData().getImportedKeys(null, schema, null);
+		try {
+			builder.addForeignKeys(rs);
+		} finally {
+			DbUtils.close(rs);
+		}
+		return true;
+	}
 	
 	/**
 	 *  Postgres系统表 select * from pg_constraint
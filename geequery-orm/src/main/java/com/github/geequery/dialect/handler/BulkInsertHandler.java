@@ -0,0 +1,43 @@
+package com.github.geequery.dialect.handler;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import com.github.geequery.core.OperateTarget;
+import com.github.geequery.entity.IQueryableEntity;
+import com.github.geequery.query.clause.InsertSqlClause;
+
+/**
+ * 极限模式下的批量插入。由方言提供，使用数据库本地的批量加载方式代替JDBC的executeBatch。
+ * <p>
+ * 极限模式下不回写数据库生成的主键，因此实现类只需要将数据写入表即可。
+ *
+ * @author jiyi
+ * @see com.github.geequery.dialect.AbstractDialect#getBulkInsertHandler()
+ */
+public interface BulkInsertHandler {
+	/**
+	 * 判断该插入语句能否使用本地批量加载方式
+	 *
+	 * @param insert
+	 *            插入语句
+	 * @return 不能处理时返回false，此时使用标准的JDBC批操作
+	 */
+	boolean supports(InsertSqlClause insert);
+
+	/**
+	 * 将数据写入指定的表
+	 *
+	 * @param db
+	 *            数据库
+	 * @param tablename
+	 *            表名
+	 * @param insert
+	 *            插入语句
+	 * @param data
+	 *            要写入的对象
+	 * @return 写入的记录数
+	 * @throws SQLException
+	 */
+	int bulkInsert(OperateTarget db, String tablename, InsertSqlClause insert, List<? extends IQueryableEntity> data) throws SQLException;
+}
@@ -0,0 +1,161 @@
+package com.github.geequery.dialect.handler;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.github.geequery.common.log.LogUtil;
+import com.github.geequery.core.DbUtils;
+import com.github.geequery.core.OperateTarget;
+import com.github.geequery.core.support.SqlLog;
+import com.github.geequery.dialect.type.ColumnMapping;
+import com.github.geequery.entity.IQueryableEntity;
+import com.github.geequery.query.clause.InsertSqlClause;
+import com.github.geequery.tools.StringUtils;
+
+import jef.database.wrapper.variable.BindVariableContext;
+
+/**
+ * MySQL/MariaDB的批量插入，将多行数据改写为一条 {@code INSERT ... VALUES (...),(...)}语句。
+ * <p>
+ * 每条语句的大小按服务端的max_allowed_packet估算，同时不超过单个语句65535个绑定变量的限制。
+ * 效果类似于驱动的rewriteBatchedStatements=true参数，但不需要修改连接串。
+ *
+ * @author jiyi
+ *
+ */
+public class MySqlBulkInsertHandler implements BulkInsertHandler {
+	private static final int DEFAULT_PACKET = 4 * 1024 * 1024;
+	private static final int MAX_PARAMS = 65535;
+
+	/**
+	 * 各数据源的max_allowed_packet
+	 */
+	private final ConcurrentMap<String, Integer> packetSizes = new ConcurrentHashMap<String, Integer>();
+
+	@Override
+	public boolean supports(InsertSqlClause insert) {
+		// 列清单中每个绑定变量的列都对应fields中的一项，因此每行的绑定变量数就是fields的大小。
+		// 其余的列(DEFAULT、函数等)在每行中原样重复，不影响绑定。不能数VALUES部分中的问号，其中的字符串常量可能含有问号。
+		List<ColumnMapping> fields = insert.getFields();
+		return fields != null && !fields.isEmpty();
+	}
+
+	@Override
+	public int bulkInsert(OperateTarget db, String tablename, InsertSqlClause insert, List<? extends IQueryableEntity> data) throws SQLException {
+		List<ColumnMapping> fields = insert.getFields();
+		String head = StringUtils.concat(insert.getInsert(), DbUtils.escapeColumn(db.getProfile(), tablename), "(", insert.getColumnsPart(), ") values");
+		String row = StringUtils.concat("(", insert.getValuesPart(), ")");
+		// 留出10%的余量给协议头和估算误差
+		long budget = getMaxPacket(db) * 9L / 10 - head.length() - insert.getTailer().length();
+		int maxRows = maxRows(fields.size());
+
+		int total = 0;
+		int from = 0;
+		int size = data.size();
+		while (from < size) {
+			int to = fit(data, from, fields, row.length(), budget, maxRows);
+			total += execute(db, head, row, insert, data.subList(from, to));
+			from = to;
+		}
+		return total;
+	}
+
+	/*
+	 * 每条语句的最大行数，受绑定变量个数的限制
+	 */
+	static int maxRows(int columns) {
+		return Math.max(1, MAX_PARAMS / columns);
+	}
+
+	/*
+	 * 从from开始的一条语句能容纳到哪一行(不含)。至少包含一行，即使单独一行已经超过了预算
+	 */
+	static int fit(List<?> data, int from, List<ColumnMapping> fields, int rowLength, long budget, int maxRows) {
+		int to = from;
+		long bytes = 0;
+		while (to < data.size() && to - from < maxRows) {
+			long rowBytes = estimate(data.get(to), fields) + rowLength + 1;
+			if (to > from && bytes + rowBytes > budget) {
+				break;
+			}
+			bytes += rowBytes;
+			to++;
+		}
+		return to;
+	}
+
+	private int execute(OperateTarget db, String head, String row, InsertSqlClause insert, List<? extends IQueryableEntity> rows) throws SQLException {
+		StringBuilder sb = new StringBuilder(head.length() + (row.length() + 1) * rows.size() + insert.getTailer().length());
+		sb.append(head);
+		for (int i = 0; i < rows.size(); i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(row);
+		}
+		sb.append(insert.getTailer());
+		List<ColumnMapping> fields = insert.getFields();
+		// 行数不同语句就不同，不放入语句缓存，以免挤掉真正重复执行的语句
+		PreparedStatement psmt = db.prepareUncached(sb.toString());
+		try {
+			BindVariableContext context = new BindVariableContext(psmt, db.getProfile(), SqlLog.DUMMY);
+			int offset = 0;
+			for (IQueryableEntity obj : rows) {
+				context.setInsertVariables(obj, fields, offset);
+				offset += fields.size();
+			}
+			return psmt.executeUpdate();
+		} finally {
+			DbUtils.close(psmt);
+		}
+	}
+
+	/*
+	 * 估算一行数据在语句中的字节数
+	 */
+	static long estimate(Object obj, List<ColumnMapping> fields) {
+		long size = 0;
+		for (ColumnMapping field : fields) {
+			Object value = field.getFieldAccessor().get(obj);
+			if (value == null) {
+				size += 4;
+			} else if (value instanceof CharSequence) {
+				size += ((CharSequence) value).length() * 4 + 2;// utf8mb4下最多4字节，加上引号
+			} else if (value instanceof byte[]) {
+				size += ((byte[]) value).length * 2 + 3;
+			} else {
+				size += 32;
+			}
+		}
+		return size;
+	}
+
+	private int getMaxPacket(OperateTarget db) {
+		String key = StringUtils.toString(db.getDbkey());
+		Integer size = packetSizes.get(key);
+		if (size == null) {
+			size = DEFAULT_PACKET;
+			Statement st = null;
+			ResultSet rs = null;
+			try {
+				st = db.createStatement();
+				rs = st.executeQuery("select @@max_allowed_packet");
+				if (rs.next()) {
+					size = (int) Math.min(Integer.MAX_VALUE, rs.getLong(1));
+				}
+			} catch (SQLException e) {
+				LogUtil.warn("Can not get max_allowed_packet, using default {}. {}", DEFAULT_PACKET, e.getMessage());
+			} finally {
+				DbUtils.close(rs);
+				DbUtils.close(st);
+			}
+			packetSizes.put(key, size);
+		}
+		return size;
+	}
+}
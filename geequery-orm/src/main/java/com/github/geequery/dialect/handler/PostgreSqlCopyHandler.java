@@ -0,0 +1,170 @@
+package com.github.geequery.dialect.handler;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import com.github.geequery.core.DbUtils;
+import com.github.geequery.core.OperateTarget;
+import com.github.geequery.dialect.DatabaseDialect;
+import com.github.geequery.dialect.type.ColumnMapping;
+import com.github.geequery.entity.IQueryableEntity;
+import com.github.geequery.query.clause.InsertSqlClause;
+import com.github.geequery.tools.StringUtils;
+
+/**
+ * PostgreSQL的批量插入，使用 {@code COPY ... FROM STDIN}将数据以CSV格式流式写入。
+ * <p>
+ * 字段值先经过{@link ColumnMapping#jdbcSet}转换为JDBC类型，再编码为CSV文本，因此类型转换规则和普通的插入一致。
+ * 含LOB字段或者VALUES部分含有函数(如序列的nextval)的语句不能用COPY处理。
+ *
+ * @author jiyi
+ *
+ */
+public class PostgreSqlCopyHandler implements BulkInsertHandler {
+	private static final int FLUSH_SIZE = 64 * 1024;
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	@Override
+	public boolean supports(InsertSqlClause insert) {
+		List<ColumnMapping> fields = insert.getFields();
+		if (fields == null || fields.isEmpty()) {
+			return false;
+		}
+		for (ColumnMapping field : fields) {
+			if (field.isLob()) {
+				return false;
+			}
+		}
+		// VALUES部分必须全部是绑定变量
+		String[] values = insert.getValuesPart().split(",");
+		if (values.length != fields.size()) {
+			return false;
+		}
+		for (String s : values) {
+			if (!"?".equals(s.trim())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int bulkInsert(OperateTarget db, String tablename, InsertSqlClause insert, List<? extends IQueryableEntity> data) throws SQLException {
+		String sql = StringUtils.concat("COPY ", DbUtils.escapeColumn(db.getProfile(), tablename), " (", insert.getColumnsPart(), ") FROM STDIN WITH (FORMAT csv)");
+		List<ColumnMapping> fields = insert.getFields();
+		DatabaseDialect dialect = db.getProfile();
+		ValueCapture capture = new ValueCapture();
+
+		Statement st = db.createStatement();
+		try {
+			Connection conn = st.getConnection();
+			if (!conn.isWrapperFor(PGConnection.class)) {
+				throw new SQLFeatureNotSupportedException("The connection is not a PGConnection: " + conn.getClass().getName());
+			}
+			CopyIn copy = conn.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+			try {
+				StringBuilder sb = new StringBuilder(FLUSH_SIZE + 1024);
+				for (IQueryableEntity obj : data) {
+					int n = 0;
+					for (ColumnMapping field : fields) {
+						if (n++ > 0) {
+							sb.append(',');
+						}
+						Object value = field.getFieldAccessor().get(obj);
+						field.jdbcSet(capture.proxy, value, 1, dialect);
+						appendCsv(sb, capture.value);
+					}
+					sb.append('\n');
+					if (sb.length() >= FLUSH_SIZE) {
+						write(copy, sb);
+					}
+				}
+				if (sb.length() > 0) {
+					write(copy, sb);
+				}
+				return (int) copy.endCopy();
+			} finally {
+				if (copy.isActive()) {
+					copy.cancelCopy();
+				}
+			}
+		} finally {
+			DbUtils.close(st);
+		}
+	}
+
+	private static void write(CopyIn copy, StringBuilder sb) throws SQLException {
+		byte[] buf = sb.toString().getBytes(StandardCharsets.UTF_8);
+		copy.writeToCopy(buf, 0, buf.length);
+		sb.setLength(0);
+	}
+
+	/*
+	 * CSV格式中，不带引号的空值表示NULL，带引号的空字符串表示空串
+	 */
+	static void appendCsv(StringBuilder sb, Object value) {
+		if (value == null) {
+			return;
+		}
+		if (value instanceof byte[]) {
+			byte[] bytes = (byte[]) value;
+			sb.append("\\x");
+			for (byte b : bytes) {
+				sb.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+			}
+		} else if (value instanceof BigDecimal) {
+			sb.append(((BigDecimal) value).toPlainString());
+		} else if (value instanceof Number || value instanceof Boolean) {
+			sb.append(value);
+		} else {
+			String s = value.toString();
+			sb.append('"');
+			for (int i = 0; i < s.length(); i++) {
+				char c = s.charAt(i);
+				if (c == '"') {
+					sb.append('"');
+				}
+				sb.append(c);
+			}
+			sb.append('"');
+		}
+	}
+
+	/**
+	 * 截获jdbcSet写入PreparedStatement的值
+	 */
+	private static final class ValueCapture implements InvocationHandler {
+		private Object value;
+		private final PreparedStatement proxy = (PreparedStatement) Proxy.newProxyInstance(PostgreSqlCopyHandler.class.getClassLoader(), new Class<?>[] { PreparedStatement.class }, this);
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+				value = "setNull".equals(name) ? null : args[1];
+				return null;
+			}
+			Class<?> type = method.getReturnType();
+			if (type == boolean.class) {
+				return Boolean.FALSE;
+			} else if (type == int.class) {
+				return 0;
+			} else if (type == long.class) {
+				return 0L;
+			}
+			return null;
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package com.github.geequery.entity;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.geequery.common.log.LogUtil;
+import com.github.geequery.tools.IOUtils;
+
+/**
+ * 构建时生成的实体类索引。
+ * <p>
+ * maven插件在增强实体类时，将增强过的实体类名写入classes目录下的{@link #RESOURCE}文件，随jar包发布。
+ * 启动时{@link QuerableEntityScanner}对带有索引的classpath根路径(目录或jar包)直接读取索引得到实体类，
+ * 只扫描和解析没有索引的根路径。
+ * <p>
+ * 以下情况认为一个根路径的索引不可用，该根路径仍然扫描：
+ * <ul>
+ * <li>索引文件的格式版本不同</li>
+ * <li>索引中的类不存在</li>
+ * <li>索引位于目录中，且目录中有比索引文件更新的类(如在IDE中重新编译或新增了类而没有运行插件)</li>
+ * </ul>
+ *
+ * @author jiyi
+ * @see com.github.geequery.codegen.EntityEnhancer
+ */
+public final class EntityIndex {
+	/**
+	 * 索引文件在classpath中的位置
+	 */
+	public static final String RESOURCE = "META-INF/geequery/entities.idx";
+	private static final String HEADER = "#geequery-entity-index ";
+	private static final int VERSION = 1;
+
+	private EntityIndex() {
+	}
+
+	/**
+	 * 写入索引文件
+	 *
+	 * @param classesRoot
+	 *            class文件的根目录
+	 * @param classNames
+	 *            实体类名
+	 * @return 索引文件
+	 * @throws IOException
+	 */
+	public static File write(File classesRoot, Collection<String> classNames) throws IOException {
+		File file = new File(classesRoot, RESOURCE);
+		File dir = file.getParentFile();
+		if (!dir.exists() && !dir.mkdirs()) {
+			throw new IOException("Can not create directory " + dir.getAbsolutePath());
+		}
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+		try {
+			writer.write(HEADER + VERSION + "\n");
+			for (String name : classNames) {
+				writer.write(name);
+				writer.write('\n');
+			}
+		} finally {
+			IOUtils.closeQuietly(writer);
+		}
+		return file;
+	}
+
+	/**
+	 * 读取classpath中所有的索引文件
+	 *
+	 * @param cl
+	 *            ClassLoader
+	 * @return classpath根路径(参见{@link #getRoot(URL, String)}) -> 该根路径下的实体类名。不包含已经过时的索引
+	 */
+	public static Map<String, List<String>> load(ClassLoader cl) {
+		Map<String, List<String>> result = new LinkedHashMap<String, List<String>>();
+		try {
+			Enumeration<URL> urls = cl.getResources(RESOURCE);
+			while (urls.hasMoreElements()) {
+				URL url = urls.nextElement();
+				String root = getRoot(url, RESOURCE);
+				List<String> names = new ArrayList<String>();
+				if (root != null && !result.containsKey(root) && load(cl, url, names)) {
+					result.put(root, names);
+				}
+			}
+		} catch (IOException e) {
+			LogUtil.warn("Read entity index failure: {}", e.getMessage());
+		}
+		return result;
+	}
+
+	/**
+	 * 计算资源所在的classpath根路径
+	 *
+	 * @param url
+	 *            资源的URL
+	 * @param path
+	 *            资源在classpath中的路径
+	 * @return 根路径的URL字符串，如 file:/app/classes/ 或 jar:file:/app/lib/a.jar!/
+	 */
+	public static String getRoot(URL url, String path) {
+		String s = url.toExternalForm();
+		if (!s.endsWith(path)) {
+			return null;
+		}
+		return s.substring(0, s.length() - path.length());
+	}
+
+	/**
+	 * 将{@link #getRoot(URL, String)}得到的根路径转换为可以加入classpath的URL，即目录或jar包本身
+	 *
+	 * @param root
+	 *            根路径
+	 * @return 目录或jar包的URL
+	 * @throws IOException
+	 */
+	public static URL toClasspathURL(String root) throws IOException {
+		if (root.startsWith("jar:") && root.endsWith("!/")) {
+			return new URL(root.substring(4, root.length() - 2));
+		}
+		return new URL(root);
+	}
+
+	private static boolean load(ClassLoader cl, URL url, List<String> result) throws IOException {
+		File index = null;
+		if ("file".equals(url.getProtocol())) {
+			try {
+				index = new File(url.toURI());
+			} catch (URISyntaxException e) {
+				index = new File(url.getPath());
+			}
+		}
+		BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8));
+		try {
+			String header = reader.readLine();
+			if (header == null || !header.equals(HEADER + VERSION)) {
+				LogUtil.info("Entity index {} is not version {}, ignored.", url, VERSION);
+				return false;
+			}
+			if (index != null && hasNewerClass(index.getParentFile().getParentFile().getParentFile(), index.lastModified())) {
+				LogUtil.info("Entity index {} is older than the classes in its directory.", url);
+				return false;
+			}
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.length() == 0 || line.charAt(0) == '#') {
+					continue;
+				}
+				if (isStale(cl, index, line)) {
+					LogUtil.info("Entity index {} is stale at class {}.", url, line);
+					return false;
+				}
+				result.add(line);
+			}
+			return true;
+		} finally {
+			IOUtils.closeQuietly(reader);
+		}
+	}
+
+	/*
+	 * 检查索引中的类是否存在
+	 */
+	private static boolean isStale(ClassLoader cl, File index, String className) {
+		String path = className.replace('.', '/') + ".class";
+		if (index == null) {
+			return cl.getResource(path) == null;
+		}
+		File root = index.getParentFile().getParentFile().getParentFile();
+		return !new File(root, path).exists();
+	}
+
+	/*
+	 * 目录中是否有在索引生成之后修改或新增的类。新增的类可能是不在索引中的实体
+	 */
+	private static boolean hasNewerClass(File dir, long time) {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			return false;
+		}
+		for (File f : files) {
+			if (f.isDirectory()) {
+				if (hasNewerClass(f, time)) {
+					return true;
+				}
+			} else if (f.getName().endsWith(".class") && f.lastModified() > time) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,201 @@
+package com.github.geequery.entity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.persistence.PersistenceException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 按类并发构造元数据的任务表。
+ * <p>
+ * 每个类只会被一个线程构造，其他需要该类的线程等待构造完成，不同的类之间互不阻塞。
+ * 多表关系中，A引用B的同时B又引用A，构造者可以提前公开基本字段已经计算完成的对象({@link #publishEarly})：
+ * 同一线程内的递归引用直接返回提前公开的对象；两个线程互相等待时，由等待着已公开对象的一方返回该对象以打破死锁。
+ * 循环中没有任何一方提前公开对象时，无法打破，抛出异常。
+ *
+ * @param <V>
+ *            构造的结果
+ */
+final class LoadingTable<V> {
+	private static final Logger log = LoggerFactory.getLogger(LoadingTable.class);
+
+	/**
+	 * 构造一个类的结果
+	 */
+	interface Builder<V> {
+		V build(Class<?> clz);
+	}
+
+	// 正在构造中的任务，每个类一项
+	private final ConcurrentMap<Class<?>, Loading<V>> loading = new ConcurrentHashMap<Class<?>, Loading<V>>();
+	// 各线程当前正在等待的构造任务，用于发现线程间的循环等待
+	private final ConcurrentMap<Thread, Loading<V>> waiting = new ConcurrentHashMap<Thread, Loading<V>>();
+
+	/**
+	 * 构造一个类，该类正由其他线程构造时等待其完成
+	 *
+	 * @param clz
+	 *            类
+	 * @param builder
+	 *            构造方法，只在当前线程成为构造者时调用
+	 * @return 构造结果
+	 */
+	V load(Class<?> clz, Builder<V> builder) {
+		Loading<V> l = new Loading<V>();
+		Loading<V> exist = loading.putIfAbsent(clz, l);
+		if (exist != null) {
+			return await(clz, exist);
+		}
+		try {
+			V result = builder.build(clz);
+			l.result = result;
+			return result;
+		} catch (RuntimeException e) {
+			l.error = e;
+			throw e;
+		} catch (Error e) {
+			l.error = e;
+			throw e;
+		} finally {
+			loading.remove(clz, l);
+			l.done.countDown();
+		}
+	}
+
+	/**
+	 * 并行地构造一批类。某个类构造失败只记录日志，不影响其他类。
+	 *
+	 * @param classes
+	 *            要构造的类
+	 * @param builder
+	 *            构造方法
+	 * @return 成功构造的类的个数
+	 */
+	int loadAll(Collection<Class<?>> classes, final Builder<V> builder) {
+		if (classes.isEmpty()) {
+			return 0;
+		}
+		final AtomicInteger count = new AtomicInteger();
+		List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>(classes.size());
+		ForkJoinPool executor = new ForkJoinPool(Math.min(classes.size(), Runtime.getRuntime().availableProcessors()));
+		try {
+			for (final Class<?> clz : classes) {
+				tasks.add(executor.submit(new Runnable() {
+					public void run() {
+						try {
+							load(clz, builder);
+							count.incrementAndGet();
+						} catch (RuntimeException e) {
+							log.error("Metadata warm up failure for class {}", clz.getName(), e);
+						}
+					}
+				}));
+			}
+			for (ForkJoinTask<?> task : tasks) {
+				task.join();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		return count.get();
+	}
+
+	/**
+	 * 提前公开构造中的对象，仅供构造过程中的循环引用使用。只有该类的构造者线程可以调用
+	 *
+	 * @param clz
+	 *            类
+	 * @param early
+	 *            尚未构造完成的对象
+	 */
+	void publishEarly(Class<?> clz, V early) {
+		Loading<V> l = loading.get(clz);
+		if (l != null && l.owner == Thread.currentThread()) {
+			l.early = early;
+		}
+	}
+
+	/*
+	 * 等待其他线程构造
+	 */
+	private V await(Class<?> clz, Loading<V> l) {
+		Thread me = Thread.currentThread();
+		if (l.owner == me) {
+			if (l.early == null) {
+				throw new PersistenceException("Circular reference while initializing metadata of " + clz.getName());
+			}
+			return l.early;
+		}
+		waiting.put(me, l);
+		try {
+			while (!l.done.await(50, TimeUnit.MILLISECONDS)) {
+				List<Loading<V>> cycle = findCycle(me, l);
+				if (cycle != null) {
+					if (l.early != null) {
+						return l.early;
+					}
+					// 循环中各线程都在等待，不会再有对象被公开
+					if (!hasEarly(cycle)) {
+						throw new PersistenceException("Circular reference between threads while initializing metadata of " + clz.getName());
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new PersistenceException("Interrupted while waiting metadata of " + clz.getName());
+		} finally {
+			waiting.remove(me);
+		}
+		if (l.error != null) {
+			throw new PersistenceException("Metadata initialize failure: " + clz.getName(), l.error);
+		}
+		return l.result;
+	}
+
+	/*
+	 * 沿着“构造者正在等待的任务”向上查找，如果回到当前线程，说明出现了循环等待，返回循环中的各任务
+	 */
+	private List<Loading<V>> findCycle(Thread me, Loading<V> l) {
+		List<Loading<V>> path = new ArrayList<Loading<V>>();
+		Loading<V> current = l;
+		for (int i = 0; i < 64 && current != null; i++) {
+			path.add(current);
+			if (current.owner == me) {
+				return path;
+			}
+			current = waiting.get(current.owner);
+		}
+		return null;
+	}
+
+	private static <V> boolean hasEarly(List<Loading<V>> cycle) {
+		for (Loading<V> l : cycle) {
+			if (l.early != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 一个类的构造任务
+	 */
+	private static final class Loading<V> {
+		final Thread owner = Thread.currentThread();
+		final CountDownLatch done = new CountDownLatch(1);
+		volatile V early;
+		volatile V result;
+		volatile Throwable error;
+	}
+}
@@ -10,6 +10,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.persistence.Column;
 import javax.persistence.JoinColumn;
@@ -89,10 +90,23 @@ public class MetaHolder {
 	// 站点映射
 	static Map<String, String> SITE_MAPPING;
 
-	// 元数据池（包含标准Entity的元数据和POJO的元数据）
-	static final Map<Class<?>, AbstractMetadata> pool = new java.util.IdentityHashMap<Class<?>, AbstractMetadata>(32);
+	// 元数据池（包含标准Entity的元数据和POJO的元数据），只存放已经完整构造的元数据
+	static final Map<Class<?>, AbstractMetadata> pool = new ConcurrentHashMap<Class<?>, AbstractMetadata>(64);
+	// 正在构造中的元数据，每个类一项。不同的类可以在不同线程中同时构造
+	private static final LoadingTable<AbstractMetadata> loading = new LoadingTable<AbstractMetadata>();
+	// 构造元数据并放入元数据池
+	private static final LoadingTable.Builder<AbstractMetadata> BUILDER = new LoadingTable.Builder<AbstractMetadata>() {
+		public AbstractMetadata build(Class<?> clz) {
+			AbstractMetadata m = pool.get(clz);
+			if (m == null) { // 双重检查，前一个构造者可能刚刚完成
+				m = initPojo(clz);
+				pool.put(clz, m);
+			}
+			return m;
+		}
+	};
 	// 反向查找表
-	private static final Map<String, AbstractMetadata> inverseMapping = new HashMap<String, AbstractMetadata>();
+	private static final Map<String, AbstractMetadata> inverseMapping = Collections.synchronizedMap(new HashMap<String, AbstractMetadata>());
 
 	private static Logger log = LoggerFactory.getLogger(MetaHolder.class);
 
@@ -244,19 +258,45 @@ public class MetaHolder {
 	// return ArrayUtils.contains(interfaces, IQueryableEntity.class);
 	// }
 
+	/**
+	 * 并行地预先构造一批类的元数据，减少首次访问这些类时的延迟。
+	 * <p>
+	 * 已经构造过的类会被跳过，某个类构造失败只记录日志，不影响其他类。
+	 * 
+	 * @param classes
+	 *            要加载的类
+	 * @return 成功构造(或已经存在)元数据的类的个数
+	 */
+	public static int warmUp(Collection<Class<?>> classes) {
+		if (classes == null || classes.isEmpty()) {
+			return 0;
+		}
+		List<Class<?>> toLoad = new ArrayList<Class<?>>(classes.size());
+		for (Class<?> clz : classes) {
+			if (clz != null && clz != Tuple.class) {
+				toLoad.add(clz);
+			}
+		}
+		return loading.loadAll(toLoad, BUILDER);
+	}
+
 	/**
 	 * 在获取类时，需要有一个标记快速判断该类是否经过增强（无论是动态增强还是静态增强）一旦发现没增强的类，就抛出异常�?
+	 * <p>
+	 * 每个类只会被一个线程构造，其他需要该类的线程等待构造完成，不同的类之间互不阻塞。构造完成后才放入{@link #pool}。
 	 * 
 	 * @param clz
 	 * @return
 	 */
-	private synchronized static AbstractMetadata initData(Class<?> clz) {
-		{
-			AbstractMetadata m1 = pool.get(clz);
-			if (m1 != null)
-				return m1; // 双重检查锁定
-		}
-		return initPojo(clz);
+	private static AbstractMetadata initData(Class<?> clz) {
+		return loading.load(clz, BUILDER);
+	}
+
+	/*
+	 * 提前公开基本字段已经计算完成的元数据，仅供构造过程中的循环引用使用
+	 */
+	private static void publishEarly(Class<?> clz, AbstractMetadata meta) {
+		loading.publishEarly(clz, meta);
 	}
 
 	private static AbstractMetadata initPojo(Class<?> clz) {
@@ -287,8 +327,8 @@ public class MetaHolder {
 		Assert.notNull(partitionLoader, "the Partition loader is null!");
 		meta.setPartition(partitionLoader.get(clz));
 
-		// 此时就将基本字段计算完成的元数据加入缓存，以免在多表关系处理时遭遇死循环
-		pool.put(clz, meta);
+		// 此时就将基本字段计算完成的元数据提前公开，以免在多表关系处理时遭遇死循环
+		publishEarly(clz, meta);
 		// 针对未处理的字段，当做外部引用关系处理
 		for (java.lang.reflect.Field f : unprocessedField) {
 			// 将这个字段作为外部引用处理
@@ -5,10 +5,21 @@ import java.io.InputStream;
 import java.net.URL;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.persistence.Column;
 
@@ -19,6 +30,7 @@ import com.github.geequery.accelerator.asm.ClassReader;
 import com.github.geequery.annotation.EasyEntity;
 import com.github.geequery.common.log.LogUtil;
 import com.github.geequery.core.SessionFactory;
+import com.github.geequery.core.config.DbCfg;
 import com.github.geequery.core.support.MetadataEventListener;
 import com.github.geequery.dbmeta.StatementExecutor;
 import com.github.geequery.dialect.ColumnType;
@@ -28,6 +40,7 @@ import com.github.geequery.dialect.type.ColumnMapping;
 import com.github.geequery.entity.data.DataInitializer;
 import com.github.geequery.tools.ArrayUtils;
 import com.github.geequery.tools.ClassScanner;
+import com.github.geequery.tools.JefConfiguration;
 import com.github.geequery.tools.StringUtils;
 import com.github.geequery.tools.resource.IResource;
 
@@ -35,6 +48,9 @@ import com.github.geequery.tools.resource.IResource;
 
 /**
  * 自动扫描工具，在构造时可以根据构造方法，自动的将继承DataObject的类检查出来，并载入
+ * <p>
+ * 扫描分为几个阶段：并行解析类文件找出实体、并行构造元数据、多个线程同时进行建表/修改表检查(线程数即占用的连接数，
+ * 参见{@link DbCfg#DB_SCAN_DDL_THREADS})，最后按扫描顺序逐个初始化数据。结束时输出各阶段的耗时。
  * 
  * @author Administrator
  * 
@@ -80,6 +96,16 @@ public class QuerableEntityScanner {
 	 */
 	private boolean initData = true;
 
+	/**
+	 * 是否使用构建时生成的实体索引(见{@link EntityIndex})
+	 */
+	private boolean useIndex = true;
+
+	/**
+	 * 同时进行DDL检查的线程数
+	 */
+	private int ddlThreads = JefConfiguration.getInt(DbCfg.DB_SCAN_DDL_THREADS, 4);
+
 	/**
 	 * 扫描包
 	 */
@@ -134,33 +160,223 @@ public class QuerableEntityScanner {
 	}
 
 	public void doScan() {
-		String[] parents = getClassNames();
+		long start = System.currentTimeMillis();
+		final String[] parents = getClassNames();
 		ClassLoader cl = Thread.currentThread().getContextClassLoader();
 		if (cl == null)
 			cl = QuerableEntityScanner.class.getClassLoader();
 
-		// 开始
-		ClassScanner cs = new ClassScanner();
-		IResource[] classes = cs.scan(packageNames);
+		// 有构建时生成的实体索引的根路径直接使用索引，其余的根路径仍然扫描
+		Map<String, List<String>> indexes = useIndex ? EntityIndex.load(cl) : Collections.<String, List<String>> emptyMap();
+		Set<String> indexed = new LinkedHashSet<String>();
+		for (List<String> list : indexes.values()) {
+			indexed.addAll(filterByPackage(list));
+		}
+		IResource[] classes = indexes.isEmpty() ? new ClassScanner().scan(packageNames) : scanUnindexed(cl, indexes.keySet());
+		int total = classes.length + indexed.size();
+		long scanned = System.currentTimeMillis();
+
+		// 并行解析所有扫描到的类，根据父类判断是否为实体
+		List<String> names = new ArrayList<String>(indexed);
+		for (String name : findEntityClasses(cl, parents, classes)) {
+			if (!indexed.contains(name)) {
+				names.add(name);
+			}
+		}
+		long parsed = System.currentTimeMillis();
 
-		// 循环所有扫描到的类
-		for (IResource s : classes) {
-			try {
-				ClassReader cr = getClassInfo(cl, s);
-				if (cr == null)// NOT found class
-					continue;
-				// 根据父类判断
-				if (isEntiyClz(cl, parents, cr.getSuperName())) {
-					Class<?> clz = loadClass(cl, cr.getJavaClassName());
-					if (clz != null) {
-						registeEntity0(clz);
+		// 加载实体类，并行构造元数据
+		List<Class<?>> entities = new ArrayList<Class<?>>(names.size());
+		for (String name : names) {
+			Class<?> clz = loadClass(cl, name);
+			if (clz != null && (!indexed.contains(name) || isSubClassOf(cl, parents, clz))) {
+				entities.add(clz);
+			}
+		}
+		MetaHolder.warmUp(entities);
+		long built = System.currentTimeMillis();
+
+		List<Registration> registrations = new ArrayList<Registration>(entities.size());
+		for (Class<?> clz : entities) {
+			Registration r = prepare(clz);
+			if (r != null) {
+				registrations.add(r);
+			}
+		}
+		// 多个表同时进行DDL检查
+		reconcile(registrations);
+		long ddl = System.currentTimeMillis();
+
+		// 数据初始化可能依赖表之间的先后顺序，按扫描顺序逐个进行
+		for (Registration r : registrations) {
+			initData(r);
+		}
+		long end = System.currentTimeMillis();
+		LogUtil.info("EntityScanner: {} classes ({} indexed in {} roots), {} entities. Cost(ms): scan={}, parse={}, metadata={}, ddl={}, initData={}, total={}",
+				total, indexed.size(), indexes.size(), registrations.size(), scanned - start, parsed - scanned, built - parsed, ddl - built, end - ddl,
+				end - start);
+	}
+
+	/*
+	 * 扫描没有实体索引的根路径
+	 */
+	private IResource[] scanUnindexed(ClassLoader cl, Set<String> indexedRoots) {
+		boolean scanAll = packageNames.length == 0;
+		for (String pkg : packageNames) {
+			if (StringUtils.isBlank(pkg)) {
+				scanAll = true;
+			}
+		}
+		List<IResource> result = new ArrayList<IResource>();
+		if (scanAll) {
+			// 无法列出所有根路径，扫描后排除有索引的根路径下的类
+			for (IResource res : new ClassScanner().scan(packageNames)) {
+				if (!isUnder(res.getURL().toExternalForm(), indexedRoots)) {
+					result.add(res);
+				}
+			}
+			return result.toArray(new IResource[result.size()]);
+		}
+		Set<String> roots = new LinkedHashSet<String>();
+		try {
+			for (String pkg : packageNames) {
+				String path = pkg.trim().replace('.', '/') + "/";
+				for (Enumeration<URL> urls = cl.getResources(path); urls.hasMoreElements();) {
+					String root = EntityIndex.getRoot(urls.nextElement(), path);
+					if (root != null && !indexedRoots.contains(root)) {
+						roots.add(root);
+					}
+				}
+			}
+			for (String root : roots) {
+				result.addAll(Arrays.asList(ClassScanner.listClassNameInPackage(EntityIndex.toClasspathURL(root), packageNames, false)));
+			}
+		} catch (IOException e) {
+			LogUtil.warn("List classpath roots failure, scan the whole classpath. {}", e.getMessage());
+			return new ClassScanner().scan(packageNames);
+		}
+		return result.toArray(new IResource[result.size()]);
+	}
+
+	private static boolean isUnder(String url, Set<String> roots) {
+		for (String root : roots) {
+			if (url.startsWith(root)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * 索引中的实体是按增强的规则判断的，还需要符合implClasses
+	 */
+	private boolean isSubClassOf(ClassLoader cl, String[] parents, Class<?> clz) {
+		for (String parent : parents) {
+			Class<?> p = loadClass(cl, parent.replace('/', '.'));
+			if (p != null && p != clz && p.isAssignableFrom(clz)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * 索引中包含所有的实体，按要扫描的包过滤
+	 */
+	private List<String> filterByPackage(List<String> names) {
+		List<String> result = new ArrayList<String>(names.size());
+		for (String name : names) {
+			for (String pkg : packageNames) {
+				pkg = pkg.trim();
+				if (pkg.length() == 0 || name.startsWith(pkg + ".")) {
+					if (scanSubPackage || name.indexOf('.', pkg.length() + 1) < 0) {
+						result.add(name);
+						break;
 					}
 				}
-				;
-			} catch (IOException e) {
-				LogUtil.exception(e);
 			}
 		}
+		return result;
+	}
+
+	/*
+	 * 并行解析类文件，返回实体类的类名，顺序和扫描到的顺序一致
+	 */
+	private List<String> findEntityClasses(final ClassLoader cl, final String[] parents, IResource[] classes) {
+		List<String> result = new ArrayList<String>();
+		if (classes.length == 0) {
+			return result;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(classes.length, Runtime.getRuntime().availableProcessors()),
+				new NamedThreadFactory("gq-entity-scan-"));
+		try {
+			List<Future<String>> futures = new ArrayList<Future<String>>(classes.length);
+			for (final IResource s : classes) {
+				futures.add(executor.submit(new Callable<String>() {
+					public String call() {
+						try {
+							ClassReader cr = getClassInfo(cl, s);
+							if (cr == null)// NOT found class
+								return null;
+							return isEntiyClz(cl, parents, cr.getSuperName()) ? cr.getJavaClassName() : null;
+						} catch (IOException e) {
+							LogUtil.exception(e);
+							return null;
+						}
+					}
+				}));
+			}
+			for (Future<String> f : futures) {
+				String name = await(f);
+				if (name != null) {
+					result.add(name);
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+		return result;
+	}
+
+	/*
+	 * 进行建表/修改表检查，同时使用的线程(连接)数不超过ddlThreads
+	 */
+	private void reconcile(List<Registration> registrations) {
+		int threads = Math.min(ddlThreads, registrations.size());
+		if (threads <= 1) {
+			for (Registration r : registrations) {
+				doDDL(r);
+			}
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new NamedThreadFactory("gq-entity-ddl-"));
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>(registrations.size());
+			for (final Registration r : registrations) {
+				futures.add(executor.submit(new Runnable() {
+					public void run() {
+						doDDL(r);
+					}
+				}));
+			}
+			for (Future<?> f : futures) {
+				await(f);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static <T> T await(Future<T> f) {
+		try {
+			return f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("EntityScanner interrupted.", e);
+		} catch (ExecutionException e) {
+			LogUtil.error("EntityScanner:[Failure]" + StringUtils.exceptionStack(e.getCause()));
+			return null;
+		}
 	}
 
 	private boolean isEntiyClz(ClassLoader cl, String[] knownSuperNames, String superName) throws IOException {
@@ -232,6 +448,17 @@ public class QuerableEntityScanner {
 	}
 
 	private void registeEntity0(Class<?> c) {
+		Registration r = prepare(c);
+		if (r != null) {
+			doDDL(r);
+			initData(r);
+		}
+	}
+
+	/*
+	 * 获取元数据，并确定是否需要建表或修改表
+	 */
+	private Registration prepare(Class<?> c) {
 		try {
 			EntityMetadata meta = MetaHolder.getMeta(c);// 用initMeta变为强制初始化。getMeta更优雅一点
 			if (meta != null) {
@@ -240,20 +467,40 @@ public class QuerableEntityScanner {
 				LogUtil.error("Entity [" + c.getName() + "] was not mapping to any table.");
 			}
 			EasyEntity ee = c.getAnnotation(EasyEntity.class);
-			final boolean create = createTable && (ee == null || ee.create());
-			final boolean refresh = alterTable && (ee == null || ee.refresh());
-			if (entityManagerFactory != null && (create || refresh)) {
-				boolean isCreated = doTableDDL(meta, create, refresh);
-				if (dataInitializer.isEnable()) {
-					if (isCreated && initData) {
-						dataInitializer.initData(meta, true);
-					} else if (initData) {
-						dataInitializer.initData(meta, false);
-					} else {
-						LogUtil.info("DataInitializer：table [{}] already exists and 'initDataIfTableExists' flag is off. No data will be merge into database.",
-								meta.getTableName(false));
-					}
-				}
+			Registration r = new Registration(meta);
+			r.create = createTable && (ee == null || ee.create());
+			r.refresh = alterTable && (ee == null || ee.refresh());
+			return r;
+		} catch (Throwable e) {
+			LogUtil.error("EntityScanner:[Failure]" + StringUtils.exceptionStack(e));
+			return null;
+		}
+	}
+
+	private void doDDL(Registration r) {
+		if (entityManagerFactory == null || !(r.create || r.refresh)) {
+			return;
+		}
+		try {
+			r.created = doTableDDL(r.meta, r.create, r.refresh);
+			r.ddlDone = true;
+		} catch (Throwable e) {
+			LogUtil.error("EntityScanner:[Failure]" + StringUtils.exceptionStack(e));
+		}
+	}
+
+	private void initData(Registration r) {
+		if (!r.ddlDone || !dataInitializer.isEnable()) {
+			return;
+		}
+		try {
+			if (r.created && initData) {
+				dataInitializer.initData(r.meta, true);
+			} else if (initData) {
+				dataInitializer.initData(r.meta, false);
+			} else {
+				LogUtil.info("DataInitializer：table [{}] already exists and 'initDataIfTableExists' flag is off. No data will be merge into database.",
+						r.meta.getTableName(false));
 			}
 		} catch (Throwable e) {
 			LogUtil.error("EntityScanner:[Failure]" + StringUtils.exceptionStack(e));
@@ -404,6 +651,32 @@ public class QuerableEntityScanner {
 		return initData;
 	}
 
+	public boolean isUseIndex() {
+		return useIndex;
+	}
+
+	/**
+	 * 设置是否使用构建时生成的实体索引。索引不存在或已经过时时，仍然扫描classpath
+	 * 
+	 * @param useIndex
+	 */
+	public void setUseIndex(boolean useIndex) {
+		this.useIndex = useIndex;
+	}
+
+	public int getDdlThreads() {
+		return ddlThreads;
+	}
+
+	/**
+	 * 设置同时进行DDL检查的线程数，每个线程占用一个连接
+	 * 
+	 * @param ddlThreads
+	 */
+	public void setDdlThreads(int ddlThreads) {
+		this.ddlThreads = ddlThreads;
+	}
+
 	public boolean isCheckIndex() {
 		return checkIndex;
 	}
@@ -420,4 +693,40 @@ public class QuerableEntityScanner {
 			dataInitializer.finish();
 		}
 	}
+
+	/**
+	 * 一个实体的注册状态
+	 */
+	private static final class Registration {
+		private final EntityMetadata meta;
+		private boolean create;
+		private boolean refresh;
+		/**
+		 * 是否新建了表
+		 */
+		private boolean created;
+		/**
+		 * DDL检查是否已经完成
+		 */
+		private boolean ddlDone;
+
+		Registration(EntityMetadata meta) {
+			this.meta = meta;
+		}
+	}
+
+	private static final class NamedThreadFactory implements ThreadFactory {
+		private final String prefix;
+		private final AtomicInteger count = new AtomicInteger();
+
+		NamedThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, prefix + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
 }
@@ -48,6 +48,16 @@ public class InsertWrapper implements StatementPreparer, InsertStep {
 		return preparer.doPrepareStatement(conn, sql);
 	}
 
+	/**
+	 * 是否有处理器自行准备Statement。这类处理器(如回写数据库生成的主键)会在执行后从Statement上取数，
+	 * 因此同一时刻只能有一个Statement在使用。
+	 *
+	 * @return 如果Statement由处理器准备，返回true
+	 */
+	public boolean hasStatementPreparer() {
+		return preparer != P;
+	}
+
 	public void addProcessor(InsertStep processor) {
 		if (processors.isEmpty()) {
 			processors = new ArrayList<InsertStep>();
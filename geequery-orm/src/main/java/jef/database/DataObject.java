@@ -2,6 +2,7 @@ package jef.database;
 
 import java.io.Serializable;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Map;
@@ -39,10 +40,35 @@ public abstract class DataObject implements IQueryableEntity {
 	 */
 	private static final ConditionComparator cmp = new ConditionComparator();
 	
+	/**
+	 * 各实体类的Field枚举，按序号排列
+	 */
+	private static final ClassValue<Field[]> FIELDS = new ClassValue<Field[]>() {
+		@Override
+		protected Field[] computeValue(Class<?> type) {
+			try {
+				Class<?> e = Class.forName(type.getName() + "$Field", false, type.getClassLoader());
+				if (e.isEnum() && Field.class.isAssignableFrom(e)) {
+					return (Field[]) e.getEnumConstants();
+				}
+			} catch (ClassNotFoundException e) {
+			}
+			return null;
+		}
+	};
+	
 	private transient String _rowid;
 	
 	@JSONField(serialize=false)
 	private transient Map<Field, Object> updateValueMap;
+	/**
+	 * 被修改的字段，按Field枚举的序号记录。由增强后的set方法直接置位，序号64以上的记录在{@link #_dirtyExt}中。
+	 * 在需要时({@link #getUpdateValueMap()})才读出字段值合并到updateValueMap中。
+	 */
+	@JSONField(serialize=false)
+	protected transient long _dirty;
+	@JSONField(serialize=false)
+	private transient long[] _dirtyExt;
 	@JSONField(serialize=false)
 	public transient Query<?> query;
 	@JSONField(serialize=false)
@@ -90,6 +116,10 @@ public abstract class DataObject implements IQueryableEntity {
 	 * @see jef.database.IQueryableEntity#isUsed(jef.database.Field)
 	 */
 	public final boolean isUsed(Field field) {
+		int n = ordinal(field);
+		if (n > -1 && isDirty(n)) {
+			return true;
+		}
 		if (updateValueMap == null)
 			return false;
 		return updateValueMap.containsKey(field);
@@ -102,6 +132,8 @@ public abstract class DataObject implements IQueryableEntity {
 	 */
 	public final void clearUpdate() {
 		updateValueMap = null;
+		_dirty = 0;
+		_dirtyExt = null;
 	}
 
 	/*
@@ -111,11 +143,108 @@ public abstract class DataObject implements IQueryableEntity {
 	 */
 	@SuppressWarnings("unchecked")
 	public final Map<Field, Object> getUpdateValueMap() {
+		if (_dirty != 0 || _dirtyExt != null) {
+			flushDirty();
+		}
 		if (updateValueMap == null)
 			return Collections.EMPTY_MAP;
 		return updateValueMap;
 	}
 
+	/*
+	 * 将位图中记录的字段连同当前值合并到updateValueMap中
+	 */
+	private void flushDirty() {
+		Field[] fields = FIELDS.get(getEntityClass());
+		BeanAccessor ba = MetaHolder.getMeta(this).getContainerAccessor();
+		if (updateValueMap == null)
+			updateValueMap = new TreeMap<Field, Object>(cmp);
+		long bits = _dirty;
+		while (bits != 0) {
+			int n = Long.numberOfTrailingZeros(bits);
+			bits &= bits - 1;
+			Field field = fields[n];
+			updateValueMap.put(field, ba.getProperty(this, field.name()));
+		}
+		if (_dirtyExt != null) {
+			for (int i = 0; i < _dirtyExt.length; i++) {
+				bits = _dirtyExt[i];
+				while (bits != 0) {
+					int n = Long.numberOfTrailingZeros(bits);
+					bits &= bits - 1;
+					Field field = fields[(i + 1) * 64 + n];
+					updateValueMap.put(field, ba.getProperty(this, field.name()));
+				}
+			}
+		}
+		_dirty = 0;
+		_dirtyExt = null;
+	}
+
+	/**
+	 * 标记字段被修改。序号小于64时增强后的set方法直接对{@link #_dirty}置位，不调用此方法
+	 * 
+	 * @param ordinal
+	 *            字段在Field枚举中的序号
+	 */
+	protected final void markDirty(int ordinal) {
+		if (ordinal < 64) {
+			_dirty |= 1L << ordinal;
+		} else {
+			int i = (ordinal >> 6) - 1;
+			if (_dirtyExt == null) {
+				_dirtyExt = new long[i + 1];
+			} else if (_dirtyExt.length <= i) {
+				_dirtyExt = Arrays.copyOf(_dirtyExt, i + 1);
+			}
+			_dirtyExt[i] |= 1L << ordinal;
+		}
+	}
+
+	private void clearDirty(int ordinal) {
+		if (ordinal < 64) {
+			_dirty &= ~(1L << ordinal);
+		} else if (_dirtyExt != null) {
+			int i = (ordinal >> 6) - 1;
+			if (i < _dirtyExt.length) {
+				_dirtyExt[i] &= ~(1L << ordinal);
+			}
+		}
+	}
+
+	private boolean isDirty(int ordinal) {
+		if (ordinal < 64) {
+			return (_dirty & (1L << ordinal)) != 0;
+		}
+		int i = (ordinal >> 6) - 1;
+		return _dirtyExt != null && i < _dirtyExt.length && (_dirtyExt[i] & (1L << ordinal)) != 0;
+	}
+
+	/*
+	 * 字段是本类的Field枚举时返回其序号，否则返回-1
+	 */
+	private int ordinal(Field field) {
+		if (field instanceof Enum<?>) {
+			Field[] fields = FIELDS.get(getEntityClass());
+			int n = ((Enum<?>) field).ordinal();
+			if (fields != null && n < fields.length && fields[n] == field) {
+				return n;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * 直接继承DataObject的类，其Field枚举的序号即增强时使用的序号
+	 */
+	private Class<?> getEntityClass() {
+		Class<?> c = getClass();
+		while (c.getSuperclass() != DataObject.class && c.getSuperclass() != null) {
+			c = c.getSuperclass();
+		}
+		return c;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -123,7 +252,14 @@ public abstract class DataObject implements IQueryableEntity {
 	 * boolean)
 	 */
 	public void touchUsedFlag(Field field, boolean flag) {
+		int n = ordinal(field);
 		if (flag) {
+			if (n > -1) {
+				if (updateValueMap == null || !updateValueMap.containsKey(field)) {
+					markDirty(n);
+				}
+				return;
+			}
 			if (updateValueMap == null)
 				updateValueMap = new TreeMap<Field, Object>(cmp);
 			if (updateValueMap.containsKey(field)) {
@@ -133,6 +269,9 @@ public abstract class DataObject implements IQueryableEntity {
 			BeanAccessor ba = meta.getContainerAccessor();
 			updateValueMap.put(field, ba.getProperty(this, field.name()));
 		} else {
+			if (n > -1) {
+				clearDirty(n);
+			}
 			if (updateValueMap != null) {
 				updateValueMap.remove(field);
 			}
@@ -140,6 +279,10 @@ public abstract class DataObject implements IQueryableEntity {
 	}
 
 	public final void prepareUpdate(Field field, Object newValue) {
+		int n = ordinal(field);
+		if (n > -1) {
+			clearDirty(n);
+		}
 		if (updateValueMap == null)
 			updateValueMap = new TreeMap<Field, Object>(cmp);
 		updateValueMap.put(field, newValue);
@@ -159,6 +302,16 @@ public abstract class DataObject implements IQueryableEntity {
 	 * @see jef.database.query.UpdateAble#needUpdate()
 	 */
 	public final boolean needUpdate() {
+		if (_dirty != 0) {
+			return true;
+		}
+		if (_dirtyExt != null) {
+			for (long bits : _dirtyExt) {
+				if (bits != 0) {
+					return true;
+				}
+			}
+		}
 		return (updateValueMap != null) && this.updateValueMap.size() > 0;
 	}
 
@@ -171,10 +324,48 @@ public abstract class DataObject implements IQueryableEntity {
 	}
 
 	/*
-	 * 供子类hashCode（）方法调用，判断内嵌的hashCode方法是否可用
+	 * 供子类hashCode（）方法调用，判断内嵌的hashCode方法是否可用。
+	 * 直接使用修改位图，不调用getUpdateValueMap()，以免读取字段值(可能触发延迟加载)并改变对象的状态
 	 */
 	protected final int getHashCode() {
-		return new HashCodeBuilder().append(query).append(_recordUpdate).append(updateValueMap).toHashCode();
+		return new HashCodeBuilder().append(query).append(_recordUpdate).append(updateValues()).append(_dirty).append(dirtyExtHash(_dirtyExt)).toHashCode();
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<Field, Object> updateValues() {
+		return updateValueMap == null ? Collections.EMPTY_MAP : updateValueMap;
+	}
+
+	/*
+	 * 扩展位图中有效的长度。未分配和全部为0等同
+	 */
+	private static int dirtyLength(long[] ext) {
+		int n = ext == null ? 0 : ext.length;
+		while (n > 0 && ext[n - 1] == 0) {
+			n--;
+		}
+		return n;
+	}
+
+	private static int dirtyExtHash(long[] ext) {
+		int hash = 1;
+		for (int i = 0, n = dirtyLength(ext); i < n; i++) {
+			hash = 31 * hash + (int) (ext[i] ^ (ext[i] >>> 32));
+		}
+		return hash;
+	}
+
+	private static boolean dirtyExtEquals(long[] a, long[] b) {
+		int n = dirtyLength(a);
+		if (n != dirtyLength(b)) {
+			return false;
+		}
+		for (int i = 0; i < n; i++) {
+			if (a[i] != b[i]) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	protected final void beforeSet(String fieldname) {
@@ -202,14 +393,15 @@ public abstract class DataObject implements IQueryableEntity {
 	}
 
 	/*
-	 * 供子类的equals方法调用，判断内嵌的query对象、updateMap对象是否相等
+	 * 供子类的equals方法调用，判断内嵌的query对象、updateMap对象和修改位图是否相等。和getHashCode()一样不合并位图
 	 */
 	protected final boolean isEquals(Object obj) {
 		if (!(obj instanceof DataObject)) {
 			return false;
 		}
 		DataObject rhs = (DataObject) obj;
-		return new EqualsBuilder().append(this.query, rhs.query).append(_recordUpdate, rhs._recordUpdate).append(this.updateValueMap, rhs.updateValueMap).isEquals();
+		return new EqualsBuilder().append(this.query, rhs.query).append(_recordUpdate, rhs._recordUpdate).append(this.updateValues(), rhs.updateValues()).append(_dirty, rhs._dirty).isEquals()
+				&& dirtyExtEquals(_dirtyExt, rhs._dirtyExt);
 	}
 
 	private static class ConditionComparator implements Comparator<Field>, Serializable {
@@ -4,6 +4,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 import jef.database.jdbc.result.ResultSetImpl;
 import jef.database.query.SqlContext;
@@ -50,6 +51,12 @@ public final class LobLazyLoadTask implements LazyLoadTask {
 		}
 	}
 
+	public void processBatch(Session db, List<?> objs) throws SQLException {
+		for (Object o : objs) {
+			process(db, o);
+		}
+	}
+
 	public Collection<String> getEffectFields() {
 		return Arrays.asList(fieldName);
 	}
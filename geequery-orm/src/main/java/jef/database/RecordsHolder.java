@@ -4,6 +4,7 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.PersistenceException;
 
@@ -310,9 +311,10 @@ public final class RecordsHolder<T extends IQueryableEntity> implements Iterable
 		}
 		moveTo(index2);
 		boolean flag = false;
-		for (Field f : t.getUpdateValueMap().keySet()) {
+		for (Map.Entry<Field, Object> e : t.getUpdateValueMap().entrySet()) {
+			Field f = e.getKey();
 			if (f instanceof Enum<?> || f instanceof TupleField) {
-				Object value = t.getUpdateValueMap().get(f);
+				Object value = e.getValue();
 				if (value instanceof Expression) {
 					throw new SQLException("The expression object not supported in resultSet operation model.");
 				}
@@ -12,6 +12,7 @@ import jef.database.wrapper.populator.Transformer;
 
 import com.github.geequery.core.NativeCall;
 import com.github.geequery.core.NativeQuery;
+import com.github.geequery.core.QueryOption;
 import com.github.geequery.core.Session;
 import com.github.geequery.dialect.type.AutoIncrementMapping;
 import com.github.geequery.tools.PageLimit;
@@ -224,6 +225,23 @@ public interface SqlTemplate {
 	 * @throws SQLException
 	 */
 	public <T> List<T> selectBySql(String sql, Transformer transformer, PageLimit range, Object... params) throws SQLException;
+
+	/**
+	 * 使用原生SQL查询，可通过查询选项指定结果的缓存时间。
+	 * 	 {@linkplain #executeSql(String, Object...) 什么是原生SQL}
+	 * <p>
+	 * 当{@link QueryOption#getResultCacheTtl()}大于0时，相同的SQL语句和绑定变量的结果会被缓存，直到缓存时间过期或查询的表被修改。
+	 * 在非只读的事务中不使用缓存。
+	 * 
+	 * @param sql   SQL语句
+	 * @param transformer  查询结果转换器
+	 * @param option       查询选项，可以为null
+	 * @param range        分页范围(是一个含头含尾的区间对象)
+	 * @param params       绑定变量
+	 * @return   查询结果。从缓存中得到的对象为多次查询共享，不应修改
+	 * @throws SQLException
+	 */
+	public <T> List<T> selectBySql(String sql, Transformer transformer, QueryOption option, PageLimit range, Object... params) throws SQLException;
 	
 	/**
 	 * 使用原生SQL查询，返回的遍历器,	 遍历器模式查找一般用于超大结果集的返回。
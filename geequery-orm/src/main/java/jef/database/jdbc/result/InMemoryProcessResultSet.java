@@ -29,7 +29,10 @@ import com.github.geequery.dialect.DatabaseDialect;
 
 import jef.database.Condition;
 import jef.database.jdbc.rowset.CachedRowSetImpl;
+import jef.database.jdbc.rowset.Row;
 import jef.database.meta.Reference;
+import jef.database.wrapper.clause.InMemoryGroupByHaving;
+import jef.database.wrapper.clause.InMemoryOrderBy;
 import jef.database.wrapper.clause.InMemoryPaging;
 import jef.database.wrapper.clause.InMemoryProcessor;
 import jef.database.wrapper.populator.ColumnMeta;
@@ -47,6 +50,8 @@ final class InMemoryProcessResultSet extends AbstractResultSet implements IResul
 
 	//动作
 	private final List<InMemoryProcessor> processors=new ArrayList<InMemoryProcessor>(4);
+	//后续分页只需要前N条记录，0表示需要全部记录
+	private int topN;
 	
 	public InMemoryProcessResultSet(List<ResultSetHolder> results, ColumnMeta columns,Map<Reference, List<Condition>> filters) {
 		this.results=results;
@@ -60,18 +65,31 @@ final class InMemoryProcessResultSet extends AbstractResultSet implements IResul
 		cache=new CachedRowSetImpl(ORMConfig.getInstance().getPartitionInMemoryMaxRows());
 		InMemoryProcessor paging=null;
 		long start=System.currentTimeMillis();
-		for(ResultSetHolder sh:results){
-			cache.populate(sh.rs);
-			sh.close(true);
+		int first=0;
+		if(!processors.isEmpty() && processors.get(0) instanceof InMemoryGroupByHaving){
+			//分组聚合是第一步时，逐行累加，不需要先将全部记录装入内存
+			aggregate((InMemoryGroupByHaving)processors.get(0));
+			first=1;
+		}else{
+			for(ResultSetHolder sh:results){
+				cache.populate(sh.rs);
+				sh.close(true);
+			}
 		}
 		results.clear();
 		long loaded=System.currentTimeMillis();
-		for(InMemoryProcessor processor:processors){
+		for(int i=first;i<processors.size();i++){
+			InMemoryProcessor processor=processors.get(i);
 			if(processor instanceof InMemoryPaging){
 				paging=processor;
 				continue;
 			}
-			processor.process(cache);
+			if(topN>0 && i==processors.size()-1 && processor instanceof InMemoryOrderBy){
+				//排序是最后一步时，只需选出前N条
+				((InMemoryOrderBy) processor).process(cache, topN);
+			}else{
+				processor.process(cache);
+			}
 		}
 		if(paging!=null){
 			paging.process(cache);
@@ -90,6 +108,35 @@ final class InMemoryProcessResultSet extends AbstractResultSet implements IResul
 		}
 		cache.refresh();
 	}
+	private void aggregate(InMemoryGroupByHaving groupBy) throws SQLException {
+		InMemoryGroupByHaving.Aggregation agg=groupBy.newAggregation();
+		Row row=null;
+		for(ResultSetHolder sh:results){
+			ResultSet rs=sh.rs;
+			cache.initMetaData(rs);
+			if(row==null){
+				row=new Row(cache.getMetaData().getColumnCount());
+			}
+			while(rs.next()){
+				cache.readRow(rs, row);
+				agg.add(row);
+			}
+			sh.close(true);
+		}
+		//聚合结果逐行放入结果集，不在中间再生成一个完整的列表
+		final List<Row> rows=cache.getRvh();
+		final int max=ORMConfig.getInstance().getPartitionInMemoryMaxRows();
+		agg.finish(new InMemoryGroupByHaving.RowHandler() {
+			public void handle(Row row) throws SQLException {
+				if(max>0 && rows.size()>=max){
+					throw new SQLException("The Inmemory operate reaches it max limit of "+ max);
+				}
+				rows.add(row);
+			}
+		});
+		cache.refresh();
+	}
+
 	/**
 	 * 添加内存记录处理器
 	 * @param processor 处理器
@@ -106,6 +153,14 @@ final class InMemoryProcessResultSet extends AbstractResultSet implements IResul
 		if(processor==null)return;
 		this.processors.add(processor);
 	}
+
+	/**
+	 * 设置后续分页需要的记录数(offset+limit)。排序时只保留排在最前的这些记录
+	 * @param topN
+	 */
+	public void setTopN(int topN) {
+		this.topN = topN;
+	}
 	
 	
 	public ColumnMeta getColumns() {
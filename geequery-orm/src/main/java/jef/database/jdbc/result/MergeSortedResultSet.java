@@ -0,0 +1,285 @@
+/*
+ * JEF - Copyright 2009-2010 Jiyi (mr.jiyi@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jef.database.jdbc.result;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.PersistenceException;
+
+import com.github.geequery.dialect.DatabaseDialect;
+
+import jef.database.Condition;
+import jef.database.meta.Reference;
+import jef.database.wrapper.clause.InMemoryOrderBy;
+import jef.database.wrapper.populator.ColumnMeta;
+
+/**
+ * 多个已排序结果集的归并(k路归并)。
+ * <p>
+ * 使用败者树，每取一行只需要沿叶子到根的路径比较log(k)次。每个结果集当前行的排序键缓存在数组中，
+ * 比较时不再访问JDBC结果集，取行的过程中也不创建对象。排序键相等时按结果集的序号排列，因此结果是稳定的。
+ *
+ * @author Jiyi
+ *
+ */
+final class MergeSortedResultSet extends AbstractResultSet implements IResultSet {
+	private ColumnMeta columns;
+
+	private List<ResultSetHolder> allResults;
+	private final ResultSetHolder[] holders;
+	private final int[] orderFields;
+	private final boolean[] orderAsc;
+	/**
+	 * 各结果集当前行的排序键
+	 */
+	private final Object[][] keys;
+	/**
+	 * 已经取完的结果集
+	 */
+	private final boolean[] exhausted;
+	/**
+	 * 败者树。tree[0]为胜者，tree[1..k-1]为各节点上的败者
+	 */
+	private final int[] tree;
+	private ResultSetHolder activeRs;
+
+	public MergeSortedResultSet(List<ResultSetHolder> r, InMemoryOrderBy order, ColumnMeta columns, Map<Reference, List<Condition>> filters) {
+		this.allResults = r;
+		this.columns = columns;
+		this.filters = filters;
+		this.orderFields = order.getOrderFields();
+		this.orderAsc = order.getOrderAsc();
+		int k = r.size();
+		this.holders = r.toArray(new ResultSetHolder[k]);
+		this.keys = new Object[k][orderFields.length];
+		this.exhausted = new boolean[k];
+		this.tree = new int[k];
+		try {
+			for (int i = 0; i < k; i++) {
+				advance(i);
+			}
+		} catch (SQLException e) {
+			throw new PersistenceException(e);
+		}
+		build();
+	}
+
+	/*
+	 * 自底向上进行初始比赛。叶子i位于虚拟位置k+i，节点t的子节点为2t和2t+1
+	 */
+	private void build() {
+		int k = holders.length;
+		int[] winners = new int[2 * k];
+		for (int i = 0; i < k; i++) {
+			winners[k + i] = i;
+		}
+		for (int t = k - 1; t > 0; t--) {
+			int a = winners[2 * t];
+			int b = winners[2 * t + 1];
+			if (beats(a, b)) {
+				winners[t] = a;
+				tree[t] = b;
+			} else {
+				winners[t] = b;
+				tree[t] = a;
+			}
+		}
+		tree[0] = winners[1];
+	}
+
+	/*
+	 * 叶子s的值变化后，沿路径向上重新比赛
+	 */
+	private void adjust(int s) {
+		int winner = s;
+		for (int t = (s + holders.length) >> 1; t > 0; t >>= 1) {
+			int loser = tree[t];
+			if (beats(loser, winner)) {
+				tree[t] = winner;
+				winner = loser;
+			}
+		}
+		tree[0] = winner;
+	}
+
+	/*
+	 * 结果集前进一行，并缓存排序键
+	 */
+	private void advance(int i) throws SQLException {
+		ResultSetHolder holder = holders[i];
+		if (holder.next()) {
+			Object[] key = keys[i];
+			for (int j = 0; j < orderFields.length; j++) {
+				key[j] = holder.getObject(orderFields[j]);
+			}
+		} else {
+			exhausted[i] = true;
+			Object[] key = keys[i];
+			for (int j = 0; j < key.length; j++) {
+				key[j] = null;
+			}
+		}
+	}
+
+	/*
+	 * a是否排在b之前。取完的结果集排在最后，排序键相同时序号小的在前
+	 */
+	private boolean beats(int a, int b) {
+		if (exhausted[a] != exhausted[b]) {
+			return exhausted[b];
+		}
+		if (!exhausted[a]) {
+			Object[] ka = keys[a];
+			Object[] kb = keys[b];
+			for (int j = 0; j < orderFields.length; j++) {
+				int r = compares(ka[j], kb[j]);
+				if (r != 0) {
+					return orderAsc[j] ? r < 0 : r > 0;
+				}
+			}
+		}
+		return a < b;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static int compares(Object object, Object object2) {
+		if (object == object2)
+			return 0;
+		if (object == null)
+			return 1;
+		if (object2 == null)
+			return -1;
+		return ((Comparable) object).compareTo(object2);
+	}
+
+	public int size() {
+		return allResults.size();
+	}
+
+	public ColumnMeta getColumns() {
+		return columns;
+	}
+
+	public boolean next() {
+		if (holders.length == 0) {
+			return false;
+		}
+		if (this.activeRs != null) {
+			int w = tree[0];
+			try {
+				advance(w);
+			} catch (SQLException e) {
+				throw new PersistenceException(e);
+			}
+			adjust(w);
+		}
+		int w = tree[0];
+		if (exhausted[w]) {
+			activeRs = null;
+			return false;
+		}
+		activeRs = holders[w];
+		return true;
+	}
+
+	public void beforeFirst() throws SQLException {
+		throw new UnsupportedOperationException("beforeFirst");
+	}
+
+	public boolean first() throws SQLException {
+		throw new UnsupportedOperationException("first");
+	}
+
+	public void afterLast() throws SQLException {
+		throw new UnsupportedOperationException("afterLast");
+	}
+
+	public DatabaseDialect getProfile() {
+		if (activeRs != null) {
+			return activeRs.getProfile();
+		} else {
+			return allResults.get(0).getProfile();
+		}
+	}
+
+	public boolean previous() throws SQLException {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * 关闭全部连接和结果集
+	 *
+	 * @throws SQLException
+	 */
+	public void close() throws SQLException {
+		for (ResultSetHolder rsx : allResults) {
+			rsx.close(true);
+		}
+		allResults.clear();
+		activeRs = null;
+		columns = null;
+	}
+
+	@Override
+	protected ResultSet get() {
+		return activeRs;
+	}
+
+	public boolean isClosed() throws SQLException {
+		return columns == null;
+	}
+
+	@Override
+	public ResultSetMetaData getMetaData() throws SQLException {
+		return columns.getMeta();
+	}
+
+	@Override
+	public boolean isFirst() throws SQLException {
+		throw new UnsupportedOperationException("isFirst");
+	}
+
+	@Override
+	public boolean isLast() throws SQLException {
+		throw new UnsupportedOperationException("isLast");
+	}
+
+	@Override
+	public boolean last() throws SQLException {
+		throw new UnsupportedOperationException("last");
+	}
+
+	@Override
+	public boolean isBeforeFirst() throws SQLException {
+		throw new UnsupportedOperationException("isBeforeFirst");
+	}
+
+	@Override
+	public boolean isAfterLast() throws SQLException {
+		throw new UnsupportedOperationException("isAfterLast");
+	}
+
+	// 级联过滤条件
+	private Map<Reference, List<Condition>> filters;
+
+	public Map<Reference, List<Condition>> getFilters() {
+		return filters;
+	}
+}
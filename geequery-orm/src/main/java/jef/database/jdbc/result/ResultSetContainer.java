@@ -257,6 +257,9 @@ public final class ResultSetContainer extends AbstractResultSet implements IResu
 			InMemoryProcessResultSet rw = new InMemoryProcessResultSet(results,columns,filters);
 			rw.addProcessor(mustInMemoryProcessor);
 			rw.addProcessor(inMemoryOrder);// 如果需要处理,排序是第一位的.
+			if (inMemoryPage != null) {
+				rw.setTopN((int) Math.min(Integer.MAX_VALUE, (long) inMemoryPage.getOffset() + inMemoryPage.getLimit()));
+			}
 			try {
 				rw.process();
 			} catch (SQLException e) {
@@ -268,7 +271,7 @@ public final class ResultSetContainer extends AbstractResultSet implements IResu
 			rw.setFilters(filters);
 			result=rw;
 		}else if(inMemoryOrder!=null){
-			ReorderResultSet2 rw = new ReorderResultSet2(results, inMemoryOrder, columns, filters);
+			MergeSortedResultSet rw = new MergeSortedResultSet(results, inMemoryOrder, columns, filters);
 			result=rw;
 		}else{
 			this.filters=filters;
@@ -216,10 +216,7 @@ public class CachedRowSetImpl extends BaseRowSet implements RowSet, CachedRowSet
 		if (data == null) {
 			throw new SQLException(resBundle.handleGetObject("cachedrowsetimpl.populate").toString());
 		}
-		if(RowSetMD==null){
-			RowSetMD = new RowSetMetaDataImpl();
-			initMetaData(RowSetMD, data.getMetaData());	
-		}
+		initMetaData(data);
 		
 		int numCols = RowSetMD.getColumnCount();
 		int count=rvh.size();
@@ -231,29 +228,7 @@ public class CachedRowSetImpl extends BaseRowSet implements RowSet, CachedRowSet
 				throw new SQLException("The Inmemory operate reaches it max limit of "+ max);
 			}
 			Row currentRow = new Row(numCols);
-			for (int i = 1; i <= numCols; i++) {
-				Object obj;
-				try {
-					obj = data.getObject(i);
-				} catch (SQLException e) {
-					// PG has bug on handle type MONEY, it attempts to
-					// convert money to double, even if it is a string with
-					// currency unit.
-					obj = data.getString(i);
-				}
-				if (obj instanceof Struct) {
-					obj = new SerialStruct((Struct) obj, null);
-				} else if (obj instanceof SQLData) {
-					obj = new SerialStruct((SQLData) obj, null);
-				} else if (obj instanceof Blob) {
-					obj = new SerialBlob((Blob) obj);
-				} else if (obj instanceof Clob) {
-					obj = new SerialClob((Clob) obj);
-				} else if (obj instanceof java.sql.Array) {
-					obj = new SerialArray((java.sql.Array) obj, null);
-				}
-				((Row) currentRow).initColumnObject(i, obj);
-			}
+			readRow(data, currentRow);
 			rvh.add(currentRow);
 		}
 
@@ -262,6 +237,51 @@ public class CachedRowSetImpl extends BaseRowSet implements RowSet, CachedRowSet
 
 	}
 
+	/**
+	 * 使用第一个结果集初始化元数据
+	 * @param data
+	 * @throws SQLException
+	 */
+	public void initMetaData(ResultSet data) throws SQLException {
+		if(RowSetMD==null){
+			RowSetMD = new RowSetMetaDataImpl();
+			initMetaData(RowSetMD, data.getMetaData());	
+		}
+	}
+
+	/**
+	 * 将结果集的当前行读入指定的Row对象，不加入本结果集。用于逐行处理的场合(如聚合)，调用前需要{@link #initMetaData(ResultSet)}
+	 * @param data
+	 * @param currentRow
+	 * @throws SQLException
+	 */
+	public void readRow(ResultSet data, Row currentRow) throws SQLException {
+		int numCols = RowSetMD.getColumnCount();
+		for (int i = 1; i <= numCols; i++) {
+			Object obj;
+			try {
+				obj = data.getObject(i);
+			} catch (SQLException e) {
+				// PG has bug on handle type MONEY, it attempts to
+				// convert money to double, even if it is a string with
+				// currency unit.
+				obj = data.getString(i);
+			}
+			if (obj instanceof Struct) {
+				obj = new SerialStruct((Struct) obj, null);
+			} else if (obj instanceof SQLData) {
+				obj = new SerialStruct((SQLData) obj, null);
+			} else if (obj instanceof Blob) {
+				obj = new SerialBlob((Blob) obj);
+			} else if (obj instanceof Clob) {
+				obj = new SerialClob((Clob) obj);
+			} else if (obj instanceof java.sql.Array) {
+				obj = new SerialArray((java.sql.Array) obj, null);
+			}
+			currentRow.initColumnObject(i, obj);
+		}
+	}
+
 	/**
 	 * Initializes the given <code>RowSetMetaData</code> object with the values
 	 * in the given <code>ResultSetMetaData</code> object.
@@ -130,6 +130,15 @@ public class Row {
 		currentVals[idx] = val;
 	}
 
+	/**
+	 * 返回存放各列值的数组(下标从0开始)，不复制
+	 * 
+	 * @return
+	 */
+	public Object[] getArray() {
+		return currentVals;
+	}
+
 	@Override
 	public int hashCode() {
 		return Arrays.hashCode(currentVals);
@@ -1,25 +1,49 @@
 package jef.database.wrapper.clause;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import jef.database.jdbc.rowset.CachedRowSetImpl;
 import jef.database.jdbc.rowset.Row;
+
+import com.github.geequery.common.log.LogUtil;
+import com.github.geequery.core.config.ORMConfig;
+import com.github.geequery.tools.IOUtils;
 import com.github.geequery.tools.StringUtils;
 
 import org.apache.commons.lang.ObjectUtils;
 
 import com.google.common.base.Objects;
 
+/**
+ * 在内存中实现分组聚合。
+ * <p>
+ * 每行数据到达时即累加到所在分组上，不保留原始记录。分组状态估算占用的内存超过{@link ORMConfig#getPartitionInMemoryMaxBytes()}时，
+ * 将已有的分组按哈希分区写入临时文件，全部数据处理完后再逐个分区读回、合并并立即输出，因此内存中最多只保留一个分区的分组。
+ * 单个分区合并时仍然超出限制的，用哈希值的另外几位再次分区写出。
+ */
 public class InMemoryGroupByHaving implements InMemoryProcessor {
+	private static final int SPILL_PARTITIONS = 16;
+	/**
+	 * 每层分区使用哈希值中的4位，32位哈希最多分8层
+	 */
+	private static final int MAX_SPILL_LEVEL = 8;
+
 	GroupByItem[] keys;
 	GroupByItem[] values;
 	private List<HavingEle> having;
@@ -30,42 +54,48 @@ public class InMemoryGroupByHaving implements InMemoryProcessor {
 	}
 
 	public void process(CachedRowSetImpl rowset) throws SQLException {
-		int keyLen = keys.length;
-		List<Row> rows=rowset.getRvh();
-		List<Row> newRows = new ArrayList<Row>(rows.size()/2+1);
-		Map<Collection<?>, RowTask> mapTask = new HashMap<Collection<?>, RowTask>();
-		for (Row row : rows) {
-			Object[] keyValue = new Object[keyLen];
-			for (int i = 0; i < keyLen; i++) {
-				keyValue[i] = row.getArrayObject(keys[i].getIndex());
-			}
-			List<Object> keyObj = Arrays.asList(keyValue);
-			RowTask exist = mapTask.get(keyObj);
-			if (exist == null) {
-				newRows.add(row);
-				mapTask.put(keyObj, new RowTask(row));
-			} else {
-				exist.merge(row);
-			}
-		}
-		for (RowTask task : mapTask.values()) {
-			task.run();
+		Aggregation agg = newAggregation();
+		for (Row row : rowset.getRvh()) {
+			agg.add(row);
 		}
-		mapTask.clear();
-		if(having!=null && !having.isEmpty()){
-			doHaving(newRows);
-		}
-		rowset.setRvh(newRows);
+		rowset.setRvh(agg.finish());
 		rowset.refresh();
 	}
 
-	private void doHaving(List<Row> newRows) {
-		for(Iterator<Row> iter=newRows.iterator();iter.hasNext();){
-			Row row=iter.next();
-			if(!checkRow(row)){
-				iter.remove();
+	/**
+	 * 创建一次聚合运算。可以直接从各个结果集逐行传入数据，不需要先将全部数据装入{@link CachedRowSetImpl}
+	 * 
+	 * @return
+	 * @throws SQLFeatureNotSupportedException
+	 *             有不支持在内存中计算的聚合函数时
+	 */
+	public Aggregation newAggregation() throws SQLFeatureNotSupportedException {
+		for (GroupByItem g : values) {
+			switch (g.getType()) {
+			case AVG:
+			case COUNT:
+			case MAX:
+			case MIN:
+			case SUM:
+				break;
+			default:
+				throw new SQLFeatureNotSupportedException("the " + g.getType() + " function was not supported in Memory operate.");
 			}
 		}
+		return new Aggregation(ORMConfig.getInstance().getPartitionInMemoryMaxBytes(), 0);
+	}
+
+	/**
+	 * 聚合结果的接收者
+	 */
+	public interface RowHandler {
+		/**
+		 * 接收一行聚合结果(已经过having过滤)
+		 * 
+		 * @param row
+		 * @throws SQLException
+		 */
+		void handle(Row row) throws SQLException;
 	}
 
 	private boolean checkRow(Row row) {
@@ -129,151 +159,419 @@ public class InMemoryGroupByHaving implements InMemoryProcessor {
 		}
 	}
 
-	class RowTask {
-		private Row baseRow;
-		private List<Row> rows = new ArrayList<Row>(64);
-
-		public RowTask(Row row) {
-			this.baseRow = row;
-			rows.add(row);
-		}
-
-		public void merge(Row row) {
-			rows.add(row);
-		}
-
-		void run() throws SQLFeatureNotSupportedException {
-			for (GroupByItem g : values) {
-				int index = g.getIndex();
-				switch (g.getType()) {
-				case ARRAY_TO_STRING:
-					baseRow.setArrayObject(index, arrayToString(rows, index));
-					break;
-				case AVG:
-					baseRow.setArrayObject(index, avg(rows, index));
-					break;
-				case COUNT:
-					baseRow.setArrayObject(index, count(rows, index));
-					break;
-				case MAX:
-					baseRow.setArrayObject(index, max(rows, index));
-					break;
-				case MIN:
-					baseRow.setArrayObject(index, min(rows, index));
-					break;
-				case SUM:
-					baseRow.setArrayObject(index, sum(rows, index));
-					break;
-				default:
-					throw new SQLFeatureNotSupportedException("the " + g.getType() + " function was not supported in Memory operate.");
-				}
+
+	/**
+	 * 一次聚合运算的状态
+	 */
+	public final class Aggregation {
+		private final long maxBytes;
+		/**
+		 * 分区层次，0为最初的聚合，每次将一个分区读回再聚合时加1
+		 */
+		private final int level;
+		private final Map<GroupKey, Object[]> groups = new LinkedHashMap<GroupKey, Object[]>();
+		/**
+		 * 内存中分组状态的估算字节数
+		 */
+		private long bytes;
+		/**
+		 * 查找分组用的键，避免每行创建对象
+		 */
+		private final GroupKey probe = new GroupKey();
+		private Spill spill;
+
+		Aggregation(long maxBytes, int level) {
+			this.maxBytes = maxBytes;
+			this.level = level;
+		}
+
+		/**
+		 * 累加一行数据。传入的Row对象可以在调用后重复使用
+		 * 
+		 * @param row
+		 * @throws SQLException
+		 */
+		public void add(Row row) throws SQLException {
+			Object[] vals = row.getArray();
+			probe.reset(vals);
+			Object[] group = groups.get(probe);
+			if (group == null) {
+				group = newGroup(vals);
+				groups.put(probe.copy(), group);
+				grow(group);
+			} else {
+				merge(group, vals, null);
+			}
+		}
+
+		/*
+		 * 合并一个从临时文件读回的分组状态
+		 */
+		void addState(Object[] state) throws SQLException {
+			probe.reset(state);
+			Object[] group = groups.get(probe);
+			if (group == null) {
+				groups.put(probe.copy(), state);
+				grow(state);
+			} else {
+				merge(group, state, (long[]) state[state.length - 1]);
 			}
 		}
 
-		private Object sum(List<Row> rows, int index) {
-			Number value=(Number) rows.get(0).getArrayObject(index);
-			if(value instanceof Double){
-				return doubleAdd(rows,index);
-			}else if(value instanceof Long){
-				return longAdd(rows,index);
-			}else if(value instanceof Integer){
-				return intAdd(rows,index);
-			}else if(value instanceof Float){
-				return floatAdd(rows,index);
-			}else{
-				return decmialAdd(rows,index);
+		/**
+		 * 是否已经将分组写入过临时文件
+		 * 
+		 * @return
+		 */
+		public boolean isSpilled() {
+			return spill != null;
+		}
+
+		private void grow(Object[] group) throws SQLException {
+			bytes += estimate(group);
+			if (maxBytes > 0 && bytes >= maxBytes && level < MAX_SPILL_LEVEL) {
+				spill();
 			}
 		}
-	
-		@SuppressWarnings("rawtypes")
-		private Object min(List<Row> rows2, int index) {
-			Comparable min=(Comparable)rows2.get(0).getArrayObject(index);
-			for(int i=1;i>rows2.size();i++){
-				Comparable current=(Comparable)rows2.get(i).getArrayObject(index);
-				if(ObjectUtils.compare(min,current) >0){
-					min=current;
+
+		/**
+		 * 结束累加，返回分组后(并经过having过滤)的结果
+		 * 
+		 * @return
+		 * @throws SQLException
+		 */
+		public List<Row> finish() throws SQLException {
+			final List<Row> result = new ArrayList<Row>(spill == null ? groups.size() : 16);
+			finish(new RowHandler() {
+				public void handle(Row row) {
+					result.add(row);
 				}
+			});
+			return result;
+		}
+
+		/**
+		 * 结束累加，将分组后(并经过having过滤)的结果逐行交给handler。
+		 * 写出过临时文件时，每次只读回一个分区，合并后立即输出，再处理下一个分区。
+		 * 
+		 * @param handler
+		 * @throws SQLException
+		 */
+		public void finish(RowHandler handler) throws SQLException {
+			if (spill == null) {
+				emit(handler);
+				return;
 			}
-			return min;
-		}
-		@SuppressWarnings("rawtypes")
-		private Object max(List<Row> rows2, int index) {
-			Comparable max=(Comparable)rows2.get(0).getArrayObject(index);
-			for(int i=1;i>rows2.size();i++){
-				Comparable current=(Comparable)rows2.get(i).getArrayObject(index);
-				if(ObjectUtils.compare(max,current) <0){
-					max=current;
+			try {
+				spill();
+				spill.closeOutput();
+				for (int p = 0; p < SPILL_PARTITIONS; p++) {
+					Aggregation partition = new Aggregation(maxBytes, level + 1);
+					if (spill.read(p, partition)) {
+						partition.finish(handler);
+					}
 				}
+			} catch (IOException e) {
+				throw new SQLException("Error while merging the spilled groups.", e);
+			} finally {
+				spill.close();
 			}
-			return max;
 		}
 
-		private Object count(List<Row> rows2, int index) {
-			return intAdd(rows,index);
+		/*
+		 * 将内存中的分组写入临时文件
+		 */
+		private void spill() throws SQLException {
+			if (groups.isEmpty()) {
+				return;
+			}
+			try {
+				if (spill == null) {
+					if (level == 0) {
+						LogUtil.info("In-memory group by exceeds {} bytes, spilling to temp files.", maxBytes);
+					}
+					spill = new Spill(level);
+				}
+				for (Map.Entry<GroupKey, Object[]> e : groups.entrySet()) {
+					spill.write(e.getKey().hashCode(), e.getValue());
+				}
+			} catch (IOException e) {
+				spill.close();
+				throw new SQLException("Error while spilling groups to temp file.", e);
+			}
+			groups.clear();
+			bytes = 0;
 		}
 
-		//FIXME 这个算法是不对的。将各个结果集平均数全部相加再相除，和原先的所有样本取平均数是不同的。那些样本数较多的平均值权重被忽略了……
-		private Object avg(List<Row> rows2, int index) {
-			double d = 0;
-			for(Row row:rows2){
-				Number num=(Number)row.getArrayObject(index);
-				d+=num.doubleValue();
+		private void emit(RowHandler handler) throws SQLException {
+			for (Object[] group : groups.values()) {
+				Object[] vals = complete(group);
+				Row row = new Row(vals.length, vals);
+				if (having == null || having.isEmpty() || checkRow(row)) {
+					handler.handle(row);
+				}
 			}
-			return d/rows2.size();
+			groups.clear();
+			bytes = 0;
 		}
-		
-		private Object arrayToString(List<Row> rows2, int index) {
-			//TODO support the function array_to_string of postgres
-			throw new UnsupportedOperationException();
+	}
+
+	/*
+	 * 估算一个分组状态占用的内存，包括分组键和哈希表的条目
+	 */
+	private long estimate(Object[] group) {
+		long size = 16 + 4L * group.length; // 数组
+		size += 48 + 4L * keys.length; // GroupKey和Map.Entry
+		for (int i = 0; i < group.length - 1; i++) {
+			size += estimateValue(group[i]);
 		}
+		size += 16 + 8L * values.length; // AVG的样本数
+		return size;
 	}
-	
-	
-	private Object decmialAdd(List<Row> rows2, int index) {
-		double d = 0;
-		for(Row row:rows2){
-			Number num=(Number)row.getArrayObject(index);
-			d+=num.doubleValue();
-		}
-		return new BigDecimal(d);
+
+	private static long estimateValue(Object value) {
+		if (value == null) {
+			return 0;
+		} else if (value instanceof CharSequence) {
+			return 40 + 2L * ((CharSequence) value).length();
+		} else if (value instanceof byte[]) {
+			return 16 + ((byte[]) value).length;
+		} else if (value instanceof BigDecimal || value instanceof BigInteger) {
+			return 64;
+		} else if (value instanceof Integer || value instanceof Short || value instanceof Byte || value instanceof Boolean || value instanceof Float) {
+			return 16;
+		}
+		return 24;
 	}
 
-	private Object floatAdd(List<Row> rows2, int index) {
-		float d=0;
-		for(Row row:rows2){
-			Number num=(Number)row.getArrayObject(index);
-			d+=num.floatValue();
+	/*
+	 * 分组状态的数组：前面是分组第一行的各列值，聚合列上存放累加值；最后一个元素是各AVG列的样本数(long[])
+	 */
+	private Object[] newGroup(Object[] vals) {
+		int len = vals.length;
+		Object[] group = new Object[len + 1];
+		System.arraycopy(vals, 0, group, 0, len);
+		long[] counts = new long[values.length];
+		for (int j = 0; j < values.length; j++) {
+			if (values[j].getType() == GroupFunctionType.AVG) {
+				int index = values[j].getIndex();
+				Number num = (Number) vals[index];
+				group[index] = num == null ? 0d : num.doubleValue();
+				counts[j] = num == null ? 0 : 1;
+			}
 		}
-		return d;
+		group[len] = counts;
+		return group;
 	}
 
-	private Object longAdd(List<Row> rows2, int index) {
-		long d=0;
-		for(Row row:rows2){
-			Number num=(Number)row.getArrayObject(index);
-			d+=num.longValue();
+	/*
+	 * 将一行原始数据(counts为null)或者另一个分组的状态合并到分组中
+	 */
+	@SuppressWarnings("rawtypes")
+	private void merge(Object[] group, Object[] vals, long[] otherCounts) {
+		long[] counts = (long[]) group[group.length - 1];
+		for (int j = 0; j < values.length; j++) {
+			int index = values[j].getIndex();
+			Object value = vals[index];
+			switch (values[j].getType()) {
+			case SUM:
+			case COUNT:
+				group[index] = add((Number) group[index], (Number) value);
+				break;
+			case MIN:
+				if (value != null && (group[index] == null || ObjectUtils.compare((Comparable) group[index], (Comparable) value) > 0)) {
+					group[index] = value;
+				}
+				break;
+			case MAX:
+				if (value != null && (group[index] == null || ObjectUtils.compare((Comparable) group[index], (Comparable) value) < 0)) {
+					group[index] = value;
+				}
+				break;
+			case AVG:
+				if (otherCounts != null) {
+					group[index] = (Double) group[index] + (Double) value;
+					counts[j] += otherCounts[j];
+				} else if (value != null) {
+					group[index] = (Double) group[index] + ((Number) value).doubleValue();
+					counts[j]++;
+				}
+				break;
+			default:
+				throw new UnsupportedOperationException();
+			}
 		}
-		return d;
 	}
 
-	private Object intAdd(List<Row> rows2, int index) {
-		int d=0;
-		for(Row row:rows2){
-			Number num=(Number)row.getArrayObject(index);
-			d+=num.intValue();
+	/*
+	 * 计算最终的结果行
+	 */
+	//FIXME AVG是将各个结果集的平均数再求平均，和原先的所有样本取平均数是不同的。那些样本数较多的平均值权重被忽略了……
+	private Object[] complete(Object[] group) {
+		int len = group.length - 1;
+		long[] counts = (long[]) group[len];
+		for (int j = 0; j < values.length; j++) {
+			if (values[j].getType() == GroupFunctionType.AVG) {
+				int index = values[j].getIndex();
+				group[index] = counts[j] == 0 ? null : (Double) group[index] / counts[j];
+			}
 		}
-		return d;
+		return Arrays.copyOf(group, len);
 	}
 
-	private Object doubleAdd(List<Row> rows2, int index) {
-		double d = 0;
-		for(Row row:rows2){
-			Number num=(Number)row.getArrayObject(index);
-			d+=num.doubleValue();
+	/*
+	 * 求和，结果类型和已累加的值一致
+	 */
+	private static Number add(Number sum, Number value) {
+		if (value == null) {
+			return sum;
+		}
+		if (sum == null) {
+			return value;
+		}
+		if (sum instanceof Double) {
+			return sum.doubleValue() + value.doubleValue();
+		} else if (sum instanceof Long) {
+			return sum.longValue() + value.longValue();
+		} else if (sum instanceof Integer) {
+			return sum.intValue() + value.intValue();
+		} else if (sum instanceof Float) {
+			return sum.floatValue() + value.floatValue();
+		} else {
+			return toBigDecimal(sum).add(toBigDecimal(value));
+		}
+	}
+
+	private static BigDecimal toBigDecimal(Number num) {
+		if (num instanceof BigDecimal) {
+			return (BigDecimal) num;
+		} else if (num instanceof BigInteger) {
+			return new BigDecimal((BigInteger) num);
+		} else if (num instanceof Double || num instanceof Float) {
+			return new BigDecimal(num.doubleValue());
+		}
+		return BigDecimal.valueOf(num.longValue());
+	}
+
+	/**
+	 * 分组键
+	 */
+	private final class GroupKey {
+		private final Object[] vals = new Object[keys.length];
+		private int hash;
+
+		void reset(Object[] row) {
+			int h = 1;
+			for (int i = 0; i < vals.length; i++) {
+				Object v = row[keys[i].getIndex()];
+				vals[i] = v;
+				h = 31 * h + (v == null ? 0 : v.hashCode());
+			}
+			this.hash = h;
+		}
+
+		GroupKey copy() {
+			GroupKey key = new GroupKey();
+			System.arraycopy(vals, 0, key.vals, 0, vals.length);
+			key.hash = hash;
+			return key;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof GroupKey && Arrays.equals(vals, ((GroupKey) obj).vals);
+		}
+	}
+
+	/**
+	 * 按哈希分区存放分组状态的临时文件
+	 */
+	private final class Spill {
+		private final int shift;
+		private final File[] files = new File[SPILL_PARTITIONS];
+		private final ObjectOutputStream[] outs = new ObjectOutputStream[SPILL_PARTITIONS];
+		private final int[] sizes = new int[SPILL_PARTITIONS];
+
+		/*
+		 * 各层使用哈希值中不同的4位分区，否则读回的分区再次写出时会全部落到同一个分区中
+		 */
+		Spill(int level) {
+			this.shift = level * 4;
+		}
+
+		void write(int hash, Object[] group) throws IOException {
+			int p = (mix(hash) >>> shift) & (SPILL_PARTITIONS - 1);
+			if (outs[p] == null) {
+				files[p] = File.createTempFile("gq-groupby", ".tmp");
+				outs[p] = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(files[p])));
+			}
+			outs[p].writeObject(group);
+			outs[p].reset();// 不保留对已写出对象的引用
+			sizes[p]++;
+		}
+
+		void closeOutput() {
+			for (int p = 0; p < SPILL_PARTITIONS; p++) {
+				IOUtils.closeQuietly(outs[p]);
+				outs[p] = null;
+			}
+		}
+
+		/*
+		 * 读出一个分区，逐个合并到传入的聚合中，分区为空时返回false。读完后即删除该分区的文件
+		 */
+		boolean read(int p, Aggregation target) throws IOException, SQLException {
+			if (files[p] == null) {
+				return false;
+			}
+			ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(files[p])));
+			try {
+				for (int i = 0; i < sizes[p]; i++) {
+					target.addState((Object[]) in.readObject());
+				}
+			} catch (ClassNotFoundException e) {
+				throw new IOException(e);
+			} finally {
+				IOUtils.closeQuietly(in);
+				delete(files[p]);
+				files[p] = null;
+			}
+			return true;
+		}
+
+		void close() {
+			closeOutput();
+			for (int p = 0; p < SPILL_PARTITIONS; p++) {
+				if (files[p] != null) {
+					delete(files[p]);
+					files[p] = null;
+				}
+			}
+		}
+
+		private void delete(File file) {
+			if (!file.delete()) {
+				file.deleteOnExit();
+			}
 		}
-		return d;
 	}
 
+	/*
+	 * 打散哈希值的各位(MurmurHash3的最终混合步骤)
+	 */
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
 
 	public void setHaving(List<HavingEle> having2) {
 		this.having=having2;
@@ -282,6 +580,4 @@ public class InMemoryGroupByHaving implements InMemoryProcessor {
 	public String getName() {
 		return "GROUP/HAVING";
 	}
-
-	
 }
@@ -15,6 +15,9 @@
  */
 package jef.database.wrapper.clause;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -49,33 +52,114 @@ public class InMemoryOrderBy implements InMemoryProcessor {
 
 	public void process(CachedRowSetImpl rowset) {
 		List<Row> rows=rowset.getRvh();
-		Collections.sort(rows, new Comparator<Row>() {
-			public int compare(Row o1, Row o2) {
-				for (int i = 0; i < orderFields.length; i++) {
-					int r = compare0(o1.getColumnObject(orderFields[i]), o2.getColumnObject(orderFields[i]));
-					if(r==0)
-						continue; //判断下一个字段
-					
-					if(!orderAsc[i]){
-						r=-r;
-					}
-					return r;
-				}
-				return 0;
+		Collections.sort(rows, comparator);
+	}
+
+	/**
+	 * 只需要排序后的前N条记录时，用容量为N的堆选出前N条再排序，代替对全部记录排序。
+	 * 排序值相同的记录保持原有的先后顺序。
+	 * 
+	 * @param rowset
+	 * @param topN
+	 *            需要的记录数(分页时为offset+limit)
+	 * @throws SQLException
+	 */
+	public void process(CachedRowSetImpl rowset, int topN) throws SQLException {
+		List<Row> rows = rowset.getRvh();
+		int size = rows.size();
+		if (topN <= 0 || (long) topN * 2 >= size) {// N和总数接近时，直接排序更快
+			process(rowset);
+			return;
+		}
+		// 大顶堆，堆顶是目前保留的记录中最靠后的一条
+		int[] heap = new int[topN];
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			if (n < topN) {
+				heap[n] = i;
+				siftUp(heap, n++, rows);
+			} else if (after(rows, heap[0], i)) {
+				heap[0] = i;
+				siftDown(heap, n, rows);
 			}
-			@SuppressWarnings({ "unchecked", "rawtypes" })
-			private int compare0(Object object, Object object2) {
-				if (object == object2)
-					return 0;
-				if (object == null)
-					return 1;
-				if (object2 == null)
-					return -1;
-				return ((Comparable) object).compareTo(object2);
+		}
+		Row[] result = new Row[n];
+		for (int k = n - 1; k >= 0; k--) {
+			result[k] = rows.get(heap[0]);
+			heap[0] = heap[k];
+			siftDown(heap, k, rows);
+		}
+		rowset.setRvh(new ArrayList<Row>(Arrays.asList(result)));
+		rowset.refresh();
+	}
+
+	/*
+	 * 序号为a的记录是否排在序号为b的记录之后
+	 */
+	private boolean after(List<Row> rows, int a, int b) {
+		int r = comparator.compare(rows.get(a), rows.get(b));
+		return r > 0 || (r == 0 && a > b);
+	}
+
+	private void siftUp(int[] heap, int i, List<Row> rows) {
+		while (i > 0) {
+			int parent = (i - 1) >> 1;
+			if (!after(rows, heap[i], heap[parent])) {
+				break;
 			}
-		});
+			int tmp = heap[i];
+			heap[i] = heap[parent];
+			heap[parent] = tmp;
+			i = parent;
+		}
 	}
 
+	private void siftDown(int[] heap, int n, List<Row> rows) {
+		int i = 0;
+		for (;;) {
+			int child = 2 * i + 1;
+			if (child >= n) {
+				break;
+			}
+			if (child + 1 < n && after(rows, heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!after(rows, heap[child], heap[i])) {
+				break;
+			}
+			int tmp = heap[i];
+			heap[i] = heap[child];
+			heap[child] = tmp;
+			i = child;
+		}
+	}
+
+	private final Comparator<Row> comparator = new Comparator<Row>() {
+		public int compare(Row o1, Row o2) {
+			for (int i = 0; i < orderFields.length; i++) {
+				int r = compare0(o1.getColumnObject(orderFields[i]), o2.getColumnObject(orderFields[i]));
+				if(r==0)
+					continue; //判断下一个字段
+				
+				if(!orderAsc[i]){
+					r=-r;
+				}
+				return r;
+			}
+			return 0;
+		}
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		private int compare0(Object object, Object object2) {
+			if (object == object2)
+				return 0;
+			if (object == null)
+				return 1;
+			if (object2 == null)
+				return -1;
+			return ((Comparable) object).compareTo(object2);
+		}
+	};
+
 	public String getName() {
 		return "ORDER_BY";
 	}
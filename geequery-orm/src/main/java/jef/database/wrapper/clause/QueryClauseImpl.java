@@ -120,6 +120,10 @@ public class QueryClauseImpl implements QueryClause {
 		this.tableDefinition = tableDefinition;
 	}
 
+	public List<Variable> getBind() {
+		return bind;
+	}
+
 	public void setBind(List<Variable> bind) {
 		this.bind = bind;
 	}
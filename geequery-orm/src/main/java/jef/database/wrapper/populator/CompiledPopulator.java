@@ -0,0 +1,271 @@
+package jef.database.wrapper.populator;
+
+import static com.github.geequery.accelerator.asm.ASMUtils.doUnwrap;
+import static com.github.geequery.accelerator.asm.ASMUtils.getDesc;
+import static com.github.geequery.accelerator.asm.ASMUtils.getMethodDesc;
+import static com.github.geequery.accelerator.asm.ASMUtils.getType;
+import static com.github.geequery.accelerator.asm.ASMUtils.iconst;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.geequery.accelerator.asm.ClassWriter;
+import com.github.geequery.accelerator.asm.Label;
+import com.github.geequery.accelerator.asm.MethodVisitor;
+import com.github.geequery.accelerator.asm.Opcodes;
+import com.github.geequery.common.log.LogUtil;
+import com.github.geequery.dialect.type.ResultSetAccessor;
+import com.github.geequery.tools.reflect.BeanUtils;
+import com.github.geequery.tools.reflect.UnsafeUtils;
+
+/**
+ * 动态生成的结果集拼装类的基类。
+ * <p>
+ * 每个(java类, 字段列表)生成一个子类，按列序号逐个调用{@link ResultSetAccessor}取值，再直接调用字段的set方法，
+ * 不再按字段名查找属性，也不需要为每行创建BeanWrapper。生成的类是缓存的，各列的序号和取值器在创建实例时传入，
+ * 因此相同字段不同列顺序的查询共用一个类。
+ * <p>
+ * 无法生成时(如类或set方法不是public的)返回null，由调用者使用原来的按字段名拼装的方式。
+ * <p>
+ * 生成的类定义在被拼装类的ClassLoader中，缓存以被拼装类为弱引用的键，对生成的类也只持有弱引用，
+ * 不会阻止应用的ClassLoader被卸载。
+ *
+ * @author jiyi
+ * @see ObjectPopulator
+ */
+public abstract class CompiledPopulator {
+	private static final String BASE_TYPE = getType(CompiledPopulator.class);
+	private static final String ACCESSOR_TYPE = getType(ResultSetAccessor.class);
+	/**
+	 * 不能生成拼装类的标记
+	 */
+	private static final Reference<Class<?>> NONE = new WeakReference<Class<?>>(Void.class);
+	/**
+	 * 被拼装的类 -> (字段列表 -> 生成的类)。访问时需对此对象同步
+	 */
+	private static final Map<Class<?>, Map<List<String>, Reference<Class<?>>>> CLASSES = new WeakHashMap<Class<?>, Map<List<String>, Reference<Class<?>>>>();
+	private static final AtomicInteger SEQ = new AtomicInteger();
+
+	protected ResultSetAccessor[] accessors;
+	protected int[] columns;
+
+	/**
+	 * 从结果集当前行取值并设置到对象中
+	 *
+	 * @param bean
+	 *            要拼装的对象
+	 * @param rs
+	 *            结果集
+	 * @param skipNull
+	 *            为true时不设置为null的值
+	 * @return 是否取到了非null的值
+	 * @throws SQLException
+	 */
+	public abstract boolean populate(Object bean, ResultSet rs, boolean skipNull) throws SQLException;
+
+	/**
+	 * 获得拼装类的实例
+	 *
+	 * @param beanClass
+	 *            要拼装的类
+	 * @param fields
+	 *            字段名
+	 * @param descs
+	 *            和字段对应的列
+	 * @return 不能生成时返回null
+	 */
+	public static CompiledPopulator get(Class<?> beanClass, String[] fields, ColumnDescription[] descs) {
+		List<String> key = Arrays.asList(fields.clone());
+		Reference<Class<?>> ref = lookup(beanClass, key);
+		if (ref == null) {
+			Class<?> generated = generate(beanClass, fields);
+			ref = register(beanClass, key, generated == null ? NONE : new WeakReference<Class<?>>(generated));
+		}
+		if (ref == NONE) {
+			return null;
+		}
+		Class<?> clz = ref.get();
+		if (clz == null) {
+			return null;
+		}
+		try {
+			CompiledPopulator p = (CompiledPopulator) clz.newInstance();
+			p.accessors = new ResultSetAccessor[descs.length];
+			p.columns = new int[descs.length];
+			for (int i = 0; i < descs.length; i++) {
+				p.accessors[i] = descs[i].getAccessor();
+				p.columns[i] = descs[i].getN();
+			}
+			return p;
+		} catch (Exception e) {
+			LogUtil.exception(e);
+			return null;
+		}
+	}
+
+	private static Reference<Class<?>> lookup(Class<?> beanClass, List<String> fields) {
+		synchronized (CLASSES) {
+			Map<List<String>, Reference<Class<?>>> map = CLASSES.get(beanClass);
+			return map == null ? null : map.get(fields);
+		}
+	}
+
+	/*
+	 * 并发生成同一个类时，以先登记的为准
+	 */
+	private static Reference<Class<?>> register(Class<?> beanClass, List<String> fields, Reference<Class<?>> ref) {
+		synchronized (CLASSES) {
+			Map<List<String>, Reference<Class<?>>> map = CLASSES.get(beanClass);
+			if (map == null) {
+				map = new HashMap<List<String>, Reference<Class<?>>>();
+				CLASSES.put(beanClass, map);
+			}
+			Reference<Class<?>> old = map.get(fields);
+			if (old != null && (old == NONE || old.get() != null)) {
+				return old;
+			}
+			map.put(fields, ref);
+			return ref;
+		}
+	}
+
+	private static Class<?> generate(Class<?> beanClass, String[] fields) {
+		if (!Modifier.isPublic(beanClass.getModifiers())) {
+			return null;
+		}
+		Method[] setters = new Method[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			Method m = findSetter(beanClass, "set" + BeanUtils.capitalizeFieldName(fields[i]));
+			if (m == null || !Modifier.isPublic(m.getDeclaringClass().getModifiers())) {
+				return null;
+			}
+			setters[i] = m;
+		}
+		String name = beanClass.getName().replace('.', '_') + "_Populator" + SEQ.incrementAndGet();
+		ClassLoader cl = beanClass.getClassLoader();
+		if (cl == null) {
+			cl = CompiledPopulator.class.getClassLoader();
+		}
+		try {
+			byte[] data = generate(name, beanClass, setters);
+			return UnsafeUtils.defineClass(name, data, 0, data.length, cl);
+		} catch (Throwable e) {
+			LogUtil.warn("Generating populator for {} failure, fields={}. {}", beanClass.getName(), Arrays.toString(fields), e.toString());
+			return null;
+		}
+	}
+
+	/*
+	 * 局部变量: 0 this,1 bean,2 rs,3 skipNull,4 已转型的bean,5 accessors,6 columns,7 是否有值,8 当前值
+	 */
+	private static byte[] generate(String name, Class<?> beanClass, Method[] setters) {
+		String beanType = getType(beanClass);
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC + Opcodes.ACC_SUPER + Opcodes.ACC_FINAL, name, null, BASE_TYPE, new String[0]);
+		{
+			MethodVisitor mw = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+			mw.visitVarInsn(Opcodes.ALOAD, 0);
+			mw.visitMethodInsn(Opcodes.INVOKESPECIAL, BASE_TYPE, "<init>", "()V", false);
+			mw.visitInsn(Opcodes.RETURN);
+			mw.visitMaxs(1, 1);
+			mw.visitEnd();
+		}
+		MethodVisitor mw = cw.visitMethod(Opcodes.ACC_PUBLIC, "populate", getMethodDesc(Boolean.TYPE, Object.class, ResultSet.class, Boolean.TYPE), null,
+				new String[] { getType(SQLException.class) });
+		mw.visitVarInsn(Opcodes.ALOAD, 1);
+		mw.visitTypeInsn(Opcodes.CHECKCAST, beanType);
+		mw.visitVarInsn(Opcodes.ASTORE, 4);
+		mw.visitVarInsn(Opcodes.ALOAD, 0);
+		mw.visitFieldInsn(Opcodes.GETFIELD, BASE_TYPE, "accessors", getDesc(ResultSetAccessor[].class));
+		mw.visitVarInsn(Opcodes.ASTORE, 5);
+		mw.visitVarInsn(Opcodes.ALOAD, 0);
+		mw.visitFieldInsn(Opcodes.GETFIELD, BASE_TYPE, "columns", getDesc(int[].class));
+		mw.visitVarInsn(Opcodes.ASTORE, 6);
+		mw.visitInsn(Opcodes.ICONST_0);
+		mw.visitVarInsn(Opcodes.ISTORE, 7);
+
+		for (int i = 0; i < setters.length; i++) {
+			Method setter = setters[i];
+			Class<?> type = setter.getParameterTypes()[0];
+			Label isNull = new Label();
+			Label end = new Label();
+			// value=accessors[i].jdbcGet(rs, columns[i])
+			mw.visitVarInsn(Opcodes.ALOAD, 5);
+			iconst(mw, i);
+			mw.visitInsn(Opcodes.AALOAD);
+			mw.visitVarInsn(Opcodes.ALOAD, 2);
+			mw.visitVarInsn(Opcodes.ALOAD, 6);
+			iconst(mw, i);
+			mw.visitInsn(Opcodes.IALOAD);
+			mw.visitMethodInsn(Opcodes.INVOKEINTERFACE, ACCESSOR_TYPE, "jdbcGet", getMethodDesc(Object.class, ResultSet.class, Integer.TYPE), true);
+			mw.visitVarInsn(Opcodes.ASTORE, 8);
+			mw.visitVarInsn(Opcodes.ALOAD, 8);
+			mw.visitJumpInsn(Opcodes.IFNULL, isNull);
+			mw.visitInsn(Opcodes.ICONST_1);
+			mw.visitVarInsn(Opcodes.ISTORE, 7);
+			mw.visitVarInsn(Opcodes.ALOAD, 4);
+			mw.visitVarInsn(Opcodes.ALOAD, 8);
+			if (type.isPrimitive()) {
+				Class<?> wrapped = BeanUtils.toWrapperClass(type);
+				mw.visitTypeInsn(Opcodes.CHECKCAST, getType(wrapped));
+				doUnwrap(mw, type, wrapped);
+			} else {
+				mw.visitTypeInsn(Opcodes.CHECKCAST, getType(type));
+			}
+			invokeSetter(mw, setter);
+			mw.visitJumpInsn(Opcodes.GOTO, end);
+			mw.visitLabel(isNull);
+			if (!type.isPrimitive()) {// 基本类型的字段不能设置为null
+				mw.visitVarInsn(Opcodes.ILOAD, 3);
+				mw.visitJumpInsn(Opcodes.IFNE, end);
+				mw.visitVarInsn(Opcodes.ALOAD, 4);
+				mw.visitInsn(Opcodes.ACONST_NULL);
+				mw.visitTypeInsn(Opcodes.CHECKCAST, getType(type));
+				invokeSetter(mw, setter);
+			}
+			mw.visitLabel(end);
+		}
+		mw.visitVarInsn(Opcodes.ILOAD, 7);
+		mw.visitInsn(Opcodes.IRETURN);
+		mw.visitMaxs(4, 9);
+		mw.visitEnd();
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	/*
+	 * 按名称查找唯一的public set方法。此处不使用BeanAccessor，以免其缓存持有被拼装的类
+	 */
+	private static Method findSetter(Class<?> beanClass, String name) {
+		Method found = null;
+		for (Method m : beanClass.getMethods()) {
+			if (m.getName().equals(name) && m.getParameterTypes().length == 1 && !m.isBridge() && !Modifier.isStatic(m.getModifiers())) {
+				if (found != null) {
+					return null;
+				}
+				found = m;
+			}
+		}
+		return found;
+	}
+
+	private static void invokeSetter(MethodVisitor mw, Method setter) {
+		mw.visitMethodInsn(Opcodes.INVOKEVIRTUAL, getType(setter.getDeclaringClass()), setter.getName(), getDesc(setter), false);
+		Class<?> r = setter.getReturnType();
+		if (r == long.class || r == double.class) {
+			mw.visitInsn(Opcodes.POP2);
+		} else if (r != void.class) {
+			mw.visitInsn(Opcodes.POP);
+		}
+	}
+}
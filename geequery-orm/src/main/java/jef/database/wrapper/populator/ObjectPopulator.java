@@ -8,8 +8,10 @@ import javax.persistence.PersistenceException;
 import jef.database.DataObject;
 import jef.database.innerpool.InstancePopulator;
 import jef.database.jdbc.result.IResultSet;
+import jef.database.meta.EntityType;
 import jef.database.meta.ITableMetadata;
 
+import com.github.geequery.accelerator.bean.FastBeanWrapperImpl;
 import com.github.geequery.core.DebugUtil;
 import com.github.geequery.core.exexutor.LazyLoadProcessor;
 import com.github.geequery.dialect.type.ColumnMappings;
@@ -21,6 +23,11 @@ public final class ObjectPopulator implements InstancePopulator {
 	Map<String, ColumnDescription> data;
 	int bindRowidForColumn;
 	LazyLoadProcessor processor;
+	/**
+	 * 动态生成的拼装类，在拼装第一行时按实际的对象类型生成。
+	 * 类型和拼装类放在同一个不可变对象中发布，并发读取时不会看到不匹配的组合
+	 */
+	private volatile Compiled compiled;
 
 	public ObjectPopulator(ITableMetadata meta, Map<String, ColumnDescription> data) {
 		this.meta = meta;
@@ -34,37 +41,52 @@ public final class ObjectPopulator implements InstancePopulator {
 	 * @throws SQLException
 	 */
 	public boolean processOrNull(BeanWrapper wrapper, IResultSet rs) throws SQLException {
-		boolean flag = false;
-		for (Map.Entry<String, ColumnDescription> entry : data.entrySet()) {
-			String fieldName = entry.getKey();
-			ColumnDescription c = entry.getValue();
-			// Note: 使用getObject方法时，在Oracle 2008-2-2
-			// 10.2.4.0驱动下会变为getDate()，从而丢失时分秒。
+		return populate(wrapper.getWrapped(), wrapper, rs, true);
+	}
+
+	public void process(BeanWrapper wrapper, IResultSet rs) throws SQLException {
+		populate(wrapper.getWrapped(), wrapper, rs, false);
+	}
+
+	/**
+	 * 拼装对象，不需要BeanWrapper
+	 * 
+	 * @param bean
+	 * @param rs
+	 * @throws SQLException
+	 */
+	public void process(Object bean, IResultSet rs) throws SQLException {
+		populate(bean, null, rs, false);
+	}
+
+	private boolean populate(Object bean, BeanWrapper wrapper, IResultSet rs, boolean skipNull) throws SQLException {
+		boolean flag;
+		CompiledPopulator cp = getCompiled(bean.getClass());
+		if (cp != null) {
 			try {
-				Object obj = c.getAccessor().jdbcGet(rs, c.getN());
-				if (!flag && obj != null) {
-					flag = true;
-				}
-				if (obj != null) {
-					wrapper.setPropertyValue(fieldName, obj);
-				}
+				flag = cp.populate(bean, rs, skipNull);
 			} catch (SQLException e) {
-				throw new PersistenceException("Error occured while getting value from resultset. field=[" + fieldName + "], column=[" + c.getName() + "]", e);
+				throw new PersistenceException("Error occured while getting value from resultset. class=[" + bean.getClass().getName() + "], columns=" + data.values(), e);
+			}
+		} else {
+			if (wrapper == null) {
+				wrapper = meta == null ? BeanWrapper.wrap(bean) : new FastBeanWrapperImpl(bean, meta.getContainerAccessor());
 			}
+			flag = populateByName(wrapper, rs, skipNull);
 		}
-
 		if (bindRowidForColumn > 0) {
 			String rowid = (String) ColumnMappings.ROWID.jdbcGet(rs, bindRowidForColumn);
-			((IQueryableEntity) wrapper.getWrapped()).bindRowid(rowid);
+			((IQueryableEntity) bean).bindRowid(rowid);
 		}
 		if (processor != null) {
-			DataObject da = (DataObject) wrapper.getWrapped();
+			DataObject da = (DataObject) bean;
 			DebugUtil.addLazy(da, processor);
 		}
 		return flag;
 	}
 
-	public void process(BeanWrapper wrapper, IResultSet rs) throws SQLException {
+	private boolean populateByName(BeanWrapper wrapper, IResultSet rs, boolean skipNull) {
+		boolean flag = false;
 		for (Map.Entry<String, ColumnDescription> entry : data.entrySet()) {
 			String fieldName = entry.getKey();
 			ColumnDescription c = entry.getValue();
@@ -72,19 +94,41 @@ public final class ObjectPopulator implements InstancePopulator {
 			// 10.2.4.0驱动下会变为getDate()，从而丢失时分秒。
 			try {
 				Object obj = c.getAccessor().jdbcGet(rs, c.getN());
+				if (obj != null) {
+					flag = true;
+				} else if (skipNull) {
+					continue;
+				}
 				wrapper.setPropertyValue(fieldName, obj);
 			} catch (SQLException e) {
 				throw new PersistenceException("Error occured while getting value from resultset. field=[" + fieldName + "], column=[" + c.getName() + "]", e);
 			}
 		}
-		if (bindRowidForColumn > 0) {
-			String rowid = (String) ColumnMappings.ROWID.jdbcGet(rs, bindRowidForColumn);
-			((IQueryableEntity) wrapper.getWrapped()).bindRowid(rowid);
-		}
-		if (processor != null) {
-			DataObject da = (DataObject) wrapper.getWrapped();
-			DebugUtil.addLazy(da, processor);
+		return flag;
+	}
+
+	/*
+	 * 动态类(如VarObject)的属性没有对应的set方法，仍按字段名拼装
+	 */
+	private CompiledPopulator getCompiled(Class<?> type) {
+		Compiled c = compiled;
+		if (c == null || c.type != type) {
+			CompiledPopulator populator = null;
+			if (meta == null || meta.getType() == EntityType.NATIVE) {
+				int size = data.size();
+				String[] fields = new String[size];
+				ColumnDescription[] columns = new ColumnDescription[size];
+				int i = 0;
+				for (Map.Entry<String, ColumnDescription> entry : data.entrySet()) {
+					fields[i] = entry.getKey();
+					columns[i++] = entry.getValue();
+				}
+				populator = CompiledPopulator.get(type, fields, columns);
+			}
+			c = new Compiled(type, populator);
+			compiled = c;
 		}
+		return c.populator;
 	}
 
 	public void setProcessor(LazyLoadProcessor processor) {
@@ -100,4 +144,17 @@ public final class ObjectPopulator implements InstancePopulator {
 	public Class<?> getObjectType() {
 		return meta.getContainerType();
 	}
+
+	private static final class Compiled {
+		final Class<?> type;
+		/**
+		 * 不能生成时为null
+		 */
+		final CompiledPopulator populator;
+
+		Compiled(Class<?> type, CompiledPopulator populator) {
+			this.type = type;
+			this.populator = populator;
+		}
+	}
 }
@@ -335,10 +335,12 @@ public class ResultPopulatorImpl implements ResultSetPopulator{
 			IResultSet rs=this.rs;
 			try {
 				T retObj = (T) UnsafeUtils.newInstance(clz);
-				BeanWrapper wrapper = BeanWrapper.wrap(retObj);
-				populateMeta.process(wrapper, rs);
-				for(Mapper<?> m:extendPopulator){
-					m.process(wrapper, rs);
+				populateMeta.process(retObj, rs);
+				if(!extendPopulator.isEmpty()){
+					BeanWrapper wrapper = BeanWrapper.wrap(retObj);
+					for(Mapper<?> m:extendPopulator){
+						m.process(wrapper, rs);
+					}
 				}
 				endPopulate(retObj);
 				return retObj;
@@ -571,21 +573,19 @@ public class ResultPopulatorImpl implements ResultSetPopulator{
 			try {
 				
 				T retObj;
-				BeanWrapper wrapper;
 				if(meta==null){
 					retObj=UnsafeUtils.newInstance(retClz);
-					wrapper = BeanWrapper.wrap(retObj, BeanWrapper.FAST);
 				}else{
 					IQueryableEntity e=meta.newInstance();
 					e.stopUpdate();
 					retObj=(T) e;
-					wrapper = new FastBeanWrapperImpl(retObj,meta.getContainerAccessor());
 				}
 				for (ObjectPopulator op : directPopulator) {
-					op.process(wrapper, rs);
+					op.process(retObj, rs);
 
 				}
 				if (extendPopulator != null) {// 主对象拼装完毕后，拼装JOIN对象中指出的其他引用字段
+					BeanWrapper wrapper = meta == null ? BeanWrapper.wrap(retObj, BeanWrapper.FAST) : new FastBeanWrapperImpl(retObj, meta.getContainerAccessor());
 					for (IPopulator rp : extendPopulator) {
 						rp.process(wrapper, rs);
 					}
@@ -156,7 +156,21 @@ public final class BindVariableContext {
 	 * @throws SQLException
 	 */
 	public void setInsertVariables(IQueryableEntity obj, List<ColumnMapping> fields) throws SQLException {
-		int count = 0;
+		setInsertVariables(obj, fields, 0);
+	}
+
+	/**
+	 * 为Insert语句设置绑定变量，从指定的序号之后开始绑定。用于一个语句插入多行的场合
+	 * 
+	 * @param obj
+	 *            要插入的对象
+	 * @param fields
+	 * @param offset
+	 *            语句中已经绑定的变量个数
+	 * @throws SQLException
+	 */
+	public void setInsertVariables(IQueryableEntity obj, List<ColumnMapping> fields, int offset) throws SQLException {
+		int count = offset;
 		for (ColumnMapping field : fields) {
 			count++;
 			Object value = field.getFieldAccessor().get(obj);
@@ -0,0 +1,94 @@
+package com.github.geequery;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jef.database.query.ParameterProvider.MapProvider;
+
+import org.junit.Test;
+
+import com.github.geequery.common.Entry;
+import com.github.geequery.jsqlparser.Parsers;
+import com.github.geequery.jsqlparser.statement.select.PlainSelect;
+import com.github.geequery.jsqlparser.statement.select.Select;
+
+public class NamedQueryTemplateTest {
+	private static final String SQL = "select * from t where a = :a and b in (:b) and c = :c and d between :d1 and :d2";
+
+	private static MapProvider params(Object... kv) {
+		Map<String, Object> map = new HashMap<String, Object>();
+		for (int i = 0; i < kv.length; i += 2) {
+			map.put((String) kv[i], kv[i + 1]);
+		}
+		return new MapProvider(map);
+	}
+
+	/*
+	 * 按原有方式遍历一棵新解析的语法树，作为期望结果
+	 */
+	private static Entry<String, List<Object>> expected(MapProvider prov) throws Exception {
+		Select st = Parsers.parseSelect(SQL);
+		Entry<String, List<Object>> where = NamedQueryMetadata.applyParam(((PlainSelect) st.getSelectBody()).getWhere(), prov);
+		return new Entry<String, List<Object>>(st.toString(), where.getValue());
+	}
+
+	private static void check(NamedQueryMetadata.Template template, MapProvider prov) throws Exception {
+		SqlAndParameter actual = template.bind(prov);
+		Entry<String, List<Object>> expected = expected(prov);
+		assertEquals(expected.getKey(), actual.statement.toString());
+		assertEquals(expected.getValue(), actual.params);
+	}
+
+	@Test
+	public void testParameterPositions() throws Exception {
+		NamedQueryMetadata.Template template = new NamedQueryMetadata.Template(Parsers.parseSelect(SQL));
+		MapProvider full = params("a", 1, "b", new int[] { 2, 3, 4 }, "c", 5, "d1", 6, "d2", 7);
+		SqlAndParameter result = template.bind(full);
+		assertEquals(Arrays.<Object> asList(1, 2, 3, 4, 5, 6, 7), result.params);
+		check(template, full);
+
+		// 缺少参数的条件被省略，其后参数的位置随之前移
+		check(template, params("a", 1, "b", Arrays.asList(8), "d1", 6, "d2", 7));
+		check(template, params("b", new int[] { 2, 3 }, "c", 5));
+		check(template, params("a", 1, "d1", 6));
+
+		// 相同状态组合不重新遍历语法树，绑定变量按本次的值
+		check(template, full);
+		SqlAndParameter again = template.bind(params("a", 10, "b", new int[] { 20, 30, 40 }, "c", 50, "d1", 60, "d2", 70));
+		assertEquals(expected(full).getKey(), again.statement.toString());
+		assertEquals(Arrays.<Object> asList(10, 20, 30, 40, 50, 60, 70), again.params);
+	}
+
+	@Test
+	public void testBindSharedNodes() throws Exception {
+		Select st = Parsers.parseSelect(SQL);
+		// 和count语句一样，另一个模板与主语句共用语法树节点
+		Select other = new Select();
+		other.setSelectBody(st.getSelectBody());
+		NamedQueryMetadata.Template template = new NamedQueryMetadata.Template(st);
+		NamedQueryMetadata.Template shared = new NamedQueryMetadata.Template(other);
+
+		MapProvider p1 = params("a", 1, "c", 3);
+		MapProvider p2 = params("b", new int[] { 2, 2 }, "d1", 4, "d2", 5);
+		String sql1 = expected(p1).getKey();
+		String sql2 = expected(p2).getKey();
+
+		SqlAndParameter r = template.bind(p1);
+		assertEquals(sql1, r.statement.toString());
+		assertEquals(Arrays.<Object> asList(1, 3), r.params);
+		r = template.bind(p2);
+		assertEquals(sql2, r.statement.toString());
+		r = template.bind(p1);
+		assertEquals(sql1, r.statement.toString());
+
+		shared.bind(p2);
+		assertEquals(sql2, st.toString());
+		r = template.bind(p1);
+		assertEquals(sql1, r.statement.toString());
+		assertEquals(Arrays.<Object> asList(1, 3), r.params);
+	}
+}
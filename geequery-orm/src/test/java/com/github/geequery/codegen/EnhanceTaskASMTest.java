@@ -0,0 +1,221 @@
+package com.github.geequery.codegen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+
+import jef.database.DataObject;
+
+import org.junit.Test;
+
+import com.github.geequery.tools.IOUtils;
+
+public class EnhanceTaskASMTest {
+	public static class DirtyEntity extends DataObject {
+		private int id;
+		private String name;
+		private String last;
+		private String plain;
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public String getLast() {
+			return last;
+		}
+
+		public void setLast(String last) {
+			this.last = last;
+		}
+
+		public String getPlain() {
+			return plain;
+		}
+
+		public void setPlain(String plain) {
+			this.plain = plain;
+		}
+
+		@Override
+		public int hashCode() {
+			return getHashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return isEquals(obj);
+		}
+
+		/**
+		 * last的序号为64，超出一个long的位数
+		 */
+		public enum Field implements jef.database.Field {
+			id, name, c2, c3, c4, c5, c6, c7, c8, c9, c10, c11, c12, c13, c14, c15, c16, c17, c18, c19, c20, c21, c22, c23, c24, c25, c26, c27, c28, c29, c30, c31, c32, c33, c34, c35, c36, c37, c38, c39, c40, c41, c42, c43, c44, c45, c46, c47, c48, c49, c50, c51, c52, c53, c54, c55, c56, c57, c58, c59, c60, c61, c62, c63, last
+		}
+	}
+
+	private static byte[] classData(Class<?> clz) throws IOException {
+		InputStream in = clz.getClassLoader().getResourceAsStream(clz.getName().replace('.', '/') + ".class");
+		return IOUtils.toByteArray(in);
+	}
+
+	/**
+	 * 加载增强后的实体类，其余类仍由上级ClassLoader加载
+	 */
+	static class EnhancedLoader extends ClassLoader {
+		private final byte[] data;
+
+		EnhancedLoader(byte[] data) {
+			super(EnhanceTaskASMTest.class.getClassLoader());
+			this.data = data;
+		}
+
+		@Override
+		protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (!DirtyEntity.class.getName().equals(name)) {
+				return super.loadClass(name, resolve);
+			}
+			Class<?> c = findLoadedClass(name);
+			if (c == null) {
+				c = defineClass(name, data, 0, data.length);
+			}
+			return c;
+		}
+	}
+
+	private static byte[] enhance() throws Exception {
+		byte[] data = new EnhanceTaskASM().doEnhance(classData(DirtyEntity.class), classData(DirtyEntity.Field.class));
+		assertNotNull(data);
+		assertTrue(data.length > 0);
+		return data;
+	}
+
+	private static DataObject newEnhanced() throws Exception {
+		Class<?> clz = new EnhancedLoader(enhance()).loadClass(DirtyEntity.class.getName());
+		return (DataObject) clz.newInstance();
+	}
+
+	private static long dirtyBits(DataObject obj) throws Exception {
+		java.lang.reflect.Field field = DataObject.class.getDeclaredField("_dirty");
+		field.setAccessible(true);
+		return field.getLong(obj);
+	}
+
+	private static void set(Object bean, String property, Object value) throws Exception {
+		for (Method m : bean.getClass().getMethods()) {
+			if (m.getName().equals("set" + Character.toUpperCase(property.charAt(0)) + property.substring(1))) {
+				m.invoke(bean, value);
+				return;
+			}
+		}
+		throw new NoSuchMethodException(property);
+	}
+
+	private static Object get(Object bean, String property) throws Exception {
+		return bean.getClass().getMethod("get" + Character.toUpperCase(property.charAt(0)) + property.substring(1)).invoke(bean);
+	}
+
+	@Test
+	public void testDirtyBits() throws Exception {
+		DataObject obj = newEnhanced();
+		assertFalse(obj.needUpdate());
+
+		set(obj, "name", "Tom");
+		assertEquals("Tom", get(obj, "name"));
+		assertTrue(obj.isUsed(DirtyEntity.Field.name));
+		assertFalse(obj.isUsed(DirtyEntity.Field.id));
+		assertTrue(obj.needUpdate());
+
+		// 序号64以上的字段记录在扩展的位图中
+		set(obj, "last", "x");
+		assertTrue(obj.isUsed(DirtyEntity.Field.last));
+
+		// 不在Field枚举中的字段不记录
+		set(obj, "plain", "p");
+		obj.touchUsedFlag(DirtyEntity.Field.name, false);
+		obj.touchUsedFlag(DirtyEntity.Field.last, false);
+		assertFalse(obj.isUsed(DirtyEntity.Field.name));
+		assertFalse(obj.isUsed(DirtyEntity.Field.last));
+		assertFalse(obj.needUpdate());
+
+		obj.stopUpdate();
+		set(obj, "id", 1);
+		assertEquals(1, get(obj, "id"));
+		assertFalse(obj.isUsed(DirtyEntity.Field.id));
+		obj.startUpdate();
+		set(obj, "id", 2);
+		assertTrue(obj.isUsed(DirtyEntity.Field.id));
+		obj.clearUpdate();
+		assertFalse(obj.isUsed(DirtyEntity.Field.id));
+		assertFalse(obj.needUpdate());
+	}
+
+	@Test
+	public void testExplicitValueWins() throws Exception {
+		DataObject obj = newEnhanced();
+		set(obj, "name", "Tom");
+		// 显式指定的更新值(如表达式)优先于set方法标记的字段
+		obj.prepareUpdate(DirtyEntity.Field.name, "upper(name)");
+		assertTrue(obj.isUsed(DirtyEntity.Field.name));
+		assertEquals(1, obj.getUpdateValueMap().size());
+		assertEquals("upper(name)", obj.getUpdateValueMap().get(DirtyEntity.Field.name));
+	}
+
+	@Test
+	public void testEqualsWithoutFlush() throws Exception {
+		Class<?> clz = new EnhancedLoader(enhance()).loadClass(DirtyEntity.class.getName());
+		DataObject a = (DataObject) clz.newInstance();
+		DataObject b = (DataObject) clz.newInstance();
+		assertEquals(a, b);
+		assertEquals(a.hashCode(), b.hashCode());
+
+		set(a, "name", "Tom");
+		assertFalse(a.equals(b));
+		set(b, "name", "Jerry");
+		assertEquals(a, b);
+		assertEquals(a.hashCode(), b.hashCode());
+		// 比较时不把位图合并到updateValueMap中
+		assertTrue(dirtyBits(a) != 0);
+		assertTrue(dirtyBits(b) != 0);
+
+		set(a, "last", "x");
+		assertFalse(a.equals(b));
+		set(b, "last", "y");
+		assertEquals(a, b);
+
+		// 扩展位图清零后和未分配时相同
+		b.touchUsedFlag(DirtyEntity.Field.last, false);
+		DataObject c = (DataObject) clz.newInstance();
+		set(c, "name", "Tom");
+		assertEquals(b, c);
+		assertEquals(b.hashCode(), c.hashCode());
+
+		// 显式指定的更新值参与比较
+		c.prepareUpdate(DirtyEntity.Field.id, 1);
+		assertFalse(b.equals(c));
+	}
+
+	@Test
+	public void testNotEnhancedTwice() throws Exception {
+		byte[] data = enhance();
+		assertEquals(0, new EnhanceTaskASM().doEnhance(data, classData(DirtyEntity.Field.class)).length);
+	}
+}
@@ -0,0 +1,153 @@
+package com.github.geequery.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import jef.database.meta.ITableMetadata;
+
+import org.junit.Test;
+
+import com.github.geequery.entity.IQueryableEntity;
+
+public class BatchFlushTest {
+	/**
+	 * 记录Statement上的调用
+	 */
+	static class StatementRecorder implements InvocationHandler {
+		final List<Integer> batches = new ArrayList<Integer>();
+		int prepared;
+		int closed;
+		int pending;
+		Thread thread;
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			check();
+			if ("addBatch".equals(name)) {
+				pending++;
+			} else if ("executeBatch".equals(name)) {
+				int[] result = new int[pending];
+				Arrays.fill(result, 1);
+				batches.add(pending);
+				pending = 0;
+				return result;
+			} else if ("close".equals(name)) {
+				closed++;
+			}
+			return null;
+		}
+
+		void check() {
+			// 同一连接上的操作必须在调用者线程中依次进行
+			if (thread == null) {
+				thread = Thread.currentThread();
+			}
+			assertEquals(thread, Thread.currentThread());
+		}
+
+		PreparedStatement newStatement() {
+			prepared++;
+			return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { PreparedStatement.class }, this);
+		}
+	}
+
+	private static <X> X stub(Class<X> clz) {
+		return clz.cast(Proxy.newProxyInstance(BatchFlushTest.class.getClassLoader(), new Class<?>[] { clz }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				return null;
+			}
+		}));
+	}
+
+	static class RecordBatch extends Batch<IQueryableEntity> {
+		final StatementRecorder recorder = new StatementRecorder();
+		final List<Integer> before = new ArrayList<Integer>();
+		final List<Integer> after = new ArrayList<Integer>();
+
+		RecordBatch() throws SQLException {
+			super(stub(Session.class), stub(ITableMetadata.class));
+		}
+
+		@Override
+		protected PreparedStatement prepareStatement(OperateTarget db, String sql) throws SQLException {
+			return recorder.newStatement();
+		}
+
+		@Override
+		protected void callVeryBefore(List<IQueryableEntity> objs) throws SQLException {
+		}
+
+		@Override
+		protected void callEventListenerBefore(List<IQueryableEntity> listValue) throws SQLException {
+			before.add(listValue.size());
+		}
+
+		@Override
+		protected void callEventListenerAfter(List<IQueryableEntity> listValue) throws SQLException {
+			after.add(listValue.size());
+		}
+
+		@Override
+		protected void processJdbcParams(PreparedStatement psmt, List<IQueryableEntity> listValue, OperateTarget db) throws SQLException {
+			for (int i = 0; i < listValue.size(); i++) {
+				psmt.addBatch();
+			}
+		}
+
+		@Override
+		protected String toSql(String tablename) {
+			return "insert into " + tablename + " values(?)";
+		}
+
+		int commit(int size) throws SQLException {
+			List<IQueryableEntity> objs = new ArrayList<IQueryableEntity>();
+			for (int i = 0; i < size; i++) {
+				objs.add(null);
+			}
+			return commitOn(new OperateTarget(parent, null), toSql("t"), objs);
+		}
+	}
+
+	@Test
+	public void testChunked() throws SQLException {
+		RecordBatch batch = new RecordBatch();
+		batch.setFlushSize(4);
+		final List<String> events = new ArrayList<String>();
+		batch.setChunkListener(new Batch.ChunkListener() {
+			public void onChunkExecuted(int chunkIndex, int chunkSize, int affected) {
+				events.add(chunkIndex + ":" + chunkSize + ":" + affected);
+			}
+		});
+		assertEquals(10, batch.commit(10));
+		assertEquals(Arrays.asList(4, 4, 2), batch.recorder.batches);
+		assertEquals(Arrays.asList(4, 4, 2), batch.before);
+		assertEquals(Arrays.asList(4, 4, 2), batch.after);
+		assertEquals(Arrays.asList("0:4:4", "1:4:4", "2:2:2"), events);
+		assertEquals(Arrays.asList(4, 4, 2), batch.getChunkResults());
+		// 各段共用一个Statement
+		assertEquals(1, batch.recorder.prepared);
+		assertEquals(1, batch.recorder.closed);
+	}
+
+	@Test
+	public void testNotChunked() throws SQLException {
+		RecordBatch batch = new RecordBatch();
+		batch.setFlushSize(10);
+		assertEquals(10, batch.commit(10));
+		assertEquals(Arrays.asList(10), batch.recorder.batches);
+		assertEquals(1, batch.recorder.closed);
+
+		batch = new RecordBatch();
+		batch.setFlushSize(0);
+		assertEquals(25, batch.commit(25));
+		assertEquals(Arrays.asList(25), batch.recorder.batches);
+	}
+}
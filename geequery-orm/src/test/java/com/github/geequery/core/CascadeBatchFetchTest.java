@@ -0,0 +1,139 @@
+package com.github.geequery.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class CascadeBatchFetchTest {
+	public static class Parent {
+		private Integer id;
+
+		public Parent() {
+		}
+
+		Parent(Integer id) {
+			this.id = id;
+		}
+
+		public Integer getId() {
+			return id;
+		}
+
+		public void setId(Integer id) {
+			this.id = id;
+		}
+	}
+
+	public static class Child {
+		private Long parentId;
+
+		public Child() {
+		}
+
+		Child(long parentId) {
+			this.parentId = parentId;
+		}
+
+		public Long getParentId() {
+			return parentId;
+		}
+
+		public void setParentId(Long parentId) {
+			this.parentId = parentId;
+		}
+	}
+
+	/**
+	 * 模拟子表，记录每次查询的关联键
+	 */
+	static class ChildTable implements CascadeBatchFetch.Selector<Child> {
+		final List<Child> rows = new ArrayList<Child>();
+		final List<List<Object>> queries = new ArrayList<List<Object>>();
+
+		ChildTable(long... parentIds) {
+			for (long id : parentIds) {
+				rows.add(new Child(id));
+			}
+		}
+
+		public List<Child> select(List<Object> keys) throws SQLException {
+			queries.add(keys);
+			List<Child> result = new ArrayList<Child>();
+			for (Child c : rows) {
+				for (Object key : keys) {
+					if (((Number) key).longValue() == c.parentId) {
+						result.add(c);
+					}
+				}
+			}
+			return result;
+		}
+	}
+
+	private static List<Parent> parents(Integer... ids) {
+		List<Parent> result = new ArrayList<Parent>();
+		for (Integer id : ids) {
+			result.add(new Parent(id));
+		}
+		return result;
+	}
+
+	@Test
+	public void testChunked() throws SQLException {
+		List<Parent> parents = parents(1, 2, 3, 4, 5, 6, 7);
+		ChildTable table = new ChildTable(1, 2, 3, 4, 5, 6, 7);
+		Map<Object, List<Child>> result = CascadeBatchFetch.fetch(parents, "id", "parentId", 3, table);
+		// 每次查询的键个数不超过batchSize
+		assertEquals(3, table.queries.size());
+		assertEquals(Arrays.<Object> asList(1, 2, 3), table.queries.get(0));
+		assertEquals(Arrays.<Object> asList(4, 5, 6), table.queries.get(1));
+		assertEquals(Arrays.<Object> asList(7), table.queries.get(2));
+		for (Parent p : parents) {
+			assertEquals(1, result.get(p).size());
+		}
+
+		table.queries.clear();
+		CascadeBatchFetch.fetch(parents(1, 2, 3), "id", "parentId", 3, table);
+		assertEquals(1, table.queries.size());
+	}
+
+	@Test
+	public void testKeyTypes() throws SQLException {
+		// 父对象的键是Integer，子对象的键是Long
+		List<Parent> parents = parents(1, 2);
+		ChildTable table = new ChildTable(1, 1, 2);
+		Map<Object, List<Child>> result = CascadeBatchFetch.fetch(parents, "id", "parentId", 10, table);
+		assertEquals(2, result.get(parents.get(0)).size());
+		assertEquals(1, result.get(parents.get(1)).size());
+		assertEquals(Long.valueOf(2), result.get(parents.get(1)).get(0).getParentId());
+		assertEquals(CascadeBatchFetch.normalizeKey(1), CascadeBatchFetch.normalizeKey(1L));
+		assertEquals("a", CascadeBatchFetch.normalizeKey("a"));
+	}
+
+	@Test
+	public void testNoChildren() throws SQLException {
+		List<Parent> parents = parents(1, 2, null, 1);
+		ChildTable table = new ChildTable(1);
+		Map<Object, List<Child>> result = CascadeBatchFetch.fetch(parents, "id", "parentId", 10, table);
+		// 相同的关联键只查询一次
+		assertEquals(Arrays.<Object> asList(1, 2), table.queries.get(0));
+		// 没有子记录的父对象得到空列表，关联键为null的父对象不装填
+		assertTrue(result.get(parents.get(1)).isEmpty());
+		assertFalse(result.containsKey(parents.get(2)));
+		// 关联键相同的父对象各自得到新的列表
+		assertEquals(result.get(parents.get(0)), result.get(parents.get(3)));
+		assertTrue(result.get(parents.get(0)) != result.get(parents.get(3)));
+
+		table.queries.clear();
+		assertTrue(CascadeBatchFetch.fetch(parents((Integer) null), "id", "parentId", 10, table).isEmpty());
+		assertTrue(table.queries.isEmpty());
+	}
+}
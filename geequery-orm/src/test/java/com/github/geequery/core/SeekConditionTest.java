@@ -0,0 +1,205 @@
+package com.github.geequery.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jef.database.wrapper.variable.BindVariableContext;
+import jef.database.wrapper.variable.Variable;
+
+import org.junit.Test;
+
+import com.github.geequery.core.support.SqlLog;
+import com.github.geequery.dialect.type.ColumnMapping;
+
+public class SeekConditionTest {
+	private static final String[] NAMES = { "b", "a", "c", "a", "b" };
+
+	/**
+	 * 一条记录，按列名取值
+	 */
+	private static Map<String, Object> row(String name, Date created, int id) {
+		Map<String, Object> row = new HashMap<String, Object>();
+		row.put("NAME", name);
+		row.put("CREATED", created);
+		row.put("ID", id);
+		return row;
+	}
+
+	/**
+	 * 模拟列映射：字符串用setString，日期转换为Timestamp后用setTimestamp，数值用setInt
+	 */
+	private static ColumnMapping column(final String name) {
+		return (ColumnMapping) Proxy.newProxyInstance(ColumnMapping.class.getClassLoader(), new Class<?>[] { ColumnMapping.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				String m = method.getName();
+				if (m.equals("fieldName")) {
+					return name.toLowerCase();
+				} else if (m.equals("getColumnName")) {
+					return name;
+				} else if (m.equals("jdbcSet")) {
+					PreparedStatement st = (PreparedStatement) args[0];
+					Object value = args[1];
+					int index = (Integer) args[2];
+					if (value instanceof String) {
+						st.setString(index, (String) value);
+					} else if (value instanceof Date) {
+						value = new Timestamp(((Date) value).getTime());
+						st.setTimestamp(index, (Timestamp) value);
+					} else {
+						st.setInt(index, (Integer) value);
+					}
+					return value;
+				} else if (m.equals("hashCode")) {
+					return System.identityHashCode(proxy);
+				} else if (m.equals("equals")) {
+					return proxy == args[0];
+				} else if (m.equals("toString")) {
+					return name;
+				}
+				throw new UnsupportedOperationException(m);
+			}
+		});
+	}
+
+	/**
+	 * 记录语句上设置的绑定变量，只接受列映射使用的类型化方法
+	 */
+	private static PreparedStatement statement(final Map<Integer, Object> values) {
+		return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[] { PreparedStatement.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				String m = method.getName();
+				if (m.equals("setString") || m.equals("setTimestamp") || m.equals("setInt")) {
+					values.put((Integer) args[0], args[1]);
+					return null;
+				}
+				throw new UnsupportedOperationException(m);
+			}
+		});
+	}
+
+	private static Object comparable(Object value) {
+		return value instanceof Date ? Long.valueOf(((Date) value).getTime()) : value;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static int compare(Object a, Object b) {
+		return ((Comparable) comparable(a)).compareTo(comparable(b));
+	}
+
+	/*
+	 * 按生成的条件在内存中过滤记录。条件形如 (t.A>? or (t.A=? and t.B>?))，绑定变量依次取自语句
+	 */
+	private static boolean matches(String condition, Map<Integer, Object> values, Map<String, Object> row) {
+		String body = condition.substring(1, condition.length() - 1);
+		int index = 0;
+		boolean result = false;
+		for (String term : body.split(" or ")) {
+			boolean all = true;
+			for (String atom : term.replace("(", "").replace(")", "").split(" and ")) {
+				Object bound = values.get(++index);
+				String column = atom.substring(2, atom.length() - 2);
+				int c = compare(row.get(column), bound);
+				char op = atom.charAt(atom.length() - 2);
+				all &= op == '=' ? c == 0 : op == '>' ? c > 0 : c < 0;
+			}
+			result |= all;
+		}
+		assertEquals(values.size(), index);
+		return result;
+	}
+
+	/*
+	 * 按键集分页逐页读取全部记录
+	 */
+	private static List<Map<String, Object>> pageAll(List<Map<String, Object>> table, ColumnMapping[] keys, boolean asc, Comparator<Map<String, Object>> order, int rows) throws SQLException {
+		List<Map<String, Object>> sorted = new ArrayList<Map<String, Object>>(table);
+		Collections.sort(sorted, order);
+		List<Map<String, Object>> result = new ArrayList<Map<String, Object>>();
+		Object[] lastKey = null;
+		while (true) {
+			List<Map<String, Object>> page = new ArrayList<Map<String, Object>>();
+			if (lastKey == null) {
+				page.addAll(sorted.subList(0, Math.min(rows, sorted.size())));
+			} else {
+				List<Variable> bind = new ArrayList<Variable>();
+				String condition = SeekCondition.create(keys, lastKey, asc, null, bind);
+				Map<Integer, Object> values = new HashMap<Integer, Object>();
+				new BindVariableContext(statement(values), null, SqlLog.DUMMY).setVariables(null, null, bind);
+				for (Map.Entry<Integer, Object> e : values.entrySet()) {
+					// 非数值的键按列映射的类型绑定，日期不能以java.util.Date直接传给驱动
+					assertTrue(e.getValue().getClass() != Date.class);
+				}
+				for (Map<String, Object> r : sorted) {
+					if (page.size() < rows && matches(condition, values, r)) {
+						page.add(r);
+					}
+				}
+			}
+			result.addAll(page);
+			if (page.size() < rows) {
+				return result;
+			}
+			Map<String, Object> last = page.get(page.size() - 1);
+			lastKey = new Object[keys.length];
+			for (int i = 0; i < keys.length; i++) {
+				lastKey[i] = last.get(keys[i].toString());
+			}
+		}
+	}
+
+	@Test
+	public void testCondition() {
+		ColumnMapping[] keys = { column("NAME"), column("CREATED"), column("ID") };
+		List<Variable> bind = new ArrayList<Variable>();
+		String sql = SeekCondition.create(keys, new Object[] { "a", new Date(0), 1 }, true, null, bind);
+		assertEquals("(t.NAME>? or (t.NAME=? and t.CREATED>?) or (t.NAME=? and t.CREATED=? and t.ID>?))", sql);
+		assertEquals(6, bind.size());
+		assertEquals("a", bind.get(0).getConstantValue());
+		assertEquals(1, bind.get(5).getConstantValue());
+		assertEquals("(t.NAME<?)", SeekCondition.create(new ColumnMapping[] { keys[0] }, new Object[] { "a" }, false, null, bind));
+	}
+
+	@Test
+	public void testPageAcrossStringAndDateKeys() throws SQLException {
+		final List<Map<String, Object>> table = new ArrayList<Map<String, Object>>();
+		long base = 1500000000000L;
+		for (int i = 0; i < 23; i++) {
+			// 名称和时间都有大量重复，只有加上主键才能唯一排序
+			table.add(row(NAMES[i % NAMES.length], new Date(base + (i % 3) * 1000L), i));
+		}
+		final ColumnMapping[] keys = { column("NAME"), column("CREATED"), column("ID") };
+		Comparator<Map<String, Object>> asc = new Comparator<Map<String, Object>>() {
+			public int compare(Map<String, Object> o1, Map<String, Object> o2) {
+				for (ColumnMapping key : keys) {
+					int c = SeekConditionTest.compare(o1.get(key.toString()), o2.get(key.toString()));
+					if (c != 0) {
+						return c;
+					}
+				}
+				return 0;
+			}
+		};
+		Comparator<Map<String, Object>> desc = Collections.reverseOrder(asc);
+		for (int rows : new int[] { 1, 4, 5, 23, 30 }) {
+			List<Map<String, Object>> expected = new ArrayList<Map<String, Object>>(table);
+			Collections.sort(expected, asc);
+			assertEquals(expected, pageAll(table, keys, true, asc, rows));
+			Collections.sort(expected, desc);
+			assertEquals(expected, pageAll(table, keys, false, desc, rows));
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package com.github.geequery.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import jef.database.innerpool.IConnection;
+
+import org.junit.Test;
+
+public class StatementCacheTest {
+	/**
+	 * 模拟可以切换数据源的连接，记录每个语句准备时连接所指向的数据源
+	 */
+	static class MockConnection implements InvocationHandler {
+		final List<MockStatement> statements = new ArrayList<MockStatement>();
+		String key;
+		boolean closed;
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("setKey".equals(name)) {
+				key = (String) args[0];
+			} else if ("prepareStatement".equals(name)) {
+				MockStatement st = new MockStatement(key, (String) args[0]);
+				statements.add(st);
+				return st.proxy;
+			} else if ("isClosed".equals(name)) {
+				return closed;
+			} else if ("hashCode".equals(name)) {
+				return System.identityHashCode(proxy);
+			} else if ("equals".equals(name)) {
+				return proxy == args[0];
+			}
+			return null;
+		}
+
+		IConnection newConnection() {
+			return (IConnection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { IConnection.class }, this);
+		}
+	}
+
+	static class MockStatement implements InvocationHandler {
+		final String dbkey;
+		final String sql;
+		final PreparedStatement proxy;
+		boolean closed;
+
+		MockStatement(String dbkey, String sql) {
+			this.dbkey = dbkey;
+			this.sql = sql;
+			this.proxy = (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { PreparedStatement.class }, this);
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("close".equals(name)) {
+				closed = true;
+			} else if ("isClosed".equals(name)) {
+				return closed;
+			} else if ("getFetchSize".equals(name)) {
+				return 0;
+			}
+			return null;
+		}
+	}
+
+	private static PreparedStatement prepare(IConnection conn, String dbkey, String sql) throws SQLException {
+		conn.setKey(dbkey);
+		return StatementCache.get(conn, 4).prepare(conn, dbkey, sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, Statement.NO_GENERATED_KEYS);
+	}
+
+	@Test
+	public void testReuse() throws SQLException {
+		MockConnection mock = new MockConnection();
+		IConnection conn = mock.newConnection();
+		try {
+			PreparedStatement st1 = prepare(conn, null, "select 1");
+			// 借出期间再次准备，得到另一个语句
+			PreparedStatement st2 = prepare(conn, null, "select 1");
+			assertNotSame(st1, st2);
+			st2.close();
+			st1.close();
+			assertFalse(mock.statements.get(0).closed);
+			assertTrue(mock.statements.get(1).closed);
+
+			PreparedStatement st3 = prepare(conn, null, "select 1");
+			assertSame(st1, st3);
+			st3.close();
+			assertEquals(2, mock.statements.size());
+			assertEquals(1, StatementCache.get(conn, 4).getHits());
+		} finally {
+			StatementCache.discard(conn);
+		}
+	}
+
+	@Test
+	public void testRouting() throws SQLException {
+		MockConnection mock = new MockConnection();
+		IConnection conn = mock.newConnection();
+		try {
+			PreparedStatement a = prepare(conn, "ds1", "select * from t where id=?");
+			a.close();
+			PreparedStatement b = prepare(conn, "ds2", "select * from t where id=?");
+			b.close();
+			// 同一个连接对象切换到另一个数据源后，不能复用前一个数据源上的语句
+			assertNotSame(a, b);
+			assertEquals(2, mock.statements.size());
+			assertEquals("ds1", mock.statements.get(0).dbkey);
+			assertEquals("ds2", mock.statements.get(1).dbkey);
+
+			assertSame(a, prepare(conn, "ds1", "select * from t where id=?"));
+			assertSame(b, prepare(conn, "ds2", "select * from t where id=?"));
+		} finally {
+			StatementCache.discard(conn);
+		}
+	}
+
+	@Test
+	public void testEviction() throws SQLException {
+		MockConnection mock = new MockConnection();
+		IConnection conn = mock.newConnection();
+		try {
+			for (int i = 0; i < 6; i++) {
+				prepare(conn, null, "select " + i).close();
+			}
+			assertEquals(4, StatementCache.get(conn, 4).size());
+			assertTrue(mock.statements.get(0).closed);
+			assertTrue(mock.statements.get(1).closed);
+			assertFalse(mock.statements.get(5).closed);
+		} finally {
+			StatementCache.discard(conn);
+		}
+	}
+
+	@Test
+	public void testClose() throws SQLException {
+		MockConnection mock = new MockConnection();
+		IConnection conn = mock.newConnection();
+		PreparedStatement idle = prepare(conn, null, "select 1");
+		idle.close();
+		PreparedStatement busy = prepare(conn, null, "select 2");
+		int count = StatementCache.connectionCount();
+
+		// 连接物理关闭时，缓存的语句随之关闭，借出中的语句在归还时关闭
+		StatementCache.discard(conn);
+		assertEquals(count - 1, StatementCache.connectionCount());
+		assertTrue(mock.statements.get(0).closed);
+		assertFalse(mock.statements.get(1).closed);
+		busy.close();
+		assertTrue(mock.statements.get(1).closed);
+	}
+
+	@Test
+	public void testPurgeClosedConnections() throws SQLException {
+		MockConnection mock = new MockConnection();
+		IConnection conn = mock.newConnection();
+		prepare(conn, null, "select 1").close();
+		int count = StatementCache.connectionCount();
+
+		// 未经discard而直接关闭的连接，其缓存在清理时移除
+		mock.closed = true;
+		StatementCache.purgeClosed();
+		assertEquals(count - 1, StatementCache.connectionCount());
+		assertTrue(mock.statements.get(0).closed);
+	}
+}
@@ -0,0 +1,161 @@
+package com.github.geequery.core.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class GlobalCacheTest {
+	/**
+	 * 按表名和编号区分的缓存键
+	 */
+	@SuppressWarnings("serial")
+	static class TestKey implements CacheKey {
+		private final String table;
+		private final int id;
+
+		TestKey(String table, int id) {
+			this.table = table;
+			this.id = id;
+		}
+
+		public String getStoreSpace() {
+			return table;
+		}
+
+		public List<String> getAffectedKey() {
+			return Collections.singletonList(table);
+		}
+
+		public KeyDimension getDimension() {
+			return null;
+		}
+
+		public List<?> getParams() {
+			return Collections.singletonList(id);
+		}
+
+		@Override
+		public int hashCode() {
+			return table.hashCode() * 31 + id;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof TestKey)) {
+				return false;
+			}
+			TestKey o = (TestKey) obj;
+			return table.equals(o.table) && id == o.id;
+		}
+	}
+
+	private static final List<String> ROWS = Arrays.asList("a", "b");
+
+	private static GlobalCache newCache() {
+		return new GlobalCache(0, 100000, "TEST", new TableVersions());
+	}
+
+	/**
+	 * 未命中后查询并存入
+	 */
+	private static void loadAndStore(Cache cache, CacheKey key) {
+		assertNull(cache.load(key));
+		cache.onLoad(key, ROWS, String.class);
+	}
+
+	@Test
+	public void testReadWriteTransaction() {
+		GlobalCache global = newCache();
+		TestKey key = new TestKey("T", 1);
+		SharedCacheView tx = new SharedCacheView(global, false);
+		// 读写事务查到的数据可能未提交，不存入共享缓存
+		loadAndStore(tx, key);
+		assertNull(global.load(key));
+		global.onLoad(key, ROWS, String.class);
+		assertEquals(ROWS, global.load(key));
+		assertNull(tx.load(key));
+
+		// 事务中的修改仍使共享缓存失效
+		tx.onUpdate("T", null, null);
+		assertNull(global.load(key));
+
+		SharedCacheView readOnly = new SharedCacheView(global, true);
+		loadAndStore(readOnly, key);
+		assertEquals(ROWS, global.load(key));
+		assertEquals(ROWS, readOnly.load(key));
+		readOnly.setReadonly(false);
+		assertNull(readOnly.load(key));
+	}
+
+	@Test
+	public void testInterleavedMiss() {
+		GlobalCache cache = newCache();
+		TestKey key = new TestKey("T", 1);
+		List<String> stale = Arrays.asList("old");
+		// 查询1未命中后开始查询，读到的是修改前的数据
+		assertNull(cache.load(key));
+		cache.invalidate("T");
+		// 表修改后查询2未命中，不能覆盖查询1记录的版本号
+		assertNull(cache.load(key));
+		cache.onLoad(key, stale, String.class);
+		assertNull(cache.load(key));
+		// 修改后开始的查询可以存入
+		cache.onLoad(key, ROWS, String.class);
+		assertEquals(ROWS, cache.load(key));
+	}
+
+	@Test
+	public void testPendingKept() {
+		GlobalCache cache = newCache();
+		for (int i = 0; i < 10000; i++) {
+			assertNull(cache.load(new TestKey("T", i)));
+		}
+		// 等待存入的记录已满时不再记录新的未命中，已记录的不受影响
+		loadAndStore(cache, new TestKey("T", -1));
+		assertNull(cache.load(new TestKey("T", -1)));
+		cache.onLoad(new TestKey("T", 0), ROWS, String.class);
+		assertEquals(ROWS, cache.load(new TestKey("T", 0)));
+	}
+
+	@Test
+	public void testPendingPurged() {
+		GlobalCache cache = newCache();
+		for (int i = 0; i < 9999; i++) {
+			assertNull(cache.load(new TestKey("A", i)));
+		}
+		assertNull(cache.load(new TestKey("B", 0)));
+		// A表被修改后，其等待存入的记录已经过时，清理后可以记录新的未命中
+		cache.invalidate("A");
+		loadAndStore(cache, new TestKey("C", 0));
+		assertEquals(ROWS, cache.load(new TestKey("C", 0)));
+		cache.onLoad(new TestKey("B", 0), ROWS, String.class);
+		assertEquals(ROWS, cache.load(new TestKey("B", 0)));
+		cache.onLoad(new TestKey("A", 1), ROWS, String.class);
+		assertNull(cache.load(new TestKey("A", 1)));
+	}
+
+	@Test
+	public void testSketchSize() {
+		// 计数表按记录数增长，和容量无关
+		FrequencySketch sketch = new FrequencySketch(256);
+		assertEquals(256, sketch.capacity());
+		TestKey key = new TestKey("T", 1);
+		sketch.increment(key);
+		sketch.increment(key);
+		assertEquals(2, sketch.frequency(key));
+		sketch.ensureCapacity(100);
+		assertEquals(256, sketch.capacity());
+		sketch.ensureCapacity(1000);
+		assertEquals(1024, sketch.capacity());
+		assertFalse(sketch.frequency(key) > 0);
+		sketch.ensureCapacity(Long.MAX_VALUE);
+		assertTrue(sketch.capacity() <= 1 << 16);
+	}
+}
@@ -0,0 +1,150 @@
+package com.github.geequery.core.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InvalidationBusTest {
+	private static final long NEVER = 3600 * 1000L;
+
+	private final String channel = "bus-test-" + System.nanoTime();
+	private final TableVersions sourceVersions = new TableVersions();
+	private final TableVersions targetVersions = new TableVersions();
+	private InvalidationBus source;
+	private InvalidationBus target;
+	private LoopbackTransport spy;
+	/**
+	 * 源节点发出的消息，由测试决定是否投递给目标节点，以模拟丢失和重复
+	 */
+	private final List<byte[]> messages = new ArrayList<byte[]>();
+
+	@Before
+	public void setUp() throws IOException {
+		source = new InvalidationBus(sourceVersions, new LoopbackTransport(channel), NEVER);
+		source.start();
+		spy = new LoopbackTransport(channel);
+		spy.start(new InvalidationTransport.Receiver() {
+			public void received(byte[] message) {
+				messages.add(message);
+			}
+		});
+		target = new InvalidationBus(targetVersions, new LoopbackTransport(channel + "-target"), NEVER);
+	}
+
+	@After
+	public void tearDown() {
+		source.close();
+		spy.close();
+	}
+
+	/**
+	 * 发送一个周期内的修改，返回发出的消息
+	 */
+	private byte[] flush() {
+		int count = messages.size();
+		source.flush();
+		assertEquals(count + 1, messages.size());
+		return messages.get(count);
+	}
+
+	private long[] stamp(String table) {
+		return targetVersions.stamp(new String[] { table });
+	}
+
+	private boolean isCurrent(String table, long[] stamp) {
+		return targetVersions.isCurrent(new String[] { table }, stamp);
+	}
+
+	@Test
+	public void testSequence() {
+		long[] other = stamp("OTHER");
+		long[] t = stamp("T");
+
+		// 同一周期内对同一张表的多次修改合并为一条消息
+		sourceVersions.update("T");
+		sourceVersions.update("T", 1);
+		sourceVersions.update("app.t", 2);
+		target.received(flush());
+		assertEquals(1, source.getSentCount());
+		assertEquals(1, target.getReceivedCount());
+		assertFalse(isCurrent("T", t));
+		assertTrue(isCurrent("OTHER", other));
+
+		// 重复的消息被忽略
+		sourceVersions.update("U");
+		byte[] message = flush();
+		target.received(message);
+		long[] u = stamp("U");
+		target.received(message);
+		assertEquals(2, target.getReceivedCount());
+		assertTrue(isCurrent("U", u));
+		assertTrue(isCurrent("OTHER", other));
+
+		// 序号不连续，所有表失效
+		sourceVersions.update("T");
+		flush();
+		sourceVersions.update("T");
+		target.received(flush());
+		assertEquals(1, target.getLostCount());
+		assertFalse(isCurrent("OTHER", other));
+
+		// 最后一条消息丢失，由心跳发现
+		other = stamp("OTHER");
+		sourceVersions.update("T");
+		flush();
+		for (int i = 0; i < 19; i++) {
+			source.flush();
+		}
+		byte[] heartbeat = flush();
+		assertTrue(isCurrent("OTHER", other));
+		target.received(heartbeat);
+		assertEquals(2, target.getLostCount());
+		assertFalse(isCurrent("OTHER", other));
+		assertEquals(1, target.getNodeCount());
+	}
+
+	@Test
+	public void testFirstContact() {
+		sourceVersions.update("T");
+		flush();
+		sourceVersions.update("T");
+		byte[] second = flush();
+
+		// 第一次收到的消息序号不是1，之前的消息可能已经丢失
+		long[] other = stamp("OTHER");
+		target.received(second);
+		assertEquals(1, target.getLostCount());
+		assertFalse(isCurrent("OTHER", other));
+
+		// 长时间没有消息的节点被移除，再次收到消息时按第一次处理
+		target.expireNodes(System.currentTimeMillis() + NEVER * 100);
+		assertEquals(0, target.getNodeCount());
+		other = stamp("OTHER");
+		sourceVersions.update("T");
+		target.received(flush());
+		assertEquals(1, target.getNodeCount());
+		assertEquals(3, target.getLostCount());
+		assertFalse(isCurrent("OTHER", other));
+	}
+
+	@Test
+	public void testFirstHeartbeat() {
+		long[] other = stamp("OTHER");
+		for (int i = 0; i < 19; i++) {
+			source.flush();
+		}
+		// 没有发出过修改的节点的心跳不会使缓存失效
+		target.received(flush());
+		assertEquals(0, target.getLostCount());
+		assertTrue(isCurrent("OTHER", other));
+		assertEquals(1, target.getNodeCount());
+	}
+}
@@ -0,0 +1,97 @@
+package com.github.geequery.core.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SqlTablesTest {
+	private static void assertRead(String sql, String... tables) {
+		assertArrayEquals(sql, tables, SqlTables.read(sql));
+	}
+
+	private static void assertWritten(String sql, String... tables) {
+		assertArrayEquals(sql, tables, SqlTables.written(sql));
+	}
+
+	@Test
+	public void testRead() {
+		assertRead("select * from t where id=?", "T");
+		assertRead("select * from app.t1 a, \"T2\" b where a.id=b.id", "T1", "T2");
+		assertRead("select * from t1 a left join t2 b on a.id=b.id join t3 on t3.id=a.id", "T1", "T2", "T3");
+		assertRead("select 'from x' from t -- from y", "T");
+	}
+
+	@Test
+	public void testSubquery() {
+		assertRead("select * from t1 where id in (select id from t2)", "T1", "T2");
+		// 子查询之后的表也要找出
+		assertRead("select * from (select * from t1) x, t2 where x.id=t2.id", "T1", "T2");
+		assertRead("select * from t1 join (select id from t2 group by id) x on t1.id=x.id, t3", "T1", "T2", "T3");
+		assertRead("select * from t1, (select * from (select * from t2) y) x, t3", "T1", "T2", "T3");
+	}
+
+	@Test
+	public void testWith() {
+		// WITH定义的临时结果集不是表
+		assertRead("with x as (select * from t1), y (id) as (select id from t2) select * from x join y on x.id=y.id", "T1", "T2");
+		assertRead("with recursive x as (select id from t1 union all select t1.id from t1 join x on t1.pid=x.id) select * from x", "T1");
+		assertNull(SqlTables.read("with x as (select ? as v) select * from x"));
+	}
+
+	@Test
+	public void testUnknown() {
+		assertNull(SqlTables.read("select * from table(f(?))"));
+		assertNull(SqlTables.read("select 1"));
+		assertNull(SqlTables.read("call p(?)"));
+	}
+
+	@Test
+	public void testWritten() {
+		assertWritten("insert into app.t(id) values(?)", "T");
+		assertWritten("update t set a=? where id in (select id from t2)", "T", "T2");
+		assertWritten("delete from t where id=?", "T");
+		assertWritten("update t1, t2 set t1.a=t2.a where t1.id=t2.id", "T1", "T2");
+		assertWritten("delete t where id=?", "T");
+		assertWritten("truncate table t", "T");
+		assertWritten("merge into t using t2 on (t.id=t2.id) when matched then update set t.a=t2.a", "T", "T2");
+		// DDL、存储过程无法确定修改的表
+		assertNull(SqlTables.written("create table t(id int)"));
+		assertNull(SqlTables.written("drop table t"));
+		assertNull(SqlTables.written("{call p(?)}"));
+	}
+
+	@Test
+	public void testInvalidation() {
+		TableVersions versions = new TableVersions();
+		GlobalCache cache = new GlobalCache(0, 100000, "RESULT", versions);
+		List<String> rows = Arrays.asList("a");
+		List<Object> params = Collections.<Object> singletonList(1);
+		SqlResultKey key = SqlResultKey.create("ds1", "select * from t1 a, t2 b where a.id=b.id and a.id=?", params, null, String.class);
+		SqlResultKey other = SqlResultKey.create("ds2", key.getSql(), params, null, String.class);
+		assertNotEquals(key, other);
+
+		cache.load(key);
+		cache.onLoad(key, rows, String.class);
+		assertEquals(rows, cache.load(key));
+		// 其他数据源上相同的语句不共用结果
+		assertNull(cache.load(other));
+
+		versions.executed("update t3 set a=1");
+		assertEquals(rows, cache.load(key));
+		versions.executed("delete from app.T2 where id=?");
+		assertNull(cache.load(key));
+
+		cache.onLoad(key, rows, String.class);
+		assertEquals(rows, cache.load(key));
+		// 无法确定修改的表时，所有结果失效
+		assertNull(versions.executed("create table t4(id int)"));
+		assertNull(cache.load(key));
+	}
+}
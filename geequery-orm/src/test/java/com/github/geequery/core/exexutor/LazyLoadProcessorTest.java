@@ -0,0 +1,112 @@
+package com.github.geequery.core.exexutor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import jef.database.DataObject;
+
+import org.junit.Test;
+
+import com.github.geequery.core.Session;
+
+public class LazyLoadProcessorTest {
+	@SuppressWarnings("serial")
+	public static class Item extends DataObject {
+	}
+
+	/**
+	 * 记录每次加载的对象
+	 */
+	static class RecordTask implements LazyLoadTask {
+		final List<Object> single = new ArrayList<Object>();
+		final List<List<?>> batches = new ArrayList<List<?>>();
+
+		public void process(Session db, Object obj) throws SQLException {
+			single.add(obj);
+		}
+
+		public void processBatch(Session db, List<?> objs) throws SQLException {
+			batches.add(new ArrayList<Object>(objs));
+		}
+
+		public Collection<String> getEffectFields() {
+			return Collections.singletonList("children");
+		}
+	}
+
+	private static Session openSession() {
+		return (Session) Proxy.newProxyInstance(LazyLoadProcessorTest.class.getClassLoader(), new Class<?>[] { Session.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				return "isOpen".equals(method.getName()) ? Boolean.TRUE : null;
+			}
+		});
+	}
+
+	private static List<Item> items(LazyLoadProcessor processor, int count) {
+		List<Item> items = new ArrayList<Item>();
+		for (int i = 0; i < count; i++) {
+			Item item = new Item();
+			item.lazyload = new LazyLoadContext(processor);
+			items.add(item);
+		}
+		return items;
+	}
+
+	private static boolean isLoaded(Item item) {
+		return ((LazyLoadContext) item.lazyload).isLoaded(0);
+	}
+
+	@Test
+	public void testSiblings() throws SQLException {
+		Session session = openSession();
+		RecordTask task = new RecordTask();
+		LazyLoadProcessor processor = new LazyLoadProcessor(task, session);
+		List<Item> items = items(processor, 3);
+		processor.setSiblings(items);
+
+		// 触发加载的对象在第一个，其余同批对象标记为已加载
+		processor.doTask(items.get(1), 0);
+		assertEquals(Arrays.asList(items.get(1), items.get(0), items.get(2)), task.batches.get(0));
+		assertTrue(isLoaded(items.get(0)));
+		assertFalse(isLoaded(items.get(1)));
+		assertTrue(isLoaded(items.get(2)));
+		assertTrue(task.single.isEmpty());
+
+		// 已经加载过的对象不再加入批次，只剩一个时逐个加载
+		processor.doTask(items.get(1), 0);
+		assertEquals(1, task.batches.size());
+		assertEquals(Arrays.asList(items.get(1)), task.single);
+	}
+
+	@Test
+	public void testSiblingsCleared() throws Exception {
+		Session session = openSession();
+		RecordTask task = new RecordTask();
+		LazyLoadProcessor processor = new LazyLoadProcessor(task, session);
+		List<Item> items = items(processor, 3);
+		processor.setSiblings(items);
+		// 查询结果列表已被回收
+		Field field = LazyLoadProcessor.class.getDeclaredField("siblings");
+		field.setAccessible(true);
+		((WeakReference<?>) field.get(processor)).clear();
+
+		processor.doTask(items.get(0), 0);
+		processor.doTask(items.get(2), 0);
+		assertTrue(task.batches.isEmpty());
+		assertEquals(Arrays.asList(items.get(0), items.get(2)), task.single);
+		assertFalse(isLoaded(items.get(1)));
+	}
+}
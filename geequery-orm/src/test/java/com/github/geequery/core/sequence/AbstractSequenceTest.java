@@ -0,0 +1,210 @@
+package com.github.geequery.core.sequence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.github.geequery.core.SessionFactory;
+
+public class AbstractSequenceTest {
+	/**
+	 * 模拟原生Sequence，每取一个值就是一次数据库访问
+	 */
+	static class MockSequence extends AbstractSequence {
+		private long last;
+		final List<Integer> syncFetches = new CopyOnWriteArrayList<Integer>();
+		final List<Integer> backgroundFetches = new CopyOnWriteArrayList<Integer>();
+		volatile CountDownLatch blockBackground;
+		final CountDownLatch backgroundStarted = new CountDownLatch(1);
+
+		MockSequence(int cacheSize) {
+			super(null, null);
+			setCacheSize(cacheSize);
+		}
+
+		@Override
+		protected boolean doInit(SessionFactory session, String dbKey) throws SQLException {
+			return true;
+		}
+
+		@Override
+		protected long getFirstAndPushOthers(int size, SessionFactory client, String dbKey) throws SQLException {
+			boolean background = Thread.currentThread().getName().startsWith("gq-sequence-prefetch");
+			(background ? backgroundFetches : syncFetches).add(size);
+			long first = nextValue();
+			for (int i = 1; i < size; i++) {
+				if (background && blockBackground != null) {
+					backgroundStarted.countDown();
+					try {
+						blockBackground.await();
+					} catch (InterruptedException e) {
+						throw new SQLException(e);
+					}
+				}
+				long value = nextValue();
+				pushRange(value, value);
+			}
+			return first;
+		}
+
+		private synchronized long nextValue() {
+			return ++last;
+		}
+
+		public boolean isTable() {
+			return false;
+		}
+
+		public boolean isRawNative() {
+			return true;
+		}
+
+		public String getName() {
+			return "MOCK_SEQ";
+		}
+	}
+
+	/**
+	 * 模拟表Sequence，按步长用CAS更新表中的值，并记住上次的结束值作为下次的预期值
+	 */
+	static class MockTableSequence extends AbstractSequence {
+		final AtomicLong row = new AtomicLong();
+		private volatile long last = -1;
+
+		MockTableSequence(int cacheSize) {
+			super(null, null);
+			setCacheSize(cacheSize);
+		}
+
+		@Override
+		protected boolean doInit(SessionFactory session, String dbKey) throws SQLException {
+			return true;
+		}
+
+		@Override
+		protected long getFirstAndPushOthers(int size, SessionFactory client, String dbKey) throws SQLException {
+			long current = last;
+			if (current < 0) {
+				current = row.get();
+			}
+			long next = current + size;
+			Thread.yield();
+			while (!row.compareAndSet(current, next)) {
+				current = row.get();
+				next = current + size;
+			}
+			pushRange(current + 2, next);
+			synchronized (this) {
+				if (next > last) {
+					last = next;
+				}
+			}
+			return current + 1;
+		}
+
+		public boolean isTable() {
+			return true;
+		}
+
+		public boolean isRawNative() {
+			return false;
+		}
+
+		public String getName() {
+			return "MOCK_TABLE";
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void testConcurrentUnique() throws Exception {
+		final MockTableSequence seq = new MockTableSequence(4);
+		final int threads = 8;
+		final int count = 5000;
+		final Set<Long> values = ConcurrentHashMap.newKeySet();
+		final List<Long> duplicates = new CopyOnWriteArrayList<Long>();
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Thread> workers = new ArrayList<Thread>();
+		for (int t = 0; t < threads; t++) {
+			Thread thread = new Thread() {
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int i = 0; i < count; i++) {
+						long value = seq.next();
+						if (!values.add(value)) {
+							duplicates.add(value);
+						}
+					}
+				}
+			};
+			thread.start();
+			workers.add(thread);
+		}
+		// 小批次下后台预取和同步取数频繁地同时进行
+		start.countDown();
+		for (Thread thread : workers) {
+			thread.join();
+		}
+		assertEquals(new ArrayList<Long>(), duplicates);
+		assertEquals(threads * count, values.size());
+		assertTrue(seq.row.get() >= threads * count);
+	}
+
+	@Test
+	public void testLowWaterRefill() throws InterruptedException {
+		MockSequence seq = new MockSequence(20);
+		Set<Long> values = new HashSet<Long>();
+		values.add(seq.next());
+		assertEquals(1, seq.syncFetches.size());
+		assertEquals(Integer.valueOf(20), seq.syncFetches.get(0));
+		// 剩余值低于1/4后在后台预取
+		for (int i = 0; i < 16; i++) {
+			assertTrue(values.add(seq.next()));
+		}
+		for (int i = 0; i < 100 && seq.backgroundFetches.isEmpty(); i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, seq.syncFetches.size());
+		assertEquals(1, seq.backgroundFetches.size());
+		assertTrue(seq.backgroundFetches.get(0) >= 20);
+		for (int i = 0; i < 200; i++) {
+			assertTrue(values.add(seq.next()));
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testRefillOutsideLock() throws InterruptedException {
+		MockSequence seq = new MockSequence(8);
+		seq.blockBackground = new CountDownLatch(1);
+		Set<Long> values = new HashSet<Long>();
+		for (int i = 0; i < 7; i++) {
+			values.add(seq.next());
+		}
+		// 后台预取已经开始，并停在第二次数据库访问上
+		assertTrue(seq.backgroundStarted.await(5, TimeUnit.SECONDS));
+		// 缓存取空后，调用者自行同步取数，不需要等待后台预取结束
+		for (int i = 0; i < 20; i++) {
+			assertTrue(values.add(seq.next()));
+		}
+		assertTrue(seq.syncFetches.size() > 1);
+		seq.blockBackground.countDown();
+		for (int i = 0; i < 50; i++) {
+			assertTrue(values.add(seq.next()));
+		}
+	}
+}
@@ -0,0 +1,214 @@
+package com.github.geequery.database;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import jef.database.jdbc.result.IResultSet;
+import jef.database.wrapper.populator.ColumnDescription;
+import jef.database.wrapper.populator.CompiledPopulator;
+import jef.database.wrapper.populator.ObjectPopulator;
+
+import org.junit.Test;
+
+import com.github.geequery.dialect.type.ResultSetAccessor;
+import com.github.geequery.tools.IOUtils;
+
+public class CompiledPopulatorTest extends org.junit.Assert {
+	public static class Bean {
+		private String name;
+		private int age;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public int getAge() {
+			return age;
+		}
+
+		public void setAge(int age) {
+			this.age = age;
+		}
+	}
+
+	public static class Other {
+		private String name;
+		private Integer age;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public Integer getAge() {
+			return age;
+		}
+
+		public void setAge(Integer age) {
+			this.age = age;
+		}
+	}
+
+	private static final ResultSetAccessor GET_OBJECT = new ResultSetAccessor() {
+		public Object jdbcGet(ResultSet rs, int n) throws SQLException {
+			return rs.getObject(n);
+		}
+
+		public boolean applyFor(int type) {
+			return true;
+		}
+	};
+
+	private static IResultSet resultSet(final Object... row) {
+		return (IResultSet) Proxy.newProxyInstance(CompiledPopulatorTest.class.getClassLoader(), new Class<?>[] { IResultSet.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if ("getObject".equals(method.getName())) {
+					return row[(Integer) args[0] - 1];
+				}
+				return null;
+			}
+		});
+	}
+
+	private static ColumnDescription column(int n, String name) {
+		ColumnDescription c = new ColumnDescription(n, Types.VARCHAR, name, null, null);
+		c.setAccessor(GET_OBJECT);
+		return c;
+	}
+
+	private static Map<String, ColumnDescription> columns() {
+		Map<String, ColumnDescription> data = new LinkedHashMap<String, ColumnDescription>();
+		data.put("age", column(1, "AGE"));
+		data.put("name", column(2, "NAME"));
+		return data;
+	}
+
+	@Test
+	public void testPopulate() throws SQLException {
+		ObjectPopulator populator = new ObjectPopulator(null, columns());
+		Bean bean = new Bean();
+		populator.process(bean, resultSet(Integer.valueOf(20), "Tom"));
+		assertEquals("Tom", bean.getName());
+		assertEquals(20, bean.getAge());
+
+		// 同一个拼装器拼装不同的类时，按新的类重新生成
+		Other other = new Other();
+		populator.process(other, resultSet(null, "Jerry"));
+		assertEquals("Jerry", other.getName());
+		assertNull(other.getAge());
+
+		bean = new Bean();
+		bean.setAge(5);
+		populator.process(bean, resultSet(null, "Tom"));
+		assertEquals(5, bean.getAge());
+	}
+
+	@Test
+	public void testConcurrentTypes() throws Exception {
+		final ObjectPopulator populator = new ObjectPopulator(null, columns());
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			final boolean useBean = i % 2 == 0;
+			threads[i] = new Thread() {
+				public void run() {
+					try {
+						start.await();
+						for (int j = 0; j < 2000; j++) {
+							// 两个线程交替使用两种类型，不能拿到为另一个类生成的拼装类
+							if (useBean) {
+								Bean bean = new Bean();
+								populator.process(bean, resultSet(Integer.valueOf(j), "b"));
+								assertEquals(j, bean.getAge());
+							} else {
+								Other other = new Other();
+								populator.process(other, resultSet(Integer.valueOf(j), "o"));
+								assertEquals(Integer.valueOf(j), other.getAge());
+							}
+						}
+					} catch (Throwable e) {
+						error.compareAndSet(null, e);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		start.countDown();
+		for (Thread t : threads) {
+			t.join();
+		}
+		if (error.get() != null) {
+			throw new AssertionError(error.get());
+		}
+	}
+
+	/**
+	 * 单独加载Bean类的ClassLoader，模拟可卸载的应用
+	 */
+	static class IsolatedLoader extends ClassLoader {
+		IsolatedLoader() {
+			super(CompiledPopulatorTest.class.getClassLoader());
+		}
+
+		@Override
+		protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (!Bean.class.getName().equals(name)) {
+				return super.loadClass(name, resolve);
+			}
+			Class<?> c = findLoadedClass(name);
+			if (c == null) {
+				InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class");
+				try {
+					byte[] data = IOUtils.toByteArray(in);
+					c = defineClass(name, data, 0, data.length);
+				} catch (IOException e) {
+					throw new ClassNotFoundException(name, e);
+				}
+			}
+			return c;
+		}
+	}
+
+	@Test
+	public void testClassLoaderNotRetained() throws Exception {
+		WeakReference<ClassLoader> ref = populateIsolated();
+		for (int i = 0; i < 50 && ref.get() != null; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		// 缓存不能阻止应用的ClassLoader被回收
+		assertNull(ref.get());
+	}
+
+	private WeakReference<ClassLoader> populateIsolated() throws Exception {
+		ClassLoader loader = new IsolatedLoader();
+		Class<?> clz = loader.loadClass(Bean.class.getName());
+		assertNotSame(Bean.class, clz);
+		Map<String, ColumnDescription> data = columns();
+		CompiledPopulator populator = CompiledPopulator.get(clz, data.keySet().toArray(new String[0]), data.values().toArray(new ColumnDescription[0]));
+		assertNotNull(populator);
+		Object bean = clz.newInstance();
+		assertTrue(populator.populate(bean, resultSet(Integer.valueOf(3), "Tom"), false));
+		assertEquals("Tom", clz.getMethod("getName").invoke(bean));
+		return new WeakReference<ClassLoader>(loader);
+	}
+}
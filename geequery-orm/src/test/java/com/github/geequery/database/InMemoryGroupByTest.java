@@ -0,0 +1,115 @@
+package com.github.geequery.database;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import jef.database.jdbc.rowset.Row;
+import jef.database.wrapper.clause.GroupByItem;
+import jef.database.wrapper.clause.InMemoryGroupByHaving;
+
+import org.junit.Test;
+
+import com.github.geequery.core.config.ORMConfig;
+import com.github.geequery.jsqlparser.expression.GroupFunctionType;
+
+public class InMemoryGroupByTest extends org.junit.Assert {
+	private static final int GROUPS = 3000;
+	private static final int ROWS = 20000;
+
+	private InMemoryGroupByHaving newGroupBy() {
+		List<GroupByItem> keys = Arrays.asList(new GroupByItem(0, null, "k"));
+		List<GroupByItem> values = Arrays.asList(new GroupByItem(1, GroupFunctionType.SUM, "s"), new GroupByItem(2, GroupFunctionType.COUNT, "c"), new GroupByItem(3, GroupFunctionType.MIN, "mi"),
+				new GroupByItem(4, GroupFunctionType.MAX, "ma"), new GroupByItem(5, GroupFunctionType.AVG, "a"));
+		return new InMemoryGroupByHaving(keys, values);
+	}
+
+	private List<Row> aggregate(long maxBytes, Map<String, long[]> expected) throws SQLException {
+		ORMConfig config = ORMConfig.getInstance();
+		long old = config.getPartitionInMemoryMaxBytes();
+		config.setPartitionInMemoryMaxBytes(maxBytes);
+		try {
+			InMemoryGroupByHaving.Aggregation agg = newGroupBy().newAggregation();
+			Random random = new Random(1);
+			Row row = new Row(6);
+			for (int i = 0; i < ROWS; i++) {
+				String key = "key-" + random.nextInt(GROUPS);
+				long v = random.nextInt(1000);
+				// 传入的Row对象可以重复使用
+				Object[] vals = row.getArray();
+				vals[0] = key;
+				vals[1] = Long.valueOf(v);
+				vals[2] = Long.valueOf(1);
+				vals[3] = Long.valueOf(v);
+				vals[4] = Long.valueOf(v);
+				vals[5] = Long.valueOf(v);
+				agg.add(row);
+
+				long[] e = expected.get(key);
+				if (e == null) {
+					expected.put(key, new long[] { v, 1, v, v });
+				} else {
+					e[0] += v;
+					e[1]++;
+					e[2] = Math.min(e[2], v);
+					e[3] = Math.max(e[3], v);
+				}
+			}
+			List<Row> result = agg.finish();
+			assertEquals(maxBytes > 0, agg.isSpilled());
+			return result;
+		} finally {
+			config.setPartitionInMemoryMaxBytes(old);
+		}
+	}
+
+	private void check(List<Row> result, Map<String, long[]> expected) {
+		assertEquals(expected.size(), result.size());
+		for (Row row : result) {
+			long[] e = expected.remove(row.getArrayObject(0));
+			assertNotNull(e);
+			assertEquals(e[0], ((Number) row.getArrayObject(1)).longValue());
+			assertEquals(e[1], ((Number) row.getArrayObject(2)).longValue());
+			assertEquals(e[2], ((Number) row.getArrayObject(3)).longValue());
+			assertEquals(e[3], ((Number) row.getArrayObject(4)).longValue());
+			assertEquals((double) e[0] / e[1], ((Number) row.getArrayObject(5)).doubleValue(), 0.0001);
+		}
+		assertTrue(expected.isEmpty());
+	}
+
+	private static int countTempFiles() {
+		String[] files = new File(System.getProperty("java.io.tmpdir")).list(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.startsWith("gq-groupby");
+			}
+		});
+		return files == null ? 0 : files.length;
+	}
+
+	@Test
+	public void testInMemory() throws SQLException {
+		Map<String, long[]> expected = new HashMap<String, long[]>();
+		check(aggregate(0, expected), expected);
+	}
+
+	@Test
+	public void testSpill() throws SQLException {
+		int tempFiles = countTempFiles();
+		Map<String, long[]> expected = new HashMap<String, long[]>();
+		// 预算只够存放几十个分组，强制写出临时文件
+		check(aggregate(8 * 1024, expected), expected);
+		assertEquals(tempFiles, countTempFiles());
+	}
+
+	@Test
+	public void testRepartition() throws SQLException {
+		Map<String, long[]> expected = new HashMap<String, long[]>();
+		// 单个分区读回后仍然超出预算，需要再次分区
+		check(aggregate(1024, expected), expected);
+	}
+}
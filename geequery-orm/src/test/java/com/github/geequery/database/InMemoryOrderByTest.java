@@ -0,0 +1,73 @@
+package com.github.geequery.database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import jef.database.jdbc.rowset.CachedRowSetImpl;
+import jef.database.jdbc.rowset.Row;
+import jef.database.wrapper.clause.InMemoryOrderBy;
+
+import org.junit.Test;
+
+public class InMemoryOrderByTest extends org.junit.Assert {
+
+	private static List<Row> randomRows(int size, long seed) {
+		Random random = new Random(seed);
+		List<Row> rows = new ArrayList<Row>(size);
+		for (int i = 0; i < size; i++) {
+			// 第一列取值范围较小，制造大量排序值相同的记录；第二列为原始序号
+			Integer key = random.nextInt(10) == 0 ? null : Integer.valueOf(random.nextInt(50));
+			rows.add(new Row(3, new Object[] { key, Integer.valueOf(i), "r" + random.nextInt(5) }));
+		}
+		return rows;
+	}
+
+	private static CachedRowSetImpl rowset(List<Row> rows) throws SQLException {
+		CachedRowSetImpl rowset = new CachedRowSetImpl();
+		rowset.setRvh(new ArrayList<Row>(rows));
+		rowset.refresh();
+		return rowset;
+	}
+
+	private void assertTopN(int[] fields, boolean[] asc, int size, int topN) throws SQLException {
+		List<Row> rows = randomRows(size, size * 31L + topN);
+		CachedRowSetImpl full = rowset(rows);
+		new InMemoryOrderBy(fields, asc).process(full);
+		CachedRowSetImpl top = rowset(rows);
+		new InMemoryOrderBy(fields, asc).process(top, topN);
+
+		List<Row> expected = full.getRvh();
+		List<Row> actual = top.getRvh();
+		int n = Math.min(topN, size);
+		if ((long) topN * 2 < size) {
+			assertEquals(n, actual.size());
+			assertEquals(n, top.size());
+		}
+		for (int i = 0; i < n; i++) {
+			// 排序值相同的记录也要保持与全排序一致的先后顺序
+			assertSame("size=" + size + ",topN=" + topN + ",index=" + i, expected.get(i), actual.get(i));
+		}
+	}
+
+	@Test
+	public void testTopNMatchesFullSort() throws SQLException {
+		int[] sizes = { 0, 1, 2, 7, 100, 1000 };
+		int[] tops = { 1, 3, 10, 49, 50, 51, 500 };
+		for (int size : sizes) {
+			for (int topN : tops) {
+				assertTopN(new int[] { 1 }, new boolean[] { true }, size, topN);
+				assertTopN(new int[] { 1 }, new boolean[] { false }, size, topN);
+				assertTopN(new int[] { 3, 1 }, new boolean[] { true, false }, size, topN);
+			}
+		}
+	}
+
+	@Test
+	public void testLargeTopN() throws SQLException {
+		// topN*2超出int范围时不能溢出为负数而走堆排序
+		assertTopN(new int[] { 1 }, new boolean[] { true }, 100, Integer.MAX_VALUE);
+		assertTopN(new int[] { 1 }, new boolean[] { true }, 100, Integer.MAX_VALUE / 2 + 1);
+	}
+}
@@ -0,0 +1,119 @@
+package com.github.geequery.dialect.handler;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.geequery.dialect.type.AColumnMapping;
+import com.github.geequery.dialect.type.ColumnMapping;
+import com.github.geequery.dialect.type.VarcharStringMapping;
+import com.github.geequery.tools.reflect.Property;
+
+public class MySqlBulkInsertHandlerTest {
+	public static class Bean {
+		String name;
+
+		Bean(String name) {
+			this.name = name;
+		}
+	}
+
+	private static List<ColumnMapping> nameField() throws Exception {
+		final Field field = Bean.class.getDeclaredField("name");
+		AColumnMapping mapping = new VarcharStringMapping();
+		Field accessor = AColumnMapping.class.getDeclaredField("fieldAccessor");
+		accessor.setAccessible(true);
+		accessor.set(mapping, new Property() {
+			public String getName() {
+				return field.getName();
+			}
+
+			public boolean isReadable() {
+				return true;
+			}
+
+			public boolean isWriteable() {
+				return false;
+			}
+
+			public Object get(Object obj) {
+				return ((Bean) obj).name;
+			}
+
+			public void set(Object obj, Object value) {
+				throw new UnsupportedOperationException();
+			}
+
+			public Class<?> getType() {
+				return field.getType();
+			}
+
+			public Type getGenericType() {
+				return field.getGenericType();
+			}
+		});
+		return Collections.<ColumnMapping> singletonList(mapping);
+	}
+
+	private static String text(int length) {
+		char[] cs = new char[length];
+		Arrays.fill(cs, 'x');
+		return new String(cs);
+	}
+
+	private static List<Bean> rows(int count, String name) {
+		List<Bean> rows = new ArrayList<Bean>();
+		for (int i = 0; i < count; i++) {
+			rows.add(new Bean(name));
+		}
+		return rows;
+	}
+
+	@Test
+	public void testMaxRows() {
+		// 每条语句的绑定变量不超过65535个
+		assertEquals(65535, MySqlBulkInsertHandler.maxRows(1));
+		assertEquals(21845, MySqlBulkInsertHandler.maxRows(3));
+		assertEquals(1, MySqlBulkInsertHandler.maxRows(70000));
+	}
+
+	@Test
+	public void testEstimate() throws Exception {
+		List<ColumnMapping> fields = nameField();
+		// utf8mb4下每个字符最多4字节，加上两个引号
+		assertEquals(402, MySqlBulkInsertHandler.estimate(new Bean(text(100)), fields));
+		assertEquals(4, MySqlBulkInsertHandler.estimate(new Bean(null), fields));
+	}
+
+	@Test
+	public void testFitPacket() throws Exception {
+		List<ColumnMapping> fields = nameField();
+		// 每行402字节，加上"(?)"和逗号共406字节
+		List<Bean> data = rows(5, text(100));
+		assertEquals(2, MySqlBulkInsertHandler.fit(data, 0, fields, 3, 1000, 100));
+		assertEquals(4, MySqlBulkInsertHandler.fit(data, 2, fields, 3, 1000, 100));
+		assertEquals(5, MySqlBulkInsertHandler.fit(data, 4, fields, 3, 1000, 100));
+		assertEquals(3, MySqlBulkInsertHandler.fit(data, 0, fields, 3, 406 * 3, 100));
+
+		// 单独一行超过预算时仍然单独成为一条语句
+		data = rows(3, text(1000));
+		assertEquals(1, MySqlBulkInsertHandler.fit(data, 0, fields, 3, 1000, 100));
+		assertEquals(2, MySqlBulkInsertHandler.fit(data, 1, fields, 3, 1000, 100));
+	}
+
+	@Test
+	public void testFitRows() throws Exception {
+		List<ColumnMapping> fields = nameField();
+		List<Bean> data = rows(5, "a");
+		assertEquals(2, MySqlBulkInsertHandler.fit(data, 0, fields, 3, Long.MAX_VALUE, 2));
+		assertEquals(5, MySqlBulkInsertHandler.fit(data, 0, fields, 3, Long.MAX_VALUE, 100));
+		assertEquals(5, MySqlBulkInsertHandler.fit(data, 4, fields, 3, Long.MAX_VALUE, 2));
+	}
+}
@@ -0,0 +1,52 @@
+package com.github.geequery.dialect.handler;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+public class PostgreSqlCopyHandlerTest {
+	private static String csv(Object value) {
+		StringBuilder sb = new StringBuilder();
+		PostgreSqlCopyHandler.appendCsv(sb, value);
+		return sb.toString();
+	}
+
+	@Test
+	public void testNull() {
+		// 不带引号的空值是NULL，带引号的空串是空字符串
+		assertEquals("", csv(null));
+		assertEquals("\"\"", csv(""));
+	}
+
+	@Test
+	public void testQuote() {
+		assertEquals("\"abc\"", csv("abc"));
+		assertEquals("\"say \"\"hi\"\"\"", csv("say \"hi\""));
+		assertEquals("\"\"\"\"", csv("\""));
+	}
+
+	@Test
+	public void testDelimiter() {
+		// 分隔符、换行和反斜杠在引号内原样保留
+		assertEquals("\"a,b\"", csv("a,b"));
+		assertEquals("\"line1\nline2\r\n\"", csv("line1\nline2\r\n"));
+		assertEquals("\"c:\\temp\"", csv("c:\\temp"));
+		assertEquals("\"NULL\"", csv("NULL"));
+	}
+
+	@Test
+	public void testNumber() {
+		assertEquals("12", csv(12));
+		assertEquals("-1.5", csv(-1.5d));
+		assertEquals("1000", csv(new BigDecimal("1E+3")));
+		assertEquals("true", csv(Boolean.TRUE));
+	}
+
+	@Test
+	public void testBytes() {
+		assertEquals("\\x000aff", csv(new byte[] { 0, 10, (byte) 0xFF }));
+		assertEquals("\\x", csv(new byte[0]));
+	}
+}
@@ -0,0 +1,81 @@
+package com.github.geequery.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.geequery.tools.IOUtils;
+
+public class EntityIndexTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static File classFile(File root, String className, long time) throws IOException {
+		File file = new File(root, className.replace('.', '/') + ".class");
+		file.getParentFile().mkdirs();
+		IOUtils.saveAsFile(file, new byte[] { (byte) 0xCA, (byte) 0xFE });
+		file.setLastModified(time);
+		return file;
+	}
+
+	@Test
+	public void testIndexPerRoot() throws IOException {
+		long now = System.currentTimeMillis() / 1000 * 1000;
+		File indexed = folder.newFolder("indexed");
+		File plain = folder.newFolder("plain");
+		classFile(indexed, "com.x.A", now - 10000);
+		classFile(plain, "com.y.B", now - 10000);
+		File index = EntityIndex.write(indexed, Arrays.asList("com.x.A"));
+		index.setLastModified(now);
+
+		URLClassLoader cl = new URLClassLoader(new URL[] { indexed.toURI().toURL(), plain.toURI().toURL() }, null);
+		try {
+			// 只有带索引的根路径出现在结果中，其余根路径由调用者扫描
+			Map<String, List<String>> result = EntityIndex.load(cl);
+			assertEquals(1, result.size());
+			String root = result.keySet().iterator().next();
+			assertEquals(indexed.toURI().toURL().toExternalForm(), root);
+			assertEquals(Arrays.asList("com.x.A"), result.get(root));
+			assertEquals(indexed.toURI().toURL(), EntityIndex.toClasspathURL(root));
+
+			// 索引生成后新增的类(可能是实体)使索引过时
+			classFile(indexed, "com.x.C", now + 10000);
+			assertTrue(EntityIndex.load(cl).isEmpty());
+		} finally {
+			cl.close();
+		}
+	}
+
+	@Test
+	public void testMissingClass() throws IOException {
+		File root = folder.newFolder("root");
+		EntityIndex.write(root, Arrays.asList("com.x.Removed"));
+		URLClassLoader cl = new URLClassLoader(new URL[] { root.toURI().toURL() }, null);
+		try {
+			assertTrue(EntityIndex.load(cl).isEmpty());
+		} finally {
+			cl.close();
+		}
+	}
+
+	@Test
+	public void testJarRoot() throws IOException {
+		URL url = new URL("jar:file:/app/lib/a.jar!/" + EntityIndex.RESOURCE);
+		String root = EntityIndex.getRoot(url, EntityIndex.RESOURCE);
+		assertEquals("jar:file:/app/lib/a.jar!/", root);
+		assertEquals(new URL("file:/app/lib/a.jar"), EntityIndex.toClasspathURL(root));
+		assertNull(EntityIndex.getRoot(url, "other.idx"));
+	}
+}
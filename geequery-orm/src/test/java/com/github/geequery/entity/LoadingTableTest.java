@@ -0,0 +1,210 @@
+package com.github.geequery.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.persistence.PersistenceException;
+
+import org.junit.Test;
+
+public class LoadingTableTest {
+	/**
+	 * 互相引用的两个类
+	 */
+	static class A {
+	}
+
+	static class B {
+	}
+
+	private static Class<?> other(Class<?> clz) {
+		return clz == A.class ? B.class : A.class;
+	}
+
+	/**
+	 * 构造时先计算基本部分(可选地提前公开)，再构造引用的另一个类
+	 */
+	private static class RefBuilder implements LoadingTable.Builder<String> {
+		private LoadingTable<String> table;
+		private final boolean publishA;
+		private final boolean publishB;
+		// 两个线程都进入构造后才去构造引用的类，保证出现线程间的循环等待
+		private final CountDownLatch bothStarted;
+		private final Map<Class<?>, AtomicInteger> builds = new ConcurrentHashMap<Class<?>, AtomicInteger>();
+		private final Map<Class<?>, String> refs = new ConcurrentHashMap<Class<?>, String>();
+		// 已经构造完成的结果，相当于元数据池
+		private final Map<Class<?>, String> built = new ConcurrentHashMap<Class<?>, String>();
+
+		RefBuilder(boolean publishA, boolean publishB, int threads) {
+			this.publishA = publishA;
+			this.publishB = publishB;
+			this.bothStarted = new CountDownLatch(threads);
+		}
+
+		public String build(Class<?> clz) {
+			String exist = built.get(clz);
+			if (exist != null) {
+				return exist;
+			}
+			builds.get(clz).incrementAndGet();
+			String value = clz.getSimpleName();
+			if (clz == A.class ? publishA : publishB) {
+				table.publishEarly(clz, value);
+			}
+			bothStarted.countDown();
+			try {
+				bothStarted.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+			refs.put(clz, table.load(other(clz), this));
+			built.put(clz, value);
+			return value;
+		}
+
+		LoadingTable<String> newTable() {
+			table = new LoadingTable<String>();
+			builds.put(A.class, new AtomicInteger());
+			builds.put(B.class, new AtomicInteger());
+			return table;
+		}
+	}
+
+	/**
+	 * 在两个线程中分别构造A和B，返回各线程的结果(String或异常)
+	 */
+	private static Object[] loadInTwoThreads(final LoadingTable<String> table, final RefBuilder builder) throws InterruptedException {
+		final Object[] results = new Object[2];
+		Thread[] threads = new Thread[2];
+		for (int i = 0; i < 2; i++) {
+			final int index = i;
+			threads[i] = new Thread() {
+				public void run() {
+					try {
+						results[index] = table.load(index == 0 ? A.class : B.class, builder);
+					} catch (RuntimeException e) {
+						results[index] = e;
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread t : threads) {
+			t.join(10000);
+			assertTrue("Deadlock between loading threads", !t.isAlive());
+		}
+		return results;
+	}
+
+	@Test
+	public void testPerClass() throws InterruptedException {
+		final LoadingTable<String> table = new LoadingTable<String>();
+		final CountDownLatch inA = new CountDownLatch(1);
+		final CountDownLatch releaseA = new CountDownLatch(1);
+		final AtomicInteger builds = new AtomicInteger();
+		final LoadingTable.Builder<String> builder = new LoadingTable.Builder<String>() {
+			public String build(Class<?> clz) {
+				builds.incrementAndGet();
+				if (clz == A.class) {
+					inA.countDown();
+					try {
+						releaseA.await(5, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						throw new IllegalStateException(e);
+					}
+				}
+				return clz.getSimpleName();
+			}
+		};
+		final String[] waited = new String[1];
+		Thread owner = new Thread() {
+			public void run() {
+				table.load(A.class, builder);
+			}
+		};
+		Thread waiter = new Thread() {
+			public void run() {
+				waited[0] = table.load(A.class, builder);
+			}
+		};
+		owner.start();
+		assertTrue(inA.await(5, TimeUnit.SECONDS));
+		waiter.start();
+		while (waiter.getState() != Thread.State.TIMED_WAITING) {
+			Thread.sleep(1);
+		}
+		// A正在构造时，B的构造不受影响
+		assertEquals("B", table.load(B.class, builder));
+		releaseA.countDown();
+		owner.join(5000);
+		waiter.join(5000);
+		// 等待者拿到构造者的结果，A只构造一次
+		assertEquals("A", waited[0]);
+		assertEquals(2, builds.get());
+	}
+
+	@Test
+	public void testSameThreadCycle() {
+		RefBuilder builder = new RefBuilder(true, false, 1);
+		LoadingTable<String> table = builder.newTable();
+		assertEquals("A", table.load(A.class, builder));
+		assertEquals("A", builder.refs.get(B.class));
+		assertEquals("B", builder.refs.get(A.class));
+
+		builder = new RefBuilder(false, false, 1);
+		table = builder.newTable();
+		try {
+			table.load(A.class, builder);
+			throw new AssertionError("Circular reference not detected");
+		} catch (PersistenceException e) {
+			assertTrue(e.getMessage().contains("Circular reference"));
+		}
+	}
+
+	@Test
+	public void testCrossThreadCycleBroken() throws InterruptedException {
+		// 只有A提前公开时，等待A的一方返回A的基本部分，B构造完成后A随之完成
+		RefBuilder builder = new RefBuilder(true, false, 2);
+		Object[] results = loadInTwoThreads(builder.newTable(), builder);
+		assertEquals("A", results[0]);
+		assertEquals("B", results[1]);
+		assertEquals(1, builder.builds.get(A.class).get());
+		assertEquals(1, builder.builds.get(B.class).get());
+
+		// 双方都提前公开
+		builder = new RefBuilder(true, true, 2);
+		results = loadInTwoThreads(builder.newTable(), builder);
+		assertEquals("A", results[0]);
+		assertEquals("B", results[1]);
+	}
+
+	@Test
+	public void testCrossThreadCycleUnbreakable() throws InterruptedException {
+		// 双方都没有提前公开，无法打破循环，两个线程都应失败而不是一直等待
+		RefBuilder builder = new RefBuilder(false, false, 2);
+		Object[] results = loadInTwoThreads(builder.newTable(), builder);
+		assertTrue(String.valueOf(results[0]), results[0] instanceof PersistenceException);
+		assertTrue(String.valueOf(results[1]), results[1] instanceof PersistenceException);
+	}
+
+	@Test
+	public void testLoadAll() {
+		// 并行度取决于处理器个数，不强求两个类在不同线程中构造
+		RefBuilder builder = new RefBuilder(true, true, 1);
+		LoadingTable<String> table = builder.newTable();
+		assertEquals(2, table.loadAll(Arrays.<Class<?>> asList(A.class, B.class), builder));
+		assertEquals(1, builder.builds.get(A.class).get());
+		assertEquals(1, builder.builds.get(B.class).get());
+
+		builder = new RefBuilder(false, false, 1);
+		table = builder.newTable();
+		assertEquals(0, table.loadAll(Arrays.<Class<?>> asList(A.class, B.class), builder));
+	}
+}
@@ -0,0 +1,187 @@
+package jef.database.jdbc.result;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import jef.database.wrapper.clause.InMemoryOrderBy;
+
+import org.junit.Test;
+
+public class MergeSortedResultSetTest extends org.junit.Assert {
+	/**
+	 * 按行返回数组中数据的结果集
+	 */
+	private static ResultSet resultSet(final List<Object[]> rows) {
+		return (ResultSet) Proxy.newProxyInstance(MergeSortedResultSetTest.class.getClassLoader(), new Class<?>[] { ResultSet.class }, new InvocationHandler() {
+			private int index = -1;
+
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				String name = method.getName();
+				if ("next".equals(name)) {
+					return ++index < rows.size();
+				} else if ("getObject".equals(name)) {
+					return rows.get(index)[(Integer) args[0] - 1];
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * 和内存排序一致的比较规则：null排在最大，降序时整体反转
+	 */
+	private static Comparator<Object[]> comparator(final int[] fields, final boolean[] asc) {
+		return new Comparator<Object[]>() {
+			@SuppressWarnings({ "unchecked", "rawtypes" })
+			public int compare(Object[] o1, Object[] o2) {
+				for (int i = 0; i < fields.length; i++) {
+					Object a = o1[fields[i] - 1];
+					Object b = o2[fields[i] - 1];
+					int r = a == b ? 0 : a == null ? 1 : b == null ? -1 : ((Comparable) a).compareTo(b);
+					if (r != 0) {
+						return asc[i] ? r : -r;
+					}
+				}
+				return 0;
+			}
+		};
+	}
+
+	/**
+	 * 归并各分片，返回第三列(行标识)的顺序
+	 */
+	private static List<Object> merge(List<List<Object[]>> shards, int[] fields, boolean[] asc) throws SQLException {
+		List<ResultSetHolder> holders = new ArrayList<ResultSetHolder>();
+		for (List<Object[]> shard : shards) {
+			holders.add(new ResultSetHolder(null, null, resultSet(shard)));
+		}
+		MergeSortedResultSet rs = new MergeSortedResultSet(holders, new InMemoryOrderBy(fields, asc), null, null);
+		List<Object> result = new ArrayList<Object>();
+		while (rs.next()) {
+			result.add(rs.getObject(3));
+		}
+		assertFalse(rs.next());
+		return result;
+	}
+
+	/**
+	 * 分片内先排好序，期望的结果是所有分片按序号拼接后的稳定排序
+	 */
+	private static List<Object> expected(List<List<Object[]>> shards, int[] fields, boolean[] asc) {
+		List<Object[]> all = new ArrayList<Object[]>();
+		for (List<Object[]> shard : shards) {
+			all.addAll(shard);
+		}
+		Collections.sort(all, comparator(fields, asc));
+		List<Object> result = new ArrayList<Object>();
+		for (Object[] row : all) {
+			result.add(row[2]);
+		}
+		return result;
+	}
+
+	private static List<List<Object[]>> randomShards(int[] sizes, long seed, int[] fields, boolean[] asc) {
+		Random random = new Random(seed);
+		List<List<Object[]>> shards = new ArrayList<List<Object[]>>();
+		for (int s = 0; s < sizes.length; s++) {
+			List<Object[]> shard = new ArrayList<Object[]>();
+			for (int i = 0; i < sizes[s]; i++) {
+				// 取值范围较小，制造大量排序值相同的记录和null
+				Integer a = random.nextInt(8) == 0 ? null : Integer.valueOf(random.nextInt(10));
+				String b = random.nextInt(8) == 0 ? null : "v" + random.nextInt(4);
+				shard.add(new Object[] { a, b, s + ":" + i });
+			}
+			Collections.sort(shard, comparator(fields, asc));
+			shards.add(shard);
+		}
+		return shards;
+	}
+
+	private static void assertMerge(int[] sizes, int[] fields, boolean[] asc) throws SQLException {
+		for (long seed = 0; seed < 20; seed++) {
+			List<List<Object[]>> shards = randomShards(sizes, seed, fields, asc);
+			assertEquals(Arrays.toString(sizes) + ",seed=" + seed, expected(shards, fields, asc), merge(shards, fields, asc));
+		}
+	}
+
+	private static List<Object[]> rows(Object... keys) {
+		List<Object[]> rows = new ArrayList<Object[]>();
+		for (Object key : keys) {
+			rows.add(new Object[] { key, null, String.valueOf(key) + "@" + rows.size() });
+		}
+		return rows;
+	}
+
+	@Test
+	public void testSingleShard() throws SQLException {
+		List<List<Object[]>> shards = new ArrayList<List<Object[]>>();
+		shards.add(rows(1, 2, 2, 5));
+		assertEquals(Arrays.<Object> asList("1@0", "2@1", "2@2", "5@3"), merge(shards, new int[] { 1 }, new boolean[] { true }));
+		shards.set(0, rows());
+		assertTrue(merge(shards, new int[] { 1 }, new boolean[] { true }).isEmpty());
+		assertMerge(new int[] { 30 }, new int[] { 1 }, new boolean[] { true });
+	}
+
+	@Test
+	public void testShardCount() throws SQLException {
+		// 分片数不是2的幂时，败者树的叶子不在同一层
+		for (int k = 2; k <= 9; k++) {
+			int[] sizes = new int[k];
+			Arrays.fill(sizes, 10);
+			assertMerge(sizes, new int[] { 1 }, new boolean[] { true });
+		}
+	}
+
+	@Test
+	public void testUnevenShards() throws SQLException {
+		// 分片先后取完，或者一开始就是空的
+		assertMerge(new int[] { 0, 5, 1, 0, 20, 3 }, new int[] { 1 }, new boolean[] { true });
+		assertMerge(new int[] { 0, 0, 0 }, new int[] { 1 }, new boolean[] { true });
+		assertMerge(new int[] { 50, 0, 0, 0, 1 }, new int[] { 1 }, new boolean[] { false });
+
+		List<List<Object[]>> shards = new ArrayList<List<Object[]>>();
+		shards.add(rows(1, 2));
+		shards.add(rows());
+		shards.add(rows(3, 4, 5, 6));
+		assertEquals(Arrays.<Object> asList("1@0", "2@1", "3@0", "4@1", "5@2", "6@3"), merge(shards, new int[] { 1 }, new boolean[] { true }));
+	}
+
+	@Test
+	public void testEqualKeys() throws SQLException {
+		// 排序键相同时按分片序号排列
+		List<List<Object[]>> shards = new ArrayList<List<Object[]>>();
+		shards.add(rows(1, 1));
+		shards.add(rows(1));
+		shards.add(rows(0, 1, 1));
+		assertEquals(Arrays.<Object> asList("0@0", "1@0", "1@1", "1@0", "1@1", "1@2"), merge(shards, new int[] { 1 }, new boolean[] { true }));
+	}
+
+	@Test
+	public void testNulls() throws SQLException {
+		// null排在最后，降序时排在最前
+		List<List<Object[]>> shards = new ArrayList<List<Object[]>>();
+		shards.add(rows(1, null));
+		shards.add(rows(2, null));
+		assertEquals(Arrays.<Object> asList("1@0", "2@0", "null@1", "null@1"), merge(shards, new int[] { 1 }, new boolean[] { true }));
+		shards.clear();
+		shards.add(rows(null, 1));
+		shards.add(rows(null, 2));
+		assertEquals(Arrays.<Object> asList("null@0", "null@0", "2@1", "1@1"), merge(shards, new int[] { 1 }, new boolean[] { false }));
+	}
+
+	@Test
+	public void testMixedOrder() throws SQLException {
+		assertMerge(new int[] { 7, 12, 0, 9, 4 }, new int[] { 1, 2 }, new boolean[] { true, false });
+		assertMerge(new int[] { 7, 12, 0, 9, 4 }, new int[] { 2, 1 }, new boolean[] { false, true });
+		assertMerge(new int[] { 3, 3, 3 }, new int[] { 2, 1 }, new boolean[] { false, false });
+	}
+}
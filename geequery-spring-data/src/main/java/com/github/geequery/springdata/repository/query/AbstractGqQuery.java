@@ -15,18 +15,25 @@
  */
 package com.github.geequery.springdata.repository.query;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 
+import jef.database.wrapper.ResultIterator;
+
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.query.RepositoryQuery;
 import org.springframework.orm.jpa.EntityManagerFactoryUtils;
 import org.springframework.util.Assert;
 
 import com.github.geequery.core.Session;
+import com.github.geequery.core.config.ORMConfig;
+import com.github.geequery.dialect.AbstractDelegatingDialect;
+import com.github.geequery.dialect.AbstractDialect;
+import com.github.geequery.dialect.DatabaseDialect;
 import com.github.geequery.springdata.repository.query.GqQueryExecution.CollectionExecution;
 import com.github.geequery.springdata.repository.query.GqQueryExecution.ModifyingExecution;
 import com.github.geequery.springdata.repository.query.GqQueryExecution.PagedExecution;
@@ -69,7 +76,7 @@ public abstract class AbstractGqQuery implements RepositoryQuery {
 		} else if (method.isCollectionQuery()) {
 			return new CollectionExecution();
 		} else if (method.isStreamQuery()) {
-		    return new StreamExecution(new CollectionExecution());
+		    return new StreamExecution();
 		} else if (method.isPageQuery()) {
 			return new PagedExecution(method.getParameters());
 		} else if (method.isModifyingQuery()) {
@@ -94,6 +101,43 @@ public abstract class AbstractGqQuery implements RepositoryQuery {
 
 	protected abstract long getResultCount(Object[] values);
 
+	/**
+	 * 以迭代器方式返回查询结果，用于返回Stream的方法。默认实现查出全部结果后再遍历，子类应当覆盖为真正的游标读取。
+	 * 
+	 * @param values
+	 * @param fetchSize
+	 *            每次从数据库获取的大小
+	 * @return 结果迭代器，使用完后必须关闭
+	 */
+	protected ResultIterator<?> getResultIterator(Object[] values, int fetchSize) {
+		return new ResultIterator.Impl<Object>(new ArrayList<Object>(getResultList(values, null)).iterator(), null);
+	}
+
+	/**
+	 * {@link #getResultIterator(Object[], int)}是否在遍历期间保持数据库游标打开。只有这种情况下流式查询才需要事务
+	 * 
+	 * @return
+	 */
+	protected boolean isCursorIterator() {
+		return false;
+	}
+
+	/**
+	 * 流式查询的fetchSize，由方言根据驱动调整
+	 * 
+	 * @return
+	 */
+	protected int getStreamFetchSize() {
+		int fetchSize = ORMConfig.getInstance().getStreamFetchSize();
+		DatabaseDialect profile = getSession().getProfile(null);
+		if (profile instanceof AbstractDialect) {
+			fetchSize = ((AbstractDialect) profile).getStreamFetchSize(fetchSize);
+		} else if (profile instanceof AbstractDelegatingDialect) {
+			fetchSize = ((AbstractDelegatingDialect) profile).getStreamFetchSize(fetchSize);
+		}
+		return fetchSize;
+	}
+
 	protected Session getSession() {
 		EntityManager em = EntityManagerFactoryUtils.doGetTransactionalEntityManager(emf, null);
 		if (em == null) { // 当无事务时。Spring返回null
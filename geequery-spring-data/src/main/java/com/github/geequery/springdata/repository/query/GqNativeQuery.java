@@ -22,6 +22,7 @@ import javax.persistence.EntityManagerFactory;
 import javax.persistence.PersistenceException;
 
 import jef.database.NativeQuery;
+import jef.database.wrapper.ResultIterator;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,6 +58,19 @@ final class GqNativeQuery extends AbstractGqQuery {
 		return query.getResultList();
 	}
 
+	@Override
+	protected ResultIterator<?> getResultIterator(Object[] values, int fetchSize) {
+		NativeQuery<?> query = getThreadQuery();
+		query.setFetchSize(fetchSize);
+		applyParamters(query, values);
+		return query.getResultIterator();
+	}
+
+	@Override
+	protected boolean isCursorIterator() {
+		return true;
+	}
+
 	private void assertNoSort(Sort sort) {
 		if (sort != null) {
 			log.warn("The input parameter Sort [" + sort + "]can not be set into a SQL Query, and was ignored.");
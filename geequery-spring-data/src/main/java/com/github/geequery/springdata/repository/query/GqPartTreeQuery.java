@@ -16,6 +16,7 @@
 package com.github.geequery.springdata.repository.query;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -37,6 +38,7 @@ import jef.database.query.ConditionQuery;
 import jef.database.query.Query;
 import jef.database.query.QueryBuilder;
 import jef.database.query.SqlExpression;
+import jef.database.wrapper.ResultIterator;
 import jef.tools.PageLimit;
 
 import org.springframework.data.domain.Pageable;
@@ -45,6 +47,7 @@ import org.springframework.data.domain.Sort.Order;
 import org.springframework.data.mapping.PropertyPath;
 import org.springframework.data.repository.query.ParametersParameterAccessor;
 import org.springframework.data.repository.query.parser.PartTree;
+import org.springframework.data.repository.util.QueryExecutionConverters;
 
 import com.github.geequery.springdata.annotation.FindBy;
 import com.github.geequery.springdata.annotation.IgnoreIf;
@@ -64,6 +67,33 @@ public class GqPartTreeQuery extends AbstractGqQuery {
 	private final GqPartTree tree;
 	private final GqParameters parameters;
 	private final EntityManagerFactory em;
+	/**
+	 * 预编译的查询条件，外层对应Or，内层对应And。第一次执行时生成
+	 */
+	private volatile Slot[][] plan;
+
+	/**
+	 * 一个查询条件的预编译结果：字段、参数位置和@IgnoreIf都已解析，执行时只需取出参数值生成条件
+	 */
+	private static final class Slot {
+		final GqPart part;
+		/**
+		 * 条件对应的字段，实体中没有该字段时为null，条件被忽略
+		 */
+		final Field field;
+		/**
+		 * 参数值在方法参数中的位置
+		 */
+		final int valueIndex;
+		final IgnoreIf ignore;
+
+		Slot(GqPart part, Field field, int valueIndex, IgnoreIf ignore) {
+			this.part = part;
+			this.field = field;
+			this.valueIndex = valueIndex;
+			this.ignore = ignore;
+		}
+	}
 
 	/**
 	 * Creates a new {@link PartTreeJpaQuery}.
@@ -108,29 +138,17 @@ public class GqPartTreeQuery extends AbstractGqQuery {
 
 	private Query<?> createQuery(Object[] values, boolean withPageSort) {
 		Query<?> q = QB.create(metadata);
-		ParametersParameterAccessor accessor = new ParametersParameterAccessor(
-				parameters, values);
 		Or or = new Or();
-		int index = 0;
-		for (GqOrPart node : tree) {
+		for (Slot[] node : getPlan()) {
 			And and = new And();
-			for (GqPart part : node) {
-				PropertyPath path = part.getProperty();
-				if (path.getOwningType().getType() != metadata.getThisType()) {
-					throw new IllegalArgumentException("PathType:"
-							+ path.getOwningType().getType() + "  metadata:"
-							+ metadata.getThisType());
+			for (Slot slot : node) {
+				if (slot.field == null) {
+					continue;
 				}
-				String fieldName = path.getSegment();
-				ColumnMapping field = metadata.findField(fieldName);
-				PairIO<GqParameter> paramInfo = getBindParamIndex(index++,
-						fieldName);
-				Object obj = accessor.getBindableValue(paramInfo.first);
-				if (field != null) {
-					IgnoreIf ignore = paramInfo.second.getIgnoreIf();
-					if (ignore == null || !QueryUtils.isIgnore(ignore, obj)) {
-						add(and, part, field.field(), obj);
-					}
+				// 与ParametersParameterAccessor一致，Optional等包装类型的参数先解包
+				Object obj = QueryExecutionConverters.unwrap(values[slot.valueIndex]);
+				if (slot.ignore == null || !QueryUtils.isIgnore(slot.ignore, obj)) {
+					add(and, slot.part, slot.field, obj);
 				}
 			}
 			or.addCondition(and);
@@ -138,6 +156,8 @@ public class GqPartTreeQuery extends AbstractGqQuery {
 		q.addCondition(or);
 
 		if (withPageSort) {
+			ParametersParameterAccessor accessor = new ParametersParameterAccessor(
+					parameters, values);
 			Sort sort = tree.getSort();
 			if (accessor.getSort() != null) {
 				sort = accessor.getSort();
@@ -152,7 +172,43 @@ public class GqPartTreeQuery extends AbstractGqQuery {
 		return q;
 	}
 
-	// FIXME use Binder to optmize.
+	private Slot[][] getPlan() {
+		Slot[][] result = plan;
+		if (result == null) {
+			result = compile();
+			plan = result;
+		}
+		return result;
+	}
+
+	/*
+	 * 解析每个条件的字段和参数。条件和参数的对应规则与逐次解析时相同
+	 */
+	private Slot[][] compile() {
+		List<Slot[]> result = new ArrayList<Slot[]>();
+		int index = 0;
+		for (GqOrPart node : tree) {
+			List<Slot> and = new ArrayList<Slot>();
+			for (GqPart part : node) {
+				PropertyPath path = part.getProperty();
+				if (path.getOwningType().getType() != metadata.getThisType()) {
+					throw new IllegalArgumentException("PathType:"
+							+ path.getOwningType().getType() + "  metadata:"
+							+ metadata.getThisType());
+				}
+				String fieldName = path.getSegment();
+				ColumnMapping field = metadata.findField(fieldName);
+				PairIO<GqParameter> paramInfo = getBindParamIndex(index++,
+						fieldName);
+				int valueIndex = parameters.getBindableParameter(paramInfo.first).getIndex();
+				and.add(new Slot(part, field == null ? null : field.field(), valueIndex,
+						paramInfo.second.getIgnoreIf()));
+			}
+			result.add(and.toArray(new Slot[and.size()]));
+		}
+		return result.toArray(new Slot[result.size()][]);
+	}
+
 	private PairIO<GqParameter> getBindParamIndex(int index, String fieldName) {
 		int i = 0;
 		for (GqParameter param : this.parameters) {
@@ -296,6 +352,22 @@ public class GqPartTreeQuery extends AbstractGqQuery {
 		}
 	}
 
+	@Override
+	protected ResultIterator<?> getResultIterator(Object[] values, int fetchSize) {
+		Query<?> q = createQuery(values, true);
+		q.setFetchSize(fetchSize);
+		try {
+			return getSession().iteratedSelect(q, null);
+		} catch (SQLException e) {
+			throw DbUtils.toRuntimeException(e);
+		}
+	}
+
+	@Override
+	protected boolean isCursorIterator() {
+		return true;
+	}
+
 	private PageLimit toRange(Pageable pageable) {
 		return new PageLimit(pageable.getOffset() , pageable.getPageSize());
 	}
@@ -18,19 +18,26 @@ package com.github.geequery.springdata.repository.query;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.StreamSupport;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.NoResultException;
 
+import jef.database.wrapper.ResultIterator;
+
 import org.springframework.core.convert.ConversionService;
 import org.springframework.core.convert.support.ConfigurableConversionService;
 import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.query.ParameterAccessor;
 import org.springframework.data.repository.query.Parameters;
 import org.springframework.data.repository.query.ParametersParameterAccessor;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
 
 public abstract class GqQueryExecution {
@@ -111,17 +118,28 @@ public abstract class GqQueryExecution {
         }
     }
 
+    /**
+     * 返回{@link java.util.stream.Stream}的查询。Stream直接基于数据库游标，遍历时逐批从数据库读取，不会将结果全部载入内存。
+     * <p>
+     * 游标在事务结束前必须保持打开(例如PostgreSQL只有在关闭自动提交时才使用游标读取)，因此持有游标的查询要求在事务中调用；
+     * 不支持游标、先载入全部结果再遍历的查询没有此限制。
+     * 使用完毕后必须关闭Stream(如使用try-with-resources)，以释放结果集；遍历到末尾时也会自动释放。
+     * 并行遍历时，Spliterator按批拆分已读出的记录，读取本身仍然是顺序的。
+     */
     static class StreamExecution extends GqQueryExecution {
-        private CollectionExecution ce;
-        protected StreamExecution(CollectionExecution ce) {
-            this.ce = ce;
-        }
+        private static final String NO_SURROUNDING_TRANSACTION = "You're trying to execute a streaming query method without a surrounding transaction that keeps the connection open so that the Stream can actually be consumed. Make sure the code consuming the stream uses @Transactional or any other way of declaring a (read-only) transaction.";
 
         protected Object doExecute(AbstractGqQuery query, Object[] values) {
-            @SuppressWarnings("rawtypes")
-            Collection coll=(Collection) ce.doExecute(query, values);
-            //FIXME 由于底层对Stream还没有原生支持，使用这种方式仅仅在形势上满足的Stream的接口，但是没能体现流式非阻塞接口的优点。
-            return coll.stream();
+            if (query.isCursorIterator() && !TransactionSynchronizationManager.isActualTransactionActive()) {
+                throw new InvalidDataAccessApiUsageException(NO_SURROUNDING_TRANSACTION);
+            }
+            final ResultIterator<?> iterator = query.getResultIterator(values, query.getStreamFetchSize());
+            Spliterator<?> spliterator = Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED);
+            return StreamSupport.stream(spliterator, false).onClose(new Runnable() {
+                public void run() {
+                    iterator.close();
+                }
+            });
         }
     }
 
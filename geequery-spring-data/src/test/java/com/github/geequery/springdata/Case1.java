@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 import javax.persistence.OptimisticLockException;
@@ -76,6 +77,25 @@ public class Case1 extends AbstractJUnit4SpringContextTests implements Initializ
         }
     }
 
+    /**
+     * Optional参数按其中的值绑定，Optional.empty()视为null
+     */
+    @Test
+    public void testOptionalParam() {
+        Foo foo = new Foo();
+        foo.setAge(7);
+        foo.setName("可选参数");
+        foodao.save(foo);
+
+        List<Foo> list = foodao.findByAgeAndName(7, Optional.of("可选参数"));
+        Assert.assertFalse(list.isEmpty());
+        for (Foo f : list) {
+            Assert.assertEquals("可选参数", f.getName());
+        }
+        // 空的Optional被@IgnoreIf(ParamIs.Null)忽略，只按age查询
+        Assert.assertEquals(foodao.findByAgeOrderById(7).size(), foodao.findByAgeAndName(7, Optional.<String> empty()).size());
+    }
+
     /**
      * 使用方法名来定义查询的案例.
      * 
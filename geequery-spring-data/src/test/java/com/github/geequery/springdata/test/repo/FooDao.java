@@ -3,6 +3,7 @@ package com.github.geequery.springdata.test.repo;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 import org.springframework.data.domain.Page;
@@ -86,6 +87,15 @@ public interface FooDao extends GqRepository<Foo, Integer> {
 	 * @return
 	 */
 	List<Foo> findByAgeIn(Collection<Integer> ages);
+
+	/**
+	 * 使用Optional参数，为空时忽略该条件
+	 * 
+	 * @param age
+	 * @param name
+	 * @return
+	 */
+	List<Foo> findByAgeAndName(int age, @IgnoreIf(ParamIs.Null) Optional<String> name);
 	
 //	List<Foo> updateAgeById(int age,int id);
 }
\ No newline at end of file